@@ -24,6 +24,7 @@ import tigase.jaxmpp.core.client.eventbus.EventBus;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 import tigase.jaxmpp.core.client.xmpp.modules.EventBusAware;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -32,15 +33,29 @@ import java.util.logging.Logger;
 
 /**
  * Default representation of {@linkplain SessionObject}
+ * <p>
+ * Properties with {@linkplain Key typed key} are kept in arrays (one per scope) indexed by key, other properties
+ * are kept in {@linkplain #properties} map. Arrays are copied on write, so reading property by key doesn't need
+ * locking nor hashing, and clearing scope replaces whole array.
  */
 public abstract class AbstractSessionObject
 		implements SessionObject, EventBusAware {
 
 	protected final Logger log = Logger.getLogger(this.getClass().getName());
+	private static final Object[] EMPTY = new Object[0];
 	protected Map<String, Entry> properties;
 	private EventBus eventBus;
+	/**
+	 * Values of typed properties, indexed by scope ordinal and key index.
+	 */
+	private volatile Object[][] slots;
 
 	protected AbstractSessionObject() {
+		final Object[][] slots = new Object[Scope.values().length][];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = EMPTY;
+		}
+		this.slots = slots;
 	}
 
 	public void addClearedHandler(ClearedHandler handler) {
@@ -77,6 +92,12 @@ public abstract class AbstractSessionObject
 		}
 		log.fine("Clearing properties in scopes " + scopes);
 
+		final Object[][] tmp = this.slots.clone();
+		for (Scope scope : scopes) {
+			tmp[scope.ordinal()] = EMPTY;
+		}
+		this.slots = tmp;
+
 		Iterator<java.util.Map.Entry<String, Entry>> iterator = this.properties.entrySet().iterator();
 		while (iterator.hasNext()) {
 			java.util.Map.Entry<String, Entry> entry = iterator.next();
@@ -89,6 +110,28 @@ public abstract class AbstractSessionObject
 		eventBus.fire(event);
 	}
 
+	/**
+	 * Returns copy of all properties, including properties with typed key.
+	 *
+	 * @return map of properties.
+	 */
+	public synchronized Map<String, Entry> getEntries() {
+		final Map<String, Entry> result = new HashMap<String, Entry>(properties);
+		final Object[][] slots = this.slots;
+		for (Scope scope : Scope.values()) {
+			final Object[] values = slots[scope.ordinal()];
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					Entry e = new Entry();
+					e.scope = scope;
+					e.value = values[i];
+					result.put(Key.forIndex(i).getName(), e);
+				}
+			}
+		}
+		return result;
+	}
+
 	public EventBus getEventBus() {
 		return eventBus;
 	}
@@ -98,8 +141,54 @@ public abstract class AbstractSessionObject
 		this.eventBus = eventBus;
 	}
 
+	@SuppressWarnings("unchecked")
+	public <T> T getProperty(Scope scope, Key<T> key) {
+		final Object[][] slots = this.slots;
+		final int index = key.getIndex();
+		if (scope != null) {
+			final Object[] values = slots[scope.ordinal()];
+			if (index < values.length && values[index] != null) {
+				return (T) values[index];
+			}
+		} else {
+			Object[] values = slots[key.getScope().ordinal()];
+			if (index < values.length && values[index] != null) {
+				return (T) values[index];
+			}
+			// property may be set in other scope by name
+			for (int i = 0; i < slots.length; i++) {
+				values = slots[i];
+				if (index < values.length && values[index] != null) {
+					return (T) values[index];
+				}
+			}
+		}
+		if (properties.isEmpty()) {
+			return null;
+		}
+		// property may be set by name before key was created
+		return getEntryValue(scope, key.getName());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> T getProperty(Key<T> key) {
+		return getProperty(null, key);
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T getProperty(Scope scope, String key) {
+		final Key<?> k = Key.forName(key);
+		if (k != null) {
+			return (T) getProperty(scope, k);
+		}
+		return getEntryValue(scope, key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T getEntryValue(Scope scope, String key) {
 		Entry entry = this.properties.get(key);
 		if (entry == null) {
 			return null;
@@ -138,8 +227,51 @@ public abstract class AbstractSessionObject
 		eventBus.remove(ClearedHandler.ClearedEvent.class, handler);
 	}
 
+	/**
+	 * Set property in given scope.
+	 *
+	 * @param scope scope of property
+	 * @param key property key
+	 * @param value property value. <code>null</code> to unset property.
+	 *
+	 * @return instance of <code>this</code> {@linkplain SessionObject}
+	 */
+	public synchronized <T> SessionObject setProperty(Scope scope, Key<T> key, T value) {
+		final int ordinal = (scope == null ? key.getScope() : scope).ordinal();
+		final Object[][] tmp = this.slots.clone();
+		final int index = key.getIndex();
+		for (int i = 0; i < tmp.length; i++) {
+			final Object v = i == ordinal ? value : null;
+			final Object[] values = tmp[i];
+			if (index < values.length ? values[index] != v : v != null) {
+				final Object[] copy = new Object[Math.max(values.length, index + 1)];
+				System.arraycopy(values, 0, copy, 0, values.length);
+				copy[index] = v;
+				tmp[i] = copy;
+			}
+		}
+		this.slots = tmp;
+		if (!properties.isEmpty()) {
+			properties.remove(key.getName());
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <T> SessionObject setProperty(Key<T> key, T value) {
+		return setProperty(key.getScope(), key, value);
+	}
+
 	@Override
+	@SuppressWarnings("unchecked")
 	public SessionObject setProperty(Scope scope, String key, Object value) {
+		final Key<Object> k = (Key<Object>) Key.forName(key);
+		if (k != null) {
+			return setProperty(scope, k, value);
+		}
 		if (value == null) {
 			this.properties.remove(key);
 		} else {
@@ -172,7 +304,7 @@ public abstract class AbstractSessionObject
 
 	@Override
 	public String toString() {
-		return "AbstractSessionObject{" + "properties=" + properties + '}';
+		return "AbstractSessionObject{" + "properties=" + getEntries() + '}';
 	}
 
 	public static class Entry {
@@ -22,10 +22,16 @@ package tigase.jaxmpp.core.client;
 
 /**
  * XMPP entity address form <code>&lt;localpart@domainpart&gt;</code>
+ * <p>
+ * Instances parsed from strings are kept in small direct mapped cache, so parsing the same address again usually
+ * returns the same instance without allocation. Cache is bounded and may be used by many threads without locking
+ * (instances are immutable), but identity of equal instances is not guaranteed.
  */
 public class BareJID
 		implements Comparable<BareJID> {
 
+	private static final int CACHE_SIZE = 1024;
+	private static final BareJID[] cache = new BareJID[CACHE_SIZE];
 	protected final String domain;
 	protected final String localpart;
 	private final String $toString;
@@ -38,8 +44,19 @@ public class BareJID
 	 * @return bare JID
 	 */
 	public static BareJID bareJIDInstance(String jid) {
-		String[] parsedJid = parseJID(jid);
-		return bareJIDInstance(parsedJid[0], parsedJid[1]);
+		final int length = jid.length();
+		int at = -1;
+		int end = length;
+		for (int i = 0; i < length; i++) {
+			final char c = jid.charAt(i);
+			if (c == '/') {
+				end = i;
+				break;
+			} else if (c == '@' && at == -1) {
+				at = i;
+			}
+		}
+		return bareJIDInstance(jid, at, end);
 	}
 
 	/**
@@ -54,23 +71,44 @@ public class BareJID
 		return new BareJID(p_localpart, p_domain);
 	}
 
-	static String[] parseJID(String jid) {
-		String[] result = new String[3];
-
-		// Cut off the resource part first
-		int idx = jid.indexOf('/');
-
-		// Resource part:
-		result[2] = ((idx == -1) ? null : jid.substring(idx + 1));
-
-		String id = ((idx == -1) ? jid : jid.substring(0, idx));
+	/**
+	 * Creates instance of {@link BareJID} from part of string, which was already scanned.
+	 *
+	 * @param jid string contains full JID or bare JID
+	 * @param at index of first <code>@</code> before <code>end</code> or <code>-1</code>
+	 * @param end index of first <code>/</code> or length of string
+	 *
+	 * @return bare JID
+	 */
+	static BareJID bareJIDInstance(String jid, int at, int end) {
+		final int idx = cacheIndex(end == jid.length() ? jid.hashCode() : hashCode(jid, end));
+		BareJID result = cache[idx];
+		if (result != null && result.$toString.length() == end && jid.regionMatches(0, result.$toString, 0, end)) {
+			return result;
+		}
+		// bare part is extracted only when it is not cached
+		final String bare = end == jid.length() ? jid : jid.substring(0, end);
+		result = new BareJID(at == -1 ? null : bare.substring(0, at), at == -1 ? bare : bare.substring(at + 1));
+		if (at != 0) {
+			// empty localpart is not visible in string form
+			cache[cacheIndex(result.$toString.hashCode())] = result;
+		}
+		return result;
+	}
 
-		// Parse the localpart and the domain name
-		idx = id.indexOf('@');
-		result[0] = ((idx == -1) ? null : id.substring(0, idx));
-		result[1] = ((idx == -1) ? id : id.substring(idx + 1));
+	private static int cacheIndex(int hash) {
+		return (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+	}
 
-		return result;
+	/**
+	 * Calculates the same hash as {@linkplain String#hashCode()} of <code>jid.substring(0, end)</code>.
+	 */
+	private static int hashCode(String jid, int end) {
+		int h = 0;
+		for (int i = 0; i < end; i++) {
+			h = 31 * h + jid.charAt(i);
+		}
+		return h;
 	}
 
 	private static String toString(String p_localpart, String p_domain) {
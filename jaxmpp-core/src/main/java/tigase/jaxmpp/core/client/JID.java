@@ -23,10 +23,14 @@ package tigase.jaxmpp.core.client;
 /**
  * XMPP entity address form
  * <code>&lt;localpart@domainpart/resourcepart&gt;</code>
+ * <p>
+ * Like {@link BareJID}, instances parsed from strings are kept in bounded cache.
  */
 public class JID
 		implements Comparable<JID> {
 
+	private static final int CACHE_SIZE = 4096;
+	private static final JID[] cache = new JID[CACHE_SIZE];
 	private final String $toString;
 	private final BareJID bareJid;
 	private final String resource;
@@ -62,9 +66,31 @@ public class JID
 	 * @return full JID.
 	 */
 	public static JID jidInstance(String jid) {
-		String[] parsedJid = BareJID.parseJID(jid);
+		final int idx = cacheIndex(jid.hashCode());
+		JID result = cache[idx];
+		if (result != null && result.$toString.equals(jid)) {
+			return result;
+		}
 
-		return jidInstance(parsedJid[0], parsedJid[1], parsedJid[2]);
+		final int length = jid.length();
+		int at = -1;
+		int slash = -1;
+		for (int i = 0; i < length; i++) {
+			final char c = jid.charAt(i);
+			if (c == '/') {
+				slash = i;
+				break;
+			} else if (c == '@' && at == -1) {
+				at = i;
+			}
+		}
+		final BareJID bareJid = BareJID.bareJIDInstance(jid, at, slash == -1 ? length : slash);
+		result = new JID(bareJid, slash == -1 ? null : jid.substring(slash + 1));
+		if (slash != length - 1) {
+			// empty resource is not visible in string form
+			cache[cacheIndex(result.$toString.hashCode())] = result;
+		}
+		return result;
 	}
 
 	/**
@@ -92,6 +118,10 @@ public class JID
 		return jidInstance(BareJID.bareJIDInstance(localpart, domain), resource);
 	}
 
+	private static int cacheIndex(int hash) {
+		return (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+	}
+
 	private static String toString(BareJID bareJid, String p_resource) {
 		return bareJid.toString() + (((p_resource != null) && (p_resource.length() > 0)) ? "/" + p_resource : "");
 	}
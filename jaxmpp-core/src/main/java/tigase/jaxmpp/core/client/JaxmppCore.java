@@ -63,6 +63,8 @@ import java.util.logging.Logger;
 public abstract class JaxmppCore {
 
 	public static final String AUTOADD_STANZA_ID_KEY = "AUTOADD_STANZA_ID_KEY";
+	private static final SessionObject.Key<Boolean> AUTOADD_STANZA_ID = SessionObject.Key.create(
+			AUTOADD_STANZA_ID_KEY, SessionObject.Scope.session);
 	protected final Logger log;
 	protected Connector connector;
 	protected Context context;
@@ -193,7 +195,7 @@ public abstract class JaxmppCore {
 	 */
 	public boolean isConnected() {
 		return this.connector != null && this.connector.getState() == State.connected &&
-				this.sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID) != null;
+				this.sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY) != null;
 	}
 
 	// /**
@@ -220,7 +222,7 @@ public abstract class JaxmppCore {
 	 * @throws JaxmppException
 	 */
 	public void keepalive() throws JaxmppException {
-		if (sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID) != null) {
+		if (sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY) != null) {
 			this.connector.keepalive();
 		}
 	}
@@ -452,7 +454,7 @@ public abstract class JaxmppCore {
 	protected void onStanzaReceived(StreamPacket stanza) {
 		try {
 			ackModule.processIncomingStanza(stanza);
-		} catch (XMLException e) {
+		} catch (JaxmppException e) {
 			log.log(Level.WARNING, "Problem on counting", e);
 		}
 		final Runnable r = this.processor.process(stanza);
@@ -565,7 +567,7 @@ public abstract class JaxmppCore {
 					log.finest("SENT: " + stanza.getAsString());
 				}
 
-				final Boolean autoId = sessionObject.getProperty(AUTOADD_STANZA_ID_KEY);
+				final Boolean autoId = sessionObject.getProperty(AUTOADD_STANZA_ID);
 				if (autoId != null && autoId.booleanValue() && !stanza.getAttributes().containsKey("id")) {
 					stanza.setAttribute("id", UIDGenerator.next());
 				}
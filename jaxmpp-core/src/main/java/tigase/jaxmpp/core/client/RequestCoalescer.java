@@ -0,0 +1,209 @@
+/*
+ * RequestCoalescer.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client;
+
+import tigase.jaxmpp.core.client.SessionObject.Scope;
+import tigase.jaxmpp.core.client.XMPPException.ErrorCondition;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.XMLException;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Joins identical IQ <code>type='get'</code> requests. When request with the same recipient, namespace of query
+ * and <code>node</code> attribute is already waiting for response, callback of next request is attached to it and
+ * nothing is sent. All attached callbacks are notified about response (or timeout) of request sent first.
+ * <p>
+ * Useful for requests which response doesn't depend on requester, like disco#info for entity capabilities or
+ * vCards.
+ */
+public class RequestCoalescer {
+
+	public static final String REQUEST_COALESCER_KEY = "RequestCoalescer#REQUEST_COALESCER";
+	private static final SessionObject.Key<RequestCoalescer> REQUEST_COALESCER = SessionObject.Key.create(
+			REQUEST_COALESCER_KEY, Scope.user);
+	private static final Logger log = Logger.getLogger(RequestCoalescer.class.getName());
+	private final Map<String, Request> requests = new HashMap<String, Request>();
+
+	public static RequestCoalescer getRequestCoalescer(SessionObject sessionObject) {
+		synchronized (sessionObject) {
+			RequestCoalescer coalescer = sessionObject.getProperty(REQUEST_COALESCER);
+			if (coalescer == null) {
+				coalescer = new RequestCoalescer();
+				sessionObject.setProperty(REQUEST_COALESCER, coalescer);
+			}
+			return coalescer;
+		}
+	}
+
+	private static String createKey(Element stanza) throws XMLException {
+		final Element query = stanza.getFirstChild();
+		if (query == null) {
+			return null;
+		}
+		final String to = stanza.getAttribute("to");
+		final String node = query.getAttribute("node");
+		final String xmlns = query.getXMLNS();
+		return (to == null ? "" : to) + '|' + (xmlns == null ? "" : xmlns) + '|' + (node == null ? "" : node);
+	}
+
+	/**
+	 * Throws first exception thrown by callbacks, after all of them were notified.
+	 */
+	private static void rethrow(Exception e) throws JaxmppException {
+		if (e instanceof JaxmppException) {
+			throw (JaxmppException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		}
+	}
+
+	/**
+	 * Registers callback for request. If identical request is already waiting for response, callback is attached to
+	 * it and <code>null</code> is returned. Otherwise stanza must be sent with returned callback.
+	 *
+	 * @param stanza IQ stanza to send.
+	 * @param callback callback of request.
+	 *
+	 * @return callback which should be used to send stanza, or <code>null</code> if stanza must not be sent.
+	 */
+	public AsyncCallback coalesce(Element stanza, AsyncCallback callback) throws XMLException {
+		final String key = createKey(stanza);
+		if (key == null) {
+			return callback;
+		}
+		synchronized (requests) {
+			Request request = requests.get(key);
+			if (request != null) {
+				request.callbacks.add(callback);
+				return null;
+			}
+			request = new Request(key, callback);
+			requests.put(key, request);
+			return request;
+		}
+	}
+
+	/**
+	 * Returns number of requests waiting for response.
+	 */
+	public int getPendingCount() {
+		synchronized (requests) {
+			return requests.size();
+		}
+	}
+
+	/**
+	 * Must be called when stanza with callback returned by {@linkplain #coalesce(Element, AsyncCallback)} cannot be
+	 * sent. Callbacks attached by other requesters are notified about timeout.
+	 *
+	 * @param callback callback returned by {@linkplain #coalesce(Element, AsyncCallback)}.
+	 */
+	public void onSendFailed(AsyncCallback callback) {
+		if (!(callback instanceof Request)) {
+			return;
+		}
+		final Request request = (Request) callback;
+		final List<AsyncCallback> callbacks = remove(request);
+		for (int i = 1; i < callbacks.size(); i++) {
+			try {
+				callbacks.get(i).onTimeout();
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Exception in callback", e);
+			}
+		}
+	}
+
+	private List<AsyncCallback> remove(Request request) {
+		synchronized (requests) {
+			if (requests.get(request.key) == request) {
+				requests.remove(request.key);
+			}
+			// no callback can be attached anymore
+			return request.callbacks;
+		}
+	}
+
+	private class Request
+			implements AsyncCallback {
+
+		private final List<AsyncCallback> callbacks = new ArrayList<AsyncCallback>(2);
+		private final String key;
+
+		Request(String key, AsyncCallback callback) {
+			this.key = key;
+			this.callbacks.add(callback);
+		}
+
+		@Override
+		public void onError(Stanza responseStanza, ErrorCondition error) throws JaxmppException {
+			Exception first = null;
+			for (AsyncCallback callback : remove(this)) {
+				try {
+					callback.onError(responseStanza, error);
+				} catch (JaxmppException e) {
+					first = first == null ? e : first;
+				} catch (RuntimeException e) {
+					first = first == null ? e : first;
+				}
+			}
+			rethrow(first);
+		}
+
+		@Override
+		public void onSuccess(Stanza responseStanza) throws JaxmppException {
+			Exception first = null;
+			for (AsyncCallback callback : remove(this)) {
+				try {
+					callback.onSuccess(responseStanza);
+				} catch (JaxmppException e) {
+					first = first == null ? e : first;
+				} catch (RuntimeException e) {
+					first = first == null ? e : first;
+				}
+			}
+			rethrow(first);
+		}
+
+		@Override
+		public void onTimeout() throws JaxmppException {
+			Exception first = null;
+			for (AsyncCallback callback : remove(this)) {
+				try {
+					callback.onTimeout();
+				} catch (JaxmppException e) {
+					first = first == null ? e : first;
+				} catch (RuntimeException e) {
+					first = first == null ? e : first;
+				}
+			}
+			rethrow(first);
+		}
+	}
+
+}
@@ -37,6 +37,8 @@ import java.util.logging.Logger;
 public class ResponseManager {
 
 	public static final String RESPONSE_MANAGER_KEY = "ResponseManager#RESPONSE_MANAGER";
+	private static final SessionObject.Key<ResponseManager> RESPONSE_MANAGER = SessionObject.Key.create(
+			RESPONSE_MANAGER_KEY, Scope.user);
 	protected static final long DEFAULT_TIMEOUT = 1000 * 60;
 	protected final Logger log = Logger.getLogger(this.getClass().getName());
 	private final Map<String, Entry> handlers = new HashMap<String, Entry>();
@@ -46,7 +48,7 @@ public class ResponseManager {
 	}
 
 	public static final ResponseManager getResponseManager(SessionObject sessionObject) {
-		return sessionObject.getProperty(RESPONSE_MANAGER_KEY);
+		return sessionObject.getProperty(RESPONSE_MANAGER);
 	}
 
 	public static String registerResponseHandler(SessionObject sessionObject, Element stanza, Long timeout,
@@ -55,7 +57,7 @@ public class ResponseManager {
 	}
 
 	public static final void setResponseManager(SessionObject sessionObject, ResponseManager responseManager) {
-		sessionObject.setProperty(Scope.user, RESPONSE_MANAGER_KEY, responseManager);
+		sessionObject.setProperty(RESPONSE_MANAGER, responseManager);
 	}
 
 	/**
@@ -63,7 +65,7 @@ public class ResponseManager {
 	 * timeout.
 	 */
 	public void checkTimeouts() throws JaxmppException {
-		long now = (new Date()).getTime();
+		long now = System.currentTimeMillis();
 		Iterator<java.util.Map.Entry<String, tigase.jaxmpp.core.client.ResponseManager.Entry>> it = this.getHandlers()
 				.entrySet()
 				.iterator();
@@ -72,6 +74,7 @@ public class ResponseManager {
 			if (e.getValue().timestamp + e.getValue().timeout < now) {
 				tigase.jaxmpp.core.client.ResponseManager.Entry entry = e.getValue();
 				it.remove();
+				onHandlerRemoved(entry);
 				try {
 					log.fine("Request id=" + entry.stanzaId + "; Timeout.");
 					entry.callback.onTimeout();
@@ -112,7 +115,10 @@ public class ResponseManager {
 			return null;
 		}
 
-		this.getHandlers().remove(id);
+		if (!removeHandler(id, entry)) {
+			// timeout already expired
+			return null;
+		}
 
 		AbstractStanzaHandler r = new AbstractStanzaHandler(element, context) {
 
@@ -147,6 +153,37 @@ public class ResponseManager {
 		return r;
 	}
 
+	/**
+	 * Called after callback is registered. Subclasses may schedule timeout of entry here, instead of waiting for
+	 * {@linkplain #checkTimeouts()}.
+	 *
+	 * @param entry registered entry.
+	 */
+	protected void onHandlerRegistered(Entry entry) {
+	}
+
+	/**
+	 * Called after entry is removed, because response was received or timeout expired.
+	 *
+	 * @param entry removed entry.
+	 */
+	protected void onHandlerRemoved(Entry entry) {
+	}
+
+	/**
+	 * Removes entry and calls {@linkplain AsyncCallback#onTimeout() onTimeout()} of its callback, if entry is still
+	 * registered.
+	 *
+	 * @param entry entry with expired timeout.
+	 */
+	protected void onTimeout(Entry entry) throws JaxmppException {
+		if (!removeHandler(entry.stanzaId, entry)) {
+			return;
+		}
+		log.fine("Request id=" + entry.stanzaId + "; Timeout.");
+		entry.callback.onTimeout();
+	}
+
 	/**
 	 * Register callback for response of sent <code><iq/></code> stanza.
 	 *
@@ -171,14 +208,33 @@ public class ResponseManager {
 		}
 
 		if (callback != null) {
-			Entry entry = new Entry(x == null ? null : JID.jidInstance(x), id, (new Date()).getTime(),
+			Entry entry = new Entry(x == null ? null : JID.jidInstance(x), id, System.currentTimeMillis(),
 									timeout == null ? DEFAULT_TIMEOUT : timeout, callback);
 			this.getHandlers().put(id, entry);
+			onHandlerRegistered(entry);
 		}
 
 		return id;
 	}
 
+	/**
+	 * Removes entry registered with given id, if it is still registered.
+	 *
+	 * @param id id of stanza.
+	 * @param entry expected entry.
+	 *
+	 * @return <code>true</code> if entry was removed by this call.
+	 */
+	protected boolean removeHandler(String id, Entry entry) {
+		final Map<String, Entry> handlers = getHandlers();
+		if (handlers.get(id) != entry) {
+			return false;
+		}
+		handlers.remove(id);
+		onHandlerRemoved(entry);
+		return true;
+	}
+
 	private boolean verify(final Element response, final Entry entry, final SessionObject sessionObject)
 			throws XMLException {
 		String x = response.getAttribute("from");
@@ -189,7 +245,7 @@ public class ResponseManager {
 		} else if (entry.jid == null && jid == null) {
 			return true;
 		} else {
-			final JID userJID = sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID);
+			final JID userJID = sessionObject.getProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY);
 			if (entry.jid == null && userJID != null && jid.getBareJid().equals(userJID.getBareJid())) {
 				return true;
 			}
@@ -205,6 +261,7 @@ public class ResponseManager {
 		private final String stanzaId;
 		private final long timeout;
 		private final long timestamp;
+		private volatile Object timeoutTask;
 
 		public Entry(JID jid, String stanzaId, long timestamp, long timeout, AsyncCallback callback) {
 			super();
@@ -215,5 +272,27 @@ public class ResponseManager {
 			this.stanzaId = stanzaId;
 		}
 
+		public String getStanzaId() {
+			return stanzaId;
+		}
+
+		/**
+		 * Returns timeout in milliseconds.
+		 */
+		public long getTimeout() {
+			return timeout;
+		}
+
+		/**
+		 * Returns object scheduled by {@linkplain ResponseManager#onHandlerRegistered(Entry)} to expire this entry.
+		 */
+		public Object getTimeoutTask() {
+			return timeoutTask;
+		}
+
+		public void setTimeoutTask(Object timeoutTask) {
+			this.timeoutTask = timeoutTask;
+		}
+
 	}
 }
\ No newline at end of file
@@ -24,6 +24,8 @@ import tigase.jaxmpp.core.client.eventbus.EventHandler;
 import tigase.jaxmpp.core.client.eventbus.JaxmppEvent;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -102,6 +104,15 @@ public interface SessionObject
 	 */
 	<T> T getProperty(String key);
 
+	/**
+	 * Returns property.
+	 *
+	 * @param key property key
+	 *
+	 * @return property or <code>null</code> if property isn't set.
+	 */
+	<T> T getProperty(Key<T> key);
+
 	/**
 	 * Returns users JID
 	 *
@@ -130,6 +141,103 @@ public interface SessionObject
 	 */
 	SessionObject setProperty(String key, Object value);
 
+	/**
+	 * Set property in default scope of key.
+	 *
+	 * @param key property key
+	 * @param value property value. <code>null</code> to unset property.
+	 *
+	 * @return instance of <code>this</code> {@linkplain SessionObject}
+	 */
+	<T> SessionObject setProperty(Key<T> key, T value);
+
+	/**
+	 * Typed key of property. Each key has unique index, so property may be kept in array instead of map.
+	 * <p>
+	 * Key is bound to property name: property set by name may be read by key and vice versa.
+	 *
+	 * @param <T> type of property value.
+	 */
+	final class Key<T> {
+
+		private static volatile Key<?>[] byIndex = new Key<?>[0];
+		private static volatile Map<String, Key<?>> keys = new HashMap<String, Key<?>>();
+		private final int index;
+		private final String name;
+		private final Scope scope;
+
+		/**
+		 * Creates key of property. If key with given name already exists, it is returned.
+		 *
+		 * @param name property name.
+		 * @param scope default scope of property.
+		 *
+		 * @return key of property.
+		 */
+		@SuppressWarnings("unchecked")
+		public static synchronized <T> Key<T> create(String name, Scope scope) {
+			Key<?> key = keys.get(name);
+			if (key == null) {
+				key = new Key<T>(keys.size(), name, scope);
+				// map is replaced, so it may be read without lock
+				Map<String, Key<?>> tmp = new HashMap<String, Key<?>>(keys);
+				tmp.put(name, key);
+				Key<?>[] tmpIndex = new Key<?>[byIndex.length + 1];
+				System.arraycopy(byIndex, 0, tmpIndex, 0, byIndex.length);
+				tmpIndex[key.index] = key;
+				byIndex = tmpIndex;
+				keys = tmp;
+			}
+			return (Key<T>) key;
+		}
+
+		/**
+		 * Returns key with given index.
+		 *
+		 * @param index index of key.
+		 *
+		 * @return key or <code>null</code> if there is no key with given index.
+		 */
+		public static Key<?> forIndex(int index) {
+			final Key<?>[] tmp = byIndex;
+			return index < tmp.length ? tmp[index] : null;
+		}
+
+		/**
+		 * Returns key of property with given name.
+		 *
+		 * @param name property name.
+		 *
+		 * @return key or <code>null</code> if there is no key with given name.
+		 */
+		public static Key<?> forName(String name) {
+			return keys.get(name);
+		}
+
+		private Key(int index, String name, Scope scope) {
+			this.index = index;
+			this.name = name;
+			this.scope = scope;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Scope getScope() {
+			return scope;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
 	/**
 	 * Implemented by handlers of {@linkplain ClearedEvent}.
 	 */
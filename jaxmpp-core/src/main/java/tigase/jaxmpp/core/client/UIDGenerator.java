@@ -22,13 +22,20 @@ package tigase.jaxmpp.core.client;
 
 /**
  * Unique IDs generator. Used for attribute 'id' in stanzas.
+ * <p>
+ * Default implementation is synchronized. Platforms with better concurrency support may replace it with {@linkplain
+ * #setGenerator(UIDGenerator)}.
  *
  * @author bmalkow
  */
 public abstract class UIDGenerator {
 
-	private static final String ELEMENTS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
-	private final static UIDGenerator generator = new UIDGenerator35();
+	protected static final String ELEMENTS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static volatile UIDGenerator generator = new UIDGenerator35();
+
+	public static UIDGenerator getGenerator() {
+		return generator;
+	}
 
 	public static void main(String[] args) {
 		for (int i = 0; i < 100; i++) {
@@ -45,6 +52,18 @@ public abstract class UIDGenerator {
 		return generator.nextUID();
 	}
 
+	/**
+	 * Sets generator used by {@linkplain #next()}. Generator must be safe to use by many threads.
+	 *
+	 * @param generator generator
+	 */
+	public static void setGenerator(UIDGenerator generator) {
+		if (generator == null) {
+			throw new NullPointerException("Generator cannot be null");
+		}
+		UIDGenerator.generator = generator;
+	}
+
 	protected abstract String nextUID();
 
 	private static final class UIDGenerator35
@@ -64,22 +83,23 @@ public abstract class UIDGenerator {
 		}
 
 		@Override
-		protected String nextUID() {
+		protected synchronized String nextUID() {
 			inc(0);
 
 			int iv = (int) (Math.random() * 6173) % ELEMENTS.length();
-			String t = "" + ELEMENTS.charAt(iv);
+			final char[] t = new char[(int) l + 1];
+			t[0] = ELEMENTS.charAt(iv);
 			int b = (1 + k1[(iv) % k1.length]) % ELEMENTS.length();
 			for (int i = 0; i < l; i++) {
 				int a = v[i];
 
 				a = (a + b) % ELEMENTS.length();
-				t += ELEMENTS.charAt(a);
+				t[i + 1] = ELEMENTS.charAt(a);
 
 				b = (b + a + k1[(iv + i) % k1.length]) % ELEMENTS.length();
 
 			}
-			return t;
+			return new String(t);
 		}
 
 		private void inc(final int p) {
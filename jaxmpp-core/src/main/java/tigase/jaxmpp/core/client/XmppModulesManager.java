@@ -20,6 +20,10 @@
  */
 package tigase.jaxmpp.core.client;
 
+import tigase.jaxmpp.core.client.criteria.CompiledCriteria;
+import tigase.jaxmpp.core.client.criteria.Criteria;
+import tigase.jaxmpp.core.client.criteria.ElementCriteria;
+import tigase.jaxmpp.core.client.criteria.Or;
 import tigase.jaxmpp.core.client.xml.Element;
 import tigase.jaxmpp.core.client.xml.XMLException;
 import tigase.jaxmpp.core.client.xmpp.modules.*;
@@ -31,14 +35,139 @@ import java.util.*;
 /**
  * XMPP Modules Manager. This manager finds correct module to handle given
  * incoming stanza.
+ * <p>
+ * To avoid checking criteria of all modules against each stanza, modules are
+ * indexed by element name and namespaces of children required by their
+ * {@linkplain ElementCriteria criteria}. Index has two levels: stanza name
+ * and then namespace of child, so looking up candidates doesn't build any
+ * keys. Children of stanza are read only if there are routes requiring
+ * child namespace for its name (reading them may create wrappers, depending
+ * on {@linkplain Element} implementation). Only criteria of candidates are
+ * checked. Modules with criteria
+ * which cannot be indexed are candidates for all stanzas. Criteria are read
+ * from modules and {@linkplain CompiledCriteria compiled} when index is
+ * built, after registering or unregistering module. Index is immutable and
+ * replaced as a whole, so modules may be registered while stanzas are
+ * processed by other thread.
  */
 public class XmppModulesManager
 		implements ModuleProvider {
 
+	private static final Route[] EMPTY = new Route[0];
 	private final Set<XmppModule> initializationRequired = new HashSet<XmppModule>();
 	private final ArrayList<XmppModule> modules = new ArrayList<XmppModule>();
 	private final HashMap<Class<XmppModule>, XmppModule> modulesByClasses = new HashMap<Class<XmppModule>, XmppModule>();
 	private Context context;
+	private volatile Index index;
+
+	private static void addRoutes(List<Route> result, XmppModule module, int position, Criteria matcher,
+								  Criteria criteria) {
+		if (criteria != null && criteria.getClass() == Or.class) {
+			for (Criteria c : ((Or) criteria).getCriteria()) {
+				addRoutes(result, module, position, matcher, c);
+			}
+		} else if (criteria != null && criteria.getClass() == ElementCriteria.class) {
+			final ElementCriteria ec = (ElementCriteria) criteria;
+			final List<String> namespaces = new ArrayList<String>();
+			if (collectChildNamespaces(namespaces, ec.getNextCriteria())) {
+				for (String xmlns : namespaces) {
+					result.add(new Route(module, position, matcher, ec.getName(), xmlns));
+				}
+			} else {
+				result.add(new Route(module, position, matcher, ec.getName(), null));
+			}
+		} else {
+			result.add(new Route(module, position, matcher, null, null));
+		}
+	}
+
+	/**
+	 * Collects namespaces of which at least one must be used by child of
+	 * matching element.
+	 *
+	 * @return <code>false</code> if children may have any namespace.
+	 */
+	private static boolean collectChildNamespaces(List<String> result, Criteria criteria) {
+		if (criteria != null && criteria.getClass() == Or.class) {
+			for (Criteria c : ((Or) criteria).getCriteria()) {
+				if (!collectChildNamespaces(result, c)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (criteria != null && criteria.getClass() == ElementCriteria.class) {
+			final String xmlns = ((ElementCriteria) criteria).getAttribute("xmlns");
+			if (xmlns == null) {
+				return false;
+			}
+			result.add(xmlns);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private static boolean contains(List<Route> routes, XmppModule module) {
+		for (int i = 0; i < routes.size(); i++) {
+			if (routes.get(i).module == module) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Table createTable(List<Route> routes, String name) {
+		final ArrayList<Route> any = new ArrayList<Route>();
+		final LinkedHashMap<String, List<Route>> byChildXmlns = new LinkedHashMap<String, List<Route>>();
+		for (Route route : routes) {
+			if (route.name != null && !route.name.equals(name)) {
+				continue;
+			}
+			if (route.childXmlns == null) {
+				any.add(route);
+			} else {
+				List<Route> list = byChildXmlns.get(route.childXmlns);
+				if (list == null) {
+					list = new ArrayList<Route>();
+					byChildXmlns.put(route.childXmlns, list);
+				}
+				list.add(route);
+			}
+		}
+		final Table table = new Table(toArray(any));
+		for (Map.Entry<String, List<Route>> e : byChildXmlns.entrySet()) {
+			table.byChildXmlns.put(e.getKey(), toArray(e.getValue()));
+		}
+		return table;
+	}
+
+	/**
+	 * Checks criteria of routes and adds matching ones to list ordered by
+	 * position of module.
+	 */
+	private static List<Route> match(final Element element, final Route[] routes, List<Route> matched)
+			throws XMLException {
+		for (Route route : routes) {
+			if (matched != null && contains(matched, route.module)) {
+				continue;
+			}
+			if (route.matcher.match(element)) {
+				if (matched == null) {
+					matched = new ArrayList<Route>(2);
+				}
+				int i = matched.size();
+				while (i > 0 && matched.get(i - 1).position > route.position) {
+					--i;
+				}
+				matched.add(i, route);
+			}
+		}
+		return matched;
+	}
+
+	private static Route[] toArray(List<Route> routes) {
+		return routes.isEmpty() ? EMPTY : routes.toArray(new Route[routes.size()]);
+	}
 
 	public XmppModulesManager(Context context) {
 		this.context = context;
@@ -54,15 +183,25 @@ public class XmppModulesManager
 	 * @throws XMLException
 	 */
 	public List<XmppModule> findModules(final Element element) throws XMLException {
-		List<XmppModule> results = null;
-		for (XmppModule plugin : modules) {
-			if (plugin.getCriteria() != null && plugin.getCriteria().match(element)) {
-				if (results == null) {
-					results = new ArrayList<XmppModule>();
+		final Table table = getIndex().get(element.getName());
+		List<Route> matched = match(element, table.any, null);
+		if (!table.byChildXmlns.isEmpty()) {
+			final List<? extends Element> children = element.getChildren();
+			for (int i = 0; children != null && i < children.size(); i++) {
+				final Route[] routes = table.byChildXmlns.get(children.get(i).getXMLNS());
+				if (routes != null) {
+					matched = match(element, routes, matched);
 				}
-				results.add(plugin);
 			}
 		}
+		if (matched == null) {
+			return null;
+		}
+
+		final ArrayList<XmppModule> results = new ArrayList<XmppModule>(matched.size());
+		for (int i = 0; i < matched.size(); i++) {
+			results.add(matched.get(i).module);
+		}
 		return results;
 	}
 
@@ -106,6 +245,21 @@ public class XmppModulesManager
 		return (T) this.modulesByClasses.get(moduleClass);
 	}
 
+	private Index getIndex() {
+		Index index = this.index;
+		if (index == null) {
+			synchronized (modules) {
+				// index is built from modules only while they can't be changed
+				index = this.index;
+				if (index == null) {
+					index = new Index(modules);
+					this.index = index;
+				}
+			}
+		}
+		return index;
+	}
+
 	public void initIfRequired() {
 		Iterator<XmppModule> it = this.initializationRequired.iterator();
 		while (it.hasNext()) {
@@ -117,6 +271,10 @@ public class XmppModulesManager
 		}
 	}
 
+	private void invalidateIndex() {
+		this.index = null;
+	}
+
 	/**
 	 * Register XmppModule.
 	 *
@@ -143,7 +301,10 @@ public class XmppModulesManager
 		}
 
 		this.modulesByClasses.put((Class<XmppModule>) plugin.getClass(), plugin);
-		this.modules.add(plugin);
+		synchronized (modules) {
+			this.modules.add(plugin);
+			invalidateIndex();
+		}
 
 		initializationRequired.add(plugin);
 
@@ -162,9 +323,87 @@ public class XmppModulesManager
 		if (plugin instanceof InitializingModule) {
 			((InitializingModule) plugin).beforeUnregister();
 		}
-		this.modules.remove(plugin);
+		synchronized (modules) {
+			this.modules.remove(plugin);
+			invalidateIndex();
+		}
 		initializationRequired.remove(plugin);
 		return (T) this.modulesByClasses.remove(plugin.getClass());
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Routes of all registered modules, grouped by stanza name.
+	 */
+	private static final class Index {
+
+		/**
+		 * Routes of stanzas which name isn't used by any criteria.
+		 */
+		private final Table otherNames;
+		private final HashMap<String, Table> tables = new HashMap<String, Table>();
+
+		Index(List<XmppModule> modules) {
+			final ArrayList<Route> routes = new ArrayList<Route>();
+			for (int i = 0; i < modules.size(); i++) {
+				final XmppModule module = modules.get(i);
+				final Criteria criteria = module.getCriteria();
+				if (criteria != null) {
+					addRoutes(routes, module, i, CompiledCriteria.compile(criteria), criteria);
+				}
+			}
+			for (Route route : routes) {
+				if (route.name != null && !tables.containsKey(route.name)) {
+					tables.put(route.name, createTable(routes, route.name));
+				}
+			}
+			this.otherNames = createTable(routes, null);
+		}
+
+		Table get(String name) {
+			final Table table = name == null ? null : tables.get(name);
+			return table == null ? otherNames : table;
+		}
+	}
+
+	/**
+	 * Condition which must be met by stanza to be processed by module: name of
+	 * element and namespace of one of its children. <code>null</code> values
+	 * mean any name or namespace.
+	 */
+	private static final class Route {
+
+		private final String childXmlns;
+		private final Criteria matcher;
+		private final XmppModule module;
+		private final String name;
+		/**
+		 * Position of module in list of registered modules.
+		 */
+		private final int position;
+
+		Route(XmppModule module, int position, Criteria matcher, String name, String childXmlns) {
+			this.module = module;
+			this.position = position;
+			this.matcher = matcher;
+			this.name = name;
+			this.childXmlns = childXmlns;
+		}
+	}
+
+	/**
+	 * Routes of stanzas with the same name.
+	 */
+	private static final class Table {
+
+		/**
+		 * Routes which doesn't require any child namespace.
+		 */
+		private final Route[] any;
+		private final HashMap<String, Route[]> byChildXmlns = new HashMap<String, Route[]>();
+
+		Table(Route[] any) {
+			this.any = any;
+		}
+	}
+
+}
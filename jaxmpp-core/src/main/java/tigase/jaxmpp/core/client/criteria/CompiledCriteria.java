@@ -0,0 +1,269 @@
+/*
+ * CompiledCriteria.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.criteria;
+
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.XMLException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, flat form of tree of {@linkplain ElementCriteria} and {@linkplain Or} criteria.
+ * <p>
+ * Each {@linkplain ElementCriteria} is stored as node (name, arrays of expected attributes and index of level of
+ * criteria for children), and each level is array of alternative nodes. Matching doesn't iterate over maps and
+ * reads children of each element once per level, using {@linkplain ElementAccessor accessor} registered for
+ * platform, so on platforms with native XML tree no wrappers are created. Result of matching is the same as result
+ * of source criteria.
+ */
+public final class CompiledCriteria
+		implements Criteria {
+
+	private static final ElementAccessor<Element> DEFAULT_ACCESSOR = new ElementAccessor<Element>() {
+		@Override
+		public String getAttribute(Element element, String attName) throws XMLException {
+			return element.getAttribute(attName);
+		}
+
+		@Override
+		public List<? extends Element> getChildren(Element element) throws XMLException {
+			return element.getChildren();
+		}
+
+		@Override
+		public String getName(Element element) throws XMLException {
+			return element.getName();
+		}
+
+		@Override
+		public String getXMLNS(Element element) throws XMLException {
+			return element.getXMLNS();
+		}
+
+		@Override
+		public Element unwrap(Element element) {
+			return element;
+		}
+	};
+	private static ElementAccessor<?>[] accessors = new ElementAccessor<?>[]{DEFAULT_ACCESSOR};
+	private final String[][] attNames;
+	private final String[][] attValues;
+	private final boolean[] checkXmlns;
+	private final int[] childLevels;
+	private final int[][] levels;
+	private final String[] names;
+	private final String[] xmlns;
+
+	/**
+	 * Registers accessor of platform specific elements. Accessors are checked in reverse order of registration and
+	 * the first accessor able to {@linkplain ElementAccessor#unwrap(Element) unwrap} element is used.
+	 *
+	 * @param accessor accessor to register.
+	 */
+	public static synchronized void addElementAccessor(ElementAccessor<?> accessor) {
+		for (ElementAccessor<?> a : accessors) {
+			if (a == accessor) {
+				return;
+			}
+		}
+		ElementAccessor<?>[] tmp = new ElementAccessor<?>[accessors.length + 1];
+		tmp[0] = accessor;
+		System.arraycopy(accessors, 0, tmp, 1, accessors.length);
+		accessors = tmp;
+	}
+
+	/**
+	 * Compiles criteria. Only trees built of {@linkplain ElementCriteria} and {@linkplain Or} (but not their
+	 * subclasses) may be compiled.
+	 *
+	 * @param criteria criteria to compile.
+	 *
+	 * @return compiled criteria, or given criteria if it cannot be compiled.
+	 */
+	public static Criteria compile(Criteria criteria) {
+		if (criteria == null || criteria instanceof CompiledCriteria || !isCompilable(criteria)) {
+			return criteria;
+		}
+		return new CompiledCriteria(criteria);
+	}
+
+	private static void collectAlternatives(List<ElementCriteria> result, Criteria criteria) {
+		if (criteria.getClass() == Or.class) {
+			for (Criteria c : ((Or) criteria).crits) {
+				collectAlternatives(result, c);
+			}
+		} else {
+			result.add((ElementCriteria) criteria);
+		}
+	}
+
+	private static boolean isCompilable(Criteria criteria) {
+		if (criteria == null) {
+			return false;
+		} else if (criteria.getClass() == Or.class) {
+			for (Criteria c : ((Or) criteria).crits) {
+				if (!isCompilable(c)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (criteria.getClass() == ElementCriteria.class) {
+			Criteria next = ((ElementCriteria) criteria).nextCriteria;
+			return next == null || isCompilable(next);
+		} else {
+			return false;
+		}
+	}
+
+	private CompiledCriteria(Criteria criteria) {
+		final Builder builder = new Builder();
+		builder.addLevel(criteria);
+
+		final int size = builder.nodes.size();
+		this.names = new String[size];
+		this.xmlns = new String[size];
+		this.attNames = new String[size][];
+		this.attValues = new String[size][];
+		this.checkXmlns = new boolean[size];
+		this.childLevels = new int[size];
+		for (int i = 0; i < size; i++) {
+			final ElementCriteria ec = builder.nodes.get(i);
+			names[i] = ec.name;
+			childLevels[i] = builder.childLevels.get(i);
+			final ArrayList<String> an = new ArrayList<String>();
+			final ArrayList<String> av = new ArrayList<String>();
+			for (Map.Entry<String, String> e : ec.attrs.entrySet()) {
+				if ("xmlns".equals(e.getKey())) {
+					checkXmlns[i] = true;
+					xmlns[i] = e.getValue();
+				} else {
+					an.add(e.getKey());
+					av.add(e.getValue());
+				}
+			}
+			attNames[i] = an.toArray(new String[an.size()]);
+			attValues[i] = av.toArray(new String[av.size()]);
+		}
+		this.levels = builder.levels.toArray(new int[builder.levels.size()][]);
+	}
+
+	/**
+	 * Compiled criteria are immutable.
+	 *
+	 * @throws RuntimeException always.
+	 */
+	@Override
+	public Criteria add(Criteria criteria) {
+		throw new RuntimeException("CompiledCriteria.add() is not supported!");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean match(Element element) throws XMLException {
+		final ElementAccessor<?>[] accessors = CompiledCriteria.accessors;
+		for (ElementAccessor<?> accessor : accessors) {
+			final Object e = accessor.unwrap(element);
+			if (e != null) {
+				return matchLevel((ElementAccessor<Object>) accessor, e, 0);
+			}
+		}
+		return false;
+	}
+
+	private <E> boolean matchLevel(final ElementAccessor<E> accessor, final E element, final int level)
+			throws XMLException {
+		for (int node : levels[level]) {
+			if (matchNode(accessor, element, node)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private <E> boolean matchNode(final ElementAccessor<E> accessor, final E element, final int node)
+			throws XMLException {
+		final String name = names[node];
+		if (name != null && !name.equals(accessor.getName(element))) {
+			return false;
+		}
+		if (checkXmlns[node]) {
+			// as in ElementCriteria, attribute expected to be null never matches
+			final String expectedXmlns = xmlns[node];
+			if (expectedXmlns == null || !expectedXmlns.equals(accessor.getXMLNS(element))) {
+				return false;
+			}
+		}
+		final String[] an = attNames[node];
+		final String[] av = attValues[node];
+		for (int i = 0; i < an.length; i++) {
+			final String value = av[i];
+			if (value == null || !value.equals(accessor.getAttribute(element, an[i]))) {
+				return false;
+			}
+		}
+		final int childLevel = childLevels[node];
+		if (childLevel < 0) {
+			return true;
+		}
+		final List<? extends E> children = accessor.getChildren(element);
+		if (children != null) {
+			for (int i = 0, size = children.size(); i < size; i++) {
+				if (matchLevel(accessor, children.get(i), childLevel)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static final class Builder {
+
+		private final ArrayList<Integer> childLevels = new ArrayList<Integer>();
+		private final ArrayList<int[]> levels = new ArrayList<int[]>();
+		private final ArrayList<ElementCriteria> nodes = new ArrayList<ElementCriteria>();
+
+		int addLevel(Criteria criteria) {
+			final ArrayList<ElementCriteria> alternatives = new ArrayList<ElementCriteria>();
+			collectAlternatives(alternatives, criteria);
+
+			final int level = levels.size();
+			final int[] levelNodes = new int[alternatives.size()];
+			levels.add(levelNodes);
+			for (int i = 0; i < levelNodes.length; i++) {
+				final ElementCriteria ec = alternatives.get(i);
+				final int node = nodes.size();
+				nodes.add(ec);
+				childLevels.add(-1);
+				levelNodes[i] = node;
+				if (ec.nextCriteria != null) {
+					childLevels.set(node, addLevel(ec.nextCriteria));
+				}
+			}
+			return level;
+		}
+	}
+
+}
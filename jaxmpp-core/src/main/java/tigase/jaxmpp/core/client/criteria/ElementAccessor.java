@@ -0,0 +1,83 @@
+/*
+ * ElementAccessor.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.criteria;
+
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.XMLException;
+
+import java.util.List;
+
+/**
+ * Gives {@linkplain CompiledCriteria} read access to elements. Platform may register own accessor (see {@linkplain
+ * CompiledCriteria#addElementAccessor(ElementAccessor)}) to match criteria directly against its native XML tree,
+ * without creating {@linkplain Element} wrappers for each visited child.
+ *
+ * @param <E> type of elements handled by accessor.
+ */
+public interface ElementAccessor<E> {
+
+	/**
+	 * Returns value of attribute.
+	 *
+	 * @param element element.
+	 * @param attName name of attribute.
+	 *
+	 * @return value of attribute or <code>null</code>.
+	 */
+	String getAttribute(E element, String attName) throws XMLException;
+
+	/**
+	 * Returns children of element.
+	 *
+	 * @param element element.
+	 *
+	 * @return list of children. May be <code>null</code>.
+	 */
+	List<? extends E> getChildren(E element) throws XMLException;
+
+	/**
+	 * Returns name of element.
+	 *
+	 * @param element element.
+	 *
+	 * @return name of element.
+	 */
+	String getName(E element) throws XMLException;
+
+	/**
+	 * Returns namespace of element, as {@linkplain Element#getXMLNS()} does.
+	 *
+	 * @param element element.
+	 *
+	 * @return namespace or <code>null</code>.
+	 */
+	String getXMLNS(E element) throws XMLException;
+
+	/**
+	 * Returns element handled by accessor, which represents given element.
+	 *
+	 * @param element element.
+	 *
+	 * @return element handled by accessor or <code>null</code> if accessor cannot handle it.
+	 */
+	E unwrap(Element element) throws XMLException;
+
+}
@@ -115,6 +115,35 @@ public class ElementCriteria
 		return this;
 	}
 
+	/**
+	 * Returns expected value of attribute.
+	 *
+	 * @param attName name of attribute.
+	 *
+	 * @return expected value or <code>null</code> if attribute isn't checked.
+	 */
+	public String getAttribute(String attName) {
+		return attrs.get(attName);
+	}
+
+	/**
+	 * Returns expected name of element.
+	 *
+	 * @return name of element or <code>null</code> if any name is accepted.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns restriction for children of element.
+	 *
+	 * @return criteria for children or <code>null</code>.
+	 */
+	public Criteria getNextCriteria() {
+		return nextCriteria;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
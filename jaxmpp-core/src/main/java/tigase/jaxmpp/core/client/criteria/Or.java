@@ -45,6 +45,15 @@ public class Or
 		throw new RuntimeException("Or.add() is not implemented!");
 	}
 
+	/**
+	 * Returns alternative criteria.
+	 *
+	 * @return array of criteria.
+	 */
+	public Criteria[] getCriteria() {
+		return crits;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -27,15 +27,22 @@ import java.util.logging.Logger;
 
 /**
  * Basic implementation of {@link EventBus}.
+ * <p>
+ * Handlers are stored in maps modified under lock. After each modification
+ * immutable snapshot of handlers (array of handlers for each event type) is
+ * created and published, so firing event takes no lock and doesn't copy
+ * handlers lists.
  */
 public class DefaultEventBus
 		extends EventBus {
 
+	private final static EventHandler[] EMPTY = new EventHandler[0];
 	private final static Object NULL_SOURCE = new Object();
 	private final static Class<? extends Event<?>> NULL_TYPE = N.class;
 	protected final Map<Object, Map<Class<? extends Event<?>>, List<EventHandler>>> handlers;
 	protected final Logger log = Logger.getLogger(this.getClass().getName());
 	protected boolean throwingExceptionOn = true;
+	private volatile Snapshot snapshot = new Snapshot(new HashMap<Class<?>, EventHandler[]>(), EMPTY);
 
 	public DefaultEventBus() {
 		this.handlers = createMainHandlersMap();
@@ -82,6 +89,7 @@ public class DefaultEventBus
 				hdlrs.put(type == null ? NULL_TYPE : type, lst);
 			}
 			lst.add(handler);
+			updateSnapshot();
 		}
 
 	}
@@ -92,16 +100,20 @@ public class DefaultEventBus
 			throw new NullPointerException("Cannot fire null event");
 		}
 
-		final ArrayList<EventHandler> handlers = new ArrayList<EventHandler>();
-		synchronized (this.handlers) {
-			handlers.addAll(getHandlersList((Class<? extends Event<?>>) event.getClass()));
-			handlers.addAll(getHandlersList(null));
-		}
-		doFire(event, handlers);
+		final Snapshot snapshot = this.snapshot;
+		final EventHandler[] handlers = snapshot.handlers.get(event.getClass());
+		doFire(event, handlers == null ? snapshot.listeners : handlers);
 	}
 
-	protected void doFire(Event<EventHandler> event, ArrayList<EventHandler> handlers) {
-		final Set<Throwable> causes = new HashSet<Throwable>();
+	/**
+	 * Calls handlers with event.
+	 *
+	 * @param event event to fire.
+	 * @param handlers array of handlers. It is shared snapshot and must not be
+	 * modified.
+	 */
+	protected void doFire(Event<EventHandler> event, EventHandler[] handlers) {
+		Set<Throwable> causes = null;
 		if (log.isLoggable(Level.FINER)) {
 			log.finer("Fire event: " + event);
 		}
@@ -119,6 +131,9 @@ public class DefaultEventBus
 				if (log.isLoggable(Level.WARNING)) {
 					log.log(Level.WARNING, "", e);
 				}
+				if (causes == null) {
+					causes = new HashSet<Throwable>();
+				}
 				causes.add(e);
 			}
 		}
@@ -130,7 +145,7 @@ public class DefaultEventBus
 			}
 		}
 
-		if (!causes.isEmpty()) {
+		if (causes != null) {
 			if (throwingExceptionOn) {
 				throw new EventBusException(causes);
 			}
@@ -185,6 +200,7 @@ public class DefaultEventBus
 					}
 				}
 			}
+			updateSnapshot();
 		}
 	}
 
@@ -210,6 +226,45 @@ public class DefaultEventBus
 					l.remove();
 				}
 			}
+			updateSnapshot();
+		}
+	}
+
+	/**
+	 * Creates and publishes new snapshot of handlers. Must be called under lock
+	 * of handlers map, after each modification.
+	 */
+	private void updateSnapshot() {
+		final HashMap<Class<?>, EventHandler[]> byType = new HashMap<Class<?>, EventHandler[]>();
+		final Collection<EventHandler> listeners = getHandlersList(null);
+		final Map<Class<? extends Event<?>>, List<EventHandler>> hdlrs = getHandlersBySource(null);
+		if (hdlrs != null) {
+			for (Entry<Class<? extends Event<?>>, List<EventHandler>> entry : hdlrs.entrySet()) {
+				if (entry.getKey() == NULL_TYPE) {
+					continue;
+				}
+				final ArrayList<EventHandler> tmp = new ArrayList<EventHandler>(entry.getValue());
+				tmp.addAll(listeners);
+				byType.put(entry.getKey(), tmp.toArray(new EventHandler[tmp.size()]));
+			}
+		}
+		this.snapshot = new Snapshot(byType, listeners.isEmpty()
+											 ? EMPTY
+											 : listeners.toArray(new EventHandler[listeners.size()]));
+	}
+
+	/**
+	 * Immutable set of handlers: for each event type, handlers registered for
+	 * type followed by listeners of all events.
+	 */
+	private final static class Snapshot {
+
+		private final Map<Class<?>, EventHandler[]> handlers;
+		private final EventHandler[] listeners;
+
+		Snapshot(Map<Class<?>, EventHandler[]> handlers, EventHandler[] listeners) {
+			this.handlers = handlers;
+			this.listeners = listeners;
 		}
 	}
 
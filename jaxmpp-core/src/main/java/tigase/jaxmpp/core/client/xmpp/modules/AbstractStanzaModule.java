@@ -22,6 +22,7 @@ package tigase.jaxmpp.core.client.xmpp.modules;
 
 import tigase.jaxmpp.core.client.AsyncCallback;
 import tigase.jaxmpp.core.client.Context;
+import tigase.jaxmpp.core.client.RequestCoalescer;
 import tigase.jaxmpp.core.client.XmppModule;
 import tigase.jaxmpp.core.client.eventbus.Event;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
@@ -97,4 +98,32 @@ public abstract class AbstractStanzaModule<T extends Stanza>
 		context.getWriter().write(stanza, timeout, asyncCallback);
 	}
 
+	/**
+	 * Writes IQ <code>type='get'</code> stanza, unless identical request is already waiting for response. In that
+	 * case callback is attached to pending request. See {@linkplain RequestCoalescer}.
+	 *
+	 * @param stanza stanza to write.
+	 * @param timeout timeout of request, or <code>null</code> for default timeout.
+	 * @param asyncCallback callback.
+	 */
+	protected void writeCoalesced(Element stanza, Long timeout, AsyncCallback asyncCallback)
+			throws JaxmppException {
+		if (asyncCallback == null) {
+			write(stanza, timeout, null);
+			return;
+		}
+		final RequestCoalescer coalescer = RequestCoalescer.getRequestCoalescer(context.getSessionObject());
+		final AsyncCallback callback = coalescer.coalesce(stanza, asyncCallback);
+		if (callback == null) {
+			log.finest("Request attached to identical pending request");
+			return;
+		}
+		try {
+			write(stanza, timeout, callback);
+		} catch (JaxmppException e) {
+			coalescer.onSendFailed(callback);
+			throw e;
+		}
+	}
+
 }
\ No newline at end of file
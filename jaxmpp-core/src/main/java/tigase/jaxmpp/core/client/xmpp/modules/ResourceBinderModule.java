@@ -47,11 +47,16 @@ public class ResourceBinderModule
 	 * {@linkplain SessionObject}.
 	 */
 	public static final String BINDED_RESOURCE_JID = "BINDED_RESOURCE_JID";
+	/**
+	 * Typed key of {@linkplain #BINDED_RESOURCE_JID} property.
+	 */
+	public static final SessionObject.Key<JID> BINDED_RESOURCE_JID_KEY = SessionObject.Key.create(
+			BINDED_RESOURCE_JID, SessionObject.Scope.session);
 	protected final Logger log;
 	private Context context;
 
 	public static JID getBindedJID(SessionObject sessionObject) {
-		return sessionObject.getProperty(BINDED_RESOURCE_JID);
+		return sessionObject.getProperty(BINDED_RESOURCE_JID_KEY);
 	}
 
 	public ResourceBinderModule() {
@@ -96,7 +101,7 @@ public class ResourceBinderModule
 				}
 				if (name != null) {
 					JID jid = JID.jidInstance(name);
-					context.getSessionObject().setProperty(BINDED_RESOURCE_JID, jid);
+					context.getSessionObject().setProperty(BINDED_RESOURCE_JID_KEY, jid);
 					ResourceBindSuccessHandler.ResourceBindSuccessEvent event = new ResourceBindSuccessHandler.ResourceBindSuccessEvent(
 							context.getSessionObject(), jid);
 					context.getEventBus().fire(event);
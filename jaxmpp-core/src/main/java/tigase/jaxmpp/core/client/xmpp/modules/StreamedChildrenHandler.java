@@ -0,0 +1,62 @@
+/*
+ * StreamedChildrenHandler.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules;
+
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+
+/**
+ * Handler of elements received before whole stanza is parsed.
+ * <p>
+ * Connector which supports streaming asks handler about each child of stanza when its start tag is parsed. If child
+ * is streamed, its children are passed to {@linkplain #onChild(Element, Element, Element)} one by one and are not
+ * added to stanza, so big stanzas (like roster) don't have to be kept in memory. Stanza is processed as usual after
+ * it is parsed, without streamed children.
+ * <p>
+ * Handler is registered in session object under key {@linkplain #STREAMED_CHILDREN_HANDLER_KEY} and is called by
+ * thread of connector.
+ */
+public interface StreamedChildrenHandler {
+
+	String STREAMED_CHILDREN_HANDLER_KEY = "STREAMED_CHILDREN_HANDLER";
+
+	/**
+	 * Checks if children of given element should be streamed.
+	 *
+	 * @param stanza stanza being parsed. Contains only attributes.
+	 * @param child direct child of stanza. Contains only attributes.
+	 *
+	 * @return <code>true</code> if children of <code>child</code> should be passed to {@linkplain #onChild(Element,
+	 * Element, Element)}.
+	 */
+	boolean isStreamed(Element stanza, Element child) throws JaxmppException;
+
+	/**
+	 * Called when child of streamed element is parsed.
+	 *
+	 * @param stanza stanza being parsed. Contains only attributes.
+	 * @param child streamed child of stanza.
+	 * @param element parsed child of streamed element.
+	 */
+	void onChild(Element stanza, Element child, Element element) throws JaxmppException;
+
+}
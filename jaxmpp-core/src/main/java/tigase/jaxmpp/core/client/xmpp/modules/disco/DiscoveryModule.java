@@ -114,7 +114,7 @@ public class DiscoveryModule
 			}
 		};
 
-		JID jid = context.getSessionObject().getProperty(ResourceBinderModule.BINDED_RESOURCE_JID);
+		JID jid = context.getSessionObject().getProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY);
 		if (jid != null) {
 			getInfo(JID.jidInstance(jid.getBareJid()), null, (AsyncCallback) diac);
 		}
@@ -154,7 +154,7 @@ public class DiscoveryModule
 			}
 		};
 
-		JID jid = context.getSessionObject().getProperty(ResourceBinderModule.BINDED_RESOURCE_JID);
+		JID jid = context.getSessionObject().getProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY);
 		if (jid != null) {
 			getInfo(JID.jidInstance(jid.getDomain()), null, (AsyncCallback) diac);
 		}
@@ -186,7 +186,7 @@ public class DiscoveryModule
 		}
 		iq.addChild(query);
 
-		write(iq, callback);
+		writeCoalesced(iq, null, callback);
 	}
 
 	public void getInfo(JID jid, String node, DiscoInfoAsyncCallback callback) throws JaxmppException {
@@ -217,12 +217,14 @@ public class DiscoveryModule
 		if (node != null) {
 			query.setAttribute("node", node);
 		}
+		iq.addChild(query);
+
 		if (rsm != null) {
 			query.addChild(rsm.toElement());
+			write(iq, callback);
+		} else {
+			writeCoalesced(iq, null, callback);
 		}
-		iq.addChild(query);
-
-		write(iq, callback);
 	}
 
 	@Override
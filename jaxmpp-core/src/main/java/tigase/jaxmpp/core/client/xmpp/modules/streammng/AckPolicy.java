@@ -0,0 +1,206 @@
+/*
+ * AckPolicy.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.streammng;
+
+/**
+ * Decides when acknowledgement request (<code>&lt;r/&gt;</code>) and unsolicited acknowledgement
+ * (<code>&lt;a/&gt;</code>) should be sent.
+ * <p>
+ * Request is sent after given number of stanzas (or bytes) was sent since previous request, or when stream was
+ * idle for given time, whichever comes first. Only one request is sent per two round-trip times, where round-trip
+ * time is measured between request and received acknowledgement. So on busy streams number of requests depends on
+ * latency, not on number of sent stanzas.
+ * <p>
+ * Acknowledgement is sent after given number of received stanzas, or after given time since first not acknowledged
+ * stanza was received.
+ * <p>
+ * Times are passed by caller. Class is not thread-safe.
+ */
+public class AckPolicy {
+
+	public static final long DEFAULT_ACK_DELAY = 2000;
+	public static final int DEFAULT_ACK_STANZAS = 10;
+	public static final long DEFAULT_IDLE_DELAY = 1000;
+	public static final int DEFAULT_REQUEST_STANZAS = 10;
+	private static final long MIN_REQUEST_INTERVAL = 100;
+	/**
+	 * Interval between requests used until round-trip time is measured.
+	 */
+	private static final long UNKNOWN_RTT_REQUEST_INTERVAL = 3000;
+	private long ackDelay = DEFAULT_ACK_DELAY;
+	private int ackStanzas = DEFAULT_ACK_STANZAS;
+	private long bytesSinceRequest;
+	private long firstNotAckedReceived = -1;
+	private long idleDelay = DEFAULT_IDLE_DELAY;
+	private long lastSent = -1;
+	private int notAckedReceived;
+	private long requestBytes;
+	private long requestSent = -1;
+	private int requestStanzas = DEFAULT_REQUEST_STANZAS;
+	private int sentSinceRequest;
+	private long smoothedRtt = -1;
+
+	public long getAckDelay() {
+		return ackDelay;
+	}
+
+	public void setAckDelay(long ackDelay) {
+		this.ackDelay = ackDelay;
+	}
+
+	/**
+	 * Returns time when acknowledgement should be sent, or {@linkplain Long#MAX_VALUE} if there is nothing to
+	 * acknowledge.
+	 */
+	public long getAckDeadline() {
+		return firstNotAckedReceived < 0 ? Long.MAX_VALUE : firstNotAckedReceived + ackDelay;
+	}
+
+	public int getAckStanzas() {
+		return ackStanzas;
+	}
+
+	public void setAckStanzas(int ackStanzas) {
+		this.ackStanzas = ackStanzas;
+	}
+
+	public long getIdleDelay() {
+		return idleDelay;
+	}
+
+	public void setIdleDelay(long idleDelay) {
+		this.idleDelay = idleDelay;
+	}
+
+	/**
+	 * Returns time when request should be sent, or {@linkplain Long#MAX_VALUE} if request isn't needed.
+	 *
+	 * @param pending <code>true</code> if there are stanzas not acknowledged by server.
+	 */
+	public long getRequestDeadline(boolean pending) {
+		if (!pending || sentSinceRequest == 0) {
+			return Long.MAX_VALUE;
+		}
+		final long idle = lastSent + idleDelay;
+		return requestSent < 0 ? idle : Math.max(idle, requestSent + getRequestInterval());
+	}
+
+	/**
+	 * Returns minimal interval between requests: two round-trip times.
+	 */
+	public long getRequestInterval() {
+		return smoothedRtt < 0 ? UNKNOWN_RTT_REQUEST_INTERVAL : Math.max(MIN_REQUEST_INTERVAL, 2 * smoothedRtt);
+	}
+
+	public long getRequestBytes() {
+		return requestBytes;
+	}
+
+	/**
+	 * Sets number of bytes sent after which request is sent. <code>0</code> disables this threshold, and size of
+	 * stanzas isn't calculated then.
+	 */
+	public void setRequestBytes(long requestBytes) {
+		this.requestBytes = requestBytes;
+	}
+
+	public int getRequestStanzas() {
+		return requestStanzas;
+	}
+
+	public void setRequestStanzas(int requestStanzas) {
+		this.requestStanzas = requestStanzas;
+	}
+
+	/**
+	 * Returns smoothed round-trip time in milliseconds, or <code>-1</code> if it wasn't measured yet.
+	 */
+	public long getSmoothedRtt() {
+		return smoothedRtt;
+	}
+
+	/**
+	 * Checks if request may be sent now, or if previous request is still waiting for acknowledgement.
+	 */
+	public boolean isRequestAllowed(long now) {
+		return requestSent < 0 || now - requestSent >= getRequestInterval();
+	}
+
+	public void onAckReceived(long now) {
+		if (requestSent < 0) {
+			return;
+		}
+		final long rtt = Math.max(0, now - requestSent);
+		smoothedRtt = smoothedRtt < 0 ? rtt : (7 * smoothedRtt + rtt) / 8;
+		requestSent = -1;
+	}
+
+	public void onAckSent() {
+		notAckedReceived = 0;
+		firstNotAckedReceived = -1;
+	}
+
+	public void onRequestSent(long now) {
+		requestSent = now;
+		sentSinceRequest = 0;
+		bytesSinceRequest = 0;
+	}
+
+	/**
+	 * Registers received stanza.
+	 *
+	 * @return <code>true</code> if acknowledgement should be sent now.
+	 */
+	public boolean onStanzaReceived(long now) {
+		if (notAckedReceived++ == 0) {
+			firstNotAckedReceived = now;
+		}
+		return notAckedReceived >= ackStanzas;
+	}
+
+	/**
+	 * Registers sent stanza.
+	 *
+	 * @param bytes size of stanza, or <code>0</code> if it isn't calculated.
+	 *
+	 * @return <code>true</code> if request should be sent now.
+	 */
+	public boolean onStanzaSent(int bytes, long now) {
+		lastSent = now;
+		++sentSinceRequest;
+		bytesSinceRequest += bytes;
+		return (sentSinceRequest >= requestStanzas || (requestBytes > 0 && bytesSinceRequest >= requestBytes)) &&
+				isRequestAllowed(now);
+	}
+
+	/**
+	 * Resets counters of new stream. Measured round-trip time is kept.
+	 */
+	public void reset() {
+		bytesSinceRequest = 0;
+		firstNotAckedReceived = -1;
+		lastSent = -1;
+		notAckedReceived = 0;
+		requestSent = -1;
+		sentSinceRequest = 0;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * OutgoingQueue.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.streammng;
+
+import tigase.jaxmpp.core.client.xml.Element;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ring buffer of stanzas sent but not acknowledged yet.
+ * <p>
+ * Every stanza gets sequence number. Size of each stanza is stored as running total, so removing acknowledged
+ * range only moves head of buffer and doesn't iterate over removed stanzas to update size of queue. Buffer grows
+ * when it is full, it is never shrunk.
+ * <p>
+ * Class is not thread-safe.
+ */
+public class OutgoingQueue {
+
+	private static final int INITIAL_CAPACITY = 16;
+	/**
+	 * Total size of stanzas added up to (and including) stanza in slot.
+	 */
+	private long[] ends;
+	private Element[] elements;
+	private int head;
+	private long headSequence;
+	private int mask;
+	private long removedBytes;
+	private int size;
+	private long totalBytes;
+
+	public OutgoingQueue() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public OutgoingQueue(int initialCapacity) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < initialCapacity) {
+			capacity <<= 1;
+		}
+		this.elements = new Element[capacity];
+		this.ends = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Adds stanza at the end of queue.
+	 *
+	 * @param element stanza.
+	 * @param bytes size of stanza. May be <code>0</code> if size is not tracked.
+	 *
+	 * @return sequence number of added stanza.
+	 */
+	public long add(Element element, int bytes) {
+		if (size == elements.length) {
+			grow();
+		}
+		final int slot = (head + size) & mask;
+		totalBytes += bytes;
+		elements[slot] = element;
+		ends[slot] = totalBytes;
+		++size;
+		return headSequence + size - 1;
+	}
+
+	/**
+	 * Removes all stanzas.
+	 *
+	 * @return removed stanzas, in order of sending.
+	 */
+	public List<Element> drain() {
+		final List<Element> result = getElements();
+		removeFirst(size);
+		return result;
+	}
+
+	/**
+	 * Returns total size of stanzas in queue.
+	 */
+	public long getBytes() {
+		return totalBytes - removedBytes;
+	}
+
+	/**
+	 * Returns copy of queue.
+	 *
+	 * @return stanzas in queue, in order of sending.
+	 */
+	public List<Element> getElements() {
+		final List<Element> result = new ArrayList<Element>(size);
+		for (int i = 0; i < size; i++) {
+			result.add(elements[(head + i) & mask]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns sequence number of first stanza in queue (or of next added stanza, if queue is empty).
+	 */
+	public long getHeadSequence() {
+		return headSequence;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes acknowledged stanzas, leaving given number of newest stanzas in queue.
+	 *
+	 * @param unacknowledged number of stanzas not acknowledged yet.
+	 *
+	 * @return number of removed stanzas.
+	 */
+	public int retainLast(long unacknowledged) {
+		if (unacknowledged >= size) {
+			return 0;
+		}
+		final int count = size - (int) Math.max(0, unacknowledged);
+		removeFirst(count);
+		return count;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void grow() {
+		final int capacity = elements.length << 1;
+		final Element[] newElements = new Element[capacity];
+		final long[] newEnds = new long[capacity];
+		for (int i = 0; i < size; i++) {
+			final int slot = (head + i) & mask;
+			newElements[i] = elements[slot];
+			newEnds[i] = ends[slot];
+		}
+		this.elements = newElements;
+		this.ends = newEnds;
+		this.mask = capacity - 1;
+		this.head = 0;
+	}
+
+	private void removeFirst(int count) {
+		if (count == 0) {
+			return;
+		}
+		final int last = (head + count - 1) & mask;
+		removedBytes = ends[last];
+		// releasing references to acknowledged stanzas
+		if (head <= last) {
+			Arrays.fill(elements, head, last + 1, null);
+		} else {
+			Arrays.fill(elements, head, elements.length, null);
+			Arrays.fill(elements, 0, last + 1, null);
+		}
+		head = (last + 1) & mask;
+		headSequence += count;
+		size -= count;
+	}
+
+}
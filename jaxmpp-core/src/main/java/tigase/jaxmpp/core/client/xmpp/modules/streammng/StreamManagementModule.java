@@ -34,15 +34,14 @@ import tigase.jaxmpp.core.client.xml.ElementFactory;
 import tigase.jaxmpp.core.client.xml.XMLException;
 import tigase.jaxmpp.core.client.xmpp.forms.BooleanField;
 import tigase.jaxmpp.core.client.xmpp.modules.ContextAware;
+import tigase.jaxmpp.core.client.xmpp.modules.ResourceBinderModule;
 import tigase.jaxmpp.core.client.xmpp.modules.StreamFeaturesModule;
+import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule.BackPressureHandler.BackPressureEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule.StreamManagementEnabledHandler.StreamManagementEnabledEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule.StreamManagementFailedHandler.StreamManagementFailedEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule.StreamResumedHandler.StreamResumedEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule.UnacknowledgedHandler.UnacknowledgedEvent;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,6 +51,16 @@ public class StreamManagementModule
 
 	public static final String INCOMING_STREAM_H_KEY = "urn:xmpp:sm:3#INCOMING_STREAM_H";
 	public static final String INCOMING_STREAM_H_LAST_SENT_KEY = "urn:xmpp:sm:3#INCOMING_STREAM_H_LAST_SENT";
+	/**
+	 * Property to keep maximum total size (in UTF-8 bytes) of unacknowledged stanzas. When it is exceeded,
+	 * {@linkplain BackPressureEvent} is fired. By default size of stanzas isn't calculated.
+	 */
+	public static final String OUTGOING_QUEUE_MAX_BYTES_KEY = "urn:xmpp:sm:3#OUTGOING_QUEUE_MAX_BYTES";
+	/**
+	 * Property to keep maximum number of unacknowledged stanzas. When it is exceeded, {@linkplain BackPressureEvent}
+	 * is fired.
+	 */
+	public static final String OUTGOING_QUEUE_MAX_SIZE_KEY = "urn:xmpp:sm:3#OUTGOING_QUEUE_MAX_SIZE";
 	public static final String OUTGOING_STREAM_H_KEY = "urn:xmpp:sm:3#OUTGOING_STREAM_H";
 	/**
 	 * Property to disable stream management module.
@@ -60,18 +69,44 @@ public class StreamManagementModule
 	public final static String STREAM_MANAGEMENT_RESUME_KEY = "urn:xmpp:sm:3#STREAM_MANAGEMENT_RESUME";
 	public final static String STREAM_MANAGEMENT_RESUMPTION_ID_KEY = "urn:xmpp:sm:3#STREAM_MANAGEMENT_RESUMPTION_ID";
 	public static final String STREAM_MANAGEMENT_RESUMPTION_TIME_KEY = "urn:xmpp:sm:3#STREAM_MANAGEMENT_RESUMPTION_TIMEOUT_KEY";
+	public static final String STREAM_MANAGEMENT_STORE_KEY = "urn:xmpp:sm:3#STREAM_MANAGEMENT_STORE";
 	/**
 	 * Property to keep Boolean if stream management is turned on.
 	 */
 	public final static String STREAM_MANAGEMENT_TURNED_ON_KEY = "urn:xmpp:sm:3#STREAM_MANAGEMENT_TURNED_ON";
 	public static final String XMLNS = "urn:xmpp:sm:3";
 	protected static final Logger log = Logger.getLogger(StreamManagementModule.class.getName());
-	private final static String LAST_REQUEST_TIMESTAMP_KEY = "urn:xmpp:sm:3#lastRequestTimestamp";
 	private static final String SM_ACK_ENABLED_KEY = "urn:xmpp:sm:3#SM_ACK_ENABLED";
+	private static final SessionObject.Key<Boolean> ACK_ENABLED = SessionObject.Key.create(SM_ACK_ENABLED_KEY,
+																						   Scope.stream);
+	private static final SessionObject.Key<MutableLong> INCOMING_H = SessionObject.Key.create(
+			INCOMING_STREAM_H_KEY, Scope.session);
+	private static final SessionObject.Key<MutableLong> INCOMING_H_LAST_SENT = SessionObject.Key.create(
+			INCOMING_STREAM_H_LAST_SENT_KEY, Scope.session);
+	private static final SessionObject.Key<MutableLong> OUTGOING_H = SessionObject.Key.create(
+			OUTGOING_STREAM_H_KEY, Scope.session);
+	private static final SessionObject.Key<Number> QUEUE_MAX_BYTES = SessionObject.Key.create(
+			OUTGOING_QUEUE_MAX_BYTES_KEY, Scope.session);
+	private static final SessionObject.Key<Number> QUEUE_MAX_SIZE = SessionObject.Key.create(
+			OUTGOING_QUEUE_MAX_SIZE_KEY, Scope.session);
+	private static final SessionObject.Key<StreamManagementStore> STORE = SessionObject.Key.create(
+			STREAM_MANAGEMENT_STORE_KEY, Scope.user);
 	private final Criteria crit = ElementCriteria.xmlns(XMLNS);
 	private final JaxmppCore jaxmpp;
-	private final LinkedList<Element> outgoingQueue = new LinkedList<Element>();
+	private final AckPolicy ackPolicy = new AckPolicy();
+	private final OutgoingQueue outgoingQueue = new OutgoingQueue();
+	private AckTimer ackTimer;
+	private boolean congested;
 	private Context context;
+	/**
+	 * Time for which {@linkplain #ackTimer} is scheduled.
+	 */
+	private long scheduledDeadline = Long.MAX_VALUE;
+
+	private static long getLimit(final SessionObject sessionObject, final SessionObject.Key<Number> key) {
+		Number x = sessionObject.getProperty(key);
+		return x == null ? 0 : x.longValue();
+	}
 
 	public static long getResumptionTime(final SessionObject sessionObject, long defaultValue) {
 		try {
@@ -82,8 +117,12 @@ public class StreamManagementModule
 		}
 	}
 
+	public static StreamManagementStore getStreamManagementStore(SessionObject sessionObject) {
+		return sessionObject.getProperty(STORE);
+	}
+
 	public static boolean isAckEnabled(final SessionObject sessionObject) {
-		Boolean x = sessionObject.getProperty(SM_ACK_ENABLED_KEY);
+		Boolean x = sessionObject.getProperty(ACK_ENABLED);
 		return x != null && x;
 	}
 
@@ -112,12 +151,26 @@ public class StreamManagementModule
 		sessionObject.setProperty(STREAM_MANAGEMENT_TURNED_ON_KEY, Boolean.FALSE);
 		sessionObject.setProperty(STREAM_MANAGEMENT_RESUME_KEY, null);
 		sessionObject.setProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY, null);
-		sessionObject.setProperty(Scope.stream, SM_ACK_ENABLED_KEY, Boolean.FALSE);
-		sessionObject.setProperty(LAST_REQUEST_TIMESTAMP_KEY, null);
+		sessionObject.setProperty(ACK_ENABLED, Boolean.FALSE);
 
 		sessionObject.setProperty(OUTGOING_STREAM_H_KEY, null);
 		sessionObject.setProperty(INCOMING_STREAM_H_KEY, null);
 		sessionObject.setProperty(INCOMING_STREAM_H_LAST_SENT_KEY, null);
+
+		StreamManagementStore store = getStreamManagementStore(sessionObject);
+		if (store != null) {
+			store.clear();
+		}
+	}
+
+	/**
+	 * Sets durable storage of stream management state. Stored state may be restored by {@linkplain #restore()}.
+	 *
+	 * @param sessionObject session object.
+	 * @param store storage.
+	 */
+	public static void setStreamManagementStore(SessionObject sessionObject, StreamManagementStore store) {
+		sessionObject.setProperty(STORE, store);
 	}
 
 	public StreamManagementModule(JaxmppCore jaxmpp) {
@@ -136,6 +189,10 @@ public class StreamManagementModule
 
 	}
 
+	public void addBackPressureHandler(BackPressureHandler handler) {
+		this.context.getEventBus().addHandler(BackPressureHandler.BackPressureEvent.class, handler);
+	}
+
 	public void addStreamManagementEnabledHandler(StreamManagementEnabledHandler handler) {
 		this.context.getEventBus()
 				.addHandler(StreamManagementEnabledHandler.StreamManagementEnabledEvent.class, handler);
@@ -167,7 +224,15 @@ public class StreamManagementModule
 		Element request = ElementFactory.create("enable", null, XMLNS);
 		request.setAttribute("resume", "true");
 		context.getWriter().write(request);
-		context.getSessionObject().setProperty(Scope.stream, SM_ACK_ENABLED_KEY, Boolean.TRUE);
+		context.getSessionObject().setProperty(ACK_ENABLED, Boolean.TRUE);
+	}
+
+	/**
+	 * Returns policy deciding when acknowledgement requests and acknowledgements are sent. Policy may be configured
+	 * before connection is established.
+	 */
+	public AckPolicy getAckPolicy() {
+		return ackPolicy;
 	}
 
 	@Override
@@ -180,6 +245,25 @@ public class StreamManagementModule
 		return new String[]{XMLNS};
 	}
 
+	/**
+	 * Returns total size (in UTF-8 bytes) of unacknowledged stanzas. Size is calculated only if {@linkplain
+	 * #OUTGOING_QUEUE_MAX_BYTES_KEY} is set.
+	 */
+	public long getOutgoingQueueBytes() {
+		synchronized (this.outgoingQueue) {
+			return outgoingQueue.getBytes();
+		}
+	}
+
+	/**
+	 * Returns number of unacknowledged stanzas.
+	 */
+	public int getOutgoingQueueSize() {
+		synchronized (this.outgoingQueue) {
+			return outgoingQueue.size();
+		}
+	}
+
 	@Override
 	public void process(Element element) throws JaxmppException {
 		final boolean enabled = isStreamManagementTurnedOn(context.getSessionObject());
@@ -206,6 +290,10 @@ public class StreamManagementModule
 		}
 	}
 
+	public void removeBackPressureHandler(BackPressureHandler handler) {
+		this.context.getEventBus().remove(BackPressureHandler.BackPressureEvent.class, handler);
+	}
+
 	public void removeStreamManagementEnabledHandler(StreamManagementEnabledHandler handler) {
 		this.context.getEventBus().remove(StreamManagementEnabledHandler.StreamManagementEnabledEvent.class, handler);
 	}
@@ -226,24 +314,20 @@ public class StreamManagementModule
 	 * Request acknowledgement of received stanzas.
 	 */
 	public void request(final boolean force) throws JaxmppException {
-		if (!force && outgoingQueue.size() == 0) {
-			return;
-		}
-
-		Long lr = context.getSessionObject().getProperty(LAST_REQUEST_TIMESTAMP_KEY);
-		final long now = (new Date()).getTime();
-
-		if (!force && (lr != null && now - lr < 3000)) {
-			return;
+		final long now = System.currentTimeMillis();
+		synchronized (this.outgoingQueue) {
+			if (!force && (outgoingQueue.isEmpty() || !ackPolicy.isRequestAllowed(now))) {
+				return;
+			}
+			ackPolicy.onRequestSent(now);
 		}
 
 		Element request = ElementFactory.create("r", null, XMLNS);
 		// context.getWriter().write(request);
 		jaxmpp.getConnector().send(request);
-		context.getSessionObject().setProperty(LAST_REQUEST_TIMESTAMP_KEY, now);
 
 		if (log.isLoggable(Level.FINE)) {
-			log.fine("Sent ACK request. queue=" + outgoingQueue.size());
+			log.fine("Sent ACK request. queue=" + getOutgoingQueueSize());
 		}
 
 	}
@@ -251,7 +335,7 @@ public class StreamManagementModule
 	public void resume() throws JaxmppException {
 		Element resume = ElementFactory.create("resume", null, XMLNS);
 
-		resume.setAttribute("h", getAckHValue(INCOMING_STREAM_H_KEY).toString());
+		resume.setAttribute("h", getAckHValue(INCOMING_H).toString());
 		resume.setAttribute("previd", context.getSessionObject().getProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY));
 
 		if (log.isLoggable(Level.INFO)) {
@@ -261,13 +345,62 @@ public class StreamManagementModule
 		context.getWriter().write(resume);
 	}
 
+	/**
+	 * Restores state saved in {@linkplain StreamManagementStore}, for example after restart of application. If state
+	 * was restored, stream will be resumed (instead of binding resource) after next login, and unacknowledged
+	 * stanzas will be sent again.
+	 *
+	 * @return <code>true</code> if state was restored, <code>false</code> if there is no stored state or resumption
+	 * time passed.
+	 */
+	public boolean restore() throws JaxmppException {
+		final SessionObject sessionObject = context.getSessionObject();
+		final StreamManagementStore store = getStreamManagementStore(sessionObject);
+		final StreamManagementStore.State state = store == null ? null : store.load();
+		if (state == null || state.getResumptionId() == null) {
+			return false;
+		}
+		final Long resumptionTime = state.getResumptionTime();
+		if (resumptionTime != null && state.getTimestamp() + resumptionTime * 1000 < System.currentTimeMillis()) {
+			log.info("Stored stream management state is expired");
+			store.clear();
+			return false;
+		}
+
+		if (log.isLoggable(Level.INFO)) {
+			log.info("Restoring stream management state. id=" + state.getResumptionId() + "; unacknowledged=" +
+							 state.getElements().size());
+		}
+		sessionObject.setProperty(STREAM_MANAGEMENT_TURNED_ON_KEY, Boolean.TRUE);
+		sessionObject.setProperty(STREAM_MANAGEMENT_RESUME_KEY, Boolean.TRUE);
+		sessionObject.setProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY, state.getResumptionId());
+		sessionObject.setProperty(STREAM_MANAGEMENT_RESUMPTION_TIME_KEY, resumptionTime);
+		sessionObject.setProperty(ResourceBinderModule.BINDED_RESOURCE_JID, state.getBindedJid());
+		setAckHValue(INCOMING_H, state.getIncomingH());
+		setAckHValue(INCOMING_H_LAST_SENT, state.getIncomingH());
+
+		final long maxBytes = getLimit(sessionObject, QUEUE_MAX_BYTES);
+		synchronized (this.outgoingQueue) {
+			setAckHValue(OUTGOING_H, state.getOutgoingH());
+			outgoingQueue.drain();
+			for (Element element : state.getElements()) {
+				outgoingQueue.add(element, maxBytes > 0 ? utf8Length(element.getAsString()) : 0);
+			}
+			ackPolicy.reset();
+		}
+		return true;
+	}
+
 	public void sendAck() throws JaxmppException {
 		sendAck(false);
 	}
 
 	public void sendAck(final boolean force) throws JaxmppException {
-		Number value = getAckHValue(INCOMING_STREAM_H_KEY);
-		Number lastSent = getAckHValue(INCOMING_STREAM_H_LAST_SENT_KEY);
+		synchronized (this.outgoingQueue) {
+			ackPolicy.onAckSent();
+		}
+		Number value = getAckHValue(INCOMING_H);
+		Number lastSent = getAckHValue(INCOMING_H_LAST_SENT);
 
 		if (!force && value.longValue() == lastSent.longValue()) {
 			return;
@@ -277,18 +410,52 @@ public class StreamManagementModule
 			log.fine("Sending ack. h=" + value + "; previously h=" + lastSent);
 		}
 
-		setAckHValue(INCOMING_STREAM_H_LAST_SENT_KEY, value.longValue());
+		setAckHValue(INCOMING_H_LAST_SENT, value.longValue());
 		Element response = ElementFactory.create("a", null, XMLNS);
 		response.setAttribute("h", value.toString());
 		context.getWriter().write(response);
 	}
 
+	/**
+	 * Sets timer used to send acknowledgement requests and acknowledgements when stream is idle. Without timer they
+	 * are sent only after configured number of stanzas.
+	 */
+	public void setAckTimer(AckTimer ackTimer) {
+		this.ackTimer = ackTimer;
+	}
+
 	@Override
 	public void setContext(Context context) {
 		this.context = context;
 	}
 
-	public void processIncomingStanza(Element element) throws XMLException {
+	/**
+	 * Sends acknowledgement request and acknowledgement if their time passed. Called by {@linkplain AckTimer}.
+	 *
+	 * @return time (in milliseconds) to next deadline, or <code>-1</code> if nothing is waiting.
+	 */
+	public long processAckTimers() throws JaxmppException {
+		final long now = System.currentTimeMillis();
+		final boolean sendRequest;
+		final boolean sendAck;
+		synchronized (this.outgoingQueue) {
+			scheduledDeadline = Long.MAX_VALUE;
+			if (!isAckEnabled(context.getSessionObject())) {
+				return -1;
+			}
+			sendRequest = ackPolicy.getRequestDeadline(!outgoingQueue.isEmpty()) <= now;
+			sendAck = ackPolicy.getAckDeadline() <= now;
+		}
+		if (sendRequest) {
+			request(true);
+		}
+		if (sendAck) {
+			sendAck(false);
+		}
+		return scheduleAckTimer(now);
+	}
+
+	public void processIncomingStanza(Element element) throws JaxmppException {
 		if (!isAckEnabled(context.getSessionObject())) {
 			return;
 		}
@@ -296,10 +463,25 @@ public class StreamManagementModule
 			return;
 		}
 
-		long v = incrementAckHValue(INCOMING_STREAM_H_KEY);
+		long v = incrementAckHValue(INCOMING_H);
 		if (log.isLoggable(Level.FINEST)) {
 			log.finest("Increase incoming counter. value=" + v);
 		}
+		StreamManagementStore store = getStreamManagementStore(context.getSessionObject());
+		if (store != null) {
+			store.onIncoming(v);
+		}
+
+		final long now = System.currentTimeMillis();
+		final boolean ack;
+		synchronized (this.outgoingQueue) {
+			ack = ackPolicy.onStanzaReceived(now);
+		}
+		if (ack) {
+			sendAck(false);
+		} else {
+			scheduleAckTimer(now);
+		}
 	}
 
 	public void processOutgoingElement(final Element element) throws JaxmppException {
@@ -310,32 +492,63 @@ public class StreamManagementModule
 			return;
 		}
 
+		final long maxSize = getLimit(context.getSessionObject(), QUEUE_MAX_SIZE);
+		final long maxBytes = getLimit(context.getSessionObject(), QUEUE_MAX_BYTES);
+		final int bytes = maxBytes > 0 || ackPolicy.getRequestBytes() > 0 ? utf8Length(element.getAsString()) : 0;
+		final long now = System.currentTimeMillis();
+
+		BackPressureEvent event = null;
+		final boolean sendRequest;
 		synchronized (this.outgoingQueue) {
-			long v = incrementAckHValue(OUTGOING_STREAM_H_KEY);
+			long v = incrementAckHValue(OUTGOING_H);
 			if (log.isLoggable(Level.FINEST)) {
 				log.finest("Increase outgoing counter. value=" + v);
 			}
 
-			outgoingQueue.offer(element);
+			outgoingQueue.add(element, bytes);
+			sendRequest = ackPolicy.onStanzaSent(bytes, now);
+			StreamManagementStore store = getStreamManagementStore(context.getSessionObject());
+			if (store != null) {
+				store.onOutgoing(v, element);
+			}
+			if (!congested && ((maxSize > 0 && outgoingQueue.size() > maxSize) ||
+					(maxBytes > 0 && outgoingQueue.getBytes() > maxBytes))) {
+				congested = true;
+				event = new BackPressureEvent(context.getSessionObject(), true, outgoingQueue.size(),
+											  outgoingQueue.getBytes());
+			}
 		}
-//		if (outgoingQueue.size() > 3) {
-//			Runnable r = new Runnable() {
-//
-//				@Override
-//				public void run() {
-//					try {
-//						request();
-//						sendAck(false);
-//					} catch (JaxmppException e) {
-//						log.log(Level.WARNING, "Can't send ACK request!");
-//					}
-//				}
-//			};
-//			jaxmpp.execute(r);
-//		}
-	}
-
-	private Number getAckHValue(String key) {
+		if (event != null) {
+			log.warning("Outgoing queue is over limit. queue=" + event.getQueueSize() + "; bytes=" +
+								event.getQueueBytes());
+			context.getEventBus().fire(event);
+		}
+		if (sendRequest) {
+			request(true);
+		} else {
+			scheduleAckTimer(now);
+		}
+	}
+
+	/**
+	 * Checks if queue dropped below half of limits after stanzas were removed. Must be called with lock on queue.
+	 */
+	private BackPressureEvent checkReleased() {
+		if (!congested) {
+			return null;
+		}
+		final long maxSize = getLimit(context.getSessionObject(), QUEUE_MAX_SIZE);
+		final long maxBytes = getLimit(context.getSessionObject(), QUEUE_MAX_BYTES);
+		if ((maxSize > 0 && outgoingQueue.size() > maxSize / 2) ||
+				(maxBytes > 0 && outgoingQueue.getBytes() > maxBytes / 2)) {
+			return null;
+		}
+		congested = false;
+		return new BackPressureEvent(context.getSessionObject(), false, outgoingQueue.size(),
+									 outgoingQueue.getBytes());
+	}
+
+	private Number getAckHValue(SessionObject.Key<MutableLong> key) {
 		MutableLong v = context.getSessionObject().getProperty(key);
 		if (v == null) {
 			v = new MutableLong();
@@ -344,7 +557,7 @@ public class StreamManagementModule
 		return v;
 	}
 
-	private long incrementAckHValue(String key) {
+	private long incrementAckHValue(SessionObject.Key<MutableLong> key) {
 		MutableLong v = context.getSessionObject().getProperty(key);
 		if (v == null) {
 			v = new MutableLong();
@@ -360,23 +573,30 @@ public class StreamManagementModule
 	private void processAckAnswer(Element element) throws XMLException {
 		String hs = element.getAttribute("h");
 		try {
-			long oldH = getAckHValue(OUTGOING_STREAM_H_KEY).longValue();
+			long oldH = getAckHValue(OUTGOING_H).longValue();
 			long newH = Long.parseLong(hs);
 
 			log.fine("Expected h=" + oldH + "; received h=" + newH);
 
 			if (oldH >= newH) {
+				BackPressureEvent event;
 				synchronized (this.outgoingQueue) {
-					oldH = getAckHValue(OUTGOING_STREAM_H_KEY).longValue();
-					long left = oldH - newH;
+					ackPolicy.onAckReceived(System.currentTimeMillis());
+					oldH = getAckHValue(OUTGOING_H).longValue();
 					// removing confirmed elements leaving unconfirmed in
 					// outgoningQueue
-					while (this.outgoingQueue.size() > left) {
-						this.outgoingQueue.removeFirst();
+					this.outgoingQueue.retainLast(oldH - newH);
+					StreamManagementStore store = getStreamManagementStore(context.getSessionObject());
+					if (store != null) {
+						store.onAcknowledged(newH);
 					}
+					event = checkReleased();
+				}
+				if (event != null) {
+					context.getEventBus().fire(event);
 				}
 			}
-			// setAckHValue(OUTGOING_STREAM_H_KEY, newH);
+			// setAckHValue(OUTGOING_H, newH);
 		} catch (Exception e) {
 
 		}
@@ -389,12 +609,16 @@ public class StreamManagementModule
 		log.fine("Failed. Reset.");
 
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_TURNED_ON_KEY, Boolean.FALSE);
-		context.getSessionObject().setProperty(Scope.stream, SM_ACK_ENABLED_KEY, Boolean.FALSE);
+		context.getSessionObject().setProperty(ACK_ENABLED, Boolean.FALSE);
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_RESUME_KEY, null);
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY, null);
 		context.getSessionObject().setProperty(OUTGOING_STREAM_H_KEY, null);
 		context.getSessionObject().setProperty(INCOMING_STREAM_H_KEY, null);
 		context.getSessionObject().setProperty(INCOMING_STREAM_H_LAST_SENT_KEY, null);
+		StreamManagementStore store = getStreamManagementStore(context.getSessionObject());
+		if (store != null) {
+			store.clear();
+		}
 
 		XMPPException.ErrorCondition condition = ErrorCondition.unexpected_request;
 		for (Element element2 : errors) {
@@ -409,9 +633,14 @@ public class StreamManagementModule
 		context.getEventBus().fire(event);
 
 		List<Element> notSentElements = null;
+		BackPressureEvent released;
 		synchronized (this.outgoingQueue) {
-			notSentElements = new ArrayList<Element>(this.outgoingQueue);
-			outgoingQueue.clear();
+			ackPolicy.reset();
+			notSentElements = this.outgoingQueue.drain();
+			released = checkReleased();
+		}
+		if (released != null) {
+			context.getEventBus().fire(released);
 		}
 
 		log.warning("ACK failed. Not confirmed elements: " + notSentElements.size());
@@ -428,23 +657,27 @@ public class StreamManagementModule
 		final Long newH = hs == null ? null : Long.parseLong(hs);
 
 		synchronized (this.outgoingQueue) {
-			context.getSessionObject().setProperty(Scope.stream, SM_ACK_ENABLED_KEY, Boolean.TRUE);
-			long oldH = getAckHValue(OUTGOING_STREAM_H_KEY).longValue();
+			context.getSessionObject().setProperty(ACK_ENABLED, Boolean.TRUE);
+			ackPolicy.reset();
+			long oldH = getAckHValue(OUTGOING_H).longValue();
 			long left = oldH - newH;
 			// removing confirmed elements leaving unconfirmed in outgoningQueue
 			if (left > 0) {
-				while (this.outgoingQueue.size() > left) {
-					this.outgoingQueue.removeFirst();
-				}
+				this.outgoingQueue.retainLast(left);
 			}
 
 			log.fine("Resumed. New outgoing counter is " + newH);
-			setAckHValue(OUTGOING_STREAM_H_KEY, newH);
-			List<Element> unacked = new ArrayList<Element>(this.outgoingQueue);
-			this.outgoingQueue.clear();
+			setAckHValue(OUTGOING_H, newH);
+			List<Element> unacked = this.outgoingQueue.drain();
+			// resent elements are queued again, so limits are checked from scratch
+			BackPressureEvent released = checkReleased();
+			if (released != null) {
+				context.getEventBus().fire(released);
+			}
 			for (Element unackedElem : unacked) {
 				context.getWriter().write(unackedElem);
 			}
+			saveState();
 		}
 
 		StreamResumedEvent event = new StreamResumedEvent(context.getSessionObject(), newH,
@@ -465,17 +698,75 @@ public class StreamManagementModule
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_TURNED_ON_KEY, Boolean.TRUE);
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_RESUME_KEY, resume);
 		context.getSessionObject().setProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY, id);
-		context.getSessionObject().setProperty(Scope.stream, SM_ACK_ENABLED_KEY, Boolean.TRUE);
+		context.getSessionObject().setProperty(ACK_ENABLED, Boolean.TRUE);
+		synchronized (this.outgoingQueue) {
+			ackPolicy.reset();
+		}
 
 		if (mx != null) {
 			context.getSessionObject().setProperty(STREAM_MANAGEMENT_RESUMPTION_TIME_KEY, Long.valueOf(mx));
 		}
+		if (resume && id != null) {
+			synchronized (this.outgoingQueue) {
+				saveState();
+			}
+		}
 
 		StreamManagementEnabledEvent event = new StreamManagementEnabledEvent(context.getSessionObject(), resume, id);
 		context.getEventBus().fire(event);
 	}
 
-	private void setAckHValue(String key, Long value) {
+	private static int utf8Length(final String value) {
+		int result = value.length();
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c >= 0x800) {
+				// surrogate pair is counted as 2 + 2 bytes
+				result += c >= 0xD800 && c <= 0xDFFF ? 1 : 2;
+			} else if (c >= 0x80) {
+				++result;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Saves current state in {@linkplain StreamManagementStore}. Must be called with lock on queue.
+	 */
+	private void saveState() {
+		final SessionObject sessionObject = context.getSessionObject();
+		final StreamManagementStore store = getStreamManagementStore(sessionObject);
+		if (store == null) {
+			return;
+		}
+		StreamManagementStore.State state = new StreamManagementStore.State();
+		state.setBindedJid(ResourceBinderModule.getBindedJID(sessionObject));
+		state.setElements(outgoingQueue.getElements());
+		state.setIncomingH(getAckHValue(INCOMING_H).longValue());
+		state.setOutgoingH(getAckHValue(OUTGOING_H).longValue());
+		state.setResumptionId((String) sessionObject.getProperty(STREAM_MANAGEMENT_RESUMPTION_ID_KEY));
+		state.setResumptionTime((Long) sessionObject.getProperty(STREAM_MANAGEMENT_RESUMPTION_TIME_KEY));
+		state.setTimestamp(System.currentTimeMillis());
+		store.save(state);
+	}
+
+	private long scheduleAckTimer(final long now) {
+		synchronized (this.outgoingQueue) {
+			final long deadline = Math.min(ackPolicy.getRequestDeadline(!outgoingQueue.isEmpty()),
+										   ackPolicy.getAckDeadline());
+			if (deadline == Long.MAX_VALUE) {
+				return -1;
+			}
+			final long delay = Math.max(0, deadline - now);
+			if (ackTimer != null && deadline < scheduledDeadline) {
+				scheduledDeadline = deadline;
+				ackTimer.schedule(delay);
+			}
+			return delay;
+		}
+	}
+
+	private void setAckHValue(SessionObject.Key<MutableLong> key, Long value) {
 		MutableLong v = context.getSessionObject().getProperty(key);
 		if (v == null) {
 			v = new MutableLong();
@@ -487,6 +778,60 @@ public class StreamManagementModule
 		}
 	}
 
+	/**
+	 * Platform-specific timer, which calls {@linkplain #processAckTimers()} after given delay.
+	 */
+	public interface AckTimer {
+
+		void schedule(long delay);
+
+	}
+
+	/**
+	 * Fired when number or size of unacknowledged stanzas exceeds limit ({@linkplain #OUTGOING_QUEUE_MAX_SIZE_KEY},
+	 * {@linkplain #OUTGOING_QUEUE_MAX_BYTES_KEY}), and again when acknowledgements drop queue below half of
+	 * limits. Client should stop sending non-urgent stanzas while queue is congested.
+	 */
+	public interface BackPressureHandler
+			extends EventHandler {
+
+		void onBackPressure(SessionObject sessionObject, boolean congested, int queueSize, long queueBytes);
+
+		class BackPressureEvent
+				extends JaxmppEvent<BackPressureHandler> {
+
+			private final boolean congested;
+			private final long queueBytes;
+			private final int queueSize;
+
+			public BackPressureEvent(SessionObject sessionObject, boolean congested, int queueSize,
+									 long queueBytes) {
+				super(sessionObject);
+				this.congested = congested;
+				this.queueSize = queueSize;
+				this.queueBytes = queueBytes;
+			}
+
+			@Override
+			public void dispatch(BackPressureHandler handler) {
+				handler.onBackPressure(sessionObject, congested, queueSize, queueBytes);
+			}
+
+			public long getQueueBytes() {
+				return queueBytes;
+			}
+
+			public int getQueueSize() {
+				return queueSize;
+			}
+
+			public boolean isCongested() {
+				return congested;
+			}
+
+		}
+	}
+
 	public interface StreamManagementEnabledHandler
 			extends EventHandler {
 
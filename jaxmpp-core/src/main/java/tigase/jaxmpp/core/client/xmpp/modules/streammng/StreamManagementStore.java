@@ -0,0 +1,155 @@
+/*
+ * StreamManagementStore.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.streammng;
+
+import tigase.jaxmpp.core.client.JID;
+import tigase.jaxmpp.core.client.xml.Element;
+
+import java.util.List;
+
+/**
+ * Interface for implement durable storage of stream management state. For example to store it on clients machine,
+ * so client restarted after crash may resume stream and resend unacknowledged stanzas.
+ * <p>
+ * {@linkplain StreamManagementModule} calls {@linkplain #save(State)} when stream management is enabled or
+ * resumed, and then reports changes of counters. Implementation should persist changes immediately.
+ */
+public interface StreamManagementStore {
+
+	/**
+	 * Removes stored state. Called when stream management is reset or failed.
+	 */
+	void clear();
+
+	/**
+	 * Loads stored state.
+	 *
+	 * @return stored state or <code>null</code> if nothing is stored.
+	 */
+	State load();
+
+	/**
+	 * Called when server acknowledged outgoing stanzas.
+	 *
+	 * @param h number of stanzas acknowledged by server.
+	 */
+	void onAcknowledged(long h);
+
+	/**
+	 * Called when incoming stanza was counted.
+	 *
+	 * @param h number of received stanzas.
+	 */
+	void onIncoming(long h);
+
+	/**
+	 * Called when outgoing stanza was counted.
+	 *
+	 * @param h sequence number of stanza.
+	 * @param stanza sent stanza.
+	 */
+	void onOutgoing(long h, Element stanza);
+
+	/**
+	 * Replaces stored state.
+	 *
+	 * @param state current state.
+	 */
+	void save(State state);
+
+	class State {
+
+		private JID bindedJid;
+		private List<Element> elements;
+		private long incomingH;
+		private long outgoingH;
+		private String resumptionId;
+		private Long resumptionTime;
+		private long timestamp;
+
+		public JID getBindedJid() {
+			return bindedJid;
+		}
+
+		public void setBindedJid(JID bindedJid) {
+			this.bindedJid = bindedJid;
+		}
+
+		/**
+		 * Returns unacknowledged stanzas, in order of sending.
+		 */
+		public List<Element> getElements() {
+			return elements;
+		}
+
+		public void setElements(List<Element> elements) {
+			this.elements = elements;
+		}
+
+		public long getIncomingH() {
+			return incomingH;
+		}
+
+		public void setIncomingH(long incomingH) {
+			this.incomingH = incomingH;
+		}
+
+		public long getOutgoingH() {
+			return outgoingH;
+		}
+
+		public void setOutgoingH(long outgoingH) {
+			this.outgoingH = outgoingH;
+		}
+
+		public String getResumptionId() {
+			return resumptionId;
+		}
+
+		public void setResumptionId(String resumptionId) {
+			this.resumptionId = resumptionId;
+		}
+
+		/**
+		 * Returns maximum resumption time (in seconds) declared by server.
+		 */
+		public Long getResumptionTime() {
+			return resumptionTime;
+		}
+
+		public void setResumptionTime(Long resumptionTime) {
+			this.resumptionTime = resumptionTime;
+		}
+
+		/**
+		 * Returns time (in milliseconds since epoch) of last change of state.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public void setTimestamp(long timestamp) {
+			this.timestamp = timestamp;
+		}
+
+	}
+
+}
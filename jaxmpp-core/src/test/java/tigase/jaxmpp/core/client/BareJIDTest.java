@@ -32,6 +32,19 @@ public class BareJIDTest
 		assertEquals(BareJID.bareJIDInstance("a@b"), BareJID.bareJIDInstance("a@b/c"));
 	}
 
+	public void testCache() {
+		assertSame(BareJID.bareJIDInstance("a@b"), BareJID.bareJIDInstance("a@b"));
+		assertSame(BareJID.bareJIDInstance("a@b"), BareJID.bareJIDInstance("a@b/c"));
+		assertSame(BareJID.bareJIDInstance("a@b"), JID.jidInstance("a@b/d").getBareJid());
+		assertEquals("b", BareJID.bareJIDInstance("a@B").getDomain());
+		assertEquals("b", BareJID.bareJIDInstance("a@b").getDomain());
+
+		assertEquals("", BareJID.bareJIDInstance("@b").getLocalpart());
+		assertNull(BareJID.bareJIDInstance("b").getLocalpart());
+		assertEquals("b", BareJID.bareJIDInstance("b/x@y").getDomain());
+		assertNull(BareJID.bareJIDInstance("b/x@y").getLocalpart());
+	}
+
 	public void testGetDomain() {
 		BareJID jid = BareJID.bareJIDInstance("a@b");
 		assertEquals("b", jid.getDomain());
@@ -25,6 +25,27 @@ import junit.framework.TestCase;
 public class JIDTest
 		extends TestCase {
 
+	public void testCache() {
+		assertSame(JID.jidInstance("a@b/c"), JID.jidInstance("a@b/c"));
+		assertSame(JID.jidInstance("a@b"), JID.jidInstance("a@b"));
+
+		assertEquals("", JID.jidInstance("a@b/").getResource());
+		assertNull(JID.jidInstance("a@b").getResource());
+		assertEquals("", JID.jidInstance("a@b/").getResource());
+
+		JID jid = JID.jidInstance("a@b/c/d@e");
+		assertEquals("a", jid.getLocalpart());
+		assertEquals("b", jid.getDomain());
+		assertEquals("c/d@e", jid.getResource());
+		assertSame(jid, JID.jidInstance("a@b/c/d@e"));
+
+		// many different JIDs don't break parsing of cached ones
+		for (int i = 0; i < 10000; i++) {
+			assertEquals("r" + i, JID.jidInstance("u" + i + "@d/r" + i).getResource());
+		}
+		assertEquals("c", JID.jidInstance("a@b/c").getResource());
+	}
+
 	public void testGetBareJid() {
 		JID jid = JID.jidInstance("a@b/c");
 		assertEquals(BareJID.bareJIDInstance("a", "b"), jid.getBareJid());
@@ -0,0 +1,164 @@
+/*
+ * RequestCoalescerTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client;
+
+import tigase.jaxmpp.core.client.XMPPException.ErrorCondition;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.disco.DiscoveryModule;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RequestCoalescerTest
+		extends AbstractJaxmppTest {
+
+	private DiscoveryModule discoveryModule;
+
+	private Element response(Element request, String type) throws Exception {
+		Element response = ElementFactory.create("iq");
+		response.setAttribute("type", type);
+		response.setAttribute("id", request.getAttribute("id"));
+		response.setAttribute("from", request.getAttribute("to"));
+		return response;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		discoveryModule = new DiscoveryModule();
+		discoveryModule.setContext(context);
+	}
+
+	public void testCoalesce() throws Exception {
+		final JID jid = JID.jidInstance("a@b.c/r");
+		final List<String> results = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			discoveryModule.getInfo(jid, "http://caps#ver", new TestCallback(results, "info" + i));
+		}
+		discoveryModule.getInfo(jid, "http://caps#other", new TestCallback(results, "other"));
+		discoveryModule.getItems(jid, new TestCallback(results, "items"));
+
+		Element info = poll();
+		Element other = poll();
+		Element items = poll();
+		assertNotNull(items);
+		assertNull(poll());
+		assertEquals(3, RequestCoalescer.getRequestCoalescer(context.getSessionObject()).getPendingCount());
+
+		ResponseManager.getResponseHandler(context, response(info, "result")).run();
+		assertEquals("[info0:success, info1:success, info2:success]", results.toString());
+		ResponseManager.getResponseHandler(context, response(other, "error")).run();
+		assertEquals("other:error", results.get(3));
+
+		// response was received, so next request is sent
+		discoveryModule.getInfo(jid, "http://caps#ver", new TestCallback(results, "info3"));
+		assertNotNull(poll());
+		assertEquals(2, RequestCoalescer.getRequestCoalescer(context.getSessionObject()).getPendingCount());
+	}
+
+	public void testFailingCallback() throws Exception {
+		final List<String> results = new ArrayList<String>();
+		final RequestCoalescer coalescer = RequestCoalescer.getRequestCoalescer(context.getSessionObject());
+		final AsyncCallback callback = coalescer.coalesce(vCardRequest(), new TestCallback(results, "first") {
+			@Override
+			public void onSuccess(Stanza responseStanza) {
+				throw new IllegalStateException("first");
+			}
+		});
+		assertNull(coalescer.coalesce(vCardRequest(), new TestCallback(results, "second")));
+
+		try {
+			callback.onSuccess(null);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("first", e.getMessage());
+		}
+		// other callbacks are notified anyway
+		assertEquals("[second:success]", results.toString());
+	}
+
+	public void testSendFailed() throws Exception {
+		final List<String> results = new ArrayList<String>();
+		final RequestCoalescer coalescer = RequestCoalescer.getRequestCoalescer(context.getSessionObject());
+		final AsyncCallback callback = coalescer.coalesce(vCardRequest(), new TestCallback(results, "first"));
+		assertNotNull(callback);
+		assertNull(coalescer.coalesce(vCardRequest(), new TestCallback(results, "second")));
+
+		coalescer.onSendFailed(callback);
+		assertEquals("[second:timeout]", results.toString());
+		assertEquals(0, coalescer.getPendingCount());
+	}
+
+	public void testTimeout() throws Exception {
+		final List<String> results = new ArrayList<String>();
+		final RequestCoalescer coalescer = RequestCoalescer.getRequestCoalescer(context.getSessionObject());
+		final Element request = vCardRequest();
+		context.getWriter().write(request, -1L, coalescer.coalesce(request, new TestCallback(results, "first")));
+		assertNull(coalescer.coalesce(vCardRequest(), new TestCallback(results, "second")));
+
+		ResponseManager.getResponseManager(context.getSessionObject()).checkTimeouts();
+		assertEquals("[first:timeout, second:timeout]", results.toString());
+		assertEquals(0, coalescer.getPendingCount());
+	}
+
+	private Element vCardRequest() throws Exception {
+		Element iq = ElementFactory.create("iq");
+		iq.setAttribute("type", "get");
+		iq.setAttribute("to", "a@b.c");
+		iq.addChild(ElementFactory.create("vCard", null, "vcard-temp"));
+		return iq;
+	}
+
+	private static class TestCallback
+			implements AsyncCallback {
+
+		private final String name;
+		private final List<String> results;
+
+		TestCallback(List<String> results, String name) {
+			this.results = results;
+			this.name = name;
+		}
+
+		@Override
+		public void onError(Stanza responseStanza, ErrorCondition error) {
+			results.add(name + ":error");
+		}
+
+		@Override
+		public void onSuccess(Stanza responseStanza) {
+			results.add(name + ":success");
+		}
+
+		@Override
+		public void onTimeout() {
+			results.add(name + ":timeout");
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+}
@@ -23,6 +23,7 @@ package tigase.jaxmpp.core.client;
 
 import org.junit.Before;
 import org.junit.Test;
+import tigase.jaxmpp.core.client.SessionObject.Key;
 import tigase.jaxmpp.core.client.SessionObject.Scope;
 import tigase.jaxmpp.core.client.eventbus.DefaultEventBus;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
@@ -33,6 +34,8 @@ import static org.junit.Assert.*;
 
 public class SessionObjectTest {
 
+	private static final Key<String> STREAM_KEY = Key.create("typed-stream", Scope.stream);
+	private static final Key<Integer> USER_KEY = Key.create("typed-user", Scope.user);
 	protected AbstractSessionObject sessionObject;
 
 	@Before
@@ -41,6 +44,25 @@ public class SessionObjectTest {
 		sessionObject = new MockSessionObject(eventBus);
 	}
 
+	@Test
+	public void testKeyCreatedLater() {
+		sessionObject.setProperty("typed-later", "v");
+		Key<String> key = Key.create("typed-later", Scope.session);
+		assertEquals("v", sessionObject.getProperty(key));
+
+		sessionObject.setProperty(key, "w");
+		assertEquals("w", sessionObject.getProperty("typed-later"));
+		assertEquals("w", sessionObject.getEntries().get("typed-later").value);
+	}
+
+	@Test
+	public void testKeys() {
+		assertSame(STREAM_KEY, Key.create("typed-stream", Scope.session));
+		assertSame(STREAM_KEY, Key.forName("typed-stream"));
+		assertSame(STREAM_KEY, Key.forIndex(STREAM_KEY.getIndex()));
+		assertTrue(STREAM_KEY.getIndex() != USER_KEY.getIndex());
+	}
+
 	@Test
 	public void testReset1() {
 		sessionObject.setProperty(Scope.user, "u", "value1");
@@ -150,6 +172,36 @@ public class SessionObjectTest {
 		assertNull(sessionObject.getProperty("st"));
 	}
 
+	@Test
+	public void testResetTyped() throws JaxmppException {
+		sessionObject.setProperty(STREAM_KEY, "s");
+		sessionObject.setProperty(USER_KEY, 1);
+
+		sessionObject.clear();
+		assertNull(sessionObject.getProperty(STREAM_KEY));
+		assertEquals(Integer.valueOf(1), sessionObject.getProperty(USER_KEY));
+
+		sessionObject.clear(Scope.user);
+		assertNull(sessionObject.getProperty(USER_KEY));
+	}
+
+	@Test
+	public void testSetPropertyKey() {
+		sessionObject.setProperty(USER_KEY, 5);
+		assertEquals(Integer.valueOf(5), sessionObject.getProperty("typed-user"));
+		assertEquals(Integer.valueOf(5), sessionObject.getUserProperty("typed-user"));
+
+		// scope given with name overrides default scope of key
+		sessionObject.setProperty("typed-user", 6);
+		assertEquals(Integer.valueOf(6), sessionObject.getProperty(USER_KEY));
+		assertNull(sessionObject.getProperty(Scope.user, USER_KEY));
+		assertEquals(Scope.session, sessionObject.getEntries().get("typed-user").scope);
+
+		sessionObject.setProperty(USER_KEY, null);
+		assertNull(sessionObject.getProperty("typed-user"));
+		assertFalse(sessionObject.getEntries().containsKey("typed-user"));
+	}
+
 	@Test
 	public void testSetPropertyScopeStringObject() {
 		sessionObject.setProperty(Scope.user, "default-key1", "value1");
@@ -0,0 +1,145 @@
+/*
+ * XmppModulesManagerTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client;
+
+import tigase.jaxmpp.core.client.criteria.Criteria;
+import tigase.jaxmpp.core.client.criteria.ElementCriteria;
+import tigase.jaxmpp.core.client.criteria.Or;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xml.XMLException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class XmppModulesManagerTest
+		extends AbstractJaxmppTest {
+
+	private List<XmppModule> all;
+	private XmppModulesManager manager;
+
+	private static Element stanza(String name, String type, String... childNamespaces) throws XMLException {
+		Element e = ElementFactory.create(name);
+		if (type != null) {
+			e.setAttribute("type", type);
+		}
+		for (String xmlns : childNamespaces) {
+			e.addChild(ElementFactory.create("query", null, xmlns));
+		}
+		return e;
+	}
+
+	private List<XmppModule> linear(Element element) throws XMLException {
+		List<XmppModule> result = null;
+		for (XmppModule module : all) {
+			if (module.getCriteria() != null && module.getCriteria().match(element)) {
+				if (result == null) {
+					result = new ArrayList<XmppModule>();
+				}
+				result.add(module);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		manager = new XmppModulesManager(context);
+		all = new ArrayList<XmppModule>();
+		all.add(new TestModule(ElementCriteria.name("iq").add(ElementCriteria.name("query", "jabber:iq:roster"))));
+		all.add(new TestModule(ElementCriteria.name("presence")));
+		all.add(new TestModule(new Or(ElementCriteria.name("iq").add(ElementCriteria.xmlns("a")),
+									  ElementCriteria.name("message").add(ElementCriteria.xmlns("b")))));
+		all.add(new TestModule(ElementCriteria.empty().add(ElementCriteria.xmlns("b"))));
+		all.add(new TestModule(ElementCriteria.name("iq", new String[]{"type"}, new String[]{"set"})
+									   .add(new Or(ElementCriteria.xmlns("a"), ElementCriteria.xmlns("c")))));
+		all.add(new TestModule(new Criteria() {
+			@Override
+			public Criteria add(Criteria criteria) {
+				return null;
+			}
+
+			@Override
+			public boolean match(Element element) throws XMLException {
+				return "message".equals(element.getName()) && "chat".equals(element.getAttribute("type"));
+			}
+		}));
+		all.add(new TestModule(null));
+		all.add(new TestModule(ElementCriteria.name("message").add(ElementCriteria.name("body"))));
+		for (XmppModule module : all) {
+			manager.register(module);
+		}
+	}
+
+	public void testFindModules() throws XMLException {
+		Element[] stanzas = new Element[]{stanza("iq", "get", "jabber:iq:roster"), stanza("iq", "set", "a"),
+										  stanza("iq", "get", "a"), stanza("iq", "set", "x", "c"),
+										  stanza("message", "chat", "b"), stanza("message", "chat"),
+										  stanza("message", null, "b", "a"), stanza("presence", null),
+										  stanza("presence", null, "b"), stanza("iq", "set"), stanza("foo", null),
+										  stanza("message", "chat", "b", "b"), stanza("iq", "set", "c", "a")};
+		Element withBody = stanza("message", "normal");
+		withBody.addChild(ElementFactory.create("body", "test", null));
+
+		List<Element> elements = new ArrayList<Element>(Arrays.asList(stanzas));
+		elements.add(withBody);
+		// twice, to check index built by first call
+		for (int i = 0; i < 2; i++) {
+			for (Element stanza : elements) {
+				assertEquals(stanza.getAsString(), linear(stanza), manager.findModules(stanza));
+			}
+		}
+	}
+
+	public void testUnregister() throws XMLException {
+		Element stanza = stanza("presence", null);
+		assertEquals(1, manager.findModules(stanza).size());
+		manager.unregister(all.get(1));
+		assertNull(manager.findModules(stanza));
+	}
+
+	private static class TestModule
+			implements XmppModule {
+
+		private final Criteria criteria;
+
+		TestModule(Criteria criteria) {
+			this.criteria = criteria;
+		}
+
+		@Override
+		public Criteria getCriteria() {
+			return criteria;
+		}
+
+		@Override
+		public String[] getFeatures() {
+			return null;
+		}
+
+		@Override
+		public void process(Element element) {
+		}
+	}
+
+}
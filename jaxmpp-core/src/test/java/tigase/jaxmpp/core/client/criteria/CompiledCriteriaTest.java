@@ -0,0 +1,120 @@
+/*
+ * CompiledCriteriaTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.criteria;
+
+import junit.framework.TestCase;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xml.XMLException;
+
+public class CompiledCriteriaTest
+		extends TestCase {
+
+	public static Criteria[] createCriteria() {
+		return new Criteria[]{ElementCriteria.empty(), ElementCriteria.name("iq"), ElementCriteria.name("message"),
+							  ElementCriteria.name("iq").add(ElementCriteria.name("query", "jabber:iq:roster")),
+							  ElementCriteria.name("iq").add(ElementCriteria.xmlns("urn:xmpp:ping")),
+							  ElementCriteria.name("iq", new String[]{"type"}, new String[]{"set"})
+									  .add(ElementCriteria.name("query", "jabber:iq:roster")),
+							  ElementCriteria.name("iq", new String[]{"type", "to"}, new String[]{"get", "a@b.c"}),
+							  ElementCriteria.name("features", "urn:ietf:params:xml:ns:xmpp-sasl"),
+							  ElementCriteria.name("iq", (String) null),
+							  ElementCriteria.name("message")
+									  .add(ElementCriteria.name("x", "http://jabber.org/protocol/muc#user"))
+									  .add(ElementCriteria.name("invite")),
+							  ElementCriteria.empty().add(ElementCriteria.xmlns("urn:xmpp:ping")),
+							  new Or(ElementCriteria.name("success", "urn:ietf:params:xml:ns:xmpp-sasl"),
+									 ElementCriteria.name("failure", "urn:ietf:params:xml:ns:xmpp-sasl")),
+							  new Or(ElementCriteria.name("presence"), new Or(ElementCriteria.name("iq")
+																				  .add(new Or(ElementCriteria.xmlns(
+																						  "urn:xmpp:ping"),
+																							  ElementCriteria.xmlns(
+																									  "urn:xmpp:time"))))),
+							  new Or()};
+	}
+
+	public static Element[] createElements() throws XMLException {
+		Element ping = ElementFactory.create("iq");
+		ping.setAttribute("type", "get");
+		ping.setAttribute("to", "a@b.c");
+		ping.addChild(ElementFactory.create("ping", null, "urn:xmpp:ping"));
+
+		Element time = ElementFactory.create("iq");
+		time.setAttribute("type", "get");
+		time.addChild(ElementFactory.create("time", null, "urn:xmpp:time"));
+
+		Element rosterPush = ElementFactory.create("iq");
+		rosterPush.setAttribute("type", "set");
+		rosterPush.addChild(ElementFactory.create("query", null, "jabber:iq:roster"));
+
+		Element rosterGet = ElementFactory.create("iq");
+		rosterGet.setAttribute("type", "get");
+		rosterGet.addChild(ElementFactory.create("query", null, "jabber:iq:roster"));
+
+		Element invite = ElementFactory.create("message");
+		invite.addChild(ElementFactory.create("body", "Hi", null));
+		Element x = ElementFactory.create("x", null, "http://jabber.org/protocol/muc#user");
+		x.addChild(ElementFactory.create("invite"));
+		invite.addChild(x);
+
+		Element inviteWithoutX = ElementFactory.create("message");
+		inviteWithoutX.addChild(ElementFactory.create("invite"));
+
+		return new Element[]{ping, time, rosterPush, rosterGet, invite, inviteWithoutX,
+							 ElementFactory.create("presence"),
+							 ElementFactory.create("success", null, "urn:ietf:params:xml:ns:xmpp-sasl"),
+							 ElementFactory.create("failure", null, "urn:ietf:params:xml:ns:xmpp-sasl"),
+							 ElementFactory.create("features", null, "urn:ietf:params:xml:ns:xmpp-sasl"),
+							 ElementFactory.create("iq")};
+	}
+
+	public void testCompile() {
+		Criteria custom = new Criteria() {
+			@Override
+			public Criteria add(Criteria criteria) {
+				return this;
+			}
+
+			@Override
+			public boolean match(Element element) {
+				return true;
+			}
+		};
+		assertNull(CompiledCriteria.compile(null));
+		assertSame(custom, CompiledCriteria.compile(custom));
+		Criteria withCustom = new Or(ElementCriteria.name("iq"), custom);
+		assertSame(withCustom, CompiledCriteria.compile(withCustom));
+		Criteria compiled = CompiledCriteria.compile(ElementCriteria.name("iq"));
+		assertTrue(compiled instanceof CompiledCriteria);
+		assertSame(compiled, CompiledCriteria.compile(compiled));
+	}
+
+	public void testEquivalence() throws XMLException {
+		for (Criteria criteria : createCriteria()) {
+			Criteria compiled = CompiledCriteria.compile(criteria);
+			assertTrue(compiled instanceof CompiledCriteria);
+			for (Element element : createElements()) {
+				assertEquals(element.getAsString(), criteria.match(element), compiled.match(element));
+			}
+		}
+	}
+
+}
@@ -154,6 +154,44 @@ public class DefaultEventBusTest
 		Assert.assertEquals("t2", value[1]);
 	}
 
+	@Test
+	public void testModifyWhileFiring() {
+		final StringBuilder sb = new StringBuilder();
+		final Test01Handler late = new Test01Handler() {
+			@Override
+			public void onTest01Event(String data) {
+				sb.append("late").append(data).append(';');
+			}
+		};
+		eventBus.addListener(new EventListener() {
+			@Override
+			public void onEvent(Event<? extends EventHandler> event) {
+				sb.append("listener;");
+			}
+		});
+		eventBus.addHandler(Test01Event.class, new Test01Handler() {
+			@Override
+			public void onTest01Event(String data) {
+				sb.append("once").append(data).append(';');
+				eventBus.remove(this);
+				eventBus.addHandler(Test01Event.class, late);
+			}
+		});
+
+		eventBus.fire(new Test01Event("1"));
+		Assert.assertEquals("once1;listener;", sb.toString());
+
+		sb.setLength(0);
+		eventBus.fire(new Test01Event("2"));
+		Assert.assertEquals("late2;listener;", sb.toString());
+
+		sb.setLength(0);
+		eventBus.remove(late);
+		eventBus.fire(new Test01Event("3"));
+		eventBus.fire(new Test02Event("4"));
+		Assert.assertEquals("listener;listener;", sb.toString());
+	}
+
 	public interface Test01Handler
 			extends EventHandler {
 
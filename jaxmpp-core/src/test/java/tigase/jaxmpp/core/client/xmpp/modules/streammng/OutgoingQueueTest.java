@@ -0,0 +1,61 @@
+/*
+ * OutgoingQueueTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.streammng;
+
+import junit.framework.TestCase;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+
+import java.util.List;
+
+public class OutgoingQueueTest
+		extends TestCase {
+
+	public void testRetainLast() throws Exception {
+		OutgoingQueue queue = new OutgoingQueue();
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, queue.add(ElementFactory.create("m" + i), i));
+		}
+		assertEquals(100, queue.size());
+		assertEquals(4950, queue.getBytes());
+
+		assertEquals(90, queue.retainLast(10));
+		assertEquals(90, queue.getHeadSequence());
+		assertEquals(90 + 91 + 92 + 93 + 94 + 95 + 96 + 97 + 98 + 99, queue.getBytes());
+		assertEquals(0, queue.retainLast(20));
+
+		// wrapping around end of buffer
+		for (int i = 100; i < 120; i++) {
+			queue.add(ElementFactory.create("m" + i), 1);
+		}
+		assertEquals(25, queue.retainLast(5));
+		assertEquals(5, queue.getBytes());
+
+		List<Element> rest = queue.drain();
+		assertEquals(5, rest.size());
+		assertEquals("m115", rest.get(0).getName());
+		assertEquals("m119", rest.get(4).getName());
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getBytes());
+		assertEquals(120, queue.getHeadSequence());
+	}
+
+}
@@ -0,0 +1,333 @@
+/*
+ * StreamManagementModuleTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.streammng;
+
+import tigase.jaxmpp.core.client.*;
+import tigase.jaxmpp.core.client.connector.StreamError;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.ResourceBinderModule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StreamManagementModuleTest
+		extends AbstractJaxmppTest {
+
+	private final List<String> events = new ArrayList<String>();
+	private final List<Element> sent = new ArrayList<Element>();
+	private final List<Long> timers = new ArrayList<Long>();
+	private StreamManagementModule module;
+
+	private void ack(long h) throws Exception {
+		Element a = ElementFactory.create("a", null, StreamManagementModule.XMLNS);
+		a.setAttribute("h", String.valueOf(h));
+		module.process(a);
+	}
+
+	private void send(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			Element message = ElementFactory.create("message");
+			message.setAttribute("id", "m" + i);
+			module.processOutgoingElement(message);
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		module = new StreamManagementModule(new MockJaxmpp());
+		module.setContext(context);
+		module.setAckTimer(new StreamManagementModule.AckTimer() {
+			@Override
+			public void schedule(long delay) {
+				timers.add(delay);
+			}
+		});
+		module.addBackPressureHandler(new StreamManagementModule.BackPressureHandler() {
+			@Override
+			public void onBackPressure(SessionObject sessionObject, boolean congested, int queueSize,
+									   long queueBytes) {
+				events.add(congested + ":" + queueSize);
+			}
+		});
+		module.enable();
+		poll();
+	}
+
+	public void testAck() throws Exception {
+		module.getAckPolicy().setRequestStanzas(100);
+		send(10);
+		assertEquals(10, module.getOutgoingQueueSize());
+		assertEquals(0, module.getOutgoingQueueBytes());
+		ack(7);
+		assertEquals(3, module.getOutgoingQueueSize());
+		ack(10);
+		assertEquals(0, module.getOutgoingQueueSize());
+	}
+
+	public void testAckBatching() throws Exception {
+		module.getAckPolicy().setAckStanzas(3);
+		module.getAckPolicy().setAckDelay(0);
+		Element message = ElementFactory.create("message");
+		module.processIncomingStanza(message);
+		assertEquals(1, timers.size());
+		assertNull(poll());
+
+		// delay passed
+		assertEquals(-1, module.processAckTimers());
+		assertEquals("1", poll().getAttribute("h"));
+
+		module.getAckPolicy().setAckDelay(60 * 1000);
+		for (int i = 0; i < 3; i++) {
+			module.processIncomingStanza(message);
+		}
+		assertEquals("4", poll().getAttribute("h"));
+		assertNull(poll());
+	}
+
+	public void testBackPressure() throws Exception {
+		module.getAckPolicy().setRequestStanzas(100);
+		context.getSessionObject().setProperty(StreamManagementModule.OUTGOING_QUEUE_MAX_SIZE_KEY, 4);
+		send(6);
+		assertEquals("[true:5]", events.toString());
+		ack(2);
+		assertTrue(module.getOutgoingQueueSize() > 2);
+		assertEquals(1, events.size());
+		ack(4);
+		assertEquals("[true:5, false:2]", events.toString());
+	}
+
+	public void testByteLimit() throws Exception {
+		Element message = ElementFactory.create("message");
+		message.setAttribute("id", "m0");
+		final int bytes = message.getAsString().length();
+		context.getSessionObject()
+				.setProperty(StreamManagementModule.OUTGOING_QUEUE_MAX_BYTES_KEY, (long) (bytes * 3));
+		send(3);
+		assertEquals(bytes * 3, module.getOutgoingQueueBytes());
+		assertTrue(events.isEmpty());
+		send(1);
+		assertEquals("[true:4]", events.toString());
+	}
+
+	public void testRequest() throws Exception {
+		module.getAckPolicy().setRequestStanzas(3);
+		module.getAckPolicy().setIdleDelay(60 * 1000);
+		send(2);
+		assertTrue(sent.isEmpty());
+		send(1);
+		assertEquals(1, sent.size());
+		assertEquals("r", sent.get(0).getName());
+
+		// previous request is not answered yet
+		send(3);
+		assertEquals(1, sent.size());
+
+		ack(6);
+		assertTrue(module.getAckPolicy().getSmoothedRtt() >= 0);
+		send(3);
+		assertEquals(2, sent.size());
+	}
+
+	public void testRequestWhenIdle() throws Exception {
+		module.getAckPolicy().setIdleDelay(0);
+		send(1);
+		assertTrue(sent.isEmpty());
+		assertEquals(Long.valueOf(0), timers.get(0));
+
+		module.processAckTimers();
+		assertEquals(1, sent.size());
+		// nothing was sent after request
+		assertEquals(-1, module.processAckTimers());
+		assertEquals(1, sent.size());
+	}
+
+	public void testRestore() throws Exception {
+		final List<StreamManagementStore.State> saved = new ArrayList<StreamManagementStore.State>();
+		final StreamManagementStore.State stored = new StreamManagementStore.State();
+		stored.setResumptionId("sm-id");
+		stored.setBindedJid(JID.jidInstance("a@b.c/r"));
+		stored.setIncomingH(3);
+		stored.setOutgoingH(5);
+		stored.setTimestamp(System.currentTimeMillis());
+		List<Element> elements = new ArrayList<Element>();
+		elements.add(ElementFactory.create("message"));
+		elements.add(ElementFactory.create("iq"));
+		stored.setElements(elements);
+		StreamManagementModule.setStreamManagementStore(context.getSessionObject(), new StreamManagementStore() {
+			@Override
+			public void clear() {
+				saved.clear();
+			}
+
+			@Override
+			public State load() {
+				return stored;
+			}
+
+			@Override
+			public void onAcknowledged(long h) {
+			}
+
+			@Override
+			public void onIncoming(long h) {
+			}
+
+			@Override
+			public void onOutgoing(long h, Element stanza) {
+			}
+
+			@Override
+			public void save(State state) {
+				saved.add(state);
+			}
+		});
+
+		assertTrue(module.restore());
+		assertTrue(StreamManagementModule.isResumptionEnabled(context.getSessionObject()));
+		assertEquals(JID.jidInstance("a@b.c/r"), ResourceBinderModule.getBindedJID(context.getSessionObject()));
+		assertEquals(2, module.getOutgoingQueueSize());
+
+		Element resumed = ElementFactory.create("resumed", null, StreamManagementModule.XMLNS);
+		resumed.setAttribute("h", "4");
+		module.process(resumed);
+		assertEquals("iq", poll().getName());
+		assertNull(poll());
+		assertEquals(1, saved.size());
+		assertEquals("sm-id", saved.get(0).getResumptionId());
+
+		// expired
+		stored.setResumptionTime(60L);
+		stored.setTimestamp(System.currentTimeMillis() - 61 * 1000);
+		assertFalse(module.restore());
+		assertTrue(saved.isEmpty());
+	}
+
+	public void testResumed() throws Exception {
+		send(5);
+		Element resumed = ElementFactory.create("resumed", null, StreamManagementModule.XMLNS);
+		resumed.setAttribute("h", "3");
+		module.process(resumed);
+
+		// unacknowledged stanzas are sent again
+		assertEquals("m3", poll().getAttribute("id"));
+		assertEquals("m4", poll().getAttribute("id"));
+		assertNull(poll());
+	}
+
+	private class MockJaxmpp
+			extends JaxmppCore {
+
+		MockJaxmpp() {
+			this.connector = new MockConnector();
+		}
+
+		@Override
+		public void disconnect() throws JaxmppException {
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+		@Override
+		public <T extends ConnectionConfiguration> T getConnectionConfiguration() {
+			return null;
+		}
+
+		@Override
+		public void login() throws JaxmppException {
+		}
+
+		@Override
+		protected void onException(JaxmppException e) throws JaxmppException {
+		}
+
+		@Override
+		protected void onResourceBindSuccess(JID bindedJID) throws JaxmppException {
+		}
+
+		@Override
+		protected void onStreamError(StreamError condition, Throwable caught) throws JaxmppException {
+		}
+
+		@Override
+		protected void onStreamResumed(Long h, String previd) throws JaxmppException {
+		}
+
+		@Override
+		protected void onStreamTerminated() throws JaxmppException {
+		}
+	}
+
+	private class MockConnector
+			implements Connector {
+
+		@Override
+		public XmppSessionLogic createSessionLogic(XmppModulesManager modulesManager, PacketWriter writer) {
+			return null;
+		}
+
+		@Override
+		public State getState() {
+			return State.connected;
+		}
+
+		@Override
+		public boolean isCompressed() {
+			return false;
+		}
+
+		@Override
+		public boolean isSecure() {
+			return false;
+		}
+
+		@Override
+		public void keepalive() throws JaxmppException {
+		}
+
+		@Override
+		public void restartStream() throws JaxmppException {
+		}
+
+		@Override
+		public void send(Element stanza) throws JaxmppException {
+			sent.add(stanza);
+		}
+
+		@Override
+		public void start() throws JaxmppException {
+		}
+
+		@Override
+		public void stop() throws JaxmppException {
+		}
+
+		@Override
+		public void stop(boolean terminate) throws JaxmppException {
+		}
+	}
+
+}
@@ -97,7 +97,7 @@ public class GwtSessionObject
 	private CharSequence makeEntry(String jsonKey, String propsKey) {
 		StringBuilder sb = new StringBuilder();
 
-		Object v = properties.get(propsKey);
+		Object v = getEntries().get(propsKey);
 
 		sb.append("\"").append(jsonKey).append("\"").append(":").append("\"").append(v == null ? "" : v).append("\"");
 
@@ -106,11 +106,12 @@ public class GwtSessionObject
 
 	public void restore(final String value) throws RestoringSessionException {
 		JavaScriptObject jsObject = decodeJson(value);
-		JsonSerializationHelper helper = new JsonSerializationHelper(this, properties);
+		JsonSerializationHelper helper = new JsonSerializationHelper(this, getEntries());
 		try {
 			Map<String, Entry> map = (Map) helper.fromJSON(jsObject);
 			for (String key : map.keySet()) {
-				properties.put(key, map.get(key));
+				Entry e = map.get(key);
+				setProperty(e.scope, key, e.value);
 			}
 		} catch (JaxmppException ex) {
 			Logger.getLogger(GwtSessionObject.class.getName()).log(Level.SEVERE, null, ex);
@@ -120,7 +121,7 @@ public class GwtSessionObject
 
 	public String serialize() {
 		try {
-			JavaScriptObject jsObject = JsonSerializationHelper.toJSON(properties);
+			JavaScriptObject jsObject = JsonSerializationHelper.toJSON(getEntries());
 			// log("serialized object = ", jsObject);
 			return encodeJson(jsObject);
 		} catch (XMLException ex) {
@@ -132,17 +133,18 @@ public class GwtSessionObject
 
 	public void test() {
 		try {
-			JavaScriptObject jsObject = JsonSerializationHelper.toJSON(properties);
+			JavaScriptObject jsObject = JsonSerializationHelper.toJSON(getEntries());
 			// log("serialized object = ", jsObject);
-			JsonSerializationHelper helper = new JsonSerializationHelper(this, properties);
+			JsonSerializationHelper helper = new JsonSerializationHelper(this, getEntries());
 			Map<String, Entry> map = (Map) helper.fromJSON(jsObject);
 
-			Set<String> allKeys = new HashSet<String>(properties.keySet());
+			Map<String, Entry> entries = getEntries();
+			Set<String> allKeys = new HashSet<String>(entries.keySet());
 			allKeys.removeAll(map.keySet());
 
 			// log("not serialized/deserialized keys", "" + allKeys.size());
 			for (String key : allKeys) {
-				Entry e = properties.get(key);
+				Entry e = entries.get(key);
 				if (e.scope == Scope.stream) {
 					continue;
 				}
@@ -0,0 +1,80 @@
+/*
+ * ConcurrentUIDGenerator.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.UIDGenerator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free {@linkplain UIDGenerator}.
+ * <p>
+ * Each ID is value of shared atomic counter, scrambled by bijective function with random (per instance) key and
+ * encoded with 62 alphanumeric characters. Because function is bijective, IDs are unique for 2<sup>64</sup>
+ * calls, and they are not sequential. Random key makes IDs generated by different processes (or after restart)
+ * different.
+ */
+public class ConcurrentUIDGenerator
+		extends UIDGenerator {
+
+	/**
+	 * Length of each ID. 62<sup>11</sup> is greater than 2<sup>64</sup>.
+	 */
+	static final int LENGTH = 11;
+	private static final int BASE = 62;
+	private static final char[] DIGITS = ELEMENTS.toCharArray();
+	private final AtomicLong counter;
+	private final long key;
+
+	public ConcurrentUIDGenerator() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		this.key = random.nextLong();
+		this.counter = new AtomicLong(random.nextLong());
+	}
+
+	static long scramble(long x, long key) {
+		// every step is invertible
+		x = (x ^ key) * 0x9E3779B97F4A7C15L;
+		x ^= x >>> 30;
+		x *= 0xBF58476D1CE4E5B9L;
+		x ^= x >>> 27;
+		x *= 0x94D049BB133111EBL;
+		x ^= x >>> 31;
+		return x;
+	}
+
+	@Override
+	protected String nextUID() {
+		long x = scramble(counter.getAndIncrement(), key);
+		final char[] result = new char[LENGTH];
+		// first digit is calculated from unsigned value
+		final long q = Long.divideUnsigned(x, BASE);
+		result[LENGTH - 1] = DIGITS[(int) (x - q * BASE)];
+		x = q;
+		for (int i = LENGTH - 2; i >= 0; i--) {
+			result[i] = DIGITS[(int) (x % BASE)];
+			x /= BASE;
+		}
+		return new String(result);
+	}
+
+}
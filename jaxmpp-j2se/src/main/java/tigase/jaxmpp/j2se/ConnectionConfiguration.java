@@ -24,11 +24,14 @@ import tigase.jaxmpp.core.client.Connector;
 import tigase.jaxmpp.core.client.SessionObject;
 import tigase.jaxmpp.core.client.connector.AbstractBoshConnector;
 import tigase.jaxmpp.core.client.xmpp.modules.auth.AuthModule;
+import tigase.jaxmpp.j2se.connectors.nio.NioSocketConnector;
+import tigase.jaxmpp.j2se.connectors.nio.SelectorLoopGroup;
 import tigase.jaxmpp.j2se.connectors.socket.SocketConnector;
 
 import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.net.Proxy;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Connection configuration object.
@@ -126,6 +129,15 @@ public class ConnectionConfiguration
 		});
 	}
 
+	/**
+	 * Set group of selector loops used by non-blocking socket connector. If not set, default group is used.
+	 *
+	 * @param group group of selector loops.
+	 */
+	public void setSelectorLoopGroup(SelectorLoopGroup group) {
+		sessionObject.setUserProperty(NioSocketConnector.SELECTOR_LOOP_GROUP_KEY, group);
+	}
+
 	/**
 	 * Set server hostname. Not needed if it is equals to hostname of JID.
 	 *
@@ -135,6 +147,26 @@ public class ConnectionConfiguration
 		sessionObject.setUserProperty(SocketConnector.SERVER_HOST, server);
 	}
 
+	/**
+	 * Set custom factory of threads used by connectors and file transfers.
+	 *
+	 * @param threadFactory thread factory. If <code>null</code>, daemon platform threads are used.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		sessionObject.setUserProperty(ThreadFactories.THREAD_FACTORY_KEY, threadFactory);
+	}
+
+	/**
+	 * Enable or disable non-blocking socket connector. Default <code>false</code>. Non-blocking connector doesn't
+	 * create own threads, but it doesn't support proxies.
+	 *
+	 * @param useNonBlockingSocket <code>true</code> if {@linkplain NioSocketConnector} should be used for socket
+	 * connections.
+	 */
+	public void setUseNonBlockingSocket(boolean useNonBlockingSocket) {
+		sessionObject.setUserProperty(NioSocketConnector.NIO_ENABLED_KEY, useNonBlockingSocket);
+	}
+
 	/**
 	 * Enable o disable SASL. Default <code>true</code>.
 	 *
@@ -145,4 +177,15 @@ public class ConnectionConfiguration
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Use virtual threads for connectors and file transfers. Virtual threads are available since JDK 21.
+	 *
+	 * @param useVirtualThreads <code>true</code> to use virtual threads.
+	 *
+	 * @throws UnsupportedOperationException if virtual threads are not supported by JVM.
+	 */
+	public void setUseVirtualThreads(boolean useVirtualThreads) {
+		setThreadFactory(useVirtualThreads ? ThreadFactories.virtual("Jaxmpp-Virtual") : null);
+	}
+
+}
@@ -0,0 +1,384 @@
+/*
+ * FileRosterCacheProvider.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.IncrementalRosterCacheProvider;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterStore;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * {@linkplain IncrementalRosterCacheProvider} keeping rosters in local directory.
+ * <p>
+ * Roster of each account is kept in two binary files. Snapshot (<code>.roster</code>) contains version and all
+ * items, it is written to temporary file and atomically moved, when whole roster is received. Roster pushes are
+ * appended to log (<code>.roster.log</code>) as checksummed records, so received push doesn't rewrite whole roster.
+ * Loading reads snapshot and applies records of log created for the same snapshot (its generation). Incomplete last
+ * record is ignored. When many records are appended, snapshot is rewritten and log is removed.
+ */
+public class FileRosterCacheProvider
+		implements IncrementalRosterCacheProvider {
+
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+	private static final String LOG_SUFFIX = ".roster.log";
+	private static final int MAGIC = 0x4A585231;
+	private static final String SNAPSHOT_SUFFIX = ".roster";
+	private static final Logger log = Logger.getLogger(FileRosterCacheProvider.class.getName());
+	private final Map<BareJID, Account> accounts = new HashMap<BareJID, Account>();
+	private final int compactionThreshold;
+	private final File directory;
+
+	private static String fileName(BareJID jid) {
+		final String value = jid.toString();
+		final StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '@' ||
+					c == '.' || c == '-' || c == '_') {
+				sb.append(c);
+			} else {
+				sb.append('%').append(Integer.toHexString(c));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static RosterItem readItem(DataInput in, SessionObject sessionObject) throws IOException {
+		final RosterItem item = new RosterItem(BareJID.bareJIDInstance(in.readUTF()), sessionObject);
+		final int flags = in.readByte();
+		if ((flags & 1) != 0) {
+			item.setName(in.readUTF());
+		}
+		item.setAsk((flags & 2) != 0);
+		item.setApproved((flags & 4) != 0);
+		final int subscription = in.readByte();
+		item.setSubscription(subscription < 0 ? null : RosterItem.Subscription.values()[subscription]);
+		final int groups = in.readUnsignedShort();
+		for (int i = 0; i < groups; i++) {
+			item.getGroups().add(in.readUTF());
+		}
+		return item;
+	}
+
+	private static void writeItem(DataOutput out, RosterItem item) throws IOException {
+		out.writeUTF(item.getJid().toString());
+		final String name = item.getName();
+		out.writeByte((name == null ? 0 : 1) | (item.isAsk() ? 2 : 0) | (item.isApproved() ? 4 : 0));
+		if (name != null) {
+			out.writeUTF(name);
+		}
+		out.writeByte(item.getSubscription() == null ? -1 : item.getSubscription().ordinal());
+		final List<String> groups = item.getGroups();
+		out.writeShort(groups.size());
+		for (String group : groups) {
+			out.writeUTF(group);
+		}
+	}
+
+	public FileRosterCacheProvider(File directory) {
+		this(directory, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * @param directory directory to keep rosters in.
+	 * @param compactionThreshold number of appended roster pushes after which snapshot is rewritten.
+	 */
+	public FileRosterCacheProvider(File directory, int compactionThreshold) {
+		this.directory = directory;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	@Override
+	public synchronized String getCachedVersion(SessionObject sessionObject) {
+		final Account account = getAccount(sessionObject);
+		if (account == null) {
+			return null;
+		}
+		if (!account.loaded) {
+			read(account, sessionObject);
+		}
+		return account.version;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public synchronized Collection<RosterItem> loadCachedRoster(SessionObject sessionObject) {
+		final Account account = getAccount(sessionObject);
+		if (account == null) {
+			return null;
+		}
+		final Map<BareJID, RosterItem> items = read(account, sessionObject);
+		return items == null ? null : items.values();
+	}
+
+	@Override
+	public synchronized void updateReceivedItems(SessionObject sessionObject, String ver, Collection<RosterItem> items,
+												 Collection<BareJID> removed) {
+		final Account account = getAccount(sessionObject);
+		if (account == null) {
+			return;
+		}
+		if (!account.loaded) {
+			read(account, sessionObject);
+		}
+		if (!account.snapshot.exists()) {
+			// there is nothing to apply changes to
+			updateReceivedVersion(sessionObject, ver);
+			return;
+		}
+		try {
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+			final DataOutputStream out = new DataOutputStream(buffer);
+			out.writeLong(account.generation);
+			out.writeUTF(ver);
+			out.writeInt(items.size());
+			for (RosterItem item : items) {
+				writeItem(out, item);
+			}
+			out.writeInt(removed.size());
+			for (BareJID jid : removed) {
+				out.writeUTF(jid.toString());
+			}
+			out.flush();
+			append(account, buffer.toByteArray());
+			account.version = ver;
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't write to " + account.log, e);
+			return;
+		}
+		if (account.records > compactionThreshold) {
+			final Map<BareJID, RosterItem> content = read(account, sessionObject);
+			if (content != null) {
+				write(account, account.version, content.values());
+			}
+		}
+	}
+
+	@Override
+	public synchronized void updateReceivedVersion(SessionObject sessionObject, String ver) {
+		final Account account = getAccount(sessionObject);
+		final RosterStore store = RosterModule.getRosterStore(sessionObject);
+		if (account == null || store == null) {
+			return;
+		}
+		if (!account.loaded) {
+			read(account, sessionObject);
+		}
+		write(account, ver, store.getAll());
+	}
+
+	private void append(Account account, byte[] data) throws IOException {
+		final CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length + 8);
+		final DataOutputStream out = new DataOutputStream(buffer);
+		out.writeInt(data.length);
+		out.writeInt((int) crc.getValue());
+		out.write(data);
+		out.flush();
+		final FileOutputStream stream = new FileOutputStream(account.log, true);
+		try {
+			// single write, so record is never interleaved
+			buffer.writeTo(stream);
+		} finally {
+			stream.close();
+		}
+		++account.records;
+	}
+
+	private Account getAccount(SessionObject sessionObject) {
+		final BareJID jid = sessionObject.getUserBareJid();
+		if (jid == null) {
+			return null;
+		}
+		Account account = accounts.get(jid);
+		if (account == null) {
+			final String name = fileName(jid);
+			account = new Account(new File(directory, name + SNAPSHOT_SUFFIX), new File(directory, name + LOG_SUFFIX));
+			accounts.put(jid, account);
+		}
+		return account;
+	}
+
+	private Map<BareJID, RosterItem> read(Account account, SessionObject sessionObject) {
+		account.loaded = true;
+		account.version = null;
+		account.records = 0;
+		if (!account.snapshot.exists()) {
+			return null;
+		}
+		final LinkedHashMap<BareJID, RosterItem> items = new LinkedHashMap<BareJID, RosterItem>();
+		try {
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(account.snapshot)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Unknown format");
+				}
+				account.generation = in.readLong();
+				final String version = in.readUTF();
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final RosterItem item = readItem(in, sessionObject);
+					items.put(item.getJid(), item);
+				}
+				account.version = version;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't read " + account.snapshot, e);
+			return null;
+		}
+		if (account.log.exists()) {
+			try {
+				readLog(account, sessionObject, items);
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Can't read " + account.log, e);
+			}
+		}
+		return items;
+	}
+
+	private void readLog(Account account, SessionObject sessionObject, Map<BareJID, RosterItem> items)
+			throws IOException {
+		final long length = account.log.length();
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(account.log)));
+		long valid = 0;
+		try {
+			final CRC32 crc = new CRC32();
+			while (valid + 8 <= length) {
+				final int size = in.readInt();
+				final int checksum = in.readInt();
+				if (size < 0 || valid + 8 + size > length) {
+					break;
+				}
+				final byte[] data = new byte[size];
+				in.readFully(data);
+				crc.reset();
+				crc.update(data, 0, data.length);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				valid += data.length + 8;
+				final DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+				if (record.readLong() != account.generation) {
+					// log left after rewriting snapshot
+					continue;
+				}
+				final String version = record.readUTF();
+				final int count = record.readInt();
+				for (int i = 0; i < count; i++) {
+					final RosterItem item = readItem(record, sessionObject);
+					items.put(item.getJid(), item);
+				}
+				final int removed = record.readInt();
+				for (int i = 0; i < removed; i++) {
+					items.remove(BareJID.bareJIDInstance(record.readUTF()));
+				}
+				account.version = version;
+				++account.records;
+			}
+		} finally {
+			in.close();
+		}
+		if (valid < length) {
+			// last record may be incomplete, if application was killed during writing
+			log.fine("Ignoring broken record in " + account.log);
+			final FileChannel channel = FileChannel.open(account.log.toPath(), StandardOpenOption.WRITE);
+			try {
+				channel.truncate(valid);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	private void write(Account account, String ver, Collection<RosterItem> items) {
+		if (!directory.exists() && !directory.mkdirs()) {
+			log.warning("Can't create " + directory);
+			return;
+		}
+		// log records of previous snapshot are ignored, even if log can't be deleted
+		final long generation = Math.max(account.generation + 1, System.currentTimeMillis());
+		final File tmp = new File(account.snapshot.getPath() + ".tmp");
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+			try {
+				out.writeInt(MAGIC);
+				out.writeLong(generation);
+				out.writeUTF(ver == null ? "" : ver);
+				out.writeInt(items.size());
+				for (RosterItem item : items) {
+					writeItem(out, item);
+				}
+			} finally {
+				out.close();
+			}
+			Files.move(tmp.toPath(), account.snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					   StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't write " + account.snapshot, e);
+			return;
+		}
+		account.generation = generation;
+		account.version = ver;
+		account.records = 0;
+		account.loaded = true;
+		if (account.log.exists() && !account.log.delete()) {
+			log.warning("Can't delete " + account.log);
+		}
+	}
+
+	private static class Account {
+
+		private final File log;
+		private final File snapshot;
+		private long generation;
+		private boolean loaded;
+		private int records;
+		private String version;
+
+		Account(File snapshot, File log) {
+			this.snapshot = snapshot;
+			this.log = log;
+		}
+
+	}
+
+}
@@ -0,0 +1,378 @@
+/*
+ * FileStreamManagementStore.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.JID;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xml.XMLException;
+import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementStore;
+import tigase.jaxmpp.j2se.xml.J2seElement;
+import tigase.xml.DomBuilderHandler;
+import tigase.xml.SimpleParser;
+import tigase.xml.SingletonFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@linkplain StreamManagementStore} keeping state in local append-only file.
+ * <p>
+ * File contains one record per line: snapshot of state (written by {@linkplain #save(State)}), sent stanza,
+ * acknowledgement received from server and incoming counter. Every record is flushed immediately, so state survives
+ * restart (or crash) of application. Incomplete last record is ignored. When many records are appended, file is
+ * compacted to snapshot and stanzas not acknowledged yet.
+ * <p>
+ * Records are appended only after snapshot is saved, because without it state can't be resumed anyway (for example
+ * when stream management is enabled without resumption).
+ * <p>
+ * Instance must not be shared between sessions.
+ */
+public class FileStreamManagementStore
+		implements StreamManagementStore {
+
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+	private static final char ACK = 'A';
+	private static final char INCOMING = 'I';
+	private static final char OUTGOING = 'O';
+	private static final char SNAPSHOT = 'S';
+	private static final Logger log = Logger.getLogger(FileStreamManagementStore.class.getName());
+	private final int compactionThreshold;
+	private final File file;
+	private int records;
+	/**
+	 * If file starts with snapshot. <code>null</code> if file wasn't checked yet.
+	 */
+	private Boolean snapshot;
+	private Writer writer;
+
+	private static String escape(String value) {
+		StringBuilder sb = null;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			final String replacement = c == '\\' ? "\\\\" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+			if (replacement != null && sb == null) {
+				sb = new StringBuilder(value.length() + 16).append(value, 0, i);
+			}
+			if (sb != null) {
+				if (replacement == null) {
+					sb.append(c);
+				} else {
+					sb.append(replacement);
+				}
+			}
+		}
+		return sb == null ? value : sb.toString();
+	}
+
+	private static Element parse(String data) throws XMLException {
+		final SimpleParser parser = SingletonFactory.getParserInstance();
+		final DomBuilderHandler handler = new DomBuilderHandler();
+		final char[] chars = data.toCharArray();
+		parser.parse(handler, chars, 0, chars.length);
+		final tigase.xml.Element element = handler.getParsedElements().poll();
+		if (element == null) {
+			throw new XMLException("Can't parse stored stanza");
+		}
+		// elements may be modified when they are not acknowledged
+		return ElementFactory.create(new J2seElement(element));
+	}
+
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+		final StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				c = value.charAt(++i);
+				sb.append(c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	public FileStreamManagementStore(File file) {
+		this(file, DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * @param file file to keep state in.
+	 * @param compactionThreshold number of appended records after which file is compacted.
+	 */
+	public FileStreamManagementStore(File file, int compactionThreshold) {
+		this.file = file;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	@Override
+	public synchronized void clear() {
+		close();
+		records = 0;
+		snapshot = false;
+		if (file.exists() && !file.delete()) {
+			log.warning("Can't delete " + file);
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized State load() {
+		final Content content;
+		try {
+			content = read();
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't read " + file, e);
+			return null;
+		}
+		if (content == null) {
+			return null;
+		}
+		State state = content.state;
+		state.setIncomingH(content.incomingH);
+		state.setOutgoingH(content.outgoingH);
+		state.setTimestamp(file.lastModified());
+		List<Element> elements = new ArrayList<Element>(content.stanzas.size());
+		for (String stanza : content.stanzas) {
+			try {
+				elements.add(parse(stanza));
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Skipping stored stanza which can't be parsed", e);
+			}
+		}
+		state.setElements(elements);
+		return state;
+	}
+
+	@Override
+	public synchronized void onAcknowledged(long h) {
+		append(ACK + " " + h);
+	}
+
+	@Override
+	public synchronized void onIncoming(long h) {
+		append(INCOMING + " " + h);
+	}
+
+	@Override
+	public synchronized void onOutgoing(long h, Element stanza) {
+		try {
+			append(OUTGOING + " " + h + " " + escape(stanza.getAsString()));
+		} catch (XMLException e) {
+			log.log(Level.WARNING, "Can't serialize stanza", e);
+		}
+	}
+
+	@Override
+	public synchronized void save(State state) {
+		final List<Element> elements = state.getElements();
+		final List<String> stanzas = new ArrayList<String>(elements == null ? 0 : elements.size());
+		try {
+			if (elements != null) {
+				for (Element element : elements) {
+					stanzas.add(element.getAsString());
+				}
+			}
+		} catch (XMLException e) {
+			log.log(Level.WARNING, "Can't serialize stanza", e);
+			return;
+		}
+		write(state, state.getIncomingH(), state.getOutgoingH(), stanzas);
+	}
+
+	private void append(String record) {
+		if (!hasSnapshot()) {
+			return;
+		}
+		try {
+			if (writer == null) {
+				writer = new BufferedWriter(
+						new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+			}
+			writer.write(record);
+			writer.write('\n');
+			writer.flush();
+			++records;
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't write to " + file, e);
+			close();
+		}
+		if (records > compactionThreshold) {
+			compact();
+		}
+	}
+
+	private void close() {
+		if (writer != null) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log.log(Level.FINEST, "Can't close " + file, e);
+			}
+			writer = null;
+		}
+	}
+
+	private void compact() {
+		try {
+			final Content content = read();
+			if (content != null) {
+				write(content.state, content.incomingH, content.outgoingH, content.stanzas);
+			} else {
+				// records without snapshot are useless
+				new FileOutputStream(file).close();
+				snapshot = false;
+			}
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't compact " + file, e);
+		}
+		// don't read file again on each record, if compaction failed
+		records = 0;
+	}
+
+	private boolean hasSnapshot() {
+		if (snapshot == null) {
+			snapshot = false;
+			if (file.length() > 0) {
+				try {
+					final InputStream in = new FileInputStream(file);
+					try {
+						snapshot = in.read() == SNAPSHOT;
+					} finally {
+						in.close();
+					}
+					if (!snapshot) {
+						// records without snapshot are useless
+						new FileOutputStream(file).close();
+					}
+				} catch (IOException e) {
+					log.log(Level.WARNING, "Can't read " + file, e);
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	private Content read() throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		close();
+		Content content = null;
+		final ArrayDeque<Long> sequences = new ArrayDeque<Long>();
+		final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				final String[] parts = line.split(" ", line.charAt(0) == OUTGOING ? 3 : 6);
+				try {
+					if (line.charAt(0) == SNAPSHOT) {
+						content = new Content();
+						sequences.clear();
+						content.incomingH = Long.parseLong(parts[1]);
+						content.outgoingH = Long.parseLong(parts[2]);
+						content.state.setResumptionTime("-".equals(parts[3]) ? null : Long.valueOf(parts[3]));
+						content.state.setBindedJid("-".equals(parts[4]) ? null : JID.jidInstance(parts[4]));
+						content.state.setResumptionId(parts[5]);
+					} else if (content == null) {
+						continue;
+					} else if (line.charAt(0) == OUTGOING) {
+						final long h = Long.parseLong(parts[1]);
+						sequences.add(h);
+						content.stanzas.add(unescape(parts[2]));
+						content.outgoingH = Math.max(content.outgoingH, h);
+					} else if (line.charAt(0) == ACK) {
+						final long h = Long.parseLong(parts[1]);
+						while (!sequences.isEmpty() && sequences.peekFirst() <= h) {
+							sequences.removeFirst();
+							content.stanzas.removeFirst();
+						}
+					} else if (line.charAt(0) == INCOMING) {
+						content.incomingH = Long.parseLong(parts[1]);
+					}
+				} catch (RuntimeException e) {
+					// last record may be incomplete, if application was killed during writing
+					log.log(Level.FINE, "Ignoring broken record in " + file, e);
+					break;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return content;
+	}
+
+	private void write(State state, long incomingH, long outgoingH, Collection<String> stanzas) {
+		close();
+		final File tmp = new File(file.getPath() + ".tmp");
+		try {
+			final Writer w = new BufferedWriter(
+					new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8));
+			try {
+				final Long resumptionTime = state.getResumptionTime();
+				final JID jid = state.getBindedJid();
+				w.write(SNAPSHOT + " " + incomingH + " " + outgoingH + " " +
+								(resumptionTime == null ? "-" : resumptionTime.toString()) + " " +
+								(jid == null ? "-" : jid.toString()) + " " + state.getResumptionId() + "\n");
+				long h = outgoingH - stanzas.size();
+				for (String stanza : stanzas) {
+					w.write(OUTGOING + " " + (++h) + " " + escape(stanza) + "\n");
+				}
+			} finally {
+				w.close();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					   StandardCopyOption.ATOMIC_MOVE);
+			records = 0;
+			snapshot = true;
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Can't write " + file, e);
+		}
+	}
+
+	private static class Content {
+
+		private final State state = new State();
+		private final ArrayDeque<String> stanzas = new ArrayDeque<String>();
+		private long incomingH;
+		private long outgoingH;
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * FutureCallback.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.AsyncCallback;
+import tigase.jaxmpp.core.client.PacketWriter;
+import tigase.jaxmpp.core.client.XMPPException;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@linkplain AsyncCallback} completing {@linkplain CompletableFuture}.
+ * <p>
+ * Future is completed with response stanza of type <code>result</code>. Response of type <code>error</code>
+ * completes it exceptionally with {@linkplain ErrorResponseException}, and timeout with {@linkplain
+ * TimeoutException}.
+ * <p>
+ * Dependent actions are executed by thread completing future (usually thread processing received stanzas), so
+ * long running actions should use <code>*Async</code> methods of {@linkplain CompletableFuture}.
+ */
+public class FutureCallback
+		implements AsyncCallback {
+
+	private final CompletableFuture<Stanza> future;
+
+	/**
+	 * Writes IQ stanza and returns future of response.
+	 *
+	 * @param writer writer.
+	 * @param stanza IQ stanza to send.
+	 * @param timeout timeout in milliseconds or <code>null</code> to use default one.
+	 *
+	 * @return future completed when response is received or timeout expired. If stanza cannot be written, future is
+	 * completed exceptionally with {@linkplain JaxmppException}.
+	 */
+	public static CompletableFuture<Stanza> write(PacketWriter writer, Element stanza, Long timeout) {
+		final FutureCallback callback = new FutureCallback();
+		try {
+			writer.write(stanza, timeout, callback);
+		} catch (JaxmppException e) {
+			callback.future.completeExceptionally(e);
+		}
+		return callback.future;
+	}
+
+	public FutureCallback() {
+		this(new CompletableFuture<Stanza>());
+	}
+
+	public FutureCallback(CompletableFuture<Stanza> future) {
+		this.future = future;
+	}
+
+	public CompletableFuture<Stanza> getFuture() {
+		return future;
+	}
+
+	@Override
+	public void onError(Stanza responseStanza, XMPPException.ErrorCondition error) throws JaxmppException {
+		future.completeExceptionally(new ErrorResponseException(responseStanza, error));
+	}
+
+	@Override
+	public void onSuccess(Stanza responseStanza) throws JaxmppException {
+		future.complete(responseStanza);
+	}
+
+	@Override
+	public void onTimeout() throws JaxmppException {
+		future.completeExceptionally(new TimeoutException("No response for request"));
+	}
+
+	/**
+	 * Exception completing future, when response of type <code>error</code> is received.
+	 */
+	public static class ErrorResponseException
+			extends XMPPException {
+
+		private static final long serialVersionUID = 1L;
+		private final Stanza response;
+
+		public ErrorResponseException(Stanza response, ErrorCondition condition) {
+			super(condition);
+			this.response = response;
+		}
+
+		public Stanza getResponse() {
+			return response;
+		}
+
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * IqWindow.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.PacketWriter;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Sends IQ stanzas with limited number of requests waiting for response. It is useful for bulk operations (for
+ * example retrieving vCards of all roster items), where sending all requests at once would flood server.
+ * <p>
+ * Requests above limit are queued and sent when response for one of previous requests is received (or its timeout
+ * expired). No thread is blocked while waiting. Cancelling future of queued request removes it from queue.
+ */
+public class IqWindow {
+
+	private final Queue<Request> queue = new ArrayDeque<Request>();
+	private final BiConsumer<Stanza, Throwable> releaser = new BiConsumer<Stanza, Throwable>() {
+		@Override
+		public void accept(Stanza stanza, Throwable throwable) {
+			synchronized (IqWindow.this) {
+				--inFlight;
+			}
+			drain();
+		}
+	};
+	private final int size;
+	private final Long timeout;
+	private final PacketWriter writer;
+	private boolean draining;
+	private int inFlight;
+
+	/**
+	 * Creates window using default timeout of requests.
+	 *
+	 * @param writer writer used to send requests.
+	 * @param size maximum number of requests waiting for response.
+	 */
+	public IqWindow(PacketWriter writer, int size) {
+		this(writer, size, null);
+	}
+
+	/**
+	 * Creates window.
+	 *
+	 * @param writer writer used to send requests.
+	 * @param size maximum number of requests waiting for response.
+	 * @param timeout timeout of each request in milliseconds, counted from sending it.
+	 */
+	public IqWindow(PacketWriter writer, int size, Long timeout) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Size of window must be positive");
+		}
+		this.writer = writer;
+		this.size = size;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns number of sent requests waiting for response.
+	 */
+	public synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+	/**
+	 * Returns number of requests waiting to be sent.
+	 */
+	public synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Sends IQ stanza, or queues it if there is already maximum number of requests waiting for response.
+	 *
+	 * @param stanza IQ stanza.
+	 *
+	 * @return future of response. See {@linkplain FutureCallback} for details.
+	 */
+	public CompletableFuture<Stanza> submit(Element stanza) {
+		final Request request = new Request(stanza);
+		synchronized (this) {
+			queue.add(request);
+		}
+		drain();
+		return request.future;
+	}
+
+	private void drain() {
+		synchronized (this) {
+			if (draining) {
+				// other thread (or this one, higher in the stack) is sending requests
+				return;
+			}
+			draining = true;
+		}
+		while (true) {
+			final Request request;
+			synchronized (this) {
+				if (inFlight >= size || queue.isEmpty()) {
+					draining = false;
+					return;
+				}
+				request = queue.poll();
+				if (request.future.isDone()) {
+					continue;
+				}
+				++inFlight;
+			}
+			send(request);
+		}
+	}
+
+	private void send(Request request) {
+		request.future.whenComplete(releaser);
+		try {
+			writer.write(request.stanza, timeout, new FutureCallback(request.future));
+		} catch (JaxmppException | RuntimeException e) {
+			request.future.completeExceptionally(e);
+		}
+	}
+
+	private static final class Request {
+
+		private final CompletableFuture<Stanza> future = new CompletableFuture<Stanza>();
+		private final Element stanza;
+
+		Request(Element stanza) {
+			this.stanza = stanza;
+		}
+	}
+
+}
@@ -26,7 +26,9 @@ import tigase.jaxmpp.core.client.SessionObject.Scope;
 import tigase.jaxmpp.core.client.XmppSessionLogic.SessionListener;
 import tigase.jaxmpp.core.client.connector.ConnectorWrapper;
 import tigase.jaxmpp.core.client.connector.StreamError;
+import tigase.jaxmpp.core.client.criteria.CompiledCriteria;
 import tigase.jaxmpp.core.client.eventbus.Event;
+import tigase.jaxmpp.core.client.eventbus.EventBus;
 import tigase.jaxmpp.core.client.eventbus.EventHandler;
 import tigase.jaxmpp.core.client.eventbus.EventListener;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
@@ -39,17 +41,22 @@ import tigase.jaxmpp.core.client.xmpp.modules.auth.scram.ScramPlusMechanism;
 import tigase.jaxmpp.core.client.xmpp.modules.auth.scram.ScramSHA256Mechanism;
 import tigase.jaxmpp.core.client.xmpp.modules.auth.scram.ScramSHA256PlusMechanism;
 import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementModule;
+import tigase.jaxmpp.core.client.xmpp.stanzas.IQ;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
 import tigase.jaxmpp.core.client.xmpp.utils.DateTimeFormat;
 import tigase.jaxmpp.j2se.connectors.bosh.BoshConnector;
+import tigase.jaxmpp.j2se.connectors.nio.NioSocketConnector;
 import tigase.jaxmpp.j2se.connectors.socket.SocketConnector;
 import tigase.jaxmpp.j2se.connectors.websocket.WebSocketConnector;
 import tigase.jaxmpp.j2se.eventbus.ThreadSafeEventBus;
+import tigase.jaxmpp.j2se.xml.J2seElementAccessor;
 import tigase.jaxmpp.j2se.xmpp.modules.auth.saslmechanisms.ExternalMechanism;
 
-import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 /**
@@ -62,16 +69,19 @@ public class Jaxmpp
 	public static final String CONNECTOR_TYPE = "connectorType";
 	public static final String EXCEPTION_KEY = "jaxmpp#ThrowedException";
 	public static final String LOGIN_TIMEOUT_KEY = "LOGIN_TIMEOUT_KEY";
-	private static final Executor DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor();
+	private static final long CHECK_TIMEOUTS_PERIOD = 30 * 1000;
 
 	static {
 		DateTimeFormat.setProvider(new DateTimeFormatProviderImpl());
+		CompiledCriteria.addElementAccessor(new J2seElementAccessor());
+		UIDGenerator.setGenerator(new ConcurrentUIDGenerator());
 	}
 
+	private final AtomicReference<TimingWheel.Timeout> checkTimeoutsTask = new AtomicReference<TimingWheel.Timeout>();
 	private final ConnectorWrapper connectorWrapper = new ConnectorWrapper();
+	private Executor defaultExecutor;
 	private Executor executor;
 	private TimerTask loginTimeoutTask;
-	private Timer timer = null;
 
 	// private FileTransferManager fileTransferManager;
 
@@ -177,6 +187,21 @@ public class Jaxmpp
 		init();
 	}
 
+	/**
+	 * Creates client using given event bus, for example {@linkplain
+	 * ThreadSafeEventBus#ThreadSafeEventBus(StanzaExecutor) bus} sharing pool
+	 * of threads with other clients.
+	 *
+	 * @param sessionObject session object.
+	 * @param eventBus event bus.
+	 */
+	public Jaxmpp(SessionObject sessionObject, EventBus eventBus) {
+		super();
+		this.eventBus = eventBus;
+		this.sessionObject = sessionObject;
+		init();
+	}
+
 	protected void checkTimeouts() throws JaxmppException {
 		ResponseManager.getResponseManager(sessionObject).checkTimeouts();
 	}
@@ -184,6 +209,13 @@ public class Jaxmpp
 	protected Connector createConnector() throws JaxmppException {
 		if (sessionObject.getProperty(CONNECTOR_TYPE) == null ||
 				"socket".equals(sessionObject.getProperty(CONNECTOR_TYPE))) {
+			if (sessionObject.getProperty(NioSocketConnector.NIO_ENABLED_KEY) == Boolean.TRUE) {
+				if (sessionObject.getProperty(Connector.PROXY_HOST) == null) {
+					log.info("Using NioSocketConnector");
+					return new NioSocketConnector(context);
+				}
+				log.warning("Proxy is not supported by NioSocketConnector");
+			}
 			log.info("Using SocketConnector");
 			return new SocketConnector(context);
 		} else if ("bosh".equals(sessionObject.getProperty(CONNECTOR_TYPE))) {
@@ -246,20 +278,68 @@ public class Jaxmpp
 		return executor;
 	}
 
+	/**
+	 * Returns {@linkplain ThreadFactory} used by connectors and file transfers of this client.
+	 *
+	 * @return thread factory.
+	 */
+	public ThreadFactory getThreadFactory() {
+		return ThreadFactories.getThreadFactory(sessionObject);
+	}
+
+	/**
+	 * Sends IQ stanza to XMPP Server in current connection.
+	 *
+	 * @param stanza IQ stanza to send.
+	 *
+	 * @return future of response. See {@linkplain FutureCallback} for details.
+	 */
+	public CompletableFuture<Stanza> sendAsync(IQ stanza) {
+		return sendAsync(stanza, null);
+	}
+
+	/**
+	 * Sends IQ stanza to XMPP Server in current connection.
+	 *
+	 * @param stanza IQ stanza to send.
+	 * @param timeout maximum time to wait for response in miliseconds.
+	 *
+	 * @return future of response. See {@linkplain FutureCallback} for details.
+	 */
+	public CompletableFuture<Stanza> sendAsync(IQ stanza, Long timeout) {
+		return FutureCallback.write(this.writer, stanza, timeout);
+	}
+
 	/**
 	 * Sets custom {@linkplain Executor} for processing incoming stanzas in
-	 * modules.
+	 * modules. If <code>null</code>, stanzas are processed by lane of
+	 * {@linkplain StanzaExecutor#getDefault() default executor} assigned to
+	 * this client.
 	 *
 	 * @param executor executor
 	 */
 	public void setExecutor(Executor executor) {
 		if (executor == null) {
-			this.executor = DEFAULT_EXECUTOR;
+			if (defaultExecutor == null) {
+				defaultExecutor = StanzaExecutor.getDefault().next();
+			}
+			this.executor = defaultExecutor;
 		} else {
 			this.executor = executor;
 		}
 	}
 
+	/**
+	 * Sets custom {@linkplain ThreadFactory} used to create threads of connectors (reading and writing socket,
+	 * pings, BOSH requests) and file transfers. If <code>null</code>, daemon platform threads are created.
+	 *
+	 * @param threadFactory thread factory, for example {@linkplain ThreadFactories#virtual(String) factory of virtual
+	 * threads}.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		sessionObject.setUserProperty(ThreadFactories.THREAD_FACTORY_KEY, threadFactory);
+	}
+
 	// public FileTransferManager getFileTransferManager() {
 	// return fileTransferManager;
 	// }
@@ -319,12 +399,18 @@ public class Jaxmpp
 		// RosterModule.setRosterStore(sessionObject, new RosterStore());
 
 		if (ResponseManager.getResponseManager(sessionObject) == null) {
-			ResponseManager.setResponseManager(sessionObject, new ThreadSafeResponseManager());
+			ResponseManager.setResponseManager(sessionObject,
+											   new ThreadSafeResponseManager(TimingWheel.getDefault(), new Executor() {
+												   @Override
+												   public void execute(Runnable command) {
+													   Jaxmpp.this.execute(command);
+												   }
+											   }));
 		}
 
 		super.init();
 
-		setExecutor(DEFAULT_EXECUTOR);
+		setExecutor(null);
 
 		this.connector = this.connectorWrapper;
 
@@ -332,6 +418,11 @@ public class Jaxmpp
 
 		modulesInit();
 
+		StreamManagementModule streamManagementModule = getModule(StreamManagementModule.class);
+		if (streamManagementModule != null) {
+			streamManagementModule.setAckTimer(new AckTimer(streamManagementModule));
+		}
+
 		SaslModule saslModule = getModule(SaslModule.class);
 		if (saslModule != null) {
 			saslModule.addMechanism(new ScramMechanism(), true);
@@ -357,14 +448,7 @@ public class Jaxmpp
 	 * Connects to server.
 	 */
 	public synchronized void login() throws JaxmppException {
-		synchronized (this) {
-			if (timer != null) {
-				timer.cancel();
-			}
-
-			timer = new Timer("JaxmppJ2SETimer", true);
-			timer.schedule(new CheckTimeoutsTask(), 30 * 1000, 30 * 1000);
-		}
+		startCheckingTimeouts();
 		this.modulesManager.initIfRequired();
 
 		final Connector.State state = this.connectorWrapper.getState();
@@ -437,12 +521,7 @@ public class Jaxmpp
 	@Override
 	protected void onConnectorStopped() {
 		super.onConnectorStopped();
-		synchronized (this) {
-			if (timer != null) {
-				timer.cancel();
-			}
-			timer = null;
-		}
+		stopCheckingTimeouts();
 	}
 
 	@Override
@@ -456,11 +535,8 @@ public class Jaxmpp
 		} catch (Exception e1) {
 			log.log(Level.FINE, "Disconnecting error", e1);
 		}
+		stopCheckingTimeouts();
 		synchronized (Jaxmpp.this) {
-			if (timer != null) {
-				timer.cancel();
-				timer = null;
-			}
 			this.notify();
 		}
 		// XXX eventBus.fire(new LoggedOutEvent(sessionObject));
@@ -495,16 +571,77 @@ public class Jaxmpp
 		// XXX eventBus.fire(new LoggedOutEvent(sessionObject));
 	}
 
+	private void startCheckingTimeouts() {
+		TimingWheel.Timeout old = checkTimeoutsTask.getAndSet(
+				TimingWheel.getDefault().schedule(new CheckTimeoutsTask(), CHECK_TIMEOUTS_PERIOD));
+		if (old != null) {
+			old.cancel();
+		}
+	}
+
+	private void stopCheckingTimeouts() {
+		TimingWheel.Timeout old = checkTimeoutsTask.getAndSet(null);
+		if (old != null) {
+			old.cancel();
+		}
+	}
+
+	/**
+	 * Sends delayed acknowledgement requests and acknowledgements of {@linkplain StreamManagementModule}. Scheduled
+	 * by shared {@linkplain TimingWheel}, executed by stanza executor.
+	 */
+	private class AckTimer
+			implements StreamManagementModule.AckTimer, Runnable {
+
+		private final StreamManagementModule module;
+
+		AckTimer(StreamManagementModule module) {
+			this.module = module;
+		}
+
+		@Override
+		public void run() {
+			try {
+				module.processAckTimers();
+			} catch (JaxmppException e) {
+				log.log(Level.WARNING, "Problem on sending ACK", e);
+			}
+		}
+
+		@Override
+		public void schedule(long delay) {
+			TimingWheel.getDefault().schedule(new Runnable() {
+				@Override
+				public void run() {
+					execute(AckTimer.this);
+				}
+			}, delay);
+		}
+
+	}
+
+	/**
+	 * Periodically checks timeouts of {@linkplain ResponseManager}. It is executed by shared {@linkplain TimingWheel},
+	 * and {@linkplain ThreadSafeResponseManager} expires timeouts by itself, so usually it does nothing.
+	 */
 	private class CheckTimeoutsTask
-			extends TimerTask {
+			implements Runnable {
 
 		@Override
 		public void run() {
+			final TimingWheel.Timeout current = checkTimeoutsTask.get();
+			if (current == null || current.getTask() != this) {
+				return;
+			}
 			try {
 				checkTimeouts();
 			} catch (JaxmppException e) {
 				log.warning("Problem on checking timeouts");
 			}
+			final TimingWheel.Timeout next = TimingWheel.getDefault().schedule(this, CHECK_TIMEOUTS_PERIOD);
+			if (!checkTimeoutsTask.compareAndSet(current, next)) {
+				next.cancel();
+			}
 		}
 
 	}
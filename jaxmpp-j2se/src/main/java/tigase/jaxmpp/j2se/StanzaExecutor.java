@@ -0,0 +1,235 @@
+/*
+ * StanzaExecutor.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor processing incoming stanzas of many clients with fixed number of {@linkplain Lane lanes}. Each lane is
+ * one worker thread with own queue, and each client is pinned to one lane, so stanzas of client are processed in
+ * order they were received, while clients assigned to different lanes are processed in parallel. Slow handler
+ * stalls only clients sharing its lane.
+ * <p>
+ * {@linkplain #getDefault() Default} executor is shared by all {@linkplain Jaxmpp} instances in JVM.
+ */
+public class StanzaExecutor {
+
+	private static final Logger log = Logger.getLogger(StanzaExecutor.class.getName());
+	private static StanzaExecutor defaultExecutor;
+	private final Lane[] lanes;
+	private final AtomicInteger nextLane = new AtomicInteger();
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * Returns default executor shared by all clients in JVM. It is created on first use and contains one lane per
+	 * available processor.
+	 *
+	 * @return default executor.
+	 */
+	public static synchronized StanzaExecutor getDefault() {
+		if (defaultExecutor == null) {
+			defaultExecutor = new StanzaExecutor(Runtime.getRuntime().availableProcessors(),
+												 ThreadFactories.platform());
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Creates executor. Lane threads are started on first task.
+	 *
+	 * @param size number of lanes.
+	 * @param threadFactory factory creating threads of lanes.
+	 */
+	public StanzaExecutor(int size, ThreadFactory threadFactory) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Executor must contain at least one lane");
+		}
+		this.threadFactory = threadFactory;
+		this.lanes = new Lane[size];
+		for (int i = 0; i < size; i++) {
+			lanes[i] = new Lane(i);
+		}
+	}
+
+	/**
+	 * Returns lane assigned to given key. The same key is always assigned to the same lane.
+	 *
+	 * @param key key, for example JID of account.
+	 *
+	 * @return lane executing tasks of key.
+	 */
+	public Lane getLane(Object key) {
+		int h = key == null ? 0 : key.hashCode();
+		h ^= (h >>> 16);
+		return lanes[(h & Integer.MAX_VALUE) % lanes.length];
+	}
+
+	/**
+	 * Returns all lanes of executor, to inspect their load.
+	 *
+	 * @return list of lanes.
+	 */
+	public List<Lane> getLanes() {
+		return Collections.unmodifiableList(Arrays.asList(lanes));
+	}
+
+	public int getSize() {
+		return lanes.length;
+	}
+
+	/**
+	 * Returns lane which should be used by next client. Lanes are assigned in round-robin fashion.
+	 *
+	 * @return lane.
+	 */
+	public Lane next() {
+		return lanes[(nextLane.getAndIncrement() & Integer.MAX_VALUE) % lanes.length];
+	}
+
+	/**
+	 * Single worker thread of executor. Tasks passed to lane are executed one by one, in order of submission.
+	 */
+	public final class Lane
+			implements Executor, Runnable {
+
+		private final int index;
+		private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+		private volatile long busyTime;
+		private volatile long completedTasks;
+		private volatile long startTime;
+		private volatile long taskStartTime;
+		private volatile Thread thread;
+
+		private Lane(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (task == null) {
+				throw new NullPointerException();
+			}
+			if (thread == null) {
+				startThread();
+			}
+			queue.offer(task);
+		}
+
+		/**
+		 * Returns total time spent on executing tasks.
+		 *
+		 * @return busy time in milliseconds.
+		 */
+		public long getBusyTime() {
+			long running = taskStartTime;
+			long busy = busyTime;
+			if (running != 0) {
+				busy += System.nanoTime() - running;
+			}
+			return busy / 1000000;
+		}
+
+		/**
+		 * Returns number of executed tasks.
+		 *
+		 * @return number of tasks.
+		 */
+		public long getCompletedTasks() {
+			return completedTasks;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns number of tasks waiting in queue.
+		 *
+		 * @return queue depth.
+		 */
+		public int getQueueSize() {
+			return queue.size();
+		}
+
+		/**
+		 * Returns utilisation of lane: part of time since start of lane spent on executing tasks.
+		 *
+		 * @return value between 0 and 1.
+		 */
+		public double getUtilization() {
+			long start = startTime;
+			if (start == 0) {
+				return 0;
+			}
+			long elapsed = System.nanoTime() - start;
+			return elapsed <= 0 ? 0 : Math.min(1d, getBusyTime() * 1000000d / elapsed);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final Runnable task;
+				try {
+					task = queue.take();
+				} catch (InterruptedException e) {
+					continue;
+				}
+				final long start = System.nanoTime();
+				taskStartTime = start;
+				try {
+					task.run();
+				} catch (Throwable e) {
+					log.log(Level.WARNING, "Exception in stanza processing task", e);
+				} finally {
+					taskStartTime = 0;
+					busyTime += System.nanoTime() - start;
+					completedTasks++;
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Lane[" + index + ", queue=" + getQueueSize() + ", completed=" + completedTasks + "]";
+		}
+
+		private synchronized void startThread() {
+			if (thread != null) {
+				return;
+			}
+			Thread t = threadFactory.newThread(this);
+			t.setName("Jaxmpp-Stanza-Lane-" + index);
+			startTime = System.nanoTime();
+			t.start();
+			thread = t;
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * ThreadFactories.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import tigase.jaxmpp.core.client.SessionObject;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Source of threads used by connectors (readers, writers, pings, BOSH requests) and file transfers.
+ * <p>
+ * Factory may be set for session with {@link #THREAD_FACTORY_KEY} property (see {@linkplain
+ * Jaxmpp#setThreadFactory(ThreadFactory)} and {@linkplain ConnectionConfiguration#setUseVirtualThreads(boolean)}).
+ * If it isn't set, daemon platform threads are created, as before. On JDK 21 or newer {@linkplain
+ * #virtual(String) virtual threads} may be used, so blocking connection costs few kilobytes of memory instead of
+ * whole thread stack.
+ */
+public final class ThreadFactories {
+
+	/**
+	 * Property to specify {@linkplain ThreadFactory} used to create threads of session.
+	 */
+	public static final String THREAD_FACTORY_KEY = "jaxmpp#ThreadFactory";
+	private static final ThreadFactory PLATFORM = platform();
+	private static final Logger log = Logger.getLogger(ThreadFactories.class.getName());
+	private static Boolean virtualThreadsSupported;
+
+	/**
+	 * Returns factory configured for session, or factory of daemon platform threads.
+	 *
+	 * @param sessionObject session object. May be <code>null</code>.
+	 *
+	 * @return thread factory.
+	 */
+	public static ThreadFactory getThreadFactory(SessionObject sessionObject) {
+		ThreadFactory factory = sessionObject == null ? null : sessionObject.<ThreadFactory>getProperty(
+				THREAD_FACTORY_KEY);
+		return factory == null ? PLATFORM : factory;
+	}
+
+	/**
+	 * Checks if JVM supports virtual threads.
+	 *
+	 * @return <code>true</code> if virtual threads may be created.
+	 */
+	public static synchronized boolean isVirtualThreadsSupported() {
+		if (virtualThreadsSupported == null) {
+			try {
+				virtual("test");
+				virtualThreadsSupported = true;
+			} catch (UnsupportedOperationException e) {
+				virtualThreadsSupported = false;
+			}
+		}
+		return virtualThreadsSupported;
+	}
+
+	/**
+	 * Creates thread (not started) using factory configured for session.
+	 *
+	 * @param sessionObject session object. May be <code>null</code>.
+	 * @param name name of thread.
+	 * @param task task executed by thread.
+	 *
+	 * @return new thread.
+	 */
+	public static Thread newThread(SessionObject sessionObject, String name, Runnable task) {
+		Thread thread = getThreadFactory(sessionObject).newThread(task);
+		thread.setName(name);
+		return thread;
+	}
+
+	/**
+	 * Returns factory of daemon platform threads.
+	 *
+	 * @return thread factory.
+	 */
+	public static ThreadFactory platform() {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 * Returns factory of virtual threads. Virtual threads are available since JDK 21.
+	 *
+	 * @param prefix prefix of names of created threads.
+	 *
+	 * @return thread factory.
+	 *
+	 * @throws UnsupportedOperationException if JVM doesn't support virtual threads.
+	 */
+	public static ThreadFactory virtual(String prefix) {
+		try {
+			// called by reflection, because library is compiled for Java 8
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Method name = builderClass.getMethod("name", String.class, long.class);
+			builder = name.invoke(builder, prefix + "-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			log.log(Level.FINEST, "Virtual threads are not supported", e);
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+		}
+	}
+
+	private ThreadFactories() {
+	}
+
+}
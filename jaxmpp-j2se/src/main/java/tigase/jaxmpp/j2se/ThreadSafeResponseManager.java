@@ -22,18 +22,100 @@
 package tigase.jaxmpp.j2se;
 
 import tigase.jaxmpp.core.client.ResponseManager;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 
+/**
+ * {@linkplain ResponseManager} which may be used by many threads. Timeout of each request is scheduled on shared
+ * {@linkplain TimingWheel}, so there is no need to periodically scan all waiting requests. Wheel only passes expired
+ * request to executor, which calls timeout callback.
+ */
 public class ThreadSafeResponseManager
 		extends ResponseManager {
 
-	private final Map<String, Entry> handlers = new ConcurrentHashMap<String, ResponseManager.Entry>();
+	private static final Executor DIRECT_EXECUTOR = new Executor() {
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+	private final Executor executor;
+	private final ConcurrentMap<String, Entry> handlers = new ConcurrentHashMap<String, ResponseManager.Entry>();
+	private final TimingWheel timingWheel;
+
+	/**
+	 * Creates response manager which calls timeout callbacks in thread of shared {@linkplain TimingWheel}. Callbacks
+	 * must be short.
+	 */
+	public ThreadSafeResponseManager() {
+		this(TimingWheel.getDefault());
+	}
+
+	public ThreadSafeResponseManager(TimingWheel timingWheel) {
+		this(timingWheel, DIRECT_EXECUTOR);
+	}
+
+	/**
+	 * @param timingWheel wheel which expires requests.
+	 * @param executor executor of timeout callbacks, for example executor of session.
+	 */
+	public ThreadSafeResponseManager(TimingWheel timingWheel, Executor executor) {
+		this.timingWheel = timingWheel;
+		this.executor = executor;
+	}
+
+	/**
+	 * Does nothing. Timeouts are expired by {@linkplain TimingWheel}.
+	 */
+	@Override
+	public void checkTimeouts() throws JaxmppException {
+	}
 
 	@Override
-	protected Map<String, Entry> getHandlers() {
+	protected ConcurrentMap<String, Entry> getHandlers() {
 		return this.handlers;
 	}
 
+	@Override
+	protected void onHandlerRegistered(final Entry entry) {
+		final Runnable timeoutTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					onTimeout(entry);
+				} catch (JaxmppException e) {
+					log.log(Level.WARNING, "Problem on processing timeout of request id=" + entry.getStanzaId(), e);
+				}
+			}
+		};
+		entry.setTimeoutTask(timingWheel.schedule(new Runnable() {
+			@Override
+			public void run() {
+				// wheel thread is shared by all sessions, callback mustn't block it
+				executor.execute(timeoutTask);
+			}
+		}, entry.getTimeout()));
+	}
+
+	@Override
+	protected void onHandlerRemoved(Entry entry) {
+		final Object task = entry.getTimeoutTask();
+		if (task instanceof TimingWheel.Timeout) {
+			((TimingWheel.Timeout) task).cancel();
+		}
+	}
+
+	@Override
+	protected boolean removeHandler(String id, Entry entry) {
+		if (!handlers.remove(id, entry)) {
+			return false;
+		}
+		onHandlerRemoved(entry);
+		return true;
+	}
+
 }
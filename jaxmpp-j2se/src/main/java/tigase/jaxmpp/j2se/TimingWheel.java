@@ -0,0 +1,351 @@
+/*
+ * TimingWheel.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel for large number of timeouts, for example timeouts of sent IQ stanzas of many clients.
+ * <p>
+ * Wheel is array of buckets, and one bucket is checked on each tick. Scheduling and cancelling timeout is O(1), and
+ * each tick visits only timeouts in one bucket. Timeouts are expired at most one tick late. Tasks of expired timeouts
+ * are executed by thread of wheel, so they should be short.
+ * <p>
+ * When there is no scheduled timeouts, thread of wheel doesn't wake up on ticks.
+ */
+public class TimingWheel {
+
+	/**
+	 * Default duration of tick in milliseconds.
+	 */
+	public static final long DEFAULT_TICK = 10;
+	private static final int DEFAULT_WHEEL_SIZE = 512;
+	private static final Logger log = Logger.getLogger(TimingWheel.class.getName());
+	private static TimingWheel defaultWheel;
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+	private final Bucket[] buckets;
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+	private final int mask;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final long startTime = System.nanoTime();
+	private final ThreadFactory threadFactory;
+	private final long tickNanos;
+	private volatile boolean idle;
+	private volatile boolean shutdown;
+	private long tick;
+	private volatile Thread worker;
+
+	/**
+	 * Returns wheel shared by all clients in JVM.
+	 *
+	 * @return default wheel.
+	 */
+	public static synchronized TimingWheel getDefault() {
+		if (defaultWheel == null) {
+			defaultWheel = new TimingWheel(DEFAULT_TICK, DEFAULT_WHEEL_SIZE, ThreadFactories.platform());
+		}
+		return defaultWheel;
+	}
+
+	/**
+	 * Creates wheel. Thread of wheel is started when first timeout is scheduled.
+	 *
+	 * @param tickMillis duration of tick in milliseconds (precision of timeouts).
+	 * @param wheelSize number of buckets. It is rounded up to power of 2.
+	 * @param threadFactory factory creating thread of wheel.
+	 */
+	public TimingWheel(long tickMillis, int wheelSize, ThreadFactory threadFactory) {
+		if (tickMillis < 1) {
+			throw new IllegalArgumentException("Tick must be at least 1 ms");
+		}
+		if (wheelSize < 1 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid size of wheel: " + wheelSize);
+		}
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		this.buckets = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			buckets[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Returns number of scheduled timeouts, which are not expired or cancelled.
+	 *
+	 * @return number of timeouts.
+	 */
+	public int getPendingCount() {
+		return pending.get();
+	}
+
+	/**
+	 * Schedules task to be executed after delay.
+	 *
+	 * @param task task to execute.
+	 * @param delay delay in milliseconds.
+	 *
+	 * @return timeout, which may be cancelled.
+	 */
+	public Timeout schedule(Runnable task, long delay) {
+		if (task == null) {
+			throw new NullPointerException();
+		}
+		if (shutdown) {
+			throw new IllegalStateException("Timing wheel is stopped");
+		}
+		if (worker == null) {
+			startWorker();
+		}
+		final Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime +
+				TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay)));
+		added.add(timeout);
+		pending.incrementAndGet();
+		if (idle) {
+			LockSupport.unpark(worker);
+		}
+		return timeout;
+	}
+
+	/**
+	 * Stops thread of wheel. Scheduled tasks will not be executed.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		final Thread t = worker;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+		synchronized (TimingWheel.class) {
+			if (defaultWheel == this) {
+				defaultWheel = null;
+			}
+		}
+	}
+
+	private void expire(final Bucket bucket, final long now) {
+		Timeout timeout = bucket.head;
+		while (timeout != null) {
+			final Timeout next = timeout.next;
+			if (timeout.state != Timeout.ST_INIT) {
+				bucket.remove(timeout);
+			} else if (timeout.remainingRounds <= 0 && timeout.deadline <= now) {
+				bucket.remove(timeout);
+				if (Timeout.STATE.compareAndSet(timeout, Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+					pending.decrementAndGet();
+					try {
+						timeout.task.run();
+					} catch (Throwable e) {
+						log.log(Level.WARNING, "Exception in task of timeout", e);
+					}
+				}
+			} else if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+			}
+			timeout = next;
+		}
+	}
+
+	private void processCancelled() {
+		Timeout timeout;
+		while ((timeout = cancelled.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	private void run() {
+		while (!shutdown) {
+			final long now = waitForNextTick();
+			if (shutdown) {
+				break;
+			}
+			processCancelled();
+			transferAdded();
+			expire(buckets[(int) (tick & mask)], now);
+			tick++;
+		}
+	}
+
+	private synchronized void startWorker() {
+		if (worker != null) {
+			return;
+		}
+		Thread t = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				TimingWheel.this.run();
+			}
+		});
+		t.setName("Jaxmpp-Timing-Wheel");
+		worker = t;
+		t.start();
+	}
+
+	private void transferAdded() {
+		Timeout timeout;
+		while ((timeout = added.poll()) != null) {
+			if (timeout.state != Timeout.ST_INIT) {
+				continue;
+			}
+			final long calculated = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (calculated - tick) / buckets.length;
+			// timeout from the past is expired on current tick
+			final long ticks = Math.max(calculated, tick);
+			buckets[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private long waitForNextTick() {
+		while (true) {
+			if (pending.get() == 0 && added.isEmpty()) {
+				processCancelled();
+				idle = true;
+				if (pending.get() == 0 && added.isEmpty() && !shutdown) {
+					LockSupport.park(this);
+				}
+				idle = false;
+				// wheel is empty, so skipped ticks don't need to be visited
+				tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+				if (shutdown) {
+					return 0;
+				}
+				continue;
+			}
+			final long deadline = tickNanos * (tick + 1);
+			final long now = System.nanoTime() - startTime;
+			final long sleep = deadline - now;
+			if (sleep <= 0) {
+				return now;
+			}
+			LockSupport.parkNanos(this, sleep);
+			if (shutdown) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Scheduled task.
+	 */
+	public static final class Timeout {
+
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+		private static final int ST_INIT = 0;
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(
+				Timeout.class, "state");
+		private final long deadline;
+		private final Runnable task;
+		private final TimingWheel wheel;
+		private Bucket bucket;
+		private Timeout next;
+		private Timeout prev;
+		private long remainingRounds;
+		private volatile int state = ST_INIT;
+
+		private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+			this.wheel = wheel;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels timeout. Task will not be executed.
+		 *
+		 * @return <code>true</code> if timeout was cancelled, <code>false</code> if it is already expired or
+		 * cancelled.
+		 */
+		public boolean cancel() {
+			if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			wheel.pending.decrementAndGet();
+			wheel.cancelled.add(this);
+			return true;
+		}
+
+		public Runnable getTask() {
+			return task;
+		}
+
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state == ST_EXPIRED;
+		}
+	}
+
+	/**
+	 * Doubly linked list of timeouts. Modified only by thread of wheel.
+	 */
+	private static final class Bucket {
+
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.next = null;
+			timeout.prev = null;
+			timeout.bucket = null;
+		}
+	}
+
+}
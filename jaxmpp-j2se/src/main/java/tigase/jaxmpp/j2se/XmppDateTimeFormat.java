@@ -0,0 +1,226 @@
+/*
+ * XmppDateTimeFormat.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+/**
+ * Parser and formatter of XEP-0082 profiles: <code>CCYY-MM-DDThh:mm:ss[.sss]TZD</code> (DateTime),
+ * <code>CCYY-MM-DD</code> (Date) and <code>hh:mm:ss[.sss][TZD]</code> (Time).
+ * <p>
+ * Methods are static and thread-safe. Parsing doesn't allocate objects, it works directly on {@linkplain
+ * CharSequence} and returns milliseconds since epoch. Date is calculated arithmetically, without {@linkplain
+ * java.util.Calendar}.
+ */
+public final class XmppDateTimeFormat {
+
+	private static final int DATE_TIME_LENGTH = 24;
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Appends date in DateTime profile (UTC, with milliseconds), for example <code>2002-09-10T23:41:07.000Z</code>.
+	 *
+	 * @param millis milliseconds since epoch.
+	 * @param sb builder.
+	 *
+	 * @return given builder.
+	 */
+	public static StringBuilder appendTo(long millis, StringBuilder sb) {
+		final long days = Math.floorDiv(millis, MILLIS_PER_DAY);
+		int msOfDay = (int) Math.floorMod(millis, MILLIS_PER_DAY);
+
+		// civil date from days, see http://howardhinnant.github.io/date_algorithms.html
+		final long z = days + 719468;
+		final long era = (z >= 0 ? z : z - 146096) / 146097;
+		final int doe = (int) (z - era * 146097);
+		final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		final int mp = (5 * doy + 2) / 153;
+		final int day = doy - (153 * mp + 2) / 5 + 1;
+		final int month = mp < 10 ? mp + 3 : mp - 9;
+		final long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+		if (year >= 0 && year < 1000) {
+			append(sb, (int) year, 4);
+		} else {
+			sb.append(year);
+		}
+		sb.append('-');
+		append(sb, month, 2);
+		sb.append('-');
+		append(sb, day, 2);
+		sb.append('T');
+		append(sb, msOfDay / 3600000, 2);
+		msOfDay %= 3600000;
+		sb.append(':');
+		append(sb, msOfDay / 60000, 2);
+		msOfDay %= 60000;
+		sb.append(':');
+		append(sb, msOfDay / 1000, 2);
+		sb.append('.');
+		append(sb, msOfDay % 1000, 3);
+		sb.append('Z');
+		return sb;
+	}
+
+	/**
+	 * Formats date in DateTime profile (UTC, with milliseconds), for example <code>2002-09-10T23:41:07.000Z</code>.
+	 *
+	 * @param millis milliseconds since epoch.
+	 *
+	 * @return formatted date.
+	 */
+	public static String format(long millis) {
+		return appendTo(millis, new StringBuilder(DATE_TIME_LENGTH)).toString();
+	}
+
+	/**
+	 * Parses date in DateTime, Date or Time profile. Date without time is midnight UTC, time without date is
+	 * calculated from 1970-01-01. Missing time zone means UTC. Fraction of second is truncated to milliseconds.
+	 *
+	 * @param value date to parse.
+	 *
+	 * @return milliseconds since epoch.
+	 *
+	 * @throws IllegalArgumentException if value cannot be parsed.
+	 */
+	public static long parse(final CharSequence value) {
+		final int length = value.length();
+		long days = 0;
+		int pos = 0;
+		if (length >= 10 && value.charAt(4) == '-') {
+			final int year = digits(value, 0, 4);
+			final int month = digits(value, 5, 2);
+			final int day = digits(value, 8, 2);
+			if (value.charAt(7) != '-' || month < 1 || month > 12 || day < 1 || day > 31) {
+				throw invalid(value);
+			}
+			days = daysFromCivil(year, month, day);
+			if (length == 10) {
+				return days * MILLIS_PER_DAY;
+			}
+			if (value.charAt(10) != 'T') {
+				throw invalid(value);
+			}
+			pos = 11;
+		}
+
+		if (length < pos + 8 || value.charAt(pos + 2) != ':' || value.charAt(pos + 5) != ':') {
+			throw invalid(value);
+		}
+		final int hour = digits(value, pos, 2);
+		final int minute = digits(value, pos + 3, 2);
+		final int second = digits(value, pos + 6, 2);
+		if (hour > 23 || minute > 59 || second > 60) {
+			throw invalid(value);
+		}
+		pos += 8;
+
+		int millis = 0;
+		if (pos < length && value.charAt(pos) == '.') {
+			++pos;
+			final int start = pos;
+			int scale = 100;
+			while (pos < length && isDigit(value.charAt(pos))) {
+				millis += (value.charAt(pos) - '0') * scale;
+				scale /= 10;
+				++pos;
+			}
+			if (pos == start) {
+				throw invalid(value);
+			}
+		}
+
+		int offset = 0;
+		if (pos < length) {
+			final char c = value.charAt(pos);
+			if (c == 'Z') {
+				++pos;
+			} else if (c == '+' || c == '-') {
+				final int tzHours = digits(value, pos + 1, 2);
+				pos += 3;
+				if (pos < length && value.charAt(pos) == ':') {
+					++pos;
+				}
+				final int tzMinutes = digits(value, pos, 2);
+				pos += 2;
+				if (tzHours > 23 || tzMinutes > 59) {
+					throw invalid(value);
+				}
+				offset = (tzHours * 60 + tzMinutes) * 60000;
+				if (c == '-') {
+					offset = -offset;
+				}
+			}
+			if (pos != length) {
+				throw invalid(value);
+			}
+		}
+
+		return days * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000 + millis - offset;
+	}
+
+	private static void append(StringBuilder sb, int value, int width) {
+		if (width >= 4) {
+			sb.append((char) ('0' + value / 1000 % 10));
+		}
+		if (width >= 3) {
+			sb.append((char) ('0' + value / 100 % 10));
+		}
+		sb.append((char) ('0' + value / 10 % 10));
+		sb.append((char) ('0' + value % 10));
+	}
+
+	private static long daysFromCivil(int year, int month, int day) {
+		// see http://howardhinnant.github.io/date_algorithms.html
+		final int y = month <= 2 ? year - 1 : year;
+		final int era = (y >= 0 ? y : y - 399) / 400;
+		final int yoe = y - era * 400;
+		final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+
+	private static int digits(CharSequence value, int start, int count) {
+		if (start + count > value.length()) {
+			throw invalid(value);
+		}
+		int result = 0;
+		for (int i = start; i < start + count; i++) {
+			final char c = value.charAt(i);
+			if (!isDigit(c)) {
+				throw invalid(value);
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static IllegalArgumentException invalid(CharSequence value) {
+		return new IllegalArgumentException("Can't parse datetime, date or time: " + value);
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private XmppDateTimeFormat() {
+	}
+
+}
@@ -33,6 +33,7 @@ import tigase.jaxmpp.core.client.xmpp.modules.socks5.Socks5BytestreamsModule;
 import tigase.jaxmpp.core.client.xmpp.modules.socks5.Socks5BytestreamsModule.ActivateCallback;
 import tigase.jaxmpp.core.client.xmpp.modules.socks5.Streamhost;
 import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.jaxmpp.j2se.connection.ConnectionManager;
 import tigase.jaxmpp.j2se.filetransfer.FileTransfer;
 import tigase.jaxmpp.j2se.filetransfer.FileTransferManager;
@@ -660,12 +661,16 @@ public abstract class Socks5ConnectionManager
 							});
 	}
 
-	private class IncomingConnectionHandlerThread
-			extends Thread {
+	/**
+	 * Handles incoming connection. It is executed in thread created by {@linkplain java.util.concurrent.ThreadFactory
+	 * ThreadFactory} of session.
+	 */
+	private class IncomingConnectionHandler
+			implements Runnable {
 
 		private final SocketChannel socketChannel;
 
-		private IncomingConnectionHandlerThread(SocketChannel channel) {
+		private IncomingConnectionHandler(SocketChannel channel) {
 			this.socketChannel = channel;
 		}
 
@@ -734,7 +739,9 @@ public abstract class Socks5ConnectionManager
 			while (serverSocket.socket().isBound() && !shutdown) {
 				try {
 					SocketChannel socketChannel = serverSocket.accept();
-					new IncomingConnectionHandlerThread(socketChannel).start();
+					ThreadFactories.getThreadFactory(context == null ? null : context.getSessionObject())
+							.newThread(new IncomingConnectionHandler(socketChannel))
+							.start();
 				} catch (ClosedChannelException ex) {
 					log.log(Level.FINEST, "Socket already closed, when we tried to accept connection", ex);
 					// break;
@@ -25,6 +25,7 @@ import tigase.jaxmpp.core.client.connector.AbstractBoshConnector;
 import tigase.jaxmpp.core.client.connector.BoshRequest;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.xml.DomBuilderHandler;
 import tigase.xml.SimpleParser;
 import tigase.xml.SingletonFactory;
@@ -72,9 +73,7 @@ public class BoshConnector
 		if (log.isLoggable(Level.FINEST)) {
 			log.finest("Send: " + element.getAsString());
 		}
-		Thread t = new Thread(worker);
-		t.setDaemon(true);
-		t.start();
+		ThreadFactories.getThreadFactory(context.getSessionObject()).newThread(worker).start();
 	}
 
 	@Override
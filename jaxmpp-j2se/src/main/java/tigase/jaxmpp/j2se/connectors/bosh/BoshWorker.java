@@ -25,6 +25,7 @@ import tigase.jaxmpp.core.client.SessionObject;
 import tigase.jaxmpp.core.client.connector.BoshRequest;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.j2se.xml.ElementSerializer;
 import tigase.jaxmpp.j2se.xml.J2seElement;
 import tigase.xml.DomBuilderHandler;
 import tigase.xml.SimpleParser;
@@ -32,7 +33,7 @@ import tigase.xml.SimpleParser;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.net.*;
 import java.util.Queue;
 import java.util.logging.Level;
@@ -124,14 +125,11 @@ public abstract class BoshWorker
 				conn.setRequestProperty("User-Agent", "Mozilla/5.0 ( compatible ) ");
 				conn.setRequestProperty("Accept", "*/*");
 
-				String b = body.getAsString();
-				// System.out.println("S: " + b);
-
 				if (!conn.getDoOutput()) {
 					conn.setDoOutput(true);
 				}
-				OutputStreamWriter wr = new OutputStreamWriter(conn.getOutputStream());
-				wr.write(b);
+				OutputStream wr = conn.getOutputStream();
+				ElementSerializer.getInstance().append(body).writeTo(wr);
 				wr.flush();
 
 				Integer responseCode;
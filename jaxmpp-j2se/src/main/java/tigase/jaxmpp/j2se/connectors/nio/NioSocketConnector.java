@@ -0,0 +1,1066 @@
+/*
+ * NioSocketConnector.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.nio;
+
+import tigase.jaxmpp.core.client.Context;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.SessionObject.Scope;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
+import tigase.jaxmpp.j2se.connectors.socket.JaxmppHostnameVerifier;
+import tigase.jaxmpp.j2se.connectors.socket.SocketConnector;
+import tigase.jaxmpp.j2se.connectors.socket.StreamListener;
+import tigase.jaxmpp.j2se.connectors.socket.Utf8Decoder;
+import tigase.jaxmpp.j2se.connectors.socket.XMPPDomBuilderHandler;
+import tigase.jaxmpp.j2se.xml.ElementSerializer;
+import tigase.jaxmpp.j2se.xml.J2seElement;
+import tigase.xml.SimpleParser;
+import tigase.xml.SingletonFactory;
+
+import javax.net.ssl.*;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Socket connector using non-blocking channel registered in shared {@linkplain SelectorLoopGroup}. It doesn't create
+ * any thread nor timer per connection: reading, TLS (using {@linkplain SSLEngine}), ZLIB compression and writing are
+ * done on thread of selector loop, and whitespace pings are scheduled in scheduler of loop group.
+ * <p>
+ * Received data are parsed with the same {@linkplain XMPPDomBuilderHandler} and {@linkplain SimpleParser} as in
+ * blocking {@linkplain SocketConnector}. Proxies, BouncyCastle TLS and socket read timeouts are not supported in this
+ * mode.
+ * <p>
+ * Connector is used when {@link #NIO_ENABLED_KEY} is set to <code>true</code> (see {@linkplain
+ * tigase.jaxmpp.j2se.ConnectionConfiguration#setUseNonBlockingSocket(boolean)}).
+ */
+public class NioSocketConnector
+		extends SocketConnector {
+
+	/**
+	 * Property to enable non-blocking socket connector.
+	 */
+	public static final String NIO_ENABLED_KEY = "socket#nio";
+	/**
+	 * Property to specify custom {@linkplain SelectorLoopGroup}. If not set, {@linkplain
+	 * SelectorLoopGroup#getDefault() default group} is used.
+	 */
+	public static final String SELECTOR_LOOP_GROUP_KEY = "socket#SelectorLoopGroup";
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+	private static final int INITIAL_OUTGOING_SIZE = 8 * 1024;
+	/**
+	 * Outgoing buffers bigger than this size are released after write.
+	 */
+	private static final int MAX_RETAINED_OUTGOING_SIZE = 1024 * 1024;
+	private final static Charset UTF_CHARSET = Charset.forName("UTF-8");
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final Runnable closeTask = new Runnable() {
+		@Override
+		public void run() {
+			closeChannel();
+		}
+	};
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled.set(false);
+			flush();
+		}
+	};
+	private final SimpleParser parser = SingletonFactory.getParserInstance();
+	private final Object writeLock = new Object();
+	private final SelectorLoop.ChannelHandler channelHandler = new SelectorLoop.ChannelHandler() {
+
+		@Override
+		public void handleException(Throwable e) {
+			NioSocketConnector.this.handleException(e);
+		}
+
+		@Override
+		public void handleSelected(SelectionKey key) throws Exception {
+			if (key.isValid() && key.isWritable()) {
+				flush();
+			}
+			if (key.isValid() && key.isReadable()) {
+				read();
+			}
+		}
+	};
+	private volatile SocketChannel channel;
+	private ScheduledFuture<?> closeFuture;
+	private volatile boolean closed;
+	private Deflater deflater;
+	private XMPPDomBuilderHandler domHandler;
+	private SelectorLoopGroup group;
+	private boolean handshaking;
+	private Inflater inflater;
+	private SelectionKey key;
+	private volatile SelectorLoop loop;
+	private ByteBuffer pendingOut;
+	private ScheduledFuture<?> pingFuture;
+	private long polled;
+	private byte[] outgoing = new byte[INITIAL_OUTGOING_SIZE];
+	private int outgoingLength;
+	private long queued;
+	private byte[] readRemainder;
+	private byte[] spareOutgoing = new byte[INITIAL_OUTGOING_SIZE];
+	private SSLEngine sslEngine;
+	private byte[] textRemainder;
+	private long written;
+
+	public NioSocketConnector(Context context) {
+		super(context);
+	}
+
+	@Override
+	public void send(byte[] buffer) throws JaxmppException {
+		if (channel == null) {
+			return;
+		}
+		if (log.isLoggable(Level.FINEST)) {
+			log.finest("Send (oid=" + NioSocketConnector.this.hashCode() + "): " + new String(buffer, UTF_CHARSET));
+		}
+		enqueue(buffer, 0, buffer.length);
+		scheduleFlush();
+	}
+
+	@Override
+	public void send(Element stanza, boolean waitForWrite) throws JaxmppException {
+		if (channel == null) {
+			return;
+		}
+		final ElementSerializer serializer = ElementSerializer.getInstance().append(stanza);
+		if (log.isLoggable(Level.FINEST)) {
+			log.finest("Send (oid=" + NioSocketConnector.this.hashCode() + "): " +
+							   new String(serializer.getBuffer(), 0, serializer.getLength(), UTF_CHARSET));
+		}
+		try {
+			context.getEventBus().fire(new StanzaSendingHandler.StanzaSendingEvent(context.getSessionObject(), stanza));
+		} catch (Exception e) {
+		}
+		long sequence = enqueue(serializer.getBuffer(), 0, serializer.getLength());
+		scheduleFlush();
+		if (waitForWrite && !loop.inLoop()) {
+			waitForWrite(sequence);
+		}
+	}
+
+	@Override
+	public void start() throws JaxmppException {
+		log.fine("Start NIO connector (oid=" + NioSocketConnector.this.hashCode() + ").");
+		final SessionObject sessionObject = context.getSessionObject();
+
+		if (sessionObject.getProperty(HOSTNAME_VERIFIER_DISABLED_KEY) == Boolean.TRUE) {
+			sessionObject.setProperty(HOSTNAME_VERIFIER_KEY, null);
+		} else if (sessionObject.getProperty(HOSTNAME_VERIFIER_KEY) == null) {
+			sessionObject.setProperty(HOSTNAME_VERIFIER_KEY, DEFAULT_HOSTNAME_VERIFIER);
+		}
+
+		setStage(State.connecting);
+
+		try {
+			SelectorLoopGroup group = sessionObject.getProperty(SELECTOR_LOOP_GROUP_KEY);
+			this.group = group == null ? SelectorLoopGroup.getDefault() : group;
+
+			List<Entry> hosts = resolveHosts();
+
+			sessionObject.setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.FALSE);
+
+			if (log.isLoggable(Level.FINER)) {
+				log.finer("Preparing connection to " + hosts);
+			}
+
+			SocketChannel channel = null;
+			for (Entry host : hosts) {
+				try {
+					channel = openChannel(host);
+					break;
+				} catch (NoRouteToHostException | UnknownHostException e) {
+					log.fine(e.getMessage() + ". Trying next.");
+				}
+			}
+
+			if (channel == null) {
+				throw new JaxmppException("Cannot create socket.");
+			}
+
+			register(channel);
+
+			Boolean plainSSL = sessionObject.getProperty(USE_PLAIN_SSL_KEY);
+			if (plainSSL != null && plainSSL) {
+				proceedTLS();
+			} else {
+				restartStream();
+			}
+
+			setStage(State.connected);
+
+			if (sessionObject.getProperty(EXTERNAL_KEEPALIVE_KEY) == null ||
+					((Boolean) sessionObject.getProperty(EXTERNAL_KEEPALIVE_KEY) == false)) {
+				Integer defaultDelay = getTimeout(PLAIN_SOCKET_TIMEOUT_KEY, DEFAULT_SOCKET_TIMEOUT);
+				defaultDelay = defaultDelay == null ? -1 : defaultDelay - 1000 * 5;
+
+				Integer delay = getTimeout(KEEP_ALIVE_DELAY_KEY, defaultDelay);
+
+				if (log.isLoggable(Level.CONFIG)) {
+					log.config("Whitespace ping period is setted to " + delay + "ms");
+				}
+
+				if (delay != null && delay > 0) {
+					pingFuture = this.group.getScheduler().scheduleAtFixedRate(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								keepalive();
+							} catch (JaxmppException e) {
+								log.log(Level.SEVERE, "Can't ping!", e);
+							}
+						}
+					}, delay, delay, TimeUnit.MILLISECONDS);
+				}
+			}
+
+			fireOnConnected(sessionObject);
+		} catch (Exception e) {
+			terminate();
+			throw new JaxmppException(e);
+		}
+	}
+
+	@Override
+	public void startTLS() throws JaxmppException {
+		if (channel != null) {
+			log.fine("Start TLS (oid=" + NioSocketConnector.this.hashCode() + ")");
+			send(ElementFactory.create("starttls", null, "urn:ietf:params:xml:ns:xmpp-tls"));
+		}
+	}
+
+	@Override
+	public void startZLib() throws JaxmppException {
+		if (channel != null) {
+			log.fine("Start ZLIB (oid=" + NioSocketConnector.this.hashCode() + ")");
+			Element e = ElementFactory.create("compress", null, "http://jabber.org/protocol/compress");
+			e.addChild(ElementFactory.create("method", "zlib", null));
+			send(e);
+		}
+	}
+
+	@Override
+	public void stop() throws JaxmppException {
+		if (getState() == State.disconnected) {
+			return;
+		}
+		setStage(State.disconnecting);
+		try {
+			final State state = getState();
+			if (state == State.connected || state == State.connecting || state == State.disconnecting) {
+				log.fine("Terminating XMPP Stream");
+				send("</stream:stream>".getBytes(UTF_CHARSET));
+			} else {
+				log.fine("Stream terminate not sent, because of connection state==" + state);
+			}
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Problem on terminating stream", e);
+			setStage(State.disconnected);
+		} finally {
+			terminate();
+		}
+	}
+
+	@Override
+	@Deprecated
+	public void stop(boolean terminate) throws JaxmppException {
+		if (terminate) {
+			log.finest("Terminating connection immediatelly (oid=" + NioSocketConnector.this.hashCode() + ")");
+			try {
+				cancelPing();
+				runInLoop(closeTask);
+			} finally {
+				setStage(State.disconnected);
+				context = null;
+			}
+		} else {
+			stop();
+		}
+	}
+
+	@Override
+	protected void onError(Element response, Throwable caught) throws JaxmppException {
+		if (response != null) {
+			Element seeOtherHost = response.getChildrenNS("see-other-host", "urn:ietf:params:xml:ns:xmpp-streams");
+			if (seeOtherHost != null) {
+				if (log.isLoggable(Level.FINE)) {
+					log.fine("Received see-other-host=" + seeOtherHost.getValue());
+				}
+				reconnect(seeOtherHost.getValue());
+				return;
+			}
+		}
+		terminate();
+		fireOnError(response, caught, context.getSessionObject());
+	}
+
+	@Override
+	protected void onErrorInThread(Exception e) throws JaxmppException {
+		if (getState() == State.disconnected) {
+			return;
+		}
+		terminate();
+		fireOnError(null, e, context.getSessionObject());
+	}
+
+	@Override
+	protected void onStreamTerminate() throws JaxmppException {
+		if (getState() == State.disconnected) {
+			return;
+		}
+		setStage(State.disconnected);
+
+		if (log.isLoggable(Level.FINE)) {
+			log.fine("Stream terminated");
+		}
+
+		terminate();
+		fireOnTerminate(context.getSessionObject());
+		runInLoop(closeTask);
+	}
+
+	@Override
+	protected void proceedTLS() throws JaxmppException {
+		runInLoop(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					beginTLS();
+				} catch (Exception e) {
+					log.log(Level.SEVERE, "Can't establish encrypted connection", e);
+					try {
+						onError(null, e);
+					} catch (JaxmppException e1) {
+						log.log(Level.WARNING, "Error on handling another exception", e1);
+					}
+				}
+			}
+		});
+	}
+
+	@Override
+	protected void proceedZLib() throws JaxmppException {
+		log.fine("Proceeding ZLIB");
+		final SessionObject sessionObject = context.getSessionObject();
+		try {
+			sessionObject.setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.TRUE);
+			log.fine("Start ZLIB compression");
+
+			deflater = new Deflater(Deflater.BEST_COMPRESSION, false);
+			inflater = new Inflater(false);
+			textRemainder = null;
+
+			sessionObject.setProperty(Scope.stream, COMPRESSED_KEY, true);
+			log.info("ZLIB compression started");
+
+			restartStream();
+		} catch (Exception e) {
+			log.log(Level.SEVERE, "Can't establish compressed connection", e);
+			onError(null, e);
+		} finally {
+			sessionObject.setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.FALSE);
+		}
+	}
+
+	private void appendPending(ByteBuffer data) {
+		if (pendingOut == null) {
+			pendingOut = ByteBuffer.allocate(Math.max(data.remaining(), 4096));
+		} else if (pendingOut.remaining() < data.remaining()) {
+			ByteBuffer tmp = ByteBuffer.allocate(pendingOut.position() + data.remaining());
+			pendingOut.flip();
+			tmp.put(pendingOut);
+			pendingOut = tmp;
+		}
+		pendingOut.put(data);
+	}
+
+	private void beginTLS() throws Exception {
+		log.fine("Proceeding TLS");
+		final SessionObject sessionObject = context.getSessionObject();
+		sessionObject.setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.TRUE);
+		if (sessionObject.getProperty(USE_BOUNCYCASTLE_KEY) == Boolean.TRUE) {
+			log.warning("Bouncycastle TLS is not supported by non-blocking connector. Using SSLEngine.");
+		}
+
+		final TrustManager[] trustManagers = sessionObject.getProperty(TRUST_MANAGERS_KEY);
+		final SSLContext ctx;
+		if (trustManagers == null) {
+			ctx = SSLContext.getDefault();
+		} else {
+			ctx = SSLContext.getInstance("TLS");
+			ctx.init(getKeyManagers(), trustManagers, new SecureRandom());
+		}
+
+		final InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+		SSLEngine engine = ctx.createSSLEngine(getHostname(), remote.getPort());
+		engine.setUseClientMode(true);
+
+		this.readRemainder = null;
+		this.textRemainder = null;
+		this.sslEngine = engine;
+		this.handshaking = true;
+
+		log.fine("Start handshake");
+		engine.beginHandshake();
+		runHandshake();
+	}
+
+	private void cancelPing() {
+		ScheduledFuture<?> f = this.pingFuture;
+		if (f != null) {
+			f.cancel(false);
+			this.pingFuture = null;
+		}
+	}
+
+	private void channelClosed() {
+		final Context context = this.context;
+		if (context == null) {
+			return;
+		}
+		try {
+			setStage(State.disconnected);
+		} catch (JaxmppException e) {
+		}
+		log.finest("Channel closed");
+		try {
+			if (context.getSessionObject().getProperty(RECONNECTING_KEY) == Boolean.TRUE) {
+				context.getSessionObject().setProperty(RECONNECTING_KEY, null);
+				context.getEventBus().fire(new HostChangedHandler.HostChangedEvent(context.getSessionObject()));
+				log.finest("Restarting...");
+				group.getScheduler().execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							start();
+						} catch (JaxmppException e) {
+							log.log(Level.WARNING, "Cannot reconnect", e);
+						}
+					}
+				});
+			} else {
+				context.getEventBus().fire(new DisconnectedHandler.DisconnectedEvent(context.getSessionObject()));
+			}
+		} catch (Exception e) {
+			log.warning("Problem : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes channel and releases resources. Must be called on loop thread.
+	 */
+	private void closeChannel() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		cancelPing();
+		synchronized (this) {
+			if (closeFuture != null) {
+				closeFuture.cancel(false);
+				closeFuture = null;
+			}
+		}
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			log.log(Level.FINEST, "Problem with closing socket (oid=" + NioSocketConnector.this.hashCode() + ")", e);
+		}
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		pendingOut = null;
+		readRemainder = null;
+		textRemainder = null;
+		synchronized (writeLock) {
+			outgoingLength = 0;
+			writeLock.notifyAll();
+		}
+		channelClosed();
+	}
+
+	private void decodeAndParse(ByteBuffer data) throws IOException {
+		final char[] chars = loop.charBuffer;
+		int decoded;
+		// incomplete multibyte sequence is left in data and kept in remainder
+		while (!closed && (decoded = loop.decoder.decode(data, chars, 0, chars.length)) > 0) {
+			parser.parse(domHandler, chars, 0, decoded);
+		}
+	}
+
+	private void deflateAndWrite(ByteBuffer data) throws IOException {
+		deflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		data.position(data.limit());
+		final ByteBuffer out = loop.deflateBuffer;
+		int produced;
+		do {
+			out.clear();
+			produced = deflater.deflate(out.array(), out.arrayOffset(), out.capacity(), Deflater.SYNC_FLUSH);
+			out.limit(produced);
+			wrapAndWrite(out);
+		} while (produced == out.capacity());
+	}
+
+	/**
+	 * Writes pending and queued data. All stanzas waiting in queue are already serialized into one buffer, so they
+	 * are compressed, encrypted and written to socket at once.
+	 */
+	private void flush() {
+		if (closed || channel == null) {
+			return;
+		}
+		try {
+			if (writePending() && !handshaking) {
+				final byte[] batch;
+				final int batchLength;
+				synchronized (writeLock) {
+					batch = outgoing;
+					batchLength = outgoingLength;
+					if (batchLength > 0) {
+						outgoing = spareOutgoing == null ? new byte[INITIAL_OUTGOING_SIZE] : spareOutgoing;
+						outgoingLength = 0;
+						spareOutgoing = null;
+					}
+				}
+				if (batchLength > 0) {
+					// data not accepted by socket are copied to pendingOut, so batch may be reused
+					encodeAndWrite(ByteBuffer.wrap(batch, 0, batchLength));
+					polled += batchLength;
+					synchronized (writeLock) {
+						spareOutgoing = batch.length > MAX_RETAINED_OUTGOING_SIZE
+										? new byte[INITIAL_OUTGOING_SIZE]
+										: batch;
+					}
+				}
+			}
+			if (pendingOut == null) {
+				synchronized (writeLock) {
+					if (written != polled) {
+						written = polled;
+						writeLock.notifyAll();
+					}
+				}
+			}
+			updateInterestOps();
+		} catch (Exception e) {
+			handleException(e);
+		}
+	}
+
+	/**
+	 * Copies data to outgoing buffer.
+	 *
+	 * @return sequence number of data (number of bytes queued since connection was established).
+	 */
+	private long enqueue(byte[] data, int off, int len) {
+		synchronized (writeLock) {
+			if (outgoing.length - outgoingLength < len) {
+				outgoing = Arrays.copyOf(outgoing, Math.max(outgoing.length * 2, outgoingLength + len));
+			}
+			System.arraycopy(data, off, outgoing, outgoingLength, len);
+			outgoingLength += len;
+			queued += len;
+			return queued;
+		}
+	}
+
+	private void encodeAndWrite(ByteBuffer data) throws IOException {
+		if (deflater != null) {
+			deflateAndWrite(data);
+		} else {
+			wrapAndWrite(data);
+		}
+	}
+
+	private void handleException(Throwable e) {
+		if (closed) {
+			return;
+		}
+		final State state = getState();
+		if (state != State.disconnecting && state != State.disconnected) {
+			log.log(Level.WARNING, "Exception in connector", e);
+			try {
+				onErrorInThread(e instanceof Exception ? (Exception) e : new RuntimeException(e));
+			} catch (JaxmppException e1) {
+				log.log(Level.WARNING, "Error on handling another exception", e1);
+			}
+		}
+		closeChannel();
+	}
+
+	private void handshakeFinished() {
+		handshaking = false;
+		final SessionObject sessionObject = context.getSessionObject();
+		try {
+			final String hostname = getHostname();
+			final SSLSession session = sslEngine.getSession();
+			final Object hnv = sessionObject.getProperty(HOSTNAME_VERIFIER_KEY);
+			if (hnv != null && hnv instanceof HostnameVerifier && !((HostnameVerifier) hnv).verify(hostname, session)) {
+				throw new SSLHandshakeException("Cerificate hostname doesn't match domain name you want to connect.");
+			} else if (hnv != null && hnv instanceof JaxmppHostnameVerifier) {
+				Certificate[] certificates = session.getPeerCertificates();
+				Certificate peerCertificate = certificates == null || certificates.length == 0 ? null : certificates[0];
+				if (!((JaxmppHostnameVerifier) hnv).verify(hostname, peerCertificate)) {
+					throw new SSLHandshakeException(
+							"Cerificate hostname doesn't match domain name you want to connect.");
+				}
+			}
+
+			log.info("TLS completed " + session.getProtocol() + " " + session.getCipherSuite());
+			sessionObject.setProperty(Scope.stream, ENCRYPTED_KEY, Boolean.TRUE);
+			context.getEventBus().fire(new EncryptionEstablishedHandler.EncryptionEstablishedEvent(sessionObject));
+
+			restartStream();
+		} catch (Exception e) {
+			log.log(Level.SEVERE, "Can't establish encrypted connection", e);
+			try {
+				onError(null, e);
+			} catch (JaxmppException e1) {
+				log.log(Level.WARNING, "Error on handling another exception", e1);
+			}
+		} finally {
+			sessionObject.setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.FALSE);
+		}
+	}
+
+	private void inflateAndParse(ByteBuffer data) throws IOException {
+		inflater.setInput(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		data.position(data.limit());
+		final ByteBuffer out = loop.inflateBuffer;
+		out.clear();
+		if (textRemainder != null) {
+			out.put(textRemainder);
+			textRemainder = null;
+		}
+		try {
+			while (!closed) {
+				int n = inflater.inflate(out.array(), out.arrayOffset() + out.position(), out.remaining());
+				out.position(out.position() + n);
+				if (!out.hasRemaining()) {
+					out.flip();
+					decodeAndParse(out);
+					out.compact();
+				} else if (n == 0) {
+					break;
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed data", e);
+		}
+		out.flip();
+		decodeAndParse(out);
+		textRemainder = remaining(out);
+	}
+
+	private SocketChannel openChannel(Entry serverHost) throws IOException {
+		InetAddress x = InetAddress.getByName(serverHost.getHostname());
+		log.info("Opening connection to " + x + ":" + serverHost.getPort());
+
+		SocketChannel channel = SocketChannel.open();
+		try {
+			channel.socket().setKeepAlive(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.connect(new InetSocketAddress(x, serverHost.getPort()));
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Processes data after decryption. Data are decompressed if needed, decoded and parsed.
+	 */
+	private void processData(ByteBuffer data) throws IOException {
+		if (inflater != null) {
+			inflateAndParse(data);
+		} else {
+			decodeAndParse(data);
+		}
+	}
+
+	private void read() throws IOException {
+		final ByteBuffer in = loop.readBuffer;
+		in.clear();
+		if (readRemainder != null) {
+			in.put(readRemainder);
+			readRemainder = null;
+		}
+		int r = channel.read(in);
+		if (r == -1) {
+			if (log.isLoggable(Level.FINEST)) {
+				log.finest("End of stream (oid=" + NioSocketConnector.this.hashCode() + "): state=" + getState());
+			}
+			final State state = getState();
+			if (state != State.disconnected) {
+				try {
+					onStreamTerminate();
+				} catch (JaxmppException e) {
+					log.log(Level.WARNING, "Error on processing Stream Closed", e);
+				}
+			}
+			closeChannel();
+			return;
+		}
+		in.flip();
+		if (sslEngine != null) {
+			unwrapAndProcess(in);
+		} else {
+			processData(in);
+		}
+		if (!closed) {
+			readRemainder = remaining(in);
+		}
+	}
+
+	private void reconnect(final String newHost) {
+		log.info("See other host: " + newHost);
+		try {
+			final SessionObject sessionObject = context.getSessionObject();
+			sessionObject.setProperty(RECONNECTING_KEY, Boolean.TRUE);
+			terminate();
+
+			sessionObject.clear(SessionObject.Scope.stream);
+			sessionObject.setProperty(SERVER_HOST, newHost);
+			sessionObject.setProperty(RECONNECTING_KEY, Boolean.TRUE);
+
+			runInLoop(closeTask);
+		} catch (JaxmppException e) {
+			log.log(Level.WARNING, "Error on recconnect", e);
+		}
+	}
+
+	private void register(final SocketChannel channel) {
+		final SelectorLoop loop = group.next();
+
+		this.domHandler = new XMPPDomBuilderHandler(new StreamListener() {
+
+			@Override
+			public void nextElement(tigase.xml.Element element) {
+				try {
+					try {
+						processElement(new J2seElement(element));
+					} catch (JaxmppException e) {
+						onErrorInThread(e);
+					}
+				} catch (JaxmppException e) {
+					log.log(Level.SEVERE, "Error on processing element", e);
+				}
+			}
+
+			@Override
+			public void xmppStreamClosed() {
+				try {
+					if (log.isLoggable(Level.FINEST)) {
+						log.finest("xmppStreamClosed()");
+					}
+					onStreamTerminate();
+				} catch (JaxmppException e) {
+					log.log(Level.WARNING, "Error on processing Stream Closed", e);
+				}
+			}
+
+			@Override
+			public void xmppStreamOpened(Map<String, String> attribs) {
+				if (log.isLoggable(Level.FINEST)) {
+					log.finest("xmppStreamOpened()");
+				}
+				onStreamStart(attribs);
+			}
+		});
+		this.domHandler.setStreamedChildrenHandler(
+				context.getSessionObject().<StreamedChildrenHandler>getProperty(
+						StreamedChildrenHandler.STREAMED_CHILDREN_HANDLER_KEY));
+		this.sslEngine = null;
+		this.handshaking = false;
+		this.deflater = null;
+		this.inflater = null;
+		this.pendingOut = null;
+		this.readRemainder = null;
+		this.textRemainder = null;
+		synchronized (writeLock) {
+			this.outgoingLength = 0;
+			this.polled = 0;
+			this.queued = 0;
+			this.written = 0;
+		}
+		this.closed = false;
+		this.loop = loop;
+		this.channel = channel;
+
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					key = loop.register(channel, SelectionKey.OP_READ, channelHandler);
+				} catch (IOException e) {
+					handleException(e);
+				}
+			}
+		});
+	}
+
+	private byte[] remaining(ByteBuffer buffer) {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		byte[] result = new byte[buffer.remaining()];
+		buffer.get(result);
+		return result;
+	}
+
+	private void runHandshake() throws IOException {
+		final ByteBuffer net = loop.netBuffer;
+		while (!closed) {
+			HandshakeStatus hs = sslEngine.getHandshakeStatus();
+			if (hs == HandshakeStatus.NEED_TASK) {
+				Runnable task;
+				while ((task = sslEngine.getDelegatedTask()) != null) {
+					task.run();
+				}
+			} else if (hs == HandshakeStatus.NEED_WRAP) {
+				net.clear();
+				SSLEngineResult result = sslEngine.wrap(EMPTY_BUFFER, net);
+				net.flip();
+				writeNetwork(net);
+				if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+					break;
+				}
+				if (result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+					handshakeFinished();
+				}
+			} else {
+				break;
+			}
+		}
+		updateInterestOps();
+	}
+
+	private void runInLoop(Runnable task) {
+		final SelectorLoop loop = this.loop;
+		if (loop == null) {
+			return;
+		}
+		if (loop.inLoop()) {
+			task.run();
+		} else {
+			loop.execute(task);
+		}
+	}
+
+	private void scheduleFlush() {
+		final SelectorLoop loop = this.loop;
+		if (loop != null && flushScheduled.compareAndSet(false, true)) {
+			loop.execute(flushTask);
+		}
+	}
+
+	/**
+	 * Schedules closing of socket if it is still open. Server has a few seconds to close stream gracefully.
+	 */
+	private void terminate() throws JaxmppException {
+		log.finest("Terminating connection (oid=" + NioSocketConnector.this.hashCode() + ")");
+		cancelPing();
+		final SocketChannel channel = this.channel;
+		if (channel != null && channel.isOpen() && !closed) {
+			synchronized (this) {
+				if (closeFuture != null) {
+					closeFuture.cancel(false);
+				}
+				closeFuture = group.getScheduler().schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							setStage(State.disconnected);
+						} catch (JaxmppException e) {
+						}
+						runInLoop(closeTask);
+					}
+				}, 3, TimeUnit.SECONDS);
+			}
+		} else {
+			try {
+				setStage(State.disconnected);
+			} catch (JaxmppException e) {
+			}
+		}
+	}
+
+	private void unwrapAndProcess(ByteBuffer in) throws IOException {
+		final ByteBuffer app = loop.appBuffer;
+		app.clear();
+		if (inflater == null && textRemainder != null) {
+			app.put(textRemainder);
+			textRemainder = null;
+		}
+		while (!closed) {
+			SSLEngineResult result = sslEngine.unwrap(in, app);
+			if (result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+				handshakeFinished();
+			}
+			if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+				app.flip();
+				processData(app);
+				app.compact();
+				continue;
+			} else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+				throw new SSLException("Connection closed by server");
+			}
+			runHandshake();
+			if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW ||
+					(result.bytesConsumed() == 0 && result.bytesProduced() == 0)) {
+				break;
+			}
+		}
+		if (!closed) {
+			app.flip();
+			processData(app);
+			if (inflater == null) {
+				textRemainder = remaining(app);
+			}
+		}
+	}
+
+	private void updateInterestOps() {
+		if (key == null || !key.isValid()) {
+			return;
+		}
+		int ops = pendingOut == null ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+		if (key.interestOps() != ops) {
+			key.interestOps(ops);
+		}
+	}
+
+	private void waitForWrite(long sequence) throws JaxmppException {
+		synchronized (writeLock) {
+			try {
+				while (written < sequence && !closed) {
+					writeLock.wait();
+				}
+			} catch (InterruptedException e) {
+				throw new JaxmppException(e);
+			}
+			if (written < sequence) {
+				throw new JaxmppException("Connection closed before data were written");
+			}
+		}
+	}
+
+	private void wrapAndWrite(ByteBuffer data) throws IOException {
+		if (sslEngine == null) {
+			writeNetwork(data);
+			return;
+		}
+		final ByteBuffer net = loop.netBuffer;
+		while (data.hasRemaining()) {
+			net.clear();
+			SSLEngineResult result = sslEngine.wrap(data, net);
+			if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+				throw new SSLException("SSLEngine is closed");
+			}
+			net.flip();
+			writeNetwork(net);
+			if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+				Runnable task;
+				while ((task = sslEngine.getDelegatedTask()) != null) {
+					task.run();
+				}
+			}
+		}
+	}
+
+	private void writeNetwork(ByteBuffer data) throws IOException {
+		if (pendingOut != null) {
+			appendPending(data);
+			return;
+		}
+		while (data.hasRemaining()) {
+			if (channel.write(data) == 0) {
+				break;
+			}
+		}
+		if (data.hasRemaining()) {
+			appendPending(data);
+		}
+	}
+
+	/**
+	 * Writes data which wasn't written previously because socket buffer was full.
+	 *
+	 * @return <code>true</code> if there is no more pending data.
+	 */
+	private boolean writePending() throws IOException {
+		if (pendingOut == null) {
+			return true;
+		}
+		pendingOut.flip();
+		while (pendingOut.hasRemaining()) {
+			if (channel.write(pendingOut) == 0) {
+				break;
+			}
+		}
+		if (pendingOut.hasRemaining()) {
+			pendingOut.compact();
+			return false;
+		}
+		pendingOut = null;
+		return true;
+	}
+
+}
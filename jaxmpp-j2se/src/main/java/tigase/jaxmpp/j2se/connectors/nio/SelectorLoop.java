@@ -0,0 +1,161 @@
+/*
+ * SelectorLoop.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.nio;
+
+import tigase.jaxmpp.j2se.connectors.socket.Utf8Decoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single event loop thread owning one {@linkplain Selector}. All I/O of channels registered in this loop is done on
+ * loop thread, so scratch buffers kept here may be shared by all of them.
+ */
+public class SelectorLoop
+		extends Thread {
+
+	/**
+	 * Size of scratch buffers shared by channels of one loop. It must be able to hold at least one TLS record.
+	 */
+	static final int SCRATCH_BUFFER_SIZE = 64 * 1024;
+
+	final ByteBuffer appBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	final char[] charBuffer = new char[SCRATCH_BUFFER_SIZE];
+	final Utf8Decoder decoder = new Utf8Decoder();
+	final ByteBuffer deflateBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	final ByteBuffer inflateBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	final ByteBuffer netBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	final ByteBuffer readBuffer = ByteBuffer.allocate(SCRATCH_BUFFER_SIZE);
+	private final Logger log = Logger.getLogger(SelectorLoop.class.getName());
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private volatile boolean running = true;
+
+	SelectorLoop(String name) throws IOException {
+		super(name);
+		setDaemon(true);
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Executes task on loop thread. Tasks are executed in order of submission.
+	 *
+	 * @param task task to execute.
+	 */
+	public void execute(Runnable task) {
+		tasks.offer(task);
+		if (!inLoop()) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Checks if current thread is thread of this loop.
+	 *
+	 * @return <code>true</code> if called from loop thread.
+	 */
+	public boolean inLoop() {
+		return Thread.currentThread() == this;
+	}
+
+	/**
+	 * Registers channel in selector. Must be called from loop thread.
+	 *
+	 * @param channel channel to register.
+	 * @param ops initial interest set.
+	 * @param handler handler of channel events.
+	 *
+	 * @return selection key of registered channel.
+	 */
+	SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws IOException {
+		return channel.register(selector, ops, handler);
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				runTasks();
+				selector.select();
+				runTasks();
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					ChannelHandler handler = (ChannelHandler) key.attachment();
+					if (!key.isValid()) {
+						continue;
+					}
+					try {
+						handler.handleSelected(key);
+					} catch (Throwable e) {
+						handler.handleException(e);
+					}
+				}
+			} catch (ClosedSelectorException e) {
+				break;
+			} catch (Throwable e) {
+				log.log(Level.WARNING, "Exception in selector loop " + getName(), e);
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			log.log(Level.FINEST, "Problem with closing selector", e);
+		}
+	}
+
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Throwable e) {
+				log.log(Level.WARNING, "Exception in task executed in selector loop " + getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Handler of events of channel registered in {@linkplain SelectorLoop}. Methods are called on loop thread.
+	 */
+	public interface ChannelHandler {
+
+		void handleException(Throwable e);
+
+		void handleSelected(SelectionKey key) throws Exception;
+
+	}
+}
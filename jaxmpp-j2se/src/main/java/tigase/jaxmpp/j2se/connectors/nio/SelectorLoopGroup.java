@@ -0,0 +1,111 @@
+/*
+ * SelectorLoopGroup.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.nio;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group of {@linkplain SelectorLoop selector loops} shared by many {@linkplain NioSocketConnector connectors}.
+ * Connections are assigned to loops in round-robin fashion. Group also provides one scheduler used for whitespace
+ * pings and delayed socket closing, so connectors do not need own timers.
+ */
+public class SelectorLoopGroup {
+
+	private static SelectorLoopGroup defaultGroup;
+	private final SelectorLoop[] loops;
+	private final AtomicInteger nextLoop = new AtomicInteger();
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Returns default group shared by all connectors in JVM. It is created on first use and contains one loop per
+	 * available processor.
+	 *
+	 * @return default group.
+	 */
+	public static synchronized SelectorLoopGroup getDefault() throws IOException {
+		if (defaultGroup == null) {
+			defaultGroup = new SelectorLoopGroup(Runtime.getRuntime().availableProcessors());
+		}
+		return defaultGroup;
+	}
+
+	/**
+	 * Creates group and starts its loops.
+	 *
+	 * @param size number of selector loops.
+	 */
+	public SelectorLoopGroup(int size) throws IOException {
+		if (size < 1) {
+			throw new IllegalArgumentException("Group must contain at least one loop");
+		}
+		this.loops = new SelectorLoop[size];
+		for (int i = 0; i < size; i++) {
+			loops[i] = new SelectorLoop("Selector-Loop-" + i);
+		}
+		for (SelectorLoop loop : loops) {
+			loop.start();
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Selector-Loop-Scheduler");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	public int getSize() {
+		return loops.length;
+	}
+
+	/**
+	 * Returns loop which should handle next registered connection.
+	 *
+	 * @return selector loop.
+	 */
+	public SelectorLoop next() {
+		return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+
+	/**
+	 * Stops all loops and scheduler. Connections registered in group are not closed gracefully.
+	 */
+	public void shutdown() {
+		scheduler.shutdownNow();
+		for (SelectorLoop loop : loops) {
+			loop.shutdown();
+		}
+		synchronized (SelectorLoopGroup.class) {
+			if (defaultGroup == this) {
+				defaultGroup = null;
+			}
+		}
+	}
+}
@@ -40,12 +40,16 @@ import tigase.jaxmpp.core.client.xml.Element;
 import tigase.jaxmpp.core.client.xml.ElementFactory;
 import tigase.jaxmpp.core.client.xml.XMLException;
 import tigase.jaxmpp.core.client.xmpp.modules.StreamFeaturesModule;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
 import tigase.jaxmpp.core.client.xmpp.modules.registration.InBandRegistrationModule;
 import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
 import tigase.jaxmpp.core.client.xmpp.stanzas.StreamPacket;
 import tigase.jaxmpp.j2se.DNSResolver;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.jaxmpp.j2se.connectors.socket.SocketConnector.HostChangedHandler.HostChangedEvent;
+import tigase.jaxmpp.j2se.xml.ElementSerializer;
 
+import javax.naming.NamingException;
 import javax.net.ssl.*;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -60,6 +64,7 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.Deflater;
@@ -86,6 +91,11 @@ public class SocketConnector
 	public static final String SERVER_HOST = "socket#ServerHost";
 	public static final String SERVER_PORT = "socket#ServerPort";
 	public static final String USE_PLAIN_SSL_KEY = "USE_PLAIN_SSL_KEY";
+	/**
+	 * Property to make {@linkplain #send(Element)} wait until stanza is written to socket. By default stanzas are
+	 * only queued and written by separate thread.
+	 */
+	public static final String WAIT_FOR_WRITE_KEY = "socket#WaitForWrite";
 	/**
 	 * Socket timeout.
 	 */
@@ -111,16 +121,17 @@ public class SocketConnector
 	 * Instance of empty byte array used to force flush of compressed stream
 	 */
 	private final static byte[] EMPTY_BYTEARRAY = new byte[0];
+	protected final Logger log;
 	private final Object ioMutex = new Object();
-	private final Logger log;
+	protected Context context;
 	private Timer closeTimer;
-	private Context context;
 	private TimerTask pingTask;
 	private volatile Reader reader;
 	private Socket socket;
 	private Timer timer;
 	private Worker worker;
 	private OutputStream writer;
+	private volatile SocketWriter socketWriter;
 
 	public static boolean isTLSAvailable(SessionObject sessionObject) throws XMLException {
 		final Element sf = StreamFeaturesModule.getStreamFeatures(sessionObject);
@@ -279,48 +290,52 @@ public class SocketConnector
 		context.getEventBus().fire(new StreamRestartedHandler.StreamRestaredEvent(context.getSessionObject()));
 	}
 
+	/**
+	 * Sends raw data. Data is queued and flushed to socket immediately after data queued before it.
+	 *
+	 * @param buffer data to send.
+	 */
 	public void send(byte[] buffer) throws JaxmppException {
-		synchronized (ioMutex) {
-			if (writer != null) {
-				try {
-					if (log.isLoggable(Level.FINEST)) {
-						log.finest("Send (oid=" + SocketConnector.this.hashCode() + "): " + new String(buffer));
-					}
-					writer.write(buffer);
-					writer.flush();
-				} catch (IOException e) {
-					throw new JaxmppException(e);
-
-				}
+		final SocketWriter socketWriter = this.socketWriter;
+		if (socketWriter != null) {
+			if (log.isLoggable(Level.FINEST)) {
+				log.finest("Send (oid=" + SocketConnector.this.hashCode() + "): " + new String(buffer));
 			}
+			socketWriter.write(buffer, true);
 		}
 	}
 
 	@Override
 	public void send(Element stanza) throws JaxmppException {
-		synchronized (ioMutex) {
-			if (writer != null) {
-				try {
-					String t = stanza.getAsString();
-					if (log.isLoggable(Level.FINEST)) {
-						log.finest("Send (oid=" + SocketConnector.this.hashCode() + "): " + t);
-					}
+		send(stanza, context.getSessionObject().getProperty(WAIT_FOR_WRITE_KEY) == Boolean.TRUE);
+	}
 
-					try {
-						context.getEventBus().fire(new StanzaSendingEvent(context.getSessionObject(), stanza));
-					} catch (Exception e) {
-					}
-					writer.write(t.getBytes(UTF_CHARSET));
-				} catch (IOException e) {
-					terminateAllWorkers();
-					throw new JaxmppException(e);
-				}
+	/**
+	 * Sends stanza. Stanza is queued and written to socket by separate thread, together with other queued stanzas.
+	 *
+	 * @param stanza stanza to send.
+	 * @param waitForWrite if <code>true</code> method returns after stanza is written to socket. It is ignored if
+	 * called from thread reading or writing socket.
+	 */
+	public void send(Element stanza, boolean waitForWrite) throws JaxmppException {
+		final SocketWriter socketWriter = this.socketWriter;
+		if (socketWriter != null) {
+			final ElementSerializer serializer = ElementSerializer.getInstance().append(stanza);
+			if (log.isLoggable(Level.FINEST)) {
+				log.finest("Send (oid=" + SocketConnector.this.hashCode() + "): " +
+								   new String(serializer.getBuffer(), 0, serializer.getLength(), UTF_CHARSET));
+			}
+
+			try {
+				context.getEventBus().fire(new StanzaSendingEvent(context.getSessionObject(), stanza));
+			} catch (Exception e) {
+			}
+			long sequence = socketWriter.write(serializer.getBuffer(), 0, serializer.getLength(),
+											   isFlushPoint(stanza));
+			final Worker worker = this.worker;
+			if (waitForWrite && (worker == null || !worker.isCurrentThread()) && !socketWriter.isCurrentThread()) {
+				socketWriter.waitForWrite(sequence);
 			}
-		}
-		try {
-			Thread.sleep(2);
-		} catch (InterruptedException e) {
-			log.warning("Thread can't sleep. Insomnia?");
 		}
 	}
 
@@ -344,29 +359,7 @@ public class SocketConnector
 		setStage(State.connecting);
 
 		try {
-			ArrayList<Entry> hosts = new ArrayList<>();
-			Entry serverHost = getHostFromSessionObject();
-			if (serverHost != null) {
-				log.info("DNS entry stored in session object: " + serverHost);
-				hosts.add(serverHost);
-			}
-			if (hosts.isEmpty()) {
-				String x = context.getSessionObject().getProperty(SessionObject.DOMAIN_NAME);
-				log.info("Resolving SRV record of domain '" + x + "'");
-				DnsResolver dnsResolver = UniversalFactory.createInstance(DnsResolver.class.getName());
-				if (dnsResolver != null) {
-					if (log.isLoggable(Level.FINE)) {
-						log.fine("Using resolver provided by user: " + dnsResolver);
-					}
-					hosts.addAll(dnsResolver.resolve(x));
-				} else {
-					if (log.isLoggable(Level.FINE)) {
-						log.fine("Using built-in resolver");
-					}
-					hosts.addAll(DNSResolver.resolve(x));
-				}
-
-			}
+			List<Entry> hosts = resolveHosts();
 
 			context.getSessionObject().setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.FALSE);
 
@@ -389,6 +382,29 @@ public class SocketConnector
 
 			writer = socket.getOutputStream();
 			reader = new TextStreamReader(socket.getInputStream());
+			socketWriter = new SocketWriter() {
+
+				@Override
+				protected void onErrorInThread(Exception e) throws JaxmppException {
+					final Connector.State state = SocketConnector.this.getState();
+					if (state != Connector.State.disconnecting && state != Connector.State.disconnected) {
+						log.log(Level.WARNING, "Exception in writer", e);
+						SocketConnector.this.onErrorInThread(e);
+					}
+				}
+
+				@Override
+				protected void writeData(byte[] data, int off, int len) throws IOException {
+					synchronized (ioMutex) {
+						if (writer != null) {
+							writer.write(data, off, len);
+							writer.flush();
+						}
+					}
+				}
+			};
+			final ThreadFactory threadFactory = ThreadFactories.getThreadFactory(context.getSessionObject());
+			socketWriter.start(threadFactory);
 			worker = new Worker(this) {
 
 				@Override
@@ -422,14 +438,17 @@ public class SocketConnector
 				}
 
 			};
+			worker.setStreamedChildrenHandler(
+					context.getSessionObject().<StreamedChildrenHandler>getProperty(
+							StreamedChildrenHandler.STREAMED_CHILDREN_HANDLER_KEY));
 			log.finest("Starting worker...");
 
 			Boolean plainSSL = context.getSessionObject().getProperty(USE_PLAIN_SSL_KEY);
 			if (plainSSL != null && plainSSL) {
 				proceedTLS();
-				worker.start();
+				worker.start(threadFactory);
 			} else {
-				worker.start();
+				worker.start(threadFactory);
 				restartStream();
 			}
 
@@ -439,7 +458,7 @@ public class SocketConnector
 
 				@Override
 				public void run() {
-					Thread t = new Thread() {
+					threadFactory.newThread(new Runnable() {
 						@Override
 						public void run() {
 							try {
@@ -448,9 +467,7 @@ public class SocketConnector
 								log.log(Level.SEVERE, "Can't ping!", e);
 							}
 						}
-					};
-					t.setDaemon(true);
-					t.start();
+					}).start();
 				}
 			};
 
@@ -479,7 +496,7 @@ public class SocketConnector
 	}
 
 	public void startTLS() throws JaxmppException {
-		if (writer != null) {
+		if (socketWriter != null) {
 			try {
 				log.fine("Start TLS (oid=" + SocketConnector.this.hashCode() + ")");
 				Element e = ElementFactory.create("starttls", null, "urn:ietf:params:xml:ns:xmpp-tls");
@@ -496,7 +513,7 @@ public class SocketConnector
 	 * @throws JaxmppException
 	 */
 	public void startZLib() throws JaxmppException {
-		if (writer != null) {
+		if (socketWriter != null) {
 			try {
 				log.fine("Start ZLIB (oid=" + SocketConnector.this.hashCode() + ")");
 				Element e = ElementFactory.create("compress", null, "http://jabber.org/protocol/compress");
@@ -659,6 +676,39 @@ public class SocketConnector
 		return result == null ? new KeyManager[0] : result;
 	}
 
+	/**
+	 * Returns list of server addresses to connect to. Address stored in session object is used if present, otherwise
+	 * SRV records of domain are resolved.
+	 *
+	 * @return list of addresses.
+	 */
+	protected List<Entry> resolveHosts() throws NamingException {
+		ArrayList<Entry> hosts = new ArrayList<>();
+		Entry serverHost = getHostFromSessionObject();
+		if (serverHost != null) {
+			log.info("DNS entry stored in session object: " + serverHost);
+			hosts.add(serverHost);
+		}
+		if (hosts.isEmpty()) {
+			String x = context.getSessionObject().getProperty(SessionObject.DOMAIN_NAME);
+			log.info("Resolving SRV record of domain '" + x + "'");
+			DnsResolver dnsResolver = UniversalFactory.createInstance(DnsResolver.class.getName());
+			if (dnsResolver != null) {
+				if (log.isLoggable(Level.FINE)) {
+					log.fine("Using resolver provided by user: " + dnsResolver);
+				}
+				hosts.addAll(dnsResolver.resolve(x));
+			} else {
+				if (log.isLoggable(Level.FINE)) {
+					log.fine("Using built-in resolver");
+				}
+				hosts.addAll(DNSResolver.resolve(x));
+			}
+
+		}
+		return hosts;
+	}
+
 	/**
 	 * Returns timeout value.
 	 *
@@ -688,6 +738,17 @@ public class SocketConnector
 		fireOnError(response, caught, context.getSessionObject());
 	}
 
+	/**
+	 * Checks if stanza should be written to socket immediately, without waiting for other queued stanzas.
+	 *
+	 * @param stanza stanza to check.
+	 *
+	 * @return <code>true</code> for stream management acks and requests.
+	 */
+	protected boolean isFlushPoint(Element stanza) throws XMLException {
+		return "urn:xmpp:sm:3".equals(stanza.getXMLNS());
+	}
+
 	protected void onErrorInThread(Exception e) throws JaxmppException {
 		if (getState() == State.disconnected) {
 			return;
@@ -735,10 +796,13 @@ public class SocketConnector
 	}
 
 	protected void proceedTLS() throws JaxmppException {
-		if (context.getSessionObject().getProperty(USE_BOUNCYCASTLE_KEY) == Boolean.TRUE) {
-			proceedBCTLS();
-		} else {
-			proceedJCETLS();
+		// writer is replaced, so queued data must wait until handshake is finished
+		synchronized (ioMutex) {
+			if (context.getSessionObject().getProperty(USE_BOUNCYCASTLE_KEY) == Boolean.TRUE) {
+				proceedBCTLS();
+			} else {
+				proceedJCETLS();
+			}
 		}
 	}
 
@@ -748,6 +812,13 @@ public class SocketConnector
 	 * @throws JaxmppException
 	 */
 	protected void proceedZLib() throws JaxmppException {
+		// writer is replaced, so queued data must wait until compression is started
+		synchronized (ioMutex) {
+			replaceStreamsWithZLib();
+		}
+	}
+
+	private void replaceStreamsWithZLib() throws JaxmppException {
 		log.fine("Proceeding ZLIB");
 		try {
 			context.getSessionObject().setProperty(Scope.stream, DISABLE_KEEPALIVE_KEY, Boolean.TRUE);
@@ -833,6 +904,10 @@ public class SocketConnector
 	}
 
 	private void closeSocket() {
+		final SocketWriter socketWriter = this.socketWriter;
+		if (socketWriter != null) {
+			socketWriter.terminate();
+		}
 		if (socket.isConnected()) {
 			try {
 				socket.close();
@@ -1209,6 +1284,11 @@ public class SocketConnector
 	}
 
 	private void workerTerminated(final Worker worker) {
+		final SocketWriter socketWriter = this.socketWriter;
+		if (socketWriter != null) {
+			socketWriter.terminate();
+			this.socketWriter = null;
+		}
 		try {
 			synchronized (this) {
 				if (closeTimer != null) {
@@ -0,0 +1,238 @@
+/*
+ * SocketWriter.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Outgoing queue of socket connection. Data passed to {@link #write(byte[], int, int, boolean)} are copied to
+ * pending buffer and written by separate thread, so callers don't wait for socket. All data waiting in buffer are
+ * passed to {@link #writeData(byte[], int, int)} at once, which should write and flush them.
+ * <p>
+ * Pending buffer is swapped with buffer being written, so after warm-up queueing data doesn't allocate memory. Batch
+ * is split only at flush points (like stream closing or stream management ack), to make sure they are flushed
+ * before following data is written.
+ * <p>
+ * Writer is executed by thread created by {@linkplain ThreadFactory} passed to {@link #start(ThreadFactory)}.
+ */
+public abstract class SocketWriter
+		implements Runnable {
+
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	/**
+	 * Buffers bigger than this size are released after write.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private final Object lock = new Object();
+	private final Logger log = Logger.getLogger(SocketWriter.class.getCanonicalName());
+	private int[] flushPoints = new int[16];
+	private int flushPointsCount;
+	private byte[] pending = new byte[INITIAL_BUFFER_SIZE];
+	private int pendingLength;
+	private long queued;
+	private byte[] spare = new byte[INITIAL_BUFFER_SIZE];
+	private int[] spareFlushPoints = new int[16];
+	private boolean terminated;
+	private volatile Thread thread;
+	private long written;
+
+	/**
+	 * Checks if current thread is thread executing this writer.
+	 *
+	 * @return <code>true</code> if called by writer.
+	 */
+	public boolean isCurrentThread() {
+		return thread == Thread.currentThread();
+	}
+
+	protected abstract void onErrorInThread(Exception e) throws JaxmppException;
+
+	@Override
+	public void run() {
+		log.finest(hashCode() + " Starting " + this);
+		try {
+			while (true) {
+				final byte[] batch;
+				final int batchLength;
+				final int[] batchFlushPoints;
+				final int batchFlushPointsCount;
+				synchronized (lock) {
+					while (pendingLength == 0 && !terminated) {
+						lock.wait();
+					}
+					if (terminated) {
+						break;
+					}
+					batch = pending;
+					batchLength = pendingLength;
+					batchFlushPoints = flushPoints;
+					batchFlushPointsCount = flushPointsCount;
+					pending = spare;
+					pendingLength = 0;
+					flushPoints = spareFlushPoints;
+					flushPointsCount = 0;
+				}
+
+				int offset = 0;
+				for (int i = 0; i < batchFlushPointsCount; i++) {
+					offset = writeSegment(batch, offset, batchFlushPoints[i]);
+				}
+				writeSegment(batch, offset, batchLength);
+
+				synchronized (lock) {
+					spare = batch.length > MAX_RETAINED_BUFFER_SIZE ? new byte[INITIAL_BUFFER_SIZE] : batch;
+					spareFlushPoints = batchFlushPoints;
+				}
+			}
+		} catch (InterruptedException e) {
+			log.finest("Writer is interrupted");
+		} catch (Exception e) {
+			log.log(Level.FINE, "Exception in writer", e);
+			try {
+				onErrorInThread(e);
+			} catch (JaxmppException e1) {
+				log.log(Level.WARNING, "Error on handling another exception", e1);
+			}
+		} finally {
+			terminate();
+		}
+	}
+
+	/**
+	 * Starts writer in thread created by given factory.
+	 *
+	 * @param threadFactory factory of threads.
+	 */
+	public void start(ThreadFactory threadFactory) {
+		Thread thread = threadFactory.newThread(this);
+		thread.setName("Socket-Writer-Thread");
+		this.thread = thread;
+		thread.start();
+	}
+
+	/**
+	 * Stops writer. Data waiting in queue are dropped and threads waiting for write are released.
+	 */
+	public void terminate() {
+		synchronized (lock) {
+			terminated = true;
+			pendingLength = 0;
+			flushPointsCount = 0;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until data identified by sequence number are written.
+	 *
+	 * @param sequence sequence number returned by {@link #write(byte[], int, int, boolean)}.
+	 *
+	 * @throws JaxmppException if writer was terminated before data were written.
+	 */
+	public void waitForWrite(long sequence) throws JaxmppException {
+		synchronized (lock) {
+			try {
+				while (written < sequence && !terminated) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				throw new JaxmppException(e);
+			}
+			if (written < sequence) {
+				throw new JaxmppException("Connection closed before data were written");
+			}
+		}
+	}
+
+	/**
+	 * Adds data to queue.
+	 *
+	 * @param data data to write.
+	 * @param flush <code>true</code> if data should be flushed immediately, even if more data is waiting in queue.
+	 *
+	 * @return sequence number of data, which may be used to {@linkplain #waitForWrite(long) wait} until data are
+	 * written.
+	 */
+	public long write(byte[] data, boolean flush) {
+		return write(data, 0, data.length, flush);
+	}
+
+	/**
+	 * Copies data to queue.
+	 *
+	 * @param data buffer with data to write. It may be reused by caller after method returns.
+	 * @param off offset of data in buffer.
+	 * @param len length of data.
+	 * @param flush <code>true</code> if data should be flushed immediately, even if more data is waiting in queue.
+	 *
+	 * @return sequence number of data, which may be used to {@linkplain #waitForWrite(long) wait} until data are
+	 * written.
+	 */
+	public long write(byte[] data, int off, int len, boolean flush) {
+		synchronized (lock) {
+			if (terminated) {
+				return -1;
+			}
+			if (pending.length - pendingLength < len) {
+				pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + len));
+			}
+			System.arraycopy(data, off, pending, pendingLength, len);
+			pendingLength += len;
+			if (flush) {
+				if (flushPointsCount == flushPoints.length) {
+					flushPoints = Arrays.copyOf(flushPoints, flushPoints.length * 2);
+				}
+				flushPoints[flushPointsCount++] = pendingLength;
+			}
+			if (pendingLength == len) {
+				// threads waiting for write wait on the same monitor, single notify could wake one of them
+				lock.notifyAll();
+			}
+			queued += len;
+			return queued;
+		}
+	}
+
+	/**
+	 * Writes and flushes data to socket.
+	 */
+	protected abstract void writeData(byte[] data, int off, int len) throws IOException;
+
+	private int writeSegment(byte[] batch, int offset, int end) throws IOException {
+		if (end <= offset) {
+			return offset;
+		}
+		writeData(batch, offset, end - offset);
+		synchronized (lock) {
+			written += end - offset;
+			lock.notifyAll();
+		}
+		return end;
+	}
+
+}
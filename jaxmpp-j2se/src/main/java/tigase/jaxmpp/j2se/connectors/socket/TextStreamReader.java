@@ -23,9 +23,6 @@ package tigase.jaxmpp.j2se.connectors.socket;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 
 import static tigase.jaxmpp.j2se.connectors.socket.SocketConnector.DEFAULT_SOCKET_BUFFER_SIZE;
 
@@ -40,7 +37,7 @@ public class TextStreamReader
 
 	private final ByteBuffer buf = ByteBuffer.allocate(DEFAULT_SOCKET_BUFFER_SIZE);
 
-	private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+	private final Utf8Decoder decoder = new Utf8Decoder();
 
 	private final InputStream inputStream;
 
@@ -57,38 +54,11 @@ public class TextStreamReader
 		}
 		buf.flip();
 
-		CharBuffer cb = CharBuffer.wrap(cbuf);
-		decoder.decode(buf, cb, false);
+		// incomplete multibyte sequence stays in buffer until rest of it is read
+		int decoded = decoder.decode(buf, cbuf, 0, cbuf.length);
 		buf.compact();
-		cb.flip();
 
-		return cb.hasRemaining() ? cb.remaining() : (read < 0 ? -1 : 0);
+		return decoded > 0 ? decoded : (read < 0 ? -1 : 0);
 	}
 
-	// Below are alternative read methods which can be used if above method
-	// will be causing performance issues
-	// public int read3(char[] cbuf) throws IOException {
-	// byte[] arr = new byte[2048];
-	// int read = inputStream.read(arr, 0, arr.length);
-	//
-	// CharBuffer cb = CharBuffer.wrap(cbuf);
-	// decoder.decode(ByteBuffer.wrap(arr, 0, read), cb, false);
-	// cb.flip();
-	//
-	// return cb.remaining();
-	// }
-	//
-	// public int read2(char[] cbuf) throws IOException {
-	// byte[] arr = new byte[2048];
-	// int read = inputStream.read(arr, 0, arr.length);
-	//
-	// CharBuffer cb = CharBuffer.allocate(2048);
-	// decoder.decode(ByteBuffer.wrap(arr, 0, read), cb, false);
-	// cb.flip();
-	//
-	// int got = cb.remaining();
-	// cb.get(cbuf, 0, got);
-	//
-	// return got;
-	// }	
 }
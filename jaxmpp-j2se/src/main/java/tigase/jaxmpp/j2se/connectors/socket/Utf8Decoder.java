@@ -0,0 +1,175 @@
+/*
+ * Utf8Decoder.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.MalformedInputException;
+
+/**
+ * UTF-8 decoder working directly on array of heap {@linkplain ByteBuffer} read from socket. It replaces UTF-8
+ * {@linkplain CharsetDecoder} on receiving path.
+ * <p>
+ * Most of XMPP traffic (markup, JIDs, identifiers) is ASCII. Short ASCII runs between multibyte characters are
+ * copied in a tight loop, and long runs are passed to US-ASCII decoder of JVM, which copies them in bulk (intrinsic on
+ * recent JVMs) and stops on first non-ASCII byte. Only multibyte sequences are decoded byte by byte, so text with
+ * national characters doesn't fall back to slow path for rest of buffer, as UTF-8 decoder of JVM does.
+ * <p>
+ * Multibyte sequence split between reads is left in input buffer, and should be passed again together with next
+ * received data. Instance isn't thread safe, so each reader should have its own.
+ */
+public final class Utf8Decoder {
+
+	/**
+	 * Length of ASCII run copied in loop, before rest of it is passed to bulk decoder.
+	 */
+	private static final int BULK_THRESHOLD = 32;
+
+	private final CharsetDecoder asciiDecoder = Charset.forName("US-ASCII").newDecoder();
+	private CharBuffer outBuffer;
+
+	private static boolean isContinuation(int b) {
+		return (b & 0xC0) == 0x80;
+	}
+
+	private static int malformed(ByteBuffer in, int sp, int off, int dp, int length) throws MalformedInputException {
+		in.position(sp - in.arrayOffset());
+		if (dp > off) {
+			return dp - off;
+		}
+		throw new MalformedInputException(length);
+	}
+
+	/**
+	 * Decodes UTF-8 data from buffer. Decoding stops when output is full, or when only incomplete multibyte sequence
+	 * is left in buffer. Position of buffer is moved after last decoded byte.
+	 *
+	 * @param in heap buffer with data to decode.
+	 * @param out output array.
+	 * @param off offset in output array.
+	 * @param len maximum number of chars to decode.
+	 *
+	 * @return number of decoded chars.
+	 *
+	 * @throws MalformedInputException if data is not valid UTF-8. Chars decoded before malformed sequence are
+	 * returned first, so exception is thrown by next call.
+	 */
+	public int decode(final ByteBuffer in, final char[] out, final int off, final int len)
+			throws MalformedInputException {
+		final byte[] src = in.array();
+		final int arrayOffset = in.arrayOffset();
+		final int end = arrayOffset + in.limit();
+		final int dl = off + len;
+		int sp = arrayOffset + in.position();
+		int dp = off;
+		// data usually starts with markup, so first run is decoded in bulk
+		boolean bulk = true;
+
+		while (sp < end && dp < dl) {
+			final int limit = sp + Math.min(end - sp, dl - dp);
+			if (!bulk) {
+				final int scalarEnd = Math.min(limit, sp + BULK_THRESHOLD);
+				while (sp < scalarEnd && src[sp] >= 0) {
+					out[dp++] = (char) src[sp++];
+				}
+				bulk = sp == scalarEnd;
+			}
+			if (bulk && sp < limit && src[sp] >= 0) {
+				// long ASCII run
+				final CharBuffer cb = wrap(out);
+				cb.limit(dl);
+				cb.position(dp);
+				in.position(sp - arrayOffset);
+				asciiDecoder.decode(in, cb, false);
+				sp = arrayOffset + in.position();
+				dp = cb.position();
+				continue;
+			}
+			if (sp == limit) {
+				continue;
+			}
+
+			bulk = false;
+			final int b1 = src[sp];
+			final int avail = end - sp;
+			if ((b1 >> 5) == -2 && (b1 & 0x1E) != 0) {
+				// 110xxxxx 10xxxxxx
+				if (avail < 2) {
+					break;
+				}
+				final int b2 = src[sp + 1];
+				if (!isContinuation(b2)) {
+					return malformed(in, sp, off, dp, 1);
+				}
+				out[dp++] = (char) (((b1 & 0x1F) << 6) | (b2 & 0x3F));
+				sp += 2;
+			} else if ((b1 >> 4) == -2) {
+				// 1110xxxx 10xxxxxx 10xxxxxx
+				if (avail < 3) {
+					break;
+				}
+				final int b2 = src[sp + 1];
+				final int b3 = src[sp + 2];
+				final int c = ((b1 & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+				if (!isContinuation(b2) || !isContinuation(b3) || c < 0x800 || Character.isSurrogate((char) c)) {
+					return malformed(in, sp, off, dp, 3);
+				}
+				out[dp++] = (char) c;
+				sp += 3;
+			} else if ((b1 >> 3) == -2) {
+				// 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+				if (avail < 4 || dl - dp < 2) {
+					break;
+				}
+				final int b2 = src[sp + 1];
+				final int b3 = src[sp + 2];
+				final int b4 = src[sp + 3];
+				final int cp = ((b1 & 0x07) << 18) | ((b2 & 0x3F) << 12) | ((b3 & 0x3F) << 6) | (b4 & 0x3F);
+				if (!isContinuation(b2) || !isContinuation(b3) || !isContinuation(b4) ||
+						cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+					return malformed(in, sp, off, dp, 4);
+				}
+				out[dp++] = Character.highSurrogate(cp);
+				out[dp++] = Character.lowSurrogate(cp);
+				sp += 4;
+			} else {
+				return malformed(in, sp, off, dp, 1);
+			}
+		}
+
+		in.position(sp - arrayOffset);
+		return dp - off;
+	}
+
+	private CharBuffer wrap(char[] out) {
+		CharBuffer cb = outBuffer;
+		if (cb == null || cb.array() != out) {
+			cb = CharBuffer.wrap(out);
+			outBuffer = cb;
+		} else {
+			cb.clear();
+		}
+		return cb;
+	}
+
+}
@@ -23,21 +23,27 @@ package tigase.jaxmpp.j2se.connectors.socket;
 import tigase.jaxmpp.core.client.Connector;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.jaxmpp.j2se.xml.J2seElement;
 import tigase.xml.SimpleParser;
 import tigase.xml.SingletonFactory;
 
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static tigase.jaxmpp.j2se.connectors.socket.SocketConnector.DEFAULT_SOCKET_BUFFER_SIZE;
 
 /**
+ * Reads and parses data received by connector. Worker is executed by thread created by {@linkplain ThreadFactory}
+ * passed to {@link #start(ThreadFactory)}, so it may be run in platform or virtual thread.
+ *
  * @author andrzej
  */
 public abstract class Worker
-		extends Thread {
+		implements Runnable {
 
 	private final char[] buffer = new char[DEFAULT_SOCKET_BUFFER_SIZE];
 
@@ -79,21 +85,49 @@ public abstract class Worker
 		}
 	});
 	private final SimpleParser parser = SingletonFactory.getParserInstance();
+	private volatile Thread thread;
 
 	public Worker(Connector connector) {
 		this.connector = connector;
-		setName("Socket-Worker-Thread");
-		setDaemon(true);
 	}
 
 	protected abstract Reader getReader();
 
-	@Override
 	public void interrupt() {
-		super.interrupt();
+		final Thread thread = this.thread;
+		if (thread != null) {
+			thread.interrupt();
+		}
 		log.log(Level.FINE, "Worker Interrupted");
 	}
 
+	/**
+	 * Checks if thread executing this worker is alive.
+	 *
+	 * @return <code>true</code> if worker is started and not terminated yet.
+	 *
+	 * @deprecated kept for code which used worker as {@linkplain Thread}.
+	 */
+	@Deprecated
+	public boolean isAlive() {
+		final Thread thread = this.thread;
+		return thread != null && thread.isAlive();
+	}
+
+	/**
+	 * Checks if current thread is thread executing this worker.
+	 *
+	 * @return <code>true</code> if called by worker.
+	 */
+	public boolean isCurrentThread() {
+		return thread == Thread.currentThread();
+	}
+
+	public boolean isInterrupted() {
+		final Thread thread = this.thread;
+		return thread != null && thread.isInterrupted();
+	}
+
 	protected abstract void onErrorInThread(Exception e) throws JaxmppException;
 
 	protected abstract void onStreamStart(Map<String, String> attribs);
@@ -104,7 +138,6 @@ public abstract class Worker
 
 	@Override
 	public void run() {
-		super.run();
 		log.finest(hashCode() + " Starting " + this);
 
 		int r = -2;
@@ -137,5 +170,34 @@ public abstract class Worker
 		}
 	}
 
+	/**
+	 * Sets handler of stanza children which are processed while stanza is parsed.
+	 */
+	public void setStreamedChildrenHandler(StreamedChildrenHandler handler) {
+		domHandler.setStreamedChildrenHandler(handler);
+	}
+
+	/**
+	 * Starts worker in daemon platform thread.
+	 *
+	 * @deprecated use {@linkplain #start(ThreadFactory)}.
+	 */
+	@Deprecated
+	public void start() {
+		start(ThreadFactories.platform());
+	}
+
+	/**
+	 * Starts worker in thread created by given factory.
+	 *
+	 * @param threadFactory factory of threads.
+	 */
+	public void start(ThreadFactory threadFactory) {
+		Thread thread = threadFactory.newThread(this);
+		thread.setName("Socket-Worker-Thread");
+		this.thread = thread;
+		thread.start();
+	}
+
 	protected abstract void workerTerminated();
 }
@@ -23,6 +23,9 @@ package tigase.jaxmpp.j2se.connectors.socket;
 
 //~--- non-JDK imports --------------------------------------------------------
 
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
+import tigase.jaxmpp.j2se.xml.J2seElement;
 import tigase.xml.DefaultElementFactory;
 import tigase.xml.Element;
 import tigase.xml.ElementFactory;
@@ -72,6 +75,8 @@ public class XMPPDomBuilderHandler
 	private Map<String, String> namespaces = new TreeMap<String, String>();
 	private Object parserState = null;
 	private StreamListener service = null;
+	private Element streamedElement = null;
+	private StreamedChildrenHandler streamedChildrenHandler = null;
 
 	// ~--- constructors
 	// ---------------------------------------------------------
@@ -151,7 +156,18 @@ public class XMPPDomBuilderHandler
 			if (log.isLoggable(Level.FINEST)) {
 				log.finest("Adding new request: " + elem.toString());
 			}
+		} else if (streamedElement != null && el_stack.peek() == streamedElement) {
+			// streamed child is not kept in stanza
+			try {
+				streamedChildrenHandler.onChild(new J2seElement(el_stack.firstElement()),
+												new J2seElement(streamedElement), new J2seElement(elem));
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Error on processing streamed element", e);
+			}
 		} else {
+			if (elem == streamedElement) {
+				streamedElement = null;
+			}
 			el_stack.peek().addChild(elem);
 		} // end of if (el_stack.isEmpty()) else
 		return true;
@@ -226,6 +242,15 @@ public class XMPPDomBuilderHandler
 		parserState = state;
 	}
 
+	/**
+	 * Sets handler of streamed children of stanzas.
+	 *
+	 * @param handler handler or <code>null</code> if whole stanzas should be built.
+	 */
+	public void setStreamedChildrenHandler(StreamedChildrenHandler handler) {
+		this.streamedChildrenHandler = handler;
+	}
+
 	/**
 	 * Method description
 	 *
@@ -338,6 +363,17 @@ public class XMPPDomBuilderHandler
 		}
 
 		el_stack.push(elem);
+
+		if (streamedChildrenHandler != null && el_stack.size() == 2) {
+			try {
+				if (streamedChildrenHandler.isStreamed(new J2seElement(el_stack.firstElement()),
+													   new J2seElement(elem))) {
+					streamedElement = elem;
+				}
+			} catch (JaxmppException e) {
+				log.log(Level.WARNING, "Error on checking streamed element", e);
+			}
+		}
 	}
 } // XMPPDomBuilderHandler
 
@@ -30,9 +30,11 @@ import tigase.jaxmpp.core.client.connector.SeeOtherHostHandler;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
 import tigase.jaxmpp.core.client.xml.Element;
 import tigase.jaxmpp.core.client.xmpp.utils.MutableBoolean;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.jaxmpp.j2se.connectors.socket.Reader;
 import tigase.jaxmpp.j2se.connectors.socket.SocketConnector;
 import tigase.jaxmpp.j2se.connectors.socket.Worker;
+import tigase.jaxmpp.j2se.xml.ElementSerializer;
 
 import javax.net.ssl.*;
 import java.io.IOException;
@@ -215,15 +217,26 @@ public class WebSocketConnector
 	}
 
 	protected void send(byte[] buffer) throws JaxmppException {
+		send(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Sends data in single WebSocket frame. Data in buffer are masked in place.
+	 *
+	 * @param buffer buffer with data to send.
+	 * @param off offset of data in buffer.
+	 * @param len length of data.
+	 */
+	protected void send(byte[] buffer, int off, int len) throws JaxmppException {
 		synchronized (ioMutex) {
 			if (writer != null) {
 				try {
 					if (log.isLoggable(Level.FINEST)) {
-						log.finest("Send: " + new String(buffer));
+						log.finest("Send: " + new String(buffer, off, len, UTF_CHARSET));
 					}
 
 					// prepare WebSocket header according to Hybi specification
-					int size = buffer.length;
+					int size = len;
 					random.nextBytes(mask);
 					byte maskedLen = (byte) 0x80;
 					ByteBuffer bbuf = ByteBuffer.allocate(12);
@@ -244,11 +257,11 @@ public class WebSocketConnector
 					writer.write(bbuf.array(), 0, bbuf.remaining());
 					writer.write(mask, 0, 4);
 
-					for (int i = 0; i < buffer.length; i++) {
-						buffer[i] = (byte) (buffer[i] ^ mask[i % 4]);
+					for (int i = 0; i < len; i++) {
+						buffer[off + i] = (byte) (buffer[off + i] ^ mask[i % 4]);
 					}
 					// send actual data
-					writer.write(buffer);
+					writer.write(buffer, off, len);
 					writer.flush();
 				} catch (IOException e) {
 					throw new JaxmppException(e);
@@ -261,8 +274,18 @@ public class WebSocketConnector
 	@Override
 	public void send(Element stanza) throws JaxmppException {
 		synchronized (ioMutex) {
-			if (writer != null) {
-				super.send(stanza);
+			if (writer != null && stanza != null) {
+				if (getState() != State.connected && getState() != State.connecting &&
+						getState() != State.disconnecting) {
+					throw new JaxmppException("Not connected");
+				}
+				try {
+					context.getEventBus()
+							.fire(new StanzaSendingHandler.StanzaSendingEvent(context.getSessionObject(), stanza));
+				} catch (Exception e) {
+				}
+				final ElementSerializer serializer = ElementSerializer.getInstance().append(stanza);
+				send(serializer.getBuffer(), 0, serializer.getLength());
 			}
 		}
 	}
@@ -418,7 +441,7 @@ public class WebSocketConnector
 			//reader = new WebSocketReader(new BufferedInputStream(socket.getInputStream()));
 			reader = new WebSocketReader(socket.getInputStream());
 			log.finest("Starting worker...");
-			worker.start();
+			worker.start(ThreadFactories.getThreadFactory(context.getSessionObject()));
 
 			restartStream();
 
@@ -428,7 +451,7 @@ public class WebSocketConnector
 
 				@Override
 				public void run() {
-					Thread t = new Thread("Keep-Alive-Thread") {
+					ThreadFactories.newThread(context.getSessionObject(), "Keep-Alive-Thread", new Runnable() {
 						@Override
 						public void run() {
 							try {
@@ -437,9 +460,7 @@ public class WebSocketConnector
 								log.log(Level.SEVERE, "Can't ping!", e);
 							}
 						}
-					};
-					t.setDaemon(true);
-					t.start();
+					}).start();
 				}
 			};
 			if (context.getSessionObject().getProperty(EXTERNAL_KEEPALIVE_KEY) == null ||
@@ -21,13 +21,12 @@
 package tigase.jaxmpp.j2se.connectors.websocket;
 
 import tigase.jaxmpp.j2se.connectors.socket.Reader;
+import tigase.jaxmpp.j2se.connectors.socket.Utf8Decoder;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,7 +47,7 @@ public class WebSocketReader
 	}
 
 	private final ByteBuffer buf = ByteBuffer.allocate(DEFAULT_SOCKET_BUFFER_SIZE);
-	private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder();
+	private final Utf8Decoder decoder = new Utf8Decoder();
 	private final InputStream inputStream;
 	private FrameType frameType = FrameType.Pong;
 	private long remaining = 0;
@@ -145,7 +144,7 @@ public class WebSocketReader
 				buf.limit((int) (buf.position() + waiting));
 				switch (this.frameType) {
 					case Text:
-						decoder.decode(buf, cb, false);
+						cb.position(cb.position() + decoder.decode(buf, cbuf, cb.position(), cb.remaining()));
 						break;
 					case Pong:
 						buf.position((int) (buf.position() + remaining));
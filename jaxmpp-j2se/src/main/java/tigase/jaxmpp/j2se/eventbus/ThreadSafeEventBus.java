@@ -21,6 +21,7 @@
 package tigase.jaxmpp.j2se.eventbus;
 
 import tigase.jaxmpp.core.client.eventbus.*;
+import tigase.jaxmpp.j2se.StanzaExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,27 +30,53 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
+/**
+ * Event bus calling handlers asynchronously. All handlers of fired event are called one after another by single
+ * task, and {@linkplain JaxmppEventWithCallback.RunAfter RunAfter} of event is called by the same task after all
+ * handlers.
+ * <p>
+ * By default each bus has own thread, so events are processed in order they were fired. Bus created with {@linkplain
+ * #ThreadSafeEventBus(StanzaExecutor) executor} dispatches events to lanes of executor, selected by {@linkplain
+ * #getOrderingKey(Event) ordering key} of event (session object by default). Events with the same key are processed
+ * in order they were fired, and events with different keys may be processed in parallel, so many clients may share
+ * pool of threads. Executor used for events should be different than executor processing stanzas, because handlers
+ * may wait for results of stanza processing.
+ */
 public class ThreadSafeEventBus
 		extends DefaultEventBus {
 
 	private static int threadCounter = 1;
 
-	private final Executor executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-		@Override
-		public Thread newThread(Runnable r) {
-			Thread t = new Thread(r);
-			t.setName("EventBus-Thread-" + (++threadCounter));
-			t.setDaemon(true);
-			return t;
-		}
-	});
+	private final Executor executor;
+	private final StanzaExecutor lanes;
+
+	public ThreadSafeEventBus() {
+		this.lanes = null;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r);
+				t.setName("EventBus-Thread-" + (++threadCounter));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Creates event bus dispatching events to lanes of given executor.
+	 *
+	 * @param executor executor with pool of threads. It may be shared by many buses.
+	 */
+	public ThreadSafeEventBus(StanzaExecutor executor) {
+		this.lanes = executor;
+		this.executor = null;
+	}
 
 	@Override
 	protected List<EventHandler> createHandlersArray() {
-		// CopyOnWriteArrayList ??
 		return new ArrayList<EventHandler>();
 	}
 
@@ -64,49 +91,80 @@ public class ThreadSafeEventBus
 	}
 
 	@Override
-	protected void doFire(final Event<EventHandler> event, final ArrayList<EventHandler> handlers) {
-		final AtomicInteger counter = (event instanceof JaxmppEventWithCallback) ? new AtomicInteger(
-				handlers.size() + 1) : null;
-
-		for (final EventHandler eventHandler : handlers) {
-			Runnable r = new Runnable() {
-				@Override
-				public void run() {
+	protected void doFire(final Event<EventHandler> event, final EventHandler[] handlers) {
+		if (handlers.length == 0 && !(event instanceof JaxmppEventWithCallback)) {
+			return;
+		}
+		final Runnable task = new DispatchTask(event, handlers);
+		if (lanes == null) {
+			executor.execute(task);
+		} else {
+			lanes.getLane(getOrderingKey(event)).execute(task);
+		}
+	}
+
+	/**
+	 * Returns key of event used to select lane of executor. Events with the same key are processed in order they
+	 * were fired.
+	 *
+	 * @param event fired event.
+	 *
+	 * @return session object of {@linkplain JaxmppEvent}, or this bus for other events.
+	 */
+	protected Object getOrderingKey(Event<?> event) {
+		if (event instanceof JaxmppEvent && ((JaxmppEvent<?>) event).getSessionObject() != null) {
+			return ((JaxmppEvent<?>) event).getSessionObject();
+		}
+		return this;
+	}
+
+	/**
+	 * Calls all handlers of event and then its {@linkplain JaxmppEventWithCallback.RunAfter RunAfter}.
+	 */
+	private final class DispatchTask
+			implements Runnable {
+
+		private final Event<EventHandler> event;
+		private final EventHandler[] handlers;
+
+		DispatchTask(Event<EventHandler> event, EventHandler[] handlers) {
+			this.event = event;
+			this.handlers = handlers;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void run() {
+			for (EventHandler eventHandler : handlers) {
+				try {
+					if (log.isLoggable(Level.FINEST)) {
+						log.finest("Calling handler class " + eventHandler.getClass() + " with event " +
+										   event.getClass());
+					}
+					if (eventHandler instanceof EventListener) {
+						((EventListener) eventHandler).onEvent(event);
+					} else {
+						event.dispatch(eventHandler);
+					}
+				} catch (Throwable e) {
+					if (log.isLoggable(Level.WARNING)) {
+						log.log(Level.WARNING, "", e);
+					}
+				}
+			}
+			if (event instanceof JaxmppEventWithCallback) {
+				final JaxmppEventWithCallback.RunAfter run = ((JaxmppEventWithCallback<EventHandler>) event)
+						.getRunAfter();
+				if (run != null) {
 					try {
-						log.finest(
-								"Calling handler class " + eventHandler.getClass() + " with event " + event.getClass());
-						if (eventHandler instanceof EventListener) {
-							((EventListener) eventHandler).onEvent(event);
-						} else {
-							event.dispatch(eventHandler);
-						}
+						run.after(event);
 					} catch (Throwable e) {
 						if (log.isLoggable(Level.WARNING)) {
 							log.log(Level.WARNING, "", e);
 						}
-					} finally {
-						doFireEventRunAfter(counter, event);
 					}
 				}
-			};
-			executor.execute(r);
-//			r.run();
-		}
-
-		doFireEventRunAfter(counter, event);
-	}
-
-	protected void doFireEventRunAfter(AtomicInteger counter, final Event<EventHandler> event) {
-		if (counter != null && counter.decrementAndGet() == 0) {
-			final JaxmppEventWithCallback.RunAfter run = ((JaxmppEventWithCallback<EventHandler>) event).getRunAfter();
-			if (run != null) {
-				executor.execute(new Runnable() {
-					@Override
-					public void run() {
-						run.after(event);
-					}
-				});
 			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -37,6 +37,7 @@ import tigase.jaxmpp.core.client.xmpp.modules.socks5.Socks5BytestreamsModule;
 import tigase.jaxmpp.core.client.xmpp.stanzas.IQ;
 import tigase.jaxmpp.core.client.xmpp.stanzas.Presence;
 import tigase.jaxmpp.j2se.J2SECapabiliesCache;
+import tigase.jaxmpp.j2se.ThreadFactories;
 import tigase.jaxmpp.j2se.connection.ConnectionManager;
 import tigase.jaxmpp.j2se.connection.socks5bytestream.J2SEStreamhostsResolver;
 import tigase.jaxmpp.j2se.connection.socks5bytestream.StreamhostsResolver;
@@ -309,7 +310,7 @@ public class FileTransferManager
 	}
 
 	private void startReceiving(final FileTransfer fileTransfer, final Socket socket) {
-		Thread t = new Thread() {
+		Runnable task = new Runnable() {
 			@Override
 			public void run() {
 				try {
@@ -332,12 +333,11 @@ public class FileTransferManager
 				}
 			}
 		};
-		t.setDaemon(true);
-		t.start();
+		startThread(task);
 	}
 
 	private void startSending(final FileTransfer fileTransfer, final Socket socket) {
-		Thread t = new Thread() {
+		Runnable task = new Runnable() {
 			@Override
 			public void run() {
 				try {
@@ -357,8 +357,11 @@ public class FileTransferManager
 				}
 			}
 		};
-		t.setDaemon(true);
-		t.start();
+		startThread(task);
+	}
+
+	private void startThread(Runnable task) {
+		ThreadFactories.getThreadFactory(context == null ? null : context.getSessionObject()).newThread(task).start();
 	}
 
 	private void transferData(FileTransfer ft, InputStream in, OutputStream out) throws IOException {
@@ -0,0 +1,306 @@
+/*
+ * ElementSerializer.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.xml;
+
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementWrapper;
+import tigase.jaxmpp.core.client.xml.XMLException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes {@linkplain Element elements} directly to UTF-8 encoded bytes, without creating intermediate
+ * <code>String</code> like <code>getAsString().getBytes()</code> does.
+ * <p>
+ * Instances are pooled per thread and buffer is reused, so serialization doesn't allocate memory once buffer is big
+ * enough. Instance returned by {@link #getInstance()} is valid only until next call of this method in the same
+ * thread.
+ * <pre>
+ * ElementSerializer serializer = ElementSerializer.getInstance();
+ * serializer.append(stanza);
+ * out.write(serializer.getBuffer(), 0, serializer.getLength());
+ * </pre>
+ * Output is the same as {@linkplain Element#getAsString()} of {@linkplain
+ * tigase.jaxmpp.core.client.xml.DefaultElement DefaultElement}. {@linkplain J2seElement} may contain text mixed with
+ * child elements, so it is serialized using its own <code>getAsString()</code>.
+ */
+public final class ElementSerializer {
+
+	/**
+	 * Buffers bigger than this size are not kept in pool.
+	 */
+	public static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+	private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+	private static final ThreadLocal<ElementSerializer> POOL = new ThreadLocal<ElementSerializer>() {
+		@Override
+		protected ElementSerializer initialValue() {
+			return new ElementSerializer();
+		}
+	};
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int length;
+
+	/**
+	 * Returns empty serializer assigned to current thread.
+	 *
+	 * @return serializer.
+	 */
+	public static ElementSerializer getInstance() {
+		ElementSerializer serializer = POOL.get();
+		serializer.reset();
+		return serializer;
+	}
+
+	/**
+	 * Serializes element to byte array.
+	 *
+	 * @param element element to serialize.
+	 *
+	 * @return UTF-8 encoded element.
+	 */
+	public static byte[] toBytes(Element element) throws XMLException {
+		return getInstance().append(element).toByteArray();
+	}
+
+	public ElementSerializer() {
+	}
+
+	/**
+	 * Appends serialized element to buffer.
+	 *
+	 * @param element element to serialize.
+	 *
+	 * @return this serializer.
+	 */
+	public ElementSerializer append(Element element) throws XMLException {
+		append(element, null);
+		return this;
+	}
+
+	/**
+	 * Appends UTF-8 encoded string to buffer. String is not escaped.
+	 *
+	 * @param data string to append.
+	 *
+	 * @return this serializer.
+	 */
+	public ElementSerializer appendRaw(String data) {
+		ensureCapacity(data.length());
+		final int len = data.length();
+		for (int i = 0; i < len; i++) {
+			final char c = data.charAt(i);
+			if (c < 0x80) {
+				if (length == buffer.length) {
+					ensureCapacity(len - i);
+				}
+				buffer[length++] = (byte) c;
+			} else {
+				i = appendNonAscii(data, i, c);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Returns internal buffer. Only first {@link #getLength()} bytes are valid.
+	 *
+	 * @return internal buffer.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Clears buffer.
+	 */
+	public void reset() {
+		length = 0;
+		if (buffer.length > MAX_POOLED_BUFFER_SIZE) {
+			buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+	}
+
+	/**
+	 * Returns copy of serialized data.
+	 *
+	 * @return new array containing serialized data.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, length);
+	}
+
+	/**
+	 * Writes serialized data to stream.
+	 *
+	 * @param out output stream.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, length);
+	}
+
+	private void append(Element element, final String parentXmlns) throws XMLException {
+		while (element instanceof ElementWrapper) {
+			element = ((ElementWrapper) element).getWrappedElement();
+		}
+		if (element instanceof J2seElement) {
+			appendRaw(element.getAsString());
+			return;
+		}
+		final String name = element.getName();
+		final String xmlns = element.getXMLNS();
+
+		appendByte('<');
+		appendRaw(name);
+		if (xmlns != null && !xmlns.equals(parentXmlns)) {
+			appendRaw(" xmlns=\"");
+			appendEscaped(xmlns);
+			appendByte('"');
+		}
+
+		final Map<String, String> attributes = element.getAttributes();
+		if (attributes != null) {
+			synchronized (attributes) {
+				for (Map.Entry<String, String> attr : attributes.entrySet()) {
+					if ("xmlns".equals(attr.getKey())) {
+						continue;
+					}
+					appendByte(' ');
+					appendRaw(attr.getKey());
+					appendRaw("=\"");
+					appendEscaped(attr.getValue());
+					appendByte('"');
+				}
+			}
+		}
+
+		final List<Element> children = element.getChildren();
+		final String value = element.getValue();
+		if (children == null || children.isEmpty()) {
+			if (value == null) {
+				appendRaw("/>");
+				return;
+			}
+			appendByte('>');
+		} else {
+			appendByte('>');
+			synchronized (children) {
+				for (Element child : children) {
+					append(child, xmlns);
+				}
+			}
+		}
+		if (value != null) {
+			appendEscaped(value);
+		}
+		appendRaw("</");
+		appendRaw(name);
+		appendByte('>');
+	}
+
+	private void appendByte(char c) {
+		if (length == buffer.length) {
+			ensureCapacity(1);
+		}
+		buffer[length++] = (byte) c;
+	}
+
+	private void appendEscaped(final String data) {
+		if (data == null) {
+			return;
+		}
+		final int len = data.length();
+		ensureCapacity(len);
+		for (int i = 0; i < len; i++) {
+			final char c = data.charAt(i);
+			switch (c) {
+				case '&':
+					appendRaw("&amp;");
+					break;
+				case '<':
+					appendRaw("&lt;");
+					break;
+				case '>':
+					appendRaw("&gt;");
+					break;
+				case '"':
+					appendRaw("&quot;");
+					break;
+				case '\'':
+					appendRaw("&apos;");
+					break;
+				default:
+					if (c < 0x80) {
+						if (length == buffer.length) {
+							ensureCapacity(len - i);
+						}
+						buffer[length++] = (byte) c;
+					} else {
+						i = appendNonAscii(data, i, c);
+					}
+			}
+		}
+	}
+
+	/**
+	 * Appends UTF-8 encoded non-ASCII character.
+	 *
+	 * @return index of last used character (surrogate pair takes two characters).
+	 */
+	private int appendNonAscii(final String data, final int i, final char c) {
+		ensureCapacity(4);
+		if (c < 0x800) {
+			buffer[length++] = (byte) (0xC0 | (c >> 6));
+			buffer[length++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c) && i + 1 < data.length() &&
+				Character.isLowSurrogate(data.charAt(i + 1))) {
+			final int cp = Character.toCodePoint(c, data.charAt(i + 1));
+			buffer[length++] = (byte) (0xF0 | (cp >> 18));
+			buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+			return i + 1;
+		} else if (Character.isSurrogate(c)) {
+			// unpaired surrogate, replaced like String.getBytes() does
+			buffer[length++] = (byte) '?';
+		} else {
+			buffer[length++] = (byte) (0xE0 | (c >> 12));
+			buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[length++] = (byte) (0x80 | (c & 0x3F));
+		}
+		return i;
+	}
+
+	private void ensureCapacity(int required) {
+		if (buffer.length - length < required) {
+			int newSize = Math.max(buffer.length * 2, length + required);
+			buffer = Arrays.copyOf(buffer, newSize);
+		}
+	}
+
+}
@@ -188,6 +188,10 @@ public class J2seElement
 		this.xmlElement.setCData(value);
 	}
 
+	tigase.xml.Element getXmlElement() {
+		return xmlElement;
+	}
+
 	@Override
 	public String getXMLNS() throws XMLException {
 		return getAttribute("xmlns");
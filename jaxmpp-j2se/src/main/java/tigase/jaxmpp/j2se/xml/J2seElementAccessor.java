@@ -0,0 +1,66 @@
+/*
+ * J2seElementAccessor.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.xml;
+
+import tigase.jaxmpp.core.client.criteria.CompiledCriteria;
+import tigase.jaxmpp.core.client.criteria.ElementAccessor;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementWrapper;
+
+import java.util.List;
+
+/**
+ * Lets {@linkplain CompiledCriteria} match received stanzas directly against {@linkplain tigase.xml.Element}
+ * wrapped by {@linkplain J2seElement}, without creating wrapper for each visited child.
+ */
+public class J2seElementAccessor
+		implements ElementAccessor<tigase.xml.Element> {
+
+	@Override
+	public String getAttribute(tigase.xml.Element element, String attName) {
+		return element.getAttribute(attName);
+	}
+
+	@Override
+	public List<tigase.xml.Element> getChildren(tigase.xml.Element element) {
+		return element.getChildren();
+	}
+
+	@Override
+	public String getName(tigase.xml.Element element) {
+		return element.getName();
+	}
+
+	@Override
+	public String getXMLNS(tigase.xml.Element element) {
+		// the same as J2seElement.getXMLNS()
+		return element.getAttribute("xmlns");
+	}
+
+	@Override
+	public tigase.xml.Element unwrap(Element element) {
+		while (element instanceof ElementWrapper) {
+			element = ((ElementWrapper) element).getWrappedElement();
+		}
+		return element instanceof J2seElement ? ((J2seElement) element).getXmlElement() : null;
+	}
+
+}
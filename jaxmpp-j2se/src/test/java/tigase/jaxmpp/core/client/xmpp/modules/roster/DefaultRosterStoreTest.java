@@ -0,0 +1,107 @@
+/*
+ * DefaultRosterStoreTest.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import org.junit.Before;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem.Subscription;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DefaultRosterStoreTest {
+
+	private J2SESessionObject sessionObject;
+	private DefaultRosterStore store;
+
+	private static Set<String> jids(List<RosterItem> items) {
+		Set<String> result = new TreeSet<String>();
+		for (RosterItem item : items) {
+			result.add(item.getJid().toString());
+		}
+		return result;
+	}
+
+	private RosterItem item(String jid, Subscription subscription, String... groups) {
+		RosterItem item = new RosterItem(BareJID.bareJIDInstance(jid), sessionObject);
+		item.setSubscription(subscription);
+		item.getGroups().addAll(Arrays.asList(groups));
+		return item;
+	}
+
+	@Before
+	public void setUp() {
+		sessionObject = new J2SESessionObject();
+		sessionObject.setUserProperty(SessionObject.USER_BARE_JID, BareJID.bareJIDInstance("juliet@example.com"));
+		store = new DefaultRosterStore();
+		RosterModule.setRosterStore(sessionObject, store);
+	}
+
+	@Test
+	public void testIndexes() {
+		assertEquals(new HashSet<String>(Arrays.asList("Friends", "Verona")),
+					 store.addItem(item("romeo@example.net", Subscription.both, "Friends", "Verona")));
+		assertEquals(Collections.singleton("Family"),
+					 store.addItem(item("nurse@example.com", Subscription.from, "Family", "Verona")));
+		RosterItem tybalt = item("tybalt@example.net", Subscription.none);
+		tybalt.setAsk(true);
+		store.addItem(tybalt);
+
+		assertEquals(new TreeSet<String>(Arrays.asList("nurse@example.com", "romeo@example.net")),
+					 jids(store.getGroupMembers("Verona")));
+		assertEquals(2, store.getGroupSize("Verona"));
+		assertEquals(0, store.getGroupSize("Enemies"));
+		assertTrue(store.getGroupMembers("Enemies").isEmpty());
+		assertEquals(Collections.singleton("tybalt@example.net"), jids(store.getPendingSubscriptions()));
+		assertEquals(1, store.getCount(Subscription.both));
+		assertEquals(Collections.singleton("nurse@example.com"), jids(store.getBySubscription(Subscription.from)));
+
+		// item is modified in place before it is added again, like in RosterModule
+		HashSet<String> groupsOld = new HashSet<String>(store.getGroups());
+		RosterModule.fill(tybalt, "Tybalt", Subscription.to, Arrays.asList("Enemies"), false, false);
+		assertEquals(Collections.singleton("Enemies"), store.addItem(tybalt));
+		assertEquals(Collections.singleton("Enemies"), store.calculateModifiedGroups(groupsOld));
+		assertTrue(store.getPendingSubscriptions().isEmpty());
+		assertEquals(0, store.getCount(Subscription.none));
+		assertEquals(1, store.getCount(Subscription.to));
+
+		groupsOld = new HashSet<String>(store.getGroups());
+		store.removeItem(BareJID.bareJIDInstance("nurse@example.com"));
+		assertEquals(Collections.singleton("Family"), store.calculateModifiedGroups(groupsOld));
+		assertEquals(1, store.getGroupSize("Verona"));
+		assertEquals(new HashSet<String>(Arrays.asList("Enemies", "Friends", "Verona")),
+					 new HashSet<String>(store.getGroups()));
+
+		// adding unchanged item again doesn't report its groups as new
+		assertTrue(store.addItem(tybalt).isEmpty());
+
+		store.removeAll();
+		assertEquals(0, store.getGroupSize("Friends"));
+		assertTrue(store.getGroups().isEmpty());
+		assertEquals(0, store.getCount(Subscription.both));
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * RosterItemMemoryBenchmark.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.DataHolder;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem.Subscription;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+
+import java.util.ArrayList;
+
+/**
+ * Reports heap retained by roster item, with previous layout of {@linkplain RosterItem} (reproduced by {@linkplain
+ * LegacyRosterItem}) and with current one. JIDs and names are created before measurement, because they are the same
+ * in both layouts.
+ * <p>
+ * It is not JMH benchmark, JMH doesn't measure retained memory. Run it with <code>main()</code>.
+ */
+public class RosterItemMemoryBenchmark {
+
+	private static final int GROUPS = 50;
+	private static final int ITEMS = 20000;
+
+	private static long fill(Object[] target, BareJID[] jids, String[] names, String[] groups,
+							 SessionObject sessionObject, boolean legacy) throws InterruptedException {
+		final long before = usedMemory();
+		for (int i = 0; i < target.length; i++) {
+			final Subscription subscription = Subscription.values()[i % 5];
+			final boolean ask = i % 7 == 0;
+			final int id = i * 31;
+			if (legacy) {
+				LegacyRosterItem item = new LegacyRosterItem(jids[i], sessionObject);
+				item.name = names[i];
+				item.subscription = subscription;
+				item.ask = ask;
+				item.groups.add(groups[i % GROUPS]);
+				item.groups.add(groups[(i + 1) % GROUPS]);
+				item.dataHolder.setData(RosterItem.ID_KEY, id);
+				target[i] = item;
+			} else {
+				RosterItem item = new RosterItem(jids[i], sessionObject);
+				item.setName(names[i]);
+				item.setSubscription(subscription);
+				item.setAsk(ask);
+				item.getGroups().add(groups[i % GROUPS]);
+				item.getGroups().add(groups[(i + 1) % GROUPS]);
+				item.setId(id);
+				target[i] = item;
+			}
+		}
+		return (usedMemory() - before) / target.length;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final SessionObject sessionObject = new J2SESessionObject();
+		final BareJID[] jids = new BareJID[ITEMS];
+		final String[] names = new String[ITEMS];
+		final String[] groups = new String[GROUPS];
+		for (int i = 0; i < ITEMS; i++) {
+			jids[i] = BareJID.bareJIDInstance("contact" + i + "@example.com");
+			names[i] = "Contact " + i;
+		}
+		for (int i = 0; i < GROUPS; i++) {
+			groups[i] = "Group " + i;
+		}
+		for (int round = 0; round < 3; round++) {
+			final Object[] legacy = new Object[ITEMS];
+			final long legacyBytes = fill(legacy, jids, names, groups, sessionObject, true);
+			final Object[] compact = new Object[ITEMS];
+			final long compactBytes = fill(compact, jids, names, groups, sessionObject, false);
+			System.out.println(
+					"Round " + round + ": before " + legacyBytes + " bytes per item, after " + compactBytes +
+							" bytes per item (" + (legacy.length + compact.length) + " items retained)");
+		}
+	}
+
+	private static long usedMemory() throws InterruptedException {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Layout of {@linkplain RosterItem} before it was made compact.
+	 */
+	private static class LegacyRosterItem {
+
+		private final DataHolder dataHolder = new DataHolder();
+		private final ArrayList<String> groups = new ArrayList<String>();
+		private final BareJID jid;
+		private final SessionObject sessionObject;
+		private boolean approved;
+		private boolean ask;
+		private String name;
+		private Subscription subscription;
+
+		LegacyRosterItem(BareJID jid, SessionObject sessionObject) {
+			this.jid = jid;
+			this.sessionObject = sessionObject;
+		}
+	}
+
+}
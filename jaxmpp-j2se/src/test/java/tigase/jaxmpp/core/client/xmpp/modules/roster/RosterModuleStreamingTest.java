@@ -0,0 +1,214 @@
+/*
+ * RosterModuleStreamingTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import org.junit.Before;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.*;
+import tigase.jaxmpp.core.client.eventbus.DefaultEventBus;
+import tigase.jaxmpp.core.client.eventbus.EventBus;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.ModuleProvider;
+import tigase.jaxmpp.core.client.xmpp.modules.ResourceBinderModule;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+import tigase.jaxmpp.core.client.xmpp.stream.XmppStreamsManager;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RosterModuleStreamingTest {
+
+	private final List<AsyncCallback> callbacks = new ArrayList<AsyncCallback>();
+	private final List<String> loaded = new ArrayList<String>();
+	private final List<Element> stanzas = new ArrayList<Element>();
+	private RosterModule module;
+	private J2SESessionObject sessionObject;
+
+	private static Element item(String jid, String name) throws JaxmppException {
+		Element item = ElementFactory.create("item");
+		item.setAttribute("jid", jid);
+		item.setAttribute("name", name);
+		item.setAttribute("subscription", "both");
+		return item;
+	}
+
+	private static Element response(String id, String from, Element query) throws JaxmppException {
+		Element iq = ElementFactory.create("iq");
+		iq.setAttribute("type", "result");
+		iq.setAttribute("id", id);
+		iq.setAttribute("from", from);
+		if (query != null) {
+			iq.addChild(query);
+		}
+		return iq;
+	}
+
+	private static Element query(String ver) throws JaxmppException {
+		Element query = ElementFactory.create("query", null, "jabber:iq:roster");
+		query.setAttribute("ver", ver);
+		return query;
+	}
+
+	private RosterItem rosterItem(String jid, String name) {
+		RosterItem item = new RosterItem(BareJID.bareJIDInstance(jid), sessionObject);
+		item.setName(name);
+		item.setSubscription(RosterItem.Subscription.both);
+		return item;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		final DefaultEventBus eventBus = new DefaultEventBus();
+		sessionObject = new J2SESessionObject();
+		sessionObject.setProperty(ResourceBinderModule.BINDED_RESOURCE_JID_KEY,
+								  JID.jidInstance("juliet@example.com/balcony"));
+		final PacketWriter writer = new PacketWriter() {
+			@Override
+			public void write(Element stanza) {
+				write(stanza, null, null);
+			}
+
+			@Override
+			public void write(Element stanza, AsyncCallback asyncCallback) {
+				write(stanza, null, asyncCallback);
+			}
+
+			@Override
+			public void write(Element stanza, Long timeout, AsyncCallback asyncCallback) {
+				stanzas.add(stanza);
+				callbacks.add(asyncCallback);
+			}
+		};
+		module = new RosterModule();
+		module.setContext(new Context() {
+			@Override
+			public EventBus getEventBus() {
+				return eventBus;
+			}
+
+			@Override
+			public ModuleProvider getModuleProvider() {
+				return null;
+			}
+
+			@Override
+			public SessionObject getSessionObject() {
+				return sessionObject;
+			}
+
+			@Override
+			public XmppStreamsManager getStreamsManager() {
+				return null;
+			}
+
+			@Override
+			public PacketWriter getWriter() {
+				return writer;
+			}
+		});
+		module.beforeRegister();
+		module.afterRegister();
+		eventBus.addHandler(RosterModule.RosterLoadedHandler.RosterLoadedEvent.class,
+							new RosterModule.RosterLoadedHandler() {
+								@Override
+								public void onRosterLoaded(SessionObject sessionObject, int added, int updated,
+														   int removed) {
+									loaded.add(added + "/" + updated + "/" + removed);
+								}
+							});
+		module.getRosterStore().addItem(rosterItem("romeo@example.net", "Romeo"));
+		module.getRosterStore().addItem(rosterItem("tybalt@example.net", "Tybalt"));
+	}
+
+	@Test
+	public void testFallback() throws Exception {
+		module.setStreamingEnabled(true);
+		module.rosterRequest();
+		final String id = stanzas.get(0).getAttribute("id");
+
+		// response to other request isn't streamed
+		assertFalse(module.isStreamed(response("other", null, null), query("v1")));
+		// response sent by other entity isn't streamed
+		assertFalse(module.isStreamed(response(id, "eve@example.org", null), query("v1")));
+
+		Element query = query("v1");
+		query.addChild(item("romeo@example.net", "Romeo Montague"));
+		query.addChild(item("nurse@example.com", "Nurse"));
+		callbacks.get(0).onSuccess(Stanza.create(response(id, null, query)));
+
+		assertEquals("[1/1/1]", loaded.toString());
+		assertEquals("Romeo Montague",
+					 module.getRosterStore().get(BareJID.bareJIDInstance("romeo@example.net")).getName());
+		assertNotNull(module.getRosterStore().get(BareJID.bareJIDInstance("nurse@example.com")));
+		assertNull(module.getRosterStore().get(BareJID.bareJIDInstance("tybalt@example.net")));
+	}
+
+	@Test
+	public void testHandlerRegistration() {
+		assertNull(sessionObject.getProperty(StreamedChildrenHandler.STREAMED_CHILDREN_HANDLER_KEY));
+		module.setStreamingEnabled(true);
+		assertSame(module, sessionObject.getProperty(StreamedChildrenHandler.STREAMED_CHILDREN_HANDLER_KEY));
+		module.setStreamingEnabled(false);
+		assertNull(sessionObject.getProperty(StreamedChildrenHandler.STREAMED_CHILDREN_HANDLER_KEY));
+	}
+
+	@Test
+	public void testStreamedLoad() throws Exception {
+		module.setStreamingEnabled(true);
+		module.rosterRequest();
+		final String id = stanzas.get(0).getAttribute("id");
+
+		final Element stanza = response(id, "juliet@example.com", null);
+		final Element query = query("v2");
+		assertTrue(module.isStreamed(stanza, query));
+		module.onChild(stanza, query, item("romeo@example.net", "Romeo Montague"));
+		module.onChild(stanza, query, item("nurse@example.com", "Nurse"));
+		module.onChild(stanza, query, item("benvolio@example.net", "Benvolio"));
+		// items are applied before response is complete
+		assertEquals("Nurse", module.getRosterStore().get(BareJID.bareJIDInstance("nurse@example.com")).getName());
+		assertTrue(loaded.isEmpty());
+
+		// streamed items are not kept in response
+		stanza.addChild(query);
+		callbacks.get(0).onSuccess(Stanza.create(stanza));
+
+		assertEquals("[2/1/1]", loaded.toString());
+		assertEquals(3, module.getRosterStore().getCount());
+		assertEquals("Romeo Montague",
+					 module.getRosterStore().get(BareJID.bareJIDInstance("romeo@example.net")).getName());
+		// item missing in new roster is removed
+		assertNull(module.getRosterStore().get(BareJID.bareJIDInstance("tybalt@example.net")));
+	}
+
+	@Test
+	public void testStreamingDisabled() throws Exception {
+		module.rosterRequest();
+		final String id = stanzas.get(0).getAttribute("id");
+		assertFalse(module.isStreamed(response(id, null, null), query("v1")));
+	}
+
+}
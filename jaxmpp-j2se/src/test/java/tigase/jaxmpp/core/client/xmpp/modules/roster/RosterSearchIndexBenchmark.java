@@ -0,0 +1,100 @@
+/*
+ * RosterSearchIndexBenchmark.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares searching of large roster with {@linkplain RosterSearchIndex} and by scanning all items.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RosterSearchIndexBenchmark {
+
+	private static final String[] WORDS = {"anna", "bob", "carol", "dave", "eve", "frank", "grace", "heidi", "ivan",
+										   "judy", "mallory", "oscar", "peggy", "trent", "victor", "walter"};
+	private final RosterSearchIndex index = new RosterSearchIndex();
+	private final List<RosterItem> items = new ArrayList<RosterItem>();
+	@Param({"a", "gra", "victor w"})
+	private String query;
+	@Param({"20000"})
+	private int size;
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(RosterSearchIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public Object index() {
+		return index.search(query, 20);
+	}
+
+	@Benchmark
+	public Object scan() {
+		final String q = query.toLowerCase();
+		final List<RosterItem> result = new ArrayList<RosterItem>();
+		for (RosterItem item : items) {
+			if ((item.getName().toLowerCase() + '\n' + item.getJid()).contains(q)) {
+				result.add(item);
+			}
+		}
+		// like index, returns the first matches by name
+		Collections.sort(result, new Comparator<RosterItem>() {
+			@Override
+			public int compare(RosterItem o1, RosterItem o2) {
+				return o1.getName().compareTo(o2.getName());
+			}
+		});
+		return result.subList(0, Math.min(20, result.size()));
+	}
+
+	@Setup
+	public void setUp() {
+		final J2SESessionObject sessionObject = new J2SESessionObject();
+		final Random random = new Random(1);
+		for (int i = 0; i < size; i++) {
+			final String first = WORDS[random.nextInt(WORDS.length)];
+			final String last = WORDS[random.nextInt(WORDS.length)];
+			RosterItem item = new RosterItem(BareJID.bareJIDInstance(first + "." + last + i + "@example.com"),
+											 sessionObject);
+			item.setName(Character.toUpperCase(first.charAt(0)) + first.substring(1) + " " +
+								 Character.toUpperCase(last.charAt(0)) + last.substring(1) + " " + i);
+			items.add(item);
+		}
+		index.rebuild(items);
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * RosterSearchIndexTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import org.junit.Before;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class RosterSearchIndexTest {
+
+	private RosterSearchIndex index;
+	private J2SESessionObject sessionObject;
+
+	private static List<String> jids(List<RosterItem> items) {
+		List<String> result = new ArrayList<String>();
+		for (RosterItem item : items) {
+			result.add(item.getJid().toString());
+		}
+		return result;
+	}
+
+	private RosterItem item(String jid, String name) {
+		RosterItem item = new RosterItem(BareJID.bareJIDInstance(jid), sessionObject);
+		item.setName(name);
+		return item;
+	}
+
+	@Before
+	public void setUp() {
+		sessionObject = new J2SESessionObject();
+		index = new RosterSearchIndex();
+		index.rebuild(Arrays.asList(item("romeo@montague.lit", "Romeo Montague"),
+									item("juliet@capulet.lit", "Juliet Capulet"),
+									item("tybalt@capulet.lit", "Tybalt"), item("nurse@capulet.lit", null),
+									item("mercutio@verona.lit", "Mercutio")));
+	}
+
+	@Test
+	public void testLimit() {
+		assertEquals(3, index.search("capulet", 10).size());
+		assertEquals(Arrays.asList("juliet@capulet.lit", "nurse@capulet.lit"), jids(index.search("capulet", 2)));
+		assertEquals(0, index.search("capulet", 0).size());
+	}
+
+	@Test
+	public void testRanking() {
+		// name prefix, then word prefix in name, then substring
+		assertEquals(Arrays.asList("mercutio@verona.lit", "romeo@montague.lit"), jids(index.search("M", 10)));
+		assertEquals(Arrays.asList("juliet@capulet.lit", "nurse@capulet.lit", "tybalt@capulet.lit"),
+					 jids(index.search("CAP", 10)));
+		index.update(item("scapino@verona.lit", "Scapino"));
+		assertEquals(Arrays.asList("juliet@capulet.lit", "nurse@capulet.lit", "tybalt@capulet.lit",
+								   "scapino@verona.lit"), jids(index.search("cap", 10)));
+		assertEquals(Arrays.asList("tybalt@capulet.lit"), jids(index.search("t", 10)));
+	}
+
+	@Test
+	public void testSearch() {
+		assertEquals(Arrays.asList("mercutio@verona.lit"), jids(index.search("cuti", 10)));
+		assertEquals(Arrays.asList("romeo@montague.lit"), jids(index.search("romeo montague", 10)));
+		assertEquals(Arrays.asList("nurse@capulet.lit"), jids(index.search("nurse@", 10)));
+		// short query matches only beginnings of words
+		assertEquals(0, index.search("ul", 10).size());
+		assertEquals(0, index.search("xyz", 10).size());
+		assertEquals(0, index.search(" ", 10).size());
+	}
+
+	@Test
+	public void testUpdate() {
+		index.update(item("tybalt@capulet.lit", "Prince of Cats"));
+		// JID still matches
+		assertEquals(1, index.search("tybalt", 10).size());
+		assertEquals(Arrays.asList("tybalt@capulet.lit"), jids(index.search("prince", 10)));
+		assertEquals(Arrays.asList("tybalt@capulet.lit"), jids(index.search("cats", 10)));
+
+		index.update(item("benvolio@montague.lit", "Benvolio"));
+		assertEquals(Arrays.asList("benvolio@montague.lit", "romeo@montague.lit"), jids(index.search("montague", 10)));
+
+		index.remove(BareJID.bareJIDInstance("romeo@montague.lit"));
+		assertEquals(Arrays.asList("benvolio@montague.lit"), jids(index.search("montague", 10)));
+		assertEquals(0, index.search("rom", 10).size());
+		assertEquals(5, index.getCount());
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * ConcurrentUIDGeneratorTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.junit.Test;
+import tigase.jaxmpp.core.client.UIDGenerator;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentUIDGeneratorTest {
+
+	private static final int IDS_PER_THREAD = 50000;
+	private static final int THREADS = 8;
+
+	private static void checkUniqueness(final UIDGenerator generator, final boolean direct) throws Exception {
+		final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[THREADS];
+		final int[] duplicates = new int[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final int idx = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < IDS_PER_THREAD; i++) {
+						String id = direct ? ((ConcurrentUIDGenerator) generator).nextUID() : UIDGenerator.next();
+						if (!ids.add(id)) {
+							duplicates[idx]++;
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (int d : duplicates) {
+			assertEquals(0, d);
+		}
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+
+	@Test
+	public void testDefaultGeneratorUniqueness() throws Exception {
+		checkUniqueness(UIDGenerator.getGenerator(), false);
+	}
+
+	@Test
+	public void testFormat() {
+		ConcurrentUIDGenerator generator = new ConcurrentUIDGenerator();
+		for (int i = 0; i < 1000; i++) {
+			String id = generator.nextUID();
+			assertEquals(ConcurrentUIDGenerator.LENGTH, id.length());
+			for (char c : id.toCharArray()) {
+				assertTrue(id, Character.isLetterOrDigit(c) && c < 128);
+			}
+		}
+	}
+
+	@Test
+	public void testScrambleIsBijective() {
+		// different inputs give different outputs, also around overflow of counter
+		Set<Long> values = new java.util.HashSet<Long>();
+		for (long x = -50000; x < 50000; x++) {
+			assertTrue(values.add(ConcurrentUIDGenerator.scramble(x, 0x1234567890L)));
+		}
+	}
+
+	@Test
+	public void testUniqueness() throws Exception {
+		checkUniqueness(new ConcurrentUIDGenerator(), true);
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * DateTimeFormatBenchmark.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@linkplain XmppDateTimeFormat} with previous implementation of {@linkplain DateTimeFormatProviderImpl}
+ * (regular expressions, {@linkplain Calendar} and {@linkplain SimpleDateFormat}), on stamps of delayed delivery.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateTimeFormatBenchmark {
+
+	private static final String DATE = "(\\d\\d\\d\\d)-(\\d\\d)-(\\d\\d)";
+	private static final String TIME = "(\\d\\d):(\\d\\d):(\\d\\d)(\\.(\\d+))?";
+	private static final String TIME_ZONE = "(([+-]\\d\\d:?\\d\\d)|Z)";
+	@Param({"2017-12-27T07:56:26.453Z", "2017-12-27T07:56:26+01:00"})
+	public String stamp;
+	private final Date date = new Date(1514361386453L);
+	private final Pattern dateTimePattern = Pattern.compile("^" + DATE + "T" + TIME + TIME_ZONE + "?$");
+	private final DateFormat dateTimeFormatUTC = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+	private final TimeZone timeZoneUTC = TimeZone.getTimeZone("UTC");
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(DateTimeFormatBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public String formatLegacy() {
+		return dateTimeFormatUTC.format(date);
+	}
+
+	@Benchmark
+	public String formatXmpp() {
+		return XmppDateTimeFormat.format(date.getTime());
+	}
+
+	@Benchmark
+	public long parseLegacy() {
+		Matcher m = dateTimePattern.matcher(stamp);
+		if (!m.find()) {
+			throw new IllegalArgumentException(stamp);
+		}
+		String msStr = m.group(8);
+		int ms = 0;
+		if (msStr != null && !msStr.isEmpty()) {
+			ms = Integer.valueOf(msStr.length() > 3 ? msStr.substring(0, 3) : msStr);
+			for (int i = msStr.length(); i < 3; i++) {
+				ms = ms * 10;
+			}
+		}
+		String tzValue = m.group(9);
+		TimeZone tz = tzValue.equals("Z") ? timeZoneUTC : TimeZone.getTimeZone("GMT" + tzValue);
+		Calendar calendar = Calendar.getInstance(tz);
+		calendar.clear();
+		calendar.set(Integer.valueOf(m.group(1)), Integer.valueOf(m.group(2)) - 1, Integer.valueOf(m.group(3)),
+					 Integer.valueOf(m.group(4)), Integer.valueOf(m.group(5)), Integer.valueOf(m.group(6)));
+		calendar.set(Calendar.MILLISECOND, ms);
+		return calendar.getTimeInMillis();
+	}
+
+	@Benchmark
+	public long parseXmpp() {
+		return XmppDateTimeFormat.parse(stamp);
+	}
+
+	@Setup
+	public void setUp() {
+		dateTimeFormatUTC.setTimeZone(timeZoneUTC);
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * FileRosterCacheProviderTest.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.DefaultRosterStore;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FileRosterCacheProviderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private J2SESessionObject sessionObject;
+	private TestRosterStore store;
+
+	private static Map<String, RosterItem> byJid(Collection<RosterItem> items) {
+		Map<String, RosterItem> result = new HashMap<String, RosterItem>();
+		for (RosterItem item : items) {
+			result.put(item.getJid().toString(), item);
+		}
+		return result;
+	}
+
+	private RosterItem item(String jid, String name, RosterItem.Subscription subscription, String... groups) {
+		RosterItem item = new RosterItem(BareJID.bareJIDInstance(jid), sessionObject);
+		item.setName(name);
+		item.setSubscription(subscription);
+		item.getGroups().addAll(Arrays.asList(groups));
+		return item;
+	}
+
+	@Before
+	public void setUp() {
+		sessionObject = new J2SESessionObject();
+		sessionObject.setUserProperty(SessionObject.USER_BARE_JID, BareJID.bareJIDInstance("juliet@example.com"));
+		store = new TestRosterStore();
+		RosterModule.setRosterStore(sessionObject, store);
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		FileRosterCacheProvider provider = new FileRosterCacheProvider(folder.getRoot(), 3);
+		store.put(item("romeo@example.net", "Romeo", RosterItem.Subscription.both));
+		provider.updateReceivedVersion(sessionObject, "v1");
+		for (int i = 0; i < 5; i++) {
+			provider.updateReceivedItems(sessionObject, "v" + (i + 2), Collections.singletonList(
+					item("user" + i + "@example.net", null, RosterItem.Subscription.none)),
+										 Collections.<BareJID>emptyList());
+		}
+		File log = new File(folder.getRoot(), "juliet@example.com.roster.log");
+		assertTrue(log.exists());
+
+		FileRosterCacheProvider restarted = new FileRosterCacheProvider(folder.getRoot(), 3);
+		assertEquals("v6", restarted.getCachedVersion(sessionObject));
+		assertEquals(6, restarted.loadCachedRoster(sessionObject).size());
+	}
+
+	@Test
+	public void testSnapshotAndPushes() throws Exception {
+		FileRosterCacheProvider provider = new FileRosterCacheProvider(folder.getRoot());
+		assertNull(provider.getCachedVersion(sessionObject));
+		assertNull(provider.loadCachedRoster(sessionObject));
+
+		store.put(item("romeo@example.net", "Romeo", RosterItem.Subscription.both, "Friends", "Verona"));
+		store.put(item("nurse@example.com", null, RosterItem.Subscription.from));
+		store.put(item("benvolio@example.net", "Benvolio", RosterItem.Subscription.to));
+		provider.updateReceivedVersion(sessionObject, "ver1");
+
+		RosterItem tybalt = item("tybalt@example.net", "Tybalt Ż", RosterItem.Subscription.none, "Enemies");
+		tybalt.setAsk(true);
+		provider.updateReceivedItems(sessionObject, "ver2", Collections.singletonList(tybalt),
+									 Collections.singletonList(BareJID.bareJIDInstance("nurse@example.com")));
+		RosterItem romeo = item("romeo@example.net", "Romeo Montague", RosterItem.Subscription.both, "Lovers");
+		provider.updateReceivedItems(sessionObject, "ver3", Collections.singletonList(romeo),
+									 Collections.<BareJID>emptyList());
+
+		FileRosterCacheProvider restarted = new FileRosterCacheProvider(folder.getRoot());
+		assertEquals("ver3", restarted.getCachedVersion(sessionObject));
+		Map<String, RosterItem> items = byJid(restarted.loadCachedRoster(sessionObject));
+		assertEquals(3, items.size());
+		assertNull(items.get("nurse@example.com"));
+		assertEquals("Romeo Montague", items.get("romeo@example.net").getName());
+		assertEquals(Collections.singletonList("Lovers"), items.get("romeo@example.net").getGroups());
+		RosterItem loaded = items.get("tybalt@example.net");
+		assertEquals("Tybalt Ż", loaded.getName());
+		assertEquals(RosterItem.Subscription.none, loaded.getSubscription());
+		assertTrue(loaded.isAsk());
+		assertFalse(loaded.isApproved());
+		assertSame(sessionObject, loaded.getSessionObject());
+	}
+
+	@Test
+	public void testTornRecord() throws Exception {
+		FileRosterCacheProvider provider = new FileRosterCacheProvider(folder.getRoot());
+		store.put(item("romeo@example.net", "Romeo", RosterItem.Subscription.both));
+		provider.updateReceivedVersion(sessionObject, "ver1");
+		provider.updateReceivedItems(sessionObject, "ver2", Collections.singletonList(
+				item("tybalt@example.net", null, RosterItem.Subscription.none)), Collections.<BareJID>emptyList());
+		File log = new File(folder.getRoot(), "juliet@example.com.roster.log");
+		final long complete = log.length();
+		provider.updateReceivedItems(sessionObject, "ver3", Collections.singletonList(
+				item("paris@example.net", null, RosterItem.Subscription.none)), Collections.<BareJID>emptyList());
+		RandomAccessFile file = new RandomAccessFile(log, "rw");
+		try {
+			file.setLength(log.length() - 3);
+		} finally {
+			file.close();
+		}
+
+		FileRosterCacheProvider restarted = new FileRosterCacheProvider(folder.getRoot());
+		assertEquals(2, restarted.loadCachedRoster(sessionObject).size());
+		assertEquals("ver2", restarted.getCachedVersion(sessionObject));
+		assertEquals(complete, log.length());
+
+		// new snapshot makes old log obsolete
+		store.put(item("tybalt@example.net", null, RosterItem.Subscription.none));
+		store.put(item("paris@example.net", null, RosterItem.Subscription.none));
+		restarted.updateReceivedVersion(sessionObject, "ver4");
+		assertFalse(log.exists());
+		assertEquals(3, new FileRosterCacheProvider(folder.getRoot()).loadCachedRoster(sessionObject).size());
+	}
+
+	private static class TestRosterStore
+			extends DefaultRosterStore {
+
+		void put(RosterItem item) {
+			addItem(item);
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * FileStreamManagementStoreTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tigase.jaxmpp.core.client.JID;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.streammng.StreamManagementStore.State;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileStreamManagementStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Element message(String id, String body) throws Exception {
+		Element message = ElementFactory.create("message");
+		message.setAttribute("id", id);
+		message.setAttribute("to", "romeo@example.net");
+		message.addChild(ElementFactory.create("body", body, null));
+		return message;
+	}
+
+	private static State state(long outgoingH, Element... elements) {
+		State state = new State();
+		state.setBindedJid(JID.jidInstance("juliet@example.com/balcony"));
+		state.setIncomingH(5);
+		state.setOutgoingH(outgoingH);
+		state.setResumptionId("some-long-sm-id");
+		state.setResumptionTime(300L);
+		List<Element> list = new ArrayList<Element>();
+		for (Element element : elements) {
+			list.add(element);
+		}
+		state.setElements(list);
+		return state;
+	}
+
+	@Test
+	public void testAppendAndLoad() throws Exception {
+		File file = new File(folder.getRoot(), "sm");
+		FileStreamManagementStore store = new FileStreamManagementStore(file);
+		assertNull(store.load());
+
+		store.save(state(10, message("m10", "ten")));
+		store.onOutgoing(11, message("m11", "line1\nline2"));
+		store.onOutgoing(12, message("m12", "twelve"));
+		store.onIncoming(7);
+		store.onAcknowledged(11);
+		store.onOutgoing(13, message("m13", "thirteen"));
+
+		// new instance, like after restart
+		State state = new FileStreamManagementStore(file).load();
+		assertEquals("some-long-sm-id", state.getResumptionId());
+		assertEquals(Long.valueOf(300), state.getResumptionTime());
+		assertEquals(JID.jidInstance("juliet@example.com/balcony"), state.getBindedJid());
+		assertEquals(7, state.getIncomingH());
+		assertEquals(13, state.getOutgoingH());
+		assertEquals(2, state.getElements().size());
+		assertEquals("m12", state.getElements().get(0).getAttribute("id"));
+		assertEquals("thirteen", state.getElements().get(1).getFirstChild("body").getValue());
+		assertTrue(state.getTimestamp() > 0);
+
+		// stored elements can be modified
+		state.getElements().get(0).setAttribute("type", "error");
+
+		store.clear();
+		assertFalse(file.exists());
+		assertNull(store.load());
+	}
+
+	@Test
+	public void testBrokenRecord() throws Exception {
+		File file = new File(folder.getRoot(), "sm");
+		FileStreamManagementStore store = new FileStreamManagementStore(file);
+		store.save(state(1, message("m1", "one")));
+		store.onOutgoing(2, message("m2", "two"));
+
+		OutputStream out = new FileOutputStream(file, true);
+		out.write("O 3".getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		State state = store.load();
+		assertEquals(2, state.getOutgoingH());
+		assertEquals(2, state.getElements().size());
+	}
+
+	@Test
+	public void testNoSnapshot() throws Exception {
+		File file = new File(folder.getRoot(), "sm");
+		FileStreamManagementStore store = new FileStreamManagementStore(file, 10);
+		// stream management without resumption
+		for (int i = 1; i <= 100; i++) {
+			store.onOutgoing(i, message("m" + i, "body"));
+			store.onIncoming(i);
+			store.onAcknowledged(i);
+		}
+		assertEquals(0, file.length());
+		assertNull(store.load());
+
+		// log written before snapshot (by older version) is dropped
+		OutputStream out = new FileOutputStream(file);
+		for (int i = 1; i <= 20; i++) {
+			out.write(("I " + i + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		out.close();
+		store = new FileStreamManagementStore(file, 10);
+		store.onIncoming(21);
+		assertEquals(0, file.length());
+		assertNull(store.load());
+	}
+
+	@Test
+	public void testCompactionOfIncoming() throws Exception {
+		File file = new File(folder.getRoot(), "sm");
+		FileStreamManagementStore store = new FileStreamManagementStore(file, 10);
+		store.save(state(0));
+		for (int i = 1; i <= 1000; i++) {
+			store.onIncoming(i);
+		}
+		final long length = file.length();
+		assertTrue("file is not compacted: " + length, length < 200);
+		assertEquals(1000, store.load().getIncomingH());
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File file = new File(folder.getRoot(), "sm");
+		FileStreamManagementStore store = new FileStreamManagementStore(file, 10);
+		store.save(state(0));
+		for (int i = 1; i <= 100; i++) {
+			store.onOutgoing(i, message("m" + i, "body"));
+			store.onAcknowledged(i - 1);
+		}
+		final long length = file.length();
+		assertTrue("file is not compacted: " + length, length < 2000);
+
+		State state = store.load();
+		assertEquals(100, state.getOutgoingH());
+		assertEquals(1, state.getElements().size());
+		assertEquals("m100", state.getElements().get(0).getAttribute("id"));
+		assertEquals("some-long-sm-id", state.getResumptionId());
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * IqWindowTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.junit.Test;
+import tigase.jaxmpp.core.client.AsyncCallback;
+import tigase.jaxmpp.core.client.PacketWriter;
+import tigase.jaxmpp.core.client.XMPPException;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xmpp.stanzas.IQ;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+import tigase.jaxmpp.core.client.xmpp.stanzas.StanzaType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class IqWindowTest {
+
+	private static IQ createIq(String id) throws JaxmppException {
+		IQ iq = IQ.create();
+		iq.setType(StanzaType.get);
+		iq.setId(id);
+		return iq;
+	}
+
+	private static Throwable getCause(CompletableFuture<Stanza> future) throws InterruptedException {
+		try {
+			future.get();
+			fail();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+	@Test
+	public void testFutureCallback() throws Exception {
+		MockWriter writer = new MockWriter();
+		CompletableFuture<Stanza> success = FutureCallback.write(writer, createIq("1"), null);
+		CompletableFuture<Stanza> error = FutureCallback.write(writer, createIq("2"), null);
+		CompletableFuture<Stanza> timeout = FutureCallback.write(writer, createIq("3"), null);
+		writer.failure = new JaxmppException("Not connected");
+		CompletableFuture<Stanza> notSent = FutureCallback.write(writer, createIq("4"), null);
+
+		IQ response = createIq("1");
+		writer.callbacks.get(0).onSuccess(response);
+		writer.callbacks.get(1).onError(response, XMPPException.ErrorCondition.item_not_found);
+		writer.callbacks.get(2).onTimeout();
+
+		assertSame(response, success.get());
+		Throwable cause = getCause(error);
+		assertTrue(cause instanceof FutureCallback.ErrorResponseException);
+		assertEquals(XMPPException.ErrorCondition.item_not_found,
+					 ((FutureCallback.ErrorResponseException) cause).getCondition());
+		assertTrue(getCause(timeout) instanceof TimeoutException);
+		assertSame(writer.failure, getCause(notSent));
+	}
+
+	@Test
+	public void testWindow() throws Exception {
+		MockWriter writer = new MockWriter();
+		IqWindow window = new IqWindow(writer, 3);
+		List<CompletableFuture<Stanza>> futures = new ArrayList<CompletableFuture<Stanza>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(window.submit(createIq("" + i)));
+		}
+		assertEquals(3, writer.callbacks.size());
+		assertEquals(3, window.getInFlightCount());
+		assertEquals(7, window.getQueuedCount());
+
+		// cancelled request is never sent
+		futures.get(3).cancel(false);
+
+		writer.callbacks.get(0).onSuccess(createIq("0"));
+		assertEquals(4, writer.callbacks.size());
+		assertEquals("4", writer.stanzas.get(3).getAttribute("id"));
+
+		writer.callbacks.get(1).onTimeout();
+		writer.callbacks.get(2).onError(createIq("2"), XMPPException.ErrorCondition.item_not_found);
+		assertEquals(6, writer.callbacks.size());
+
+		// failed writes release their slots
+		writer.failure = new JaxmppException("Not connected");
+		writer.callbacks.get(3).onSuccess(createIq("4"));
+		assertEquals(0, window.getQueuedCount());
+		assertEquals(2, window.getInFlightCount());
+		for (int i = 7; i < 10; i++) {
+			assertTrue(futures.get(i).isCompletedExceptionally());
+		}
+
+		writer.callbacks.get(4).onSuccess(createIq("5"));
+		writer.callbacks.get(5).onSuccess(createIq("6"));
+		assertEquals(0, window.getInFlightCount());
+		for (CompletableFuture<Stanza> future : futures) {
+			assertTrue(future.isDone());
+		}
+	}
+
+	private static class MockWriter
+			implements PacketWriter {
+
+		private final List<AsyncCallback> callbacks = new ArrayList<AsyncCallback>();
+		private final List<Element> stanzas = new ArrayList<Element>();
+		private JaxmppException failure;
+
+		@Override
+		public void write(Element stanza) throws JaxmppException {
+			write(stanza, null, null);
+		}
+
+		@Override
+		public void write(Element stanza, AsyncCallback asyncCallback) throws JaxmppException {
+			write(stanza, null, asyncCallback);
+		}
+
+		@Override
+		public void write(Element stanza, Long timeout, AsyncCallback asyncCallback) throws JaxmppException {
+			if (failure != null) {
+				throw failure;
+			}
+			stanzas.add(stanza);
+			callbacks.add(asyncCallback);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * SessionObjectBenchmark.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tigase.jaxmpp.core.client.SessionObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading of session property by name with reading by typed {@linkplain SessionObject.Key}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionObjectBenchmark {
+
+	private static final String NAME = "SessionObjectBenchmark#VALUE";
+	private static final String UNTYPED_NAME = "SessionObjectBenchmark#UNTYPED";
+	private static final SessionObject.Key<Long> KEY = SessionObject.Key.create(NAME, SessionObject.Scope.stream);
+	private final J2SESessionObject sessionObject = new J2SESessionObject();
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(SessionObjectBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public Object key() {
+		return sessionObject.getProperty(KEY);
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		sessionObject.setProperty(KEY, 1L);
+		sessionObject.setProperty(SessionObject.Scope.stream, UNTYPED_NAME, 1L);
+	}
+
+	@Benchmark
+	public Object untyped() {
+		return sessionObject.getProperty(UNTYPED_NAME);
+	}
+
+}
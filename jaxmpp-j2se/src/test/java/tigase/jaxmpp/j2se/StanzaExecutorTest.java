@@ -0,0 +1,104 @@
+/*
+ * StanzaExecutorTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StanzaExecutorTest {
+
+	@Test
+	public void testLaneAssignment() {
+		StanzaExecutor executor = new StanzaExecutor(4, ThreadFactories.platform());
+		assertSame(executor.getLane("juliet@example.com"), executor.getLane("juliet@example.com"));
+		assertEquals(4, executor.getLanes().size());
+		assertNotSame(executor.next(), executor.next());
+	}
+
+	@Test
+	public void testOrdering() throws Exception {
+		StanzaExecutor executor = new StanzaExecutor(2, ThreadFactories.platform());
+		final StanzaExecutor.Lane lane = executor.next();
+		final List<Integer> result = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(1000);
+		for (int i = 0; i < 1000; i++) {
+			final int n = i;
+			lane.execute(new Runnable() {
+				@Override
+				public void run() {
+					result.add(n);
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, (int) result.get(i));
+		}
+		assertEquals(0, lane.getQueueSize());
+	}
+
+	@Test
+	public void testSlowLaneDoesNotBlockOthers() throws Exception {
+		StanzaExecutor executor = new StanzaExecutor(2, ThreadFactories.platform());
+		final StanzaExecutor.Lane slow = executor.next();
+		final StanzaExecutor.Lane fast = executor.next();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch fastDone = new CountDownLatch(1);
+
+		slow.execute(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+		slow.execute(new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		fast.execute(new Runnable() {
+			@Override
+			public void run() {
+				fastDone.countDown();
+			}
+		});
+
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+		assertEquals(1, slow.getQueueSize());
+		release.countDown();
+	}
+
+}
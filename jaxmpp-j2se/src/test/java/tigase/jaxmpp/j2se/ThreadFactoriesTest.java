@@ -0,0 +1,81 @@
+/*
+ * ThreadFactoriesTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se;
+
+import org.junit.Test;
+import tigase.jaxmpp.core.client.SessionObject.Scope;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ThreadFactoriesTest {
+
+	private static final Runnable NOOP = new Runnable() {
+		@Override
+		public void run() {
+		}
+	};
+
+	@Test
+	public void testDefaultFactory() {
+		Thread thread = ThreadFactories.newThread(null, "test-thread", NOOP);
+		assertTrue(thread.isDaemon());
+		assertEquals("test-thread", thread.getName());
+		assertSame(ThreadFactories.getThreadFactory(null), ThreadFactories.getThreadFactory(new J2SESessionObject()));
+	}
+
+	@Test
+	public void testSessionFactory() {
+		final AtomicInteger created = new AtomicInteger();
+		J2SESessionObject sessionObject = new J2SESessionObject();
+		sessionObject.setProperty(Scope.user, ThreadFactories.THREAD_FACTORY_KEY, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				created.incrementAndGet();
+				return new Thread(r);
+			}
+		});
+
+		Thread thread = ThreadFactories.newThread(sessionObject, "session-thread", NOOP);
+		assertEquals(1, created.get());
+		assertEquals("session-thread", thread.getName());
+	}
+
+	@Test
+	public void testVirtualFactory() throws Exception {
+		if (!ThreadFactories.isVirtualThreadsSupported()) {
+			try {
+				ThreadFactories.virtual("v");
+				fail("Virtual threads shouldn't be available");
+			} catch (UnsupportedOperationException e) {
+			}
+			return;
+		}
+		Thread thread = ThreadFactories.virtual("v").newThread(NOOP);
+		assertTrue(thread.isDaemon());
+		thread.start();
+		thread.join();
+	}
+
+}
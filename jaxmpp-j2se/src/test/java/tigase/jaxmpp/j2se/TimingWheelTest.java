@@ -0,0 +1,232 @@
+/*
+ * TimingWheelTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.junit.After;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.*;
+import tigase.jaxmpp.core.client.eventbus.EventBus;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.modules.ModuleProvider;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+import tigase.jaxmpp.core.client.xmpp.stream.XmppStreamsManager;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+	private final TimingWheel wheel = new TimingWheel(1, 8, ThreadFactories.platform());
+
+	@Test
+	public void testCancel() throws Exception {
+		final AtomicInteger executed = new AtomicInteger();
+		final Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				executed.incrementAndGet();
+			}
+		};
+		TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[100];
+		for (int i = 0; i < timeouts.length; i++) {
+			timeouts[i] = wheel.schedule(task, 50);
+		}
+		for (int i = 0; i < timeouts.length; i += 2) {
+			assertTrue(timeouts[i].cancel());
+			assertFalse(timeouts[i].cancel());
+		}
+		assertEquals(50, wheel.getPendingCount());
+		Thread.sleep(300);
+		assertEquals(50, executed.get());
+		assertEquals(0, wheel.getPendingCount());
+		for (int i = 0; i < timeouts.length; i++) {
+			assertEquals(i % 2 == 0, timeouts[i].isCancelled());
+			assertEquals(i % 2 != 0, timeouts[i].isExpired());
+		}
+	}
+
+	@Test
+	public void testExpire() throws Exception {
+		// delays longer than one round of wheel with 8 buckets
+		final long[] delays = new long[]{0, 3, 20, 45, 120};
+		final CountDownLatch done = new CountDownLatch(delays.length);
+		final long start = System.nanoTime();
+		final long[] executed = new long[delays.length];
+		for (int i = 0; i < delays.length; i++) {
+			final int idx = i;
+			wheel.schedule(new Runnable() {
+				@Override
+				public void run() {
+					executed[idx] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+					done.countDown();
+				}
+			}, delays[i]);
+		}
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < delays.length; i++) {
+			assertTrue("timeout " + delays[i] + " executed after " + executed[i], executed[i] >= delays[i]);
+		}
+	}
+
+	@Test
+	public void testIdle() throws Exception {
+		final CountDownLatch first = new CountDownLatch(1);
+		wheel.schedule(new Runnable() {
+			@Override
+			public void run() {
+				first.countDown();
+			}
+		}, 5);
+		assertTrue(first.await(5, TimeUnit.SECONDS));
+		// wheel is empty and its thread is parked
+		Thread.sleep(100);
+		final CountDownLatch second = new CountDownLatch(1);
+		wheel.schedule(new Runnable() {
+			@Override
+			public void run() {
+				second.countDown();
+			}
+		}, 5);
+		assertTrue(second.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testResponseManagerTimeout() throws Exception {
+		final ThreadSafeResponseManager rm = new ThreadSafeResponseManager(wheel);
+		final CountDownLatch timeout = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		final AsyncCallback callback = new AsyncCallback() {
+			@Override
+			public void onError(Stanza responseStanza, XMPPException.ErrorCondition error) {
+				calls.incrementAndGet();
+			}
+
+			@Override
+			public void onSuccess(Stanza responseStanza) {
+				calls.incrementAndGet();
+			}
+
+			@Override
+			public void onTimeout() {
+				calls.incrementAndGet();
+				timeout.countDown();
+			}
+		};
+		Element iq1 = ElementFactory.create("iq");
+		iq1.setAttribute("id", "1");
+		rm.registerResponseHandler(iq1, 20L, callback);
+		Element iq2 = ElementFactory.create("iq");
+		iq2.setAttribute("id", "2");
+		rm.registerResponseHandler(iq2, 60 * 1000L, callback);
+		assertEquals(2, wheel.getPendingCount());
+
+		assertTrue(timeout.await(5, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+
+		final J2SESessionObject sessionObject = new J2SESessionObject();
+		Element response = ElementFactory.create("iq");
+		response.setAttribute("id", "2");
+		response.setAttribute("type", "result");
+		assertNotNull(rm.getResponseHandler(response, new Context() {
+			@Override
+			public EventBus getEventBus() {
+				return null;
+			}
+
+			@Override
+			public ModuleProvider getModuleProvider() {
+				return null;
+			}
+
+			@Override
+			public SessionObject getSessionObject() {
+				return sessionObject;
+			}
+
+			@Override
+			public XmppStreamsManager getStreamsManager() {
+				return null;
+			}
+
+			@Override
+			public PacketWriter getWriter() {
+				return null;
+			}
+		}));
+		// timeout of answered request is cancelled
+		assertEquals(0, wheel.getPendingCount());
+		// response for expired request is ignored
+		response.setAttribute("id", "1");
+		assertNull(rm.getResponseHandler(response, null));
+	}
+
+	@Test
+	public void testResponseManagerTimeoutExecutor() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final ThreadSafeResponseManager rm = new ThreadSafeResponseManager(wheel, executor);
+			final CountDownLatch timeout = new CountDownLatch(1);
+			final AtomicReference<Thread> callbackThread = new AtomicReference<Thread>();
+			final Thread executorThread = executor.submit(new Callable<Thread>() {
+				@Override
+				public Thread call() {
+					return Thread.currentThread();
+				}
+			}).get();
+			Element iq = ElementFactory.create("iq");
+			iq.setAttribute("id", "1");
+			rm.registerResponseHandler(iq, 10L, new AsyncCallback() {
+				@Override
+				public void onError(Stanza responseStanza, XMPPException.ErrorCondition error) {
+				}
+
+				@Override
+				public void onSuccess(Stanza responseStanza) {
+				}
+
+				@Override
+				public void onTimeout() {
+					callbackThread.set(Thread.currentThread());
+					timeout.countDown();
+				}
+			});
+			assertTrue(timeout.await(5, TimeUnit.SECONDS));
+			// callback isn't called by thread of wheel
+			assertSame(executorThread, callbackThread.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		wheel.shutdown();
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * UIDGeneratorBenchmark.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tigase.jaxmpp.core.client.UIDGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares synchronized default {@linkplain UIDGenerator} of jaxmpp-core with lock-free {@linkplain
+ * ConcurrentUIDGenerator}, when IDs are generated by many threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class UIDGeneratorBenchmark {
+
+	private final ConcurrentUIDGenerator concurrent = new ConcurrentUIDGenerator();
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(UIDGeneratorBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public String concurrent() {
+		return concurrent.nextUID();
+	}
+
+	@Benchmark
+	public String core() {
+		// class Jaxmpp is not loaded, so it is still default generator of jaxmpp-core
+		return UIDGenerator.next();
+	}
+
+}
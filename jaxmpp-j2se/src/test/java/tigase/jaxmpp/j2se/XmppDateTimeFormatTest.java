@@ -0,0 +1,91 @@
+/*
+ * XmppDateTimeFormatTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se;
+
+import junit.framework.TestCase;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+public class XmppDateTimeFormatTest
+		extends TestCase {
+
+	private static void assertInvalid(String value) {
+		try {
+			XmppDateTimeFormat.parse(value);
+			fail("Parsed invalid value " + value);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testFormat() {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'")
+				.withZone(ZoneOffset.UTC);
+		Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			// from year 1000 to year 5000
+			long millis = -30610224000000L + (long) (random.nextDouble() * 126230400000000L);
+			assertEquals(formatter.format(Instant.ofEpochMilli(millis)), XmppDateTimeFormat.format(millis));
+			assertEquals(millis, XmppDateTimeFormat.parse(XmppDateTimeFormat.format(millis)));
+		}
+		assertEquals("1970-01-01T00:00:00.000Z", XmppDateTimeFormat.format(0));
+		assertEquals("1969-12-31T23:59:59.999Z", XmppDateTimeFormat.format(-1));
+		assertEquals("2000-02-29T12:00:00.000Z", XmppDateTimeFormat.format(951825600000L));
+		assertEquals("0999-01-01T00:00:00.000Z", XmppDateTimeFormat.format(-30641760000000L));
+	}
+
+	public void testParse() {
+		assertEquals(OffsetDateTime.parse("2017-12-27T07:56:26.453+01:00").toInstant().toEpochMilli(),
+					 XmppDateTimeFormat.parse("2017-12-27T07:56:26.453+01:00"));
+		assertEquals(OffsetDateTime.parse("2017-12-27T07:56:26.453-05:30").toInstant().toEpochMilli(),
+					 XmppDateTimeFormat.parse("2017-12-27T07:56:26.4531-0530"));
+		assertEquals(Instant.parse("2002-09-10T23:41:07Z").toEpochMilli(),
+					 XmppDateTimeFormat.parse(new StringBuilder("2002-09-10T23:41:07Z")));
+		assertEquals(Instant.parse("2002-09-10T23:41:07Z").toEpochMilli(),
+					 XmppDateTimeFormat.parse("2002-09-10T23:41:07"));
+		assertEquals(Instant.parse("2002-09-10T00:00:00Z").toEpochMilli(), XmppDateTimeFormat.parse("2002-09-10"));
+		assertEquals((23 * 60 + 41) * 60000 + 7000 + 120, XmppDateTimeFormat.parse("23:41:07.12Z"));
+		assertEquals((22 * 60 + 41) * 60000 + 7000, XmppDateTimeFormat.parse("23:41:07+01:00"));
+
+		assertInvalid("");
+		assertInvalid("2002-09-10T");
+		assertInvalid("2002-13-10T23:41:07Z");
+		assertInvalid("2002-09-10 23:41:07Z");
+		assertInvalid("2002-09-10T23:41:07.Z");
+		assertInvalid("2002-09-10T23:41:07+01");
+		assertInvalid("2002-09-10T23:41:07Zx");
+		assertInvalid("20020910T23:41:07");
+		assertInvalid("23:4a:07");
+	}
+
+	public void testProvider() {
+		DateTimeFormatProviderImpl provider = new DateTimeFormatProviderImpl();
+		assertNull(provider.parse(null));
+		assertNull(provider.parse("yesterday"));
+		assertEquals("2017-12-27T06:56:26.453Z",
+					 provider.format(provider.parse("2017-12-27T07:56:26.453+01:00")));
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * NioSocketConnectorTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se.connectors.nio;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.Connector;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.stanzas.StreamPacket;
+import tigase.jaxmpp.j2se.Jaxmpp;
+import tigase.jaxmpp.j2se.connectors.socket.SocketConnector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class NioSocketConnectorTest {
+
+	private SelectorLoopGroup group;
+	private ServerSocket serverSocket;
+
+	@After
+	public void tearDown() throws Exception {
+		serverSocket.close();
+		group.shutdown();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		group = new SelectorLoopGroup(1);
+		serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+	}
+
+	@Test
+	public void testSendAndReceive() throws Exception {
+		final Jaxmpp jaxmpp = new Jaxmpp();
+		final SessionObject sessionObject = jaxmpp.getSessionObject();
+		sessionObject.setUserProperty(SocketConnector.SERVER_HOST, "127.0.0.1");
+		sessionObject.setUserProperty(SocketConnector.SERVER_PORT, serverSocket.getLocalPort());
+		sessionObject.setUserProperty(SessionObject.DOMAIN_NAME, "example.com");
+		sessionObject.setUserProperty(NioSocketConnector.SELECTOR_LOOP_GROUP_KEY, group);
+
+		final BlockingQueue<StreamPacket> received = new LinkedBlockingQueue<StreamPacket>();
+		jaxmpp.getEventBus()
+				.addHandler(Connector.StanzaReceivedHandler.StanzaReceivedEvent.class,
+							new Connector.StanzaReceivedHandler() {
+								@Override
+								public void onStanzaReceived(SessionObject sessionObject, StreamPacket stanza) {
+									received.offer(stanza);
+								}
+							});
+		final CountDownLatch disconnected = new CountDownLatch(1);
+		jaxmpp.getEventBus()
+				.addHandler(Connector.DisconnectedHandler.DisconnectedEvent.class,
+							new Connector.DisconnectedHandler() {
+								@Override
+								public void onDisconnected(SessionObject sessionObject) {
+									disconnected.countDown();
+								}
+							});
+
+		final NioSocketConnector connector = new NioSocketConnector(jaxmpp.getContext());
+		connector.start();
+
+		Socket socket = serverSocket.accept();
+		InputStream in = socket.getInputStream();
+		OutputStream out = socket.getOutputStream();
+
+		String header = readUntil(in, "version='1.0'>");
+		Assert.assertTrue(header.startsWith("<stream:stream "));
+		Assert.assertTrue(header.contains("to='example.com'"));
+
+		byte[] data = ("<stream:stream xmlns='jabber:client' xmlns:stream='http://etherx.jabber.org/streams' " +
+				"from='example.com' id='1' version='1.0'><message from='a@example.com' to='b@example.com'>" +
+				"<body>zażółć</body></message>").getBytes("UTF-8");
+		// split in the middle of multibyte character
+		int split = data.length - 22;
+		out.write(data, 0, split);
+		out.flush();
+		Thread.sleep(50);
+		out.write(data, split, data.length - split);
+		out.flush();
+
+		StreamPacket stanza = received.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(stanza);
+		Assert.assertEquals("message", stanza.getName());
+		Assert.assertEquals("zażółć", stanza.getFirstChild("body").getValue());
+
+		Element message = ElementFactory.create("message");
+		message.setAttribute("to", "a@example.com");
+		message.addChild(ElementFactory.create("body", "test", null));
+		connector.send(message);
+		connector.send(message);
+		String sent = readUntil(in, "</message><message");
+		Assert.assertTrue(sent.contains("<body>test</body>"));
+
+		connector.stop();
+		readUntil(in, "</stream:stream>");
+		out.write("</stream:stream>".getBytes("UTF-8"));
+		out.flush();
+
+		Assert.assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(Connector.State.disconnected, connector.getState());
+		Assert.assertEquals(-1, in.read());
+		socket.close();
+	}
+
+	private String readUntil(InputStream in, String end) throws Exception {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			buf.write(b);
+			String s = buf.toString("UTF-8");
+			if (s.endsWith(end)) {
+				return s;
+			}
+		}
+		Assert.fail("Stream closed before " + end);
+		return null;
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * SocketWriterTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.j2se.ThreadFactories;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SocketWriterTest {
+
+	@Test
+	public void testBatching() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> writes = new ArrayList<String>();
+		SocketWriter writer = new SocketWriter() {
+			@Override
+			protected void onErrorInThread(Exception e) throws JaxmppException {
+				Assert.fail(e.getMessage());
+			}
+
+			@Override
+			protected void writeData(byte[] data, int off, int len) throws IOException {
+				synchronized (writes) {
+					writes.add(new String(data, off, len, "UTF-8"));
+				}
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+		};
+		writer.start(ThreadFactories.platform());
+
+		writer.write("<a/>".getBytes("UTF-8"), false);
+		blocked.await();
+
+		// written while writer is busy, so they are gathered into batches
+		writer.write("<b/>".getBytes("UTF-8"), false);
+		writer.write("<c/>".getBytes("UTF-8"), true);
+		writer.write("<d/>".getBytes("UTF-8"), false);
+		long last = writer.write("<e/>".getBytes("UTF-8"), false);
+
+		release.countDown();
+		writer.waitForWrite(last);
+		writer.terminate();
+
+		Assert.assertEquals(3, writes.size());
+		Assert.assertEquals("<a/>", writes.get(0));
+		Assert.assertEquals("<b/><c/>", writes.get(1));
+		Assert.assertEquals("<d/><e/>", writes.get(2));
+	}
+
+	@Test(expected = JaxmppException.class)
+	public void testWaitOnTerminated() throws Exception {
+		SocketWriter writer = new SocketWriter() {
+			@Override
+			protected void onErrorInThread(Exception e) throws JaxmppException {
+			}
+
+			@Override
+			protected void writeData(byte[] data, int off, int len) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		writer.start(ThreadFactories.platform());
+		long seq = writer.write("<a/>".getBytes("UTF-8"), false);
+		writer.waitForWrite(seq);
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Utf8DecoderBenchmark.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding of received data with {@linkplain CharsetDecoder} (used previously by {@linkplain
+ * TextStreamReader}) and with {@linkplain Utf8Decoder}, on chat (mostly ASCII, some national characters) and pubsub
+ * (ASCII only) traffic.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Utf8DecoderBenchmark {
+
+	private static final String CHAT = "<message from='juliet@example.com/balcony' to='romeo@example.net' " +
+			"type='chat' id='ktx72v49'><body>Art thou not Romeo, and a Montague? Zażółć gęślą jaźń.</body>" +
+			"<active xmlns='http://jabber.org/protocol/chatstates'/></message>";
+	private static final String PUBSUB = "<message from='pubsub.shakespeare.lit' to='francisco@denmark.lit' " +
+			"id='foo'><event xmlns='http://jabber.org/protocol/pubsub#event'><items " +
+			"node='princely_musings'><item id='ae890ac52d0df67ed7cfdf51b644e901'><entry " +
+			"xmlns='http://www.w3.org/2005/Atom'><title>Soliloquy</title><summary>To be, or not to be: that is " +
+			"the question</summary><published>2003-12-13T18:30:02Z</published></entry></item></items></event>" +
+			"</message>";
+
+	@Param({"chat", "pubsub"})
+	public String traffic;
+	private final char[] chars = new char[SocketConnector.DEFAULT_SOCKET_BUFFER_SIZE];
+	private byte[] data;
+	private final Utf8Decoder decoder = new Utf8Decoder();
+	private final CharsetDecoder jvmDecoder = Charset.forName("UTF-8").newDecoder();
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(Utf8DecoderBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public int charsetDecoder() {
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		CharBuffer cb = CharBuffer.wrap(chars);
+		jvmDecoder.reset();
+		jvmDecoder.decode(buf, cb, false);
+		return cb.position();
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		String stanza = "chat".equals(traffic) ? CHAT : PUBSUB;
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() + stanza.length() < chars.length / 2) {
+			sb.append(stanza);
+		}
+		data = sb.toString().getBytes("UTF-8");
+	}
+
+	@Benchmark
+	public int utf8Decoder() throws Exception {
+		return decoder.decode(ByteBuffer.wrap(data), chars, 0, chars.length);
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Utf8DecoderTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+
+public class Utf8DecoderTest {
+
+	private static final String TEXT = "<message><body>aó—😀z &amp; żółw</body>" +
+			"<active xmlns='http://jabber.org/protocol/chatstates'/>ą</message>";
+	private final Utf8Decoder decoder = new Utf8Decoder();
+
+	@Test
+	public void testDecode() throws Exception {
+		byte[] data = TEXT.getBytes("UTF-8");
+		char[] out = new char[200];
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		int decoded = decoder.decode(buf, out, 0, out.length);
+		Assert.assertEquals(TEXT, new String(out, 0, decoded));
+		Assert.assertFalse(buf.hasRemaining());
+	}
+
+	@Test
+	public void testMalformed() throws Exception {
+		byte[] data = new byte[]{'a', 'b', (byte) 0xC3, 'c'};
+		char[] out = new char[10];
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		Assert.assertEquals(2, decoder.decode(buf, out, 0, out.length));
+		Assert.assertEquals(2, buf.position());
+		try {
+			decoder.decode(buf, out, 0, out.length);
+			Assert.fail("Malformed input not detected");
+		} catch (MalformedInputException e) {
+		}
+
+		// overlong encoding of '/' and encoded surrogate
+		for (byte[] invalid : new byte[][]{{(byte) 0xC0, (byte) 0xAF}, {(byte) 0xED, (byte) 0xA0, (byte) 0x80}}) {
+			try {
+				decoder.decode(ByteBuffer.wrap(invalid), out, 0, out.length);
+				Assert.fail("Malformed input not detected");
+			} catch (MalformedInputException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testSmallOutput() throws Exception {
+		byte[] data = TEXT.getBytes("UTF-8");
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		char[] out = new char[3];
+		StringBuilder sb = new StringBuilder();
+		int decoded;
+		while ((decoded = decoder.decode(buf, out, 0, out.length)) > 0) {
+			sb.append(out, 0, decoded);
+		}
+		Assert.assertEquals(TEXT, sb.toString());
+	}
+
+	@Test
+	public void testSplitSequences() throws Exception {
+		byte[] data = TEXT.getBytes("UTF-8");
+		char[] out = new char[200];
+		for (int split = 1; split < data.length; split++) {
+			ByteBuffer buf = ByteBuffer.allocate(data.length);
+			buf.put(data, 0, split);
+			buf.flip();
+			StringBuilder sb = new StringBuilder();
+			sb.append(out, 0, decoder.decode(buf, out, 0, out.length));
+			buf.compact();
+			buf.put(data, split, data.length - split);
+			buf.flip();
+			sb.append(out, 0, decoder.decode(buf, out, 0, out.length));
+			Assert.assertEquals("Split at " + split, TEXT, sb.toString());
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * XMPPDomBuilderHandlerTest.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.connectors.socket;
+
+import org.junit.Test;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.XMLException;
+import tigase.jaxmpp.core.client.xmpp.modules.StreamedChildrenHandler;
+import tigase.xml.SimpleParser;
+import tigase.xml.SingletonFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class XMPPDomBuilderHandlerTest {
+
+	@Test
+	public void testStreamedChildren() throws Exception {
+		final List<tigase.xml.Element> stanzas = new ArrayList<tigase.xml.Element>();
+		final List<String> streamed = new ArrayList<String>();
+		XMPPDomBuilderHandler handler = new XMPPDomBuilderHandler(new StreamListener() {
+
+			@Override
+			public void nextElement(tigase.xml.Element element) {
+				stanzas.add(element);
+			}
+
+			@Override
+			public void xmppStreamClosed() {
+			}
+
+			@Override
+			public void xmppStreamOpened(Map<String, String> attribs) {
+			}
+		});
+		handler.setStreamedChildrenHandler(new StreamedChildrenHandler() {
+
+			@Override
+			public boolean isStreamed(Element stanza, Element child) throws XMLException {
+				return "r1".equals(stanza.getAttribute("id")) && "jabber:iq:roster".equals(child.getXMLNS());
+			}
+
+			@Override
+			public void onChild(Element stanza, Element child, Element element) throws XMLException {
+				streamed.add(element.getAttribute("jid") + "/" + element.getChildren("group").size() + "/" +
+									 child.getAttribute("ver"));
+			}
+		});
+
+		final String data = "<iq type='result' id='r1'><query xmlns='jabber:iq:roster' ver='v1'>" +
+				"<item jid='romeo@example.net'><group>Friends</group></item>" +
+				"<item jid='nurse@example.com'/></query></iq>" +
+				"<iq type='result' id='r2'><query xmlns='jabber:iq:roster'><item jid='tybalt@example.net'/></query></iq>";
+		final SimpleParser parser = SingletonFactory.getParserInstance();
+		final char[] chars = data.toCharArray();
+		// parsing in chunks, like data received from network
+		for (int i = 0; i < chars.length; i += 7) {
+			parser.parse(handler, chars, i, Math.min(7, chars.length - i));
+		}
+
+		assertEquals("[romeo@example.net/1/v1, nurse@example.com/0/v1]", streamed.toString());
+		assertEquals(2, stanzas.size());
+		tigase.xml.Element query = stanzas.get(0).getChild("query", "jabber:iq:roster");
+		assertNotNull(query);
+		assertEquals("v1", query.getAttributeStaticStr("ver"));
+		assertTrue(query.getChildren() == null || query.getChildren().isEmpty());
+		assertEquals(1, stanzas.get(1).getChild("query", "jabber:iq:roster").getChildren().size());
+	}
+
+}
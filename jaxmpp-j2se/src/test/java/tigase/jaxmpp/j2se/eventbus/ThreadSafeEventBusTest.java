@@ -0,0 +1,131 @@
+/*
+ * ThreadSafeEventBusTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+
+package tigase.jaxmpp.j2se.eventbus;
+
+import org.junit.Test;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.eventbus.EventHandler;
+import tigase.jaxmpp.core.client.eventbus.JaxmppEventWithCallback;
+import tigase.jaxmpp.j2se.J2SESessionObject;
+import tigase.jaxmpp.j2se.StanzaExecutor;
+import tigase.jaxmpp.j2se.ThreadFactories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ThreadSafeEventBusTest {
+
+	private static final int EVENTS = 500;
+
+	private void fireAndCheck(ThreadSafeEventBus eventBus) throws Exception {
+		final SessionObject[] sessions = new SessionObject[]{new J2SESessionObject(), new J2SESessionObject(),
+															 new J2SESessionObject()};
+		final List<List<Integer>> received = new ArrayList<List<Integer>>();
+		final List<List<Integer>> completed = new ArrayList<List<Integer>>();
+		for (int i = 0; i < sessions.length; i++) {
+			received.add(Collections.synchronizedList(new ArrayList<Integer>()));
+			completed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+		}
+		final CountDownLatch done = new CountDownLatch(EVENTS * sessions.length);
+
+		for (int h = 0; h < 3; h++) {
+			eventBus.addHandler(TestHandler.TestEvent.class, new TestHandler() {
+				@Override
+				public void onTest(int session, int seq) {
+					received.get(session).add(seq);
+				}
+			});
+		}
+
+		for (int seq = 0; seq < EVENTS; seq++) {
+			for (int s = 0; s < sessions.length; s++) {
+				final int session = s;
+				eventBus.fire(new TestHandler.TestEvent(sessions[s], s, seq,
+														new JaxmppEventWithCallback.RunAfter<TestHandler.TestEvent>() {
+															@Override
+															public void after(TestHandler.TestEvent event) {
+																// all three handlers were called before
+																if (received.get(session).size() >=
+																		(event.seq + 1) * 3) {
+																	completed.get(session).add(event.seq);
+																}
+																done.countDown();
+															}
+														}));
+			}
+		}
+
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		for (int s = 0; s < sessions.length; s++) {
+			List<Integer> r = received.get(s);
+			assertEquals(EVENTS * 3, r.size());
+			for (int i = 0; i < r.size(); i++) {
+				assertEquals(i / 3, (int) r.get(i));
+			}
+			List<Integer> c = completed.get(s);
+			assertEquals(EVENTS, c.size());
+			for (int i = 0; i < c.size(); i++) {
+				assertEquals(i, (int) c.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testDefaultDispatch() throws Exception {
+		fireAndCheck(new ThreadSafeEventBus());
+	}
+
+	@Test
+	public void testLaneDispatch() throws Exception {
+		fireAndCheck(new ThreadSafeEventBus(new StanzaExecutor(4, ThreadFactories.platform())));
+	}
+
+	public interface TestHandler
+			extends EventHandler {
+
+		void onTest(int session, int seq);
+
+		class TestEvent
+				extends JaxmppEventWithCallback<TestHandler> {
+
+			private final int seq;
+			private final int session;
+
+			TestEvent(SessionObject sessionObject, int session, int seq, RunAfter<TestEvent> runAfter) {
+				super(sessionObject, runAfter);
+				this.session = session;
+				this.seq = seq;
+			}
+
+			@Override
+			public void dispatch(TestHandler handler) {
+				handler.onTest(session, seq);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * ElementSerializerBenchmark.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.xml;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serialization of stanza with <code>getAsString().getBytes()</code> (used previously on send path) and
+ * with {@linkplain ElementSerializer}. Run with <code>-prof gc</code> to compare allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ElementSerializerBenchmark {
+
+	private static final Charset UTF_CHARSET = Charset.forName("UTF-8");
+	@Param({"1", "100"})
+	public int items;
+	private Element stanza;
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(ElementSerializerBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Benchmark
+	public void getAsStringGetBytes(Blackhole blackhole) throws Exception {
+		blackhole.consume(stanza.getAsString().getBytes(UTF_CHARSET));
+	}
+
+	@Benchmark
+	public void serializer(Blackhole blackhole) throws Exception {
+		ElementSerializer serializer = ElementSerializer.getInstance().append(stanza);
+		blackhole.consume(serializer.getBuffer());
+		blackhole.consume(serializer.getLength());
+	}
+
+	@Setup
+	public void setUp() throws Exception {
+		stanza = ElementFactory.create("iq", null, "jabber:client");
+		stanza.setAttribute("type", "result");
+		stanza.setAttribute("id", "roster-1");
+		stanza.setAttribute("to", "juliet@example.com/balcony");
+		Element query = ElementFactory.create("query", null, "jabber:iq:roster");
+		stanza.addChild(query);
+		for (int i = 0; i < items; i++) {
+			Element item = ElementFactory.create("item");
+			item.setAttribute("jid", "contact" + i + "@example.net");
+			item.setAttribute("name", "Contact & Friend żółw " + i);
+			item.setAttribute("subscription", "both");
+			item.addChild(ElementFactory.create("group", "Friends", null));
+			query.addChild(item);
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * ElementSerializerTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.xml;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xml.ElementFactory;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class ElementSerializerTest {
+
+	private static void assertSameAsString(Element element) throws Exception {
+		byte[] expected = element.getAsString().getBytes("UTF-8");
+		Assert.assertArrayEquals(expected, ElementSerializer.toBytes(element));
+	}
+
+	@Test
+	public void testBufferReuse() throws Exception {
+		Element first = ElementFactory.create("presence");
+		Element second = ElementFactory.create("iq");
+		second.setAttribute("type", "get");
+
+		ElementSerializer serializer = ElementSerializer.getInstance();
+		serializer.append(first).append(second);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.writeTo(out);
+		Assert.assertEquals(first.getAsString() + second.getAsString(), out.toString("UTF-8"));
+
+		serializer = ElementSerializer.getInstance();
+		Assert.assertEquals(0, serializer.getLength());
+		serializer.append(second);
+		Assert.assertEquals(second.getAsString(),
+							new String(Arrays.copyOf(serializer.getBuffer(), serializer.getLength()), "UTF-8"));
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		Element message = ElementFactory.create("message");
+		message.setAttribute("to", "a&b<c>@example.com");
+		message.setAttribute("id", "\"quoted\" 'single'");
+		message.addChild(ElementFactory.create("body", "1 < 2 && 3 > 2 \"'", null));
+		assertSameAsString(message);
+	}
+
+	@Test
+	public void testLargeStanza() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("zażółć gęślą jaźń ").append(i).append(' ');
+		}
+		Element message = ElementFactory.create("message");
+		message.addChild(ElementFactory.create("body", sb.toString(), null));
+		assertSameAsString(message);
+	}
+
+	@Test
+	public void testNamespaces() throws Exception {
+		Element iq = ElementFactory.create("iq", null, "jabber:client");
+		iq.setAttribute("type", "set");
+		Element query = ElementFactory.create("query", null, "jabber:iq:roster");
+		iq.addChild(query);
+		Element item = ElementFactory.create("item");
+		item.setAttribute("jid", "romeo@example.net");
+		item.addChild(ElementFactory.create("group", "Friends", null));
+		query.addChild(item);
+		query.addChild(ElementFactory.create("x", null, "jabber:client"));
+		assertSameAsString(iq);
+	}
+
+	@Test
+	public void testNonAscii() throws Exception {
+		Element message = ElementFactory.create("message");
+		// 2-byte, 3-byte, 4-byte (surrogate pair) and unpaired surrogate
+		message.addChild(ElementFactory.create("body", "zażółć € 😀 \uD800x", null));
+		assertSameAsString(message);
+	}
+
+	@Test
+	public void testStanzaWrapper() throws Exception {
+		Message message = Message.create();
+		message.setBody("Wherefore art thou, Romeo?");
+		message.setId("1");
+		assertSameAsString(message);
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * J2seElementAccessorTest.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.j2se.xml;
+
+import junit.framework.TestCase;
+import tigase.jaxmpp.core.client.criteria.CompiledCriteria;
+import tigase.jaxmpp.core.client.criteria.Criteria;
+import tigase.jaxmpp.core.client.criteria.ElementCriteria;
+import tigase.jaxmpp.core.client.criteria.Or;
+import tigase.jaxmpp.core.client.xml.Element;
+import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
+import tigase.xml.DomBuilderHandler;
+import tigase.xml.SimpleParser;
+import tigase.xml.SingletonFactory;
+
+public class J2seElementAccessorTest
+		extends TestCase {
+
+	private static final String[] STANZAS = new String[]{
+			"<iq type='get' to='a@b.c' id='1'><ping xmlns='urn:xmpp:ping'/></iq>",
+			"<iq type='set' id='2'><query xmlns='jabber:iq:roster'><item jid='x@y.z'/></query></iq>",
+			"<message from='room@muc.b.c'><body>Hi</body><x xmlns='http://jabber.org/protocol/muc#user'>" +
+					"<invite from='a@b.c'/></x></message>", "<message><invite/></message>",
+			"<presence from='a@b.c/r'/>", "<success xmlns='urn:ietf:params:xml:ns:xmpp-sasl'/>"};
+
+	private final SimpleParser parser = SingletonFactory.getParserInstance();
+
+	private J2seElement parse(String data) {
+		DomBuilderHandler domHandler = new DomBuilderHandler();
+		parser.parse(domHandler, data.toCharArray(), 0, data.length());
+		return new J2seElement(domHandler.getParsedElements().element());
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		CompiledCriteria.addElementAccessor(new J2seElementAccessor());
+	}
+
+	public void testEquivalence() throws Exception {
+		Criteria[] criteria = new Criteria[]{ElementCriteria.name("iq"),
+											 ElementCriteria.name("iq").add(ElementCriteria.xmlns("urn:xmpp:ping")),
+											 ElementCriteria.name("iq", new String[]{"type"}, new String[]{"set"})
+													 .add(ElementCriteria.name("query", "jabber:iq:roster")),
+											 ElementCriteria.name("message")
+													 .add(ElementCriteria.name("x",
+																			   "http://jabber.org/protocol/muc#user"))
+													 .add(ElementCriteria.name("invite")),
+											 new Or(ElementCriteria.name("presence"),
+													ElementCriteria.name("success", "urn:ietf:params:xml:ns:xmpp-sasl")),
+											 ElementCriteria.empty().add(ElementCriteria.name("body"))};
+		for (String data : STANZAS) {
+			J2seElement element = parse(data);
+			Element stanza = Stanza.canBeConverted(element) ? Stanza.create(element) : element;
+			for (Criteria c : criteria) {
+				Criteria compiled = CompiledCriteria.compile(c);
+				assertEquals(data, c.match(element), compiled.match(element));
+				assertEquals(data, c.match(stanza), compiled.match(stanza));
+			}
+		}
+	}
+
+	public void testUnwrap() throws Exception {
+		J2seElement element = parse(STANZAS[0]);
+		J2seElementAccessor accessor = new J2seElementAccessor();
+		assertSame(element.getXmlElement(), accessor.unwrap(element));
+		assertSame(element.getXmlElement(), accessor.unwrap(Stanza.create(element)));
+		assertNull(accessor.unwrap(tigase.jaxmpp.core.client.xml.ElementFactory.create("iq")));
+	}
+
+}
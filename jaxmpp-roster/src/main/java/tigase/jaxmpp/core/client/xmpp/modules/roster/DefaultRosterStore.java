@@ -18,56 +18,68 @@
  * along with this program. Look for COPYING file in the top folder.
  * If not, see http://www.gnu.org/licenses/.
  */
-
 package tigase.jaxmpp.core.client.xmpp.modules.roster;
 
 import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem.Subscription;
 
 import java.util.*;
 
+/**
+ * {@linkplain RosterStore} keeping roster in memory.
+ * <p>
+ * Members of groups, items with given subscription state and items with pending subscription request are indexed.
+ * Indexes are updated when item is added or removed, so queries and calculation of modified groups don't scan whole
+ * roster. State of item is remembered when it is indexed, because {@linkplain RosterModule} modifies items before
+ * they are added again. Identifiers of groups are not copied, because item replaces them on modification.
+ */
 public class DefaultRosterStore
 		extends RosterStore {
 
 	protected final Set<String> groups = new HashSet<String>();
 
 	protected final Map<BareJID, RosterItem> roster = new HashMap<BareJID, RosterItem>();
+	private final Map<String, Set<BareJID>> groupMembers = new HashMap<String, Set<BareJID>>();
+	private final Map<BareJID, IndexedState> indexed = new HashMap<BareJID, IndexedState>();
+	private final Set<BareJID> pendingSubscriptions = new HashSet<BareJID>();
+	private final Map<Subscription, Set<BareJID>> subscriptionMembers = new EnumMap<Subscription, Set<BareJID>>(
+			Subscription.class);
+
+	private static int hash(int h, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			h = 31 * h + value.charAt(i);
+		}
+		return h;
+	}
 
 	@Override
 	protected Set<String> addItem(RosterItem item) {
-		item.setData(RosterItem.ID_KEY, createItemId(item.getJid()));
+		item.setId(createItemId(item.getJid()));
+		final HashSet<String> addedGroups = new HashSet<String>();
+		final HashSet<String> removedGroups = new HashSet<String>();
 		synchronized (this.roster) {
 			this.roster.put(item.getJid(), item);
+			unindex(item.getJid(), removedGroups);
+			index(item, addedGroups);
 		}
-
-		final HashSet<String> addedGroups = new HashSet<String>();
-		synchronized (this.groups) {
-			for (String g : item.getGroups()) {
-				if (!this.groups.contains(g)) {
-					addedGroups.add(g);
-				}
-			}
-			this.groups.addAll(addedGroups);
-		}
+		// groups of item which was already indexed aren't new
+		addedGroups.removeAll(removedGroups);
 		return addedGroups;
 	}
 
 	@Override
 	protected Set<String> calculateModifiedGroups(final HashSet<String> groupsOld) {
-		reloadGroups();
 		HashSet<String> modifiedGroups = new HashSet<String>();
-
-		Iterator<String> e = groupsOld.iterator();
-		while (e.hasNext()) {
-			String gg = e.next();
-			if (!groups.contains(gg)) {
-				modifiedGroups.add(gg);
+		synchronized (this.groups) {
+			for (String gg : groupsOld) {
+				if (!groups.contains(gg)) {
+					modifiedGroups.add(gg);
+				}
 			}
-		}
-		e = groups.iterator();
-		while (e.hasNext()) {
-			String gg = e.next();
-			if (!groupsOld.contains(gg)) {
-				modifiedGroups.add(gg);
+			for (String gg : groups) {
+				if (!groupsOld.contains(gg)) {
+					modifiedGroups.add(gg);
+				}
 			}
 		}
 
@@ -75,7 +87,8 @@ public class DefaultRosterStore
 	}
 
 	protected int createItemId(BareJID jid) {
-		int id = (sessionObject.getUserBareJid() + "::" + jid).hashCode();
+		// the same as hash code of concatenated string, but without creating it
+		int id = hash(hash(hash(0, String.valueOf(sessionObject.getUserBareJid())), "::"), jid.toString());
 		return Math.abs(id);
 	}
 
@@ -117,6 +130,13 @@ public class DefaultRosterStore
 		return result;
 	}
 
+	@Override
+	public List<RosterItem> getBySubscription(Subscription subscription) {
+		synchronized (this.roster) {
+			return items(subscriptionMembers.get(subscription));
+		}
+	}
+
 	/**
 	 * Returns number of roster items in storage.
 	 *
@@ -127,6 +147,29 @@ public class DefaultRosterStore
 		return roster.size();
 	}
 
+	@Override
+	public int getCount(Subscription subscription) {
+		synchronized (this.roster) {
+			final Set<BareJID> members = subscriptionMembers.get(subscription);
+			return members == null ? 0 : members.size();
+		}
+	}
+
+	@Override
+	public List<RosterItem> getGroupMembers(String group) {
+		synchronized (this.roster) {
+			return items(groupMembers.get(group));
+		}
+	}
+
+	@Override
+	public int getGroupSize(String group) {
+		synchronized (this.roster) {
+			final Set<BareJID> members = groupMembers.get(group);
+			return members == null ? 0 : members.size();
+		}
+	}
+
 	/**
 	 * Get all known groups of buddies.
 	 *
@@ -137,21 +180,65 @@ public class DefaultRosterStore
 		return Collections.unmodifiableCollection(this.groups);
 	}
 
-	void reloadGroups() {
-		synchronized (groups) {
-			groups.clear();
-			for (RosterItem i : this.roster.values()) {
-				groups.addAll(i.getGroups());
+	@Override
+	public List<RosterItem> getPendingSubscriptions() {
+		synchronized (this.roster) {
+			return items(pendingSubscriptions);
+		}
+	}
+
+	private void index(RosterItem item, Set<String> addedGroups) {
+		final BareJID jid = item.getJid();
+		final int[] groupIds = item.getGroupIds();
+		for (int groupId : groupIds) {
+			final String g = RosterItem.getGroupName(groupId);
+			Set<BareJID> members = groupMembers.get(g);
+			if (members == null) {
+				members = new HashSet<BareJID>();
+				groupMembers.put(g, members);
+				synchronized (this.groups) {
+					if (this.groups.add(g)) {
+						addedGroups.add(g);
+					}
+				}
 			}
+			members.add(jid);
 		}
+		if (item.getSubscription() != null) {
+			Set<BareJID> members = subscriptionMembers.get(item.getSubscription());
+			if (members == null) {
+				members = new HashSet<BareJID>();
+				subscriptionMembers.put(item.getSubscription(), members);
+			}
+			members.add(jid);
+		}
+		if (item.isAsk()) {
+			pendingSubscriptions.add(jid);
+		}
+		indexed.put(jid, new IndexedState(groupIds, item.getSubscription(), item.isAsk()));
+	}
+
+	private List<RosterItem> items(Set<BareJID> jids) {
+		if (jids == null) {
+			return new ArrayList<RosterItem>();
+		}
+		final ArrayList<RosterItem> result = new ArrayList<RosterItem>(jids.size());
+		for (BareJID jid : jids) {
+			result.add(this.roster.get(jid));
+		}
+		return result;
 	}
 
 	public void removeAll() {
 		synchronized (this.roster) {
 			roster.clear();
-		}
-		synchronized (this.groups) {
-			groups.clear();
+			groupMembers.clear();
+			indexed.clear();
+			pendingSubscriptions.clear();
+			subscriptionMembers.clear();
+			synchronized (this.groups) {
+				groups.clear();
+			}
 		}
 	}
 
@@ -159,6 +246,49 @@ public class DefaultRosterStore
 	protected void removeItem(BareJID jid) {
 		synchronized (this.roster) {
 			this.roster.remove(jid);
+			unindex(jid, null);
+		}
+	}
+
+	private void unindex(BareJID jid, Set<String> removedGroups) {
+		final IndexedState state = indexed.remove(jid);
+		if (state == null) {
+			return;
+		}
+		for (int groupId : state.groupIds) {
+			final String g = RosterItem.getGroupName(groupId);
+			final Set<BareJID> members = groupMembers.get(g);
+			if (members != null && members.remove(jid) && members.isEmpty()) {
+				groupMembers.remove(g);
+				synchronized (this.groups) {
+					this.groups.remove(g);
+				}
+				if (removedGroups != null) {
+					removedGroups.add(g);
+				}
+			}
+		}
+		if (state.subscription != null) {
+			final Set<BareJID> members = subscriptionMembers.get(state.subscription);
+			if (members != null) {
+				members.remove(jid);
+			}
+		}
+		if (state.ask) {
+			pendingSubscriptions.remove(jid);
+		}
+	}
+
+	private static class IndexedState {
+
+		private final boolean ask;
+		private final int[] groupIds;
+		private final Subscription subscription;
+
+		IndexedState(int[] groupIds, Subscription subscription, boolean ask) {
+			this.groupIds = groupIds;
+			this.subscription = subscription;
+			this.ask = ask;
 		}
 	}
 }
@@ -0,0 +1,50 @@
+/*
+ * IncrementalRosterCacheProvider.java
+ *
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.SessionObject;
+
+import java.util.Collection;
+
+/**
+ * {@linkplain RosterCacheProvider} which is able to store roster pushes without storing whole roster.
+ * <p>
+ * {@linkplain RosterModule} calls {@linkplain #updateReceivedItems(SessionObject, String, Collection, Collection)}
+ * for each roster push containing version. {@linkplain #updateReceivedVersion(SessionObject, String)} is still
+ * called when whole roster is received.
+ */
+public interface IncrementalRosterCacheProvider
+		extends RosterCacheProvider {
+
+	/**
+	 * Stores changes received in roster push.
+	 *
+	 * @param sessionObject session object.
+	 * @param ver version of roster after change.
+	 * @param items added or modified roster items.
+	 * @param removed JIDs of removed roster items.
+	 */
+	void updateReceivedItems(SessionObject sessionObject, String ver, Collection<RosterItem> items,
+							 Collection<BareJID> removed);
+
+}
@@ -24,14 +24,38 @@ import tigase.jaxmpp.core.client.BareJID;
 import tigase.jaxmpp.core.client.DataHolder;
 import tigase.jaxmpp.core.client.SessionObject;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Roster item. Contains information about buddy in roster.
+ * <p>
+ * Item is kept compact, because rosters may be big: names of groups are interned and item keeps only their
+ * identifiers, subscription state and flags are packed into single field and {@linkplain DataHolder} is created when
+ * first data is stored.
+ * <p>
+ * Table of interned group names is shared by all sessions and it only grows: names of renamed or removed groups are
+ * kept until class is unloaded. It is read without locking.
  */
 public class RosterItem {
 
+	/**
+	 * @deprecated ID of item is not stored in data, use {@linkplain #getId()}.
+	 */
+	@Deprecated
 	public static final String ID_KEY = "id";
+	private static final int APPROVED = 0x10;
+	private static final int ASK = 0x08;
+	private static final int[] EMPTY = new int[0];
+	private static final Map<String, Integer> GROUP_IDS = new HashMap<String, Integer>();
+	private static final int SUBSCRIPTION_MASK = 0x07;
+	private static final Subscription[] SUBSCRIPTIONS = Subscription.values();
+	/**
+	 * Array is replaced (and reassigned after each write) under lock, so readers see written names without locking.
+	 */
+	private static volatile String[] groupNames = new String[16];
 
 	/**
 	 * Susbcription state.
@@ -77,14 +101,40 @@ public class RosterItem {
 		}
 	}
 
-	private final DataHolder dataHolder = new DataHolder();
-	private final ArrayList<String> groups = new ArrayList<String>();
 	private final BareJID jid;
 	private final SessionObject sessionObject;
-	private boolean approved;
-	private boolean ask;
+	private DataHolder dataHolder;
+	private byte flags;
+	private int[] groupIds = EMPTY;
+	private int id = -1;
 	private String name;
-	private Subscription subscription;
+
+	static String getGroupName(int groupId) {
+		return groupNames[groupId];
+	}
+
+	/**
+	 * Returns identifier of interned group name. Identifiers are shared by all roster items.
+	 */
+	static int internGroup(String group) {
+		synchronized (GROUP_IDS) {
+			Integer groupId = GROUP_IDS.get(group);
+			if (groupId == null) {
+				groupId = GROUP_IDS.size();
+				String[] names = groupNames;
+				if (groupId == names.length) {
+					final String[] tmp = new String[names.length * 2];
+					System.arraycopy(names, 0, tmp, 0, names.length);
+					names = tmp;
+				}
+				names[groupId] = group;
+				// volatile write publishes name
+				groupNames = names;
+				GROUP_IDS.put(group, groupId);
+			}
+			return groupId;
+		}
+	}
 
 	public RosterItem(BareJID jid, SessionObject sessionObject) {
 		this.jid = jid;
@@ -110,16 +160,24 @@ public class RosterItem {
 	 * @return object or <code>null</code> if object doesn't exists.
 	 */
 	public <T> T getData(String key) {
-		return dataHolder.getData(key);
+		final DataHolder dataHolder = this.dataHolder;
+		return dataHolder == null ? null : dataHolder.<T>getData(key);
 	}
 
 	/**
-	 * Returns groups associated to roster item.
+	 * Returns identifiers of interned groups. Returned array must not be modified.
+	 */
+	int[] getGroupIds() {
+		return groupIds;
+	}
+
+	/**
+	 * Returns groups associated to roster item. Returned list is modifiable view of groups of item.
 	 *
-	 * @return
+	 * @return list of group names.
 	 */
-	public ArrayList<String> getGroups() {
-		return groups;
+	public List<String> getGroups() {
+		return new GroupList();
 	}
 
 	/**
@@ -128,8 +186,11 @@ public class RosterItem {
 	 * @return object id.
 	 */
 	public long getId() {
-		Long x = getData(ID_KEY);
-		return x == null ? -1 : x;
+		return id;
+	}
+
+	void setId(int id) {
+		this.id = id;
 	}
 
 	/**
@@ -169,11 +230,12 @@ public class RosterItem {
 	 * @return subscription state.
 	 */
 	public Subscription getSubscription() {
-		return subscription;
+		final int s = flags & SUBSCRIPTION_MASK;
+		return s == 0 ? null : SUBSCRIPTIONS[s - 1];
 	}
 
 	public void setSubscription(Subscription subscription) {
-		this.subscription = subscription;
+		this.flags = (byte) ((flags & ~SUBSCRIPTION_MASK) | (subscription == null ? 0 : subscription.ordinal() + 1));
 	}
 
 	@Override
@@ -182,11 +244,11 @@ public class RosterItem {
 	}
 
 	public boolean isApproved() {
-		return approved;
+		return (flags & APPROVED) != 0;
 	}
 
 	public void setApproved(boolean approved) {
-		this.approved = approved;
+		setFlag(APPROVED, approved);
 	}
 
 	/**
@@ -195,11 +257,11 @@ public class RosterItem {
 	 * @return <code>true</code> subscription of this buddy was requested.
 	 */
 	public boolean isAsk() {
-		return ask;
+		return (flags & ASK) != 0;
 	}
 
 	public void setAsk(boolean ask) {
-		this.ask = ask;
+		setFlag(ASK, ask);
 	}
 
 	/**
@@ -210,7 +272,8 @@ public class RosterItem {
 	 * @return removed value or <code>null</code> if value was not saved.
 	 */
 	public <T> T removeData(String key) {
-		return dataHolder.removeData(key);
+		final DataHolder dataHolder = this.dataHolder;
+		return dataHolder == null ? null : dataHolder.<T>removeData(key);
 	}
 
 	/**
@@ -221,12 +284,77 @@ public class RosterItem {
 	 * @param value values to save
 	 */
 	public void setData(String key, Object value) {
+		if (dataHolder == null) {
+			dataHolder = new DataHolder();
+		}
 		dataHolder.setData(key, value);
 	}
 
+	private void setFlag(int flag, boolean value) {
+		this.flags = (byte) (value ? flags | flag : flags & ~flag);
+	}
+
 	@Override
 	public String toString() {
 		return "RosterItem [" + name + " <" + jid.toString() + ">]";
 	}
 
+	/**
+	 * Modifiable view of groups. Array of identifiers is replaced on each modification, so array returned by
+	 * {@linkplain #getGroupIds()} never changes.
+	 */
+	private class GroupList
+			extends AbstractList<String> {
+
+		@Override
+		public void add(int index, String group) {
+			final int[] ids = groupIds;
+			final int[] tmp = new int[ids.length + 1];
+			System.arraycopy(ids, 0, tmp, 0, index);
+			tmp[index] = internGroup(group);
+			System.arraycopy(ids, index, tmp, index + 1, ids.length - index);
+			groupIds = tmp;
+			++modCount;
+		}
+
+		@Override
+		public void clear() {
+			groupIds = EMPTY;
+			++modCount;
+		}
+
+		@Override
+		public String get(int index) {
+			return getGroupName(groupIds[index]);
+		}
+
+		@Override
+		public String remove(int index) {
+			final int[] ids = groupIds;
+			final String result = getGroupName(ids[index]);
+			final int[] tmp = new int[ids.length - 1];
+			System.arraycopy(ids, 0, tmp, 0, index);
+			System.arraycopy(ids, index + 1, tmp, index, ids.length - index - 1);
+			groupIds = tmp.length == 0 ? EMPTY : tmp;
+			++modCount;
+			return result;
+		}
+
+		@Override
+		public String set(int index, String group) {
+			final int[] ids = groupIds;
+			final int[] tmp = new int[ids.length];
+			System.arraycopy(ids, 0, tmp, 0, ids.length);
+			final String result = getGroupName(tmp[index]);
+			tmp[index] = internGroup(group);
+			groupIds = tmp;
+			return result;
+		}
+
+		@Override
+		public int size() {
+			return groupIds.length;
+		}
+	}
+
 }
\ No newline at end of file
@@ -38,6 +38,7 @@ import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem.Subscription;
 import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule.ItemAddedHandler.ItemAddedEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule.ItemRemovedHandler.ItemRemovedEvent;
 import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule.ItemUpdatedHandler.ItemUpdatedEvent;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule.RosterLoadedHandler.RosterLoadedEvent;
 import tigase.jaxmpp.core.client.xmpp.stanzas.IQ;
 import tigase.jaxmpp.core.client.xmpp.stanzas.Stanza;
 import tigase.jaxmpp.core.client.xmpp.stanzas.StanzaType;
@@ -46,10 +47,14 @@ import java.util.*;
 
 /**
  * Module for roster manipulation.
+ * <p>
+ * When streaming is enabled and connector supports {@linkplain StreamedChildrenHandler}, items of requested roster
+ * are applied one by one, while response is still being parsed. {@linkplain ItemAddedEvent} is not fired for
+ * them, only single {@linkplain RosterLoadedEvent} is fired when whole roster is received.
  */
 public class RosterModule
 		extends AbstractIQModule
-		implements ContextAware, InitializingModule, XmppSessionEstablishedHandler {
+		implements ContextAware, InitializingModule, StreamedChildrenHandler, XmppSessionEstablishedHandler {
 
 	public static final Criteria CRIT = ElementCriteria.name("iq")
 			.add(ElementCriteria.name("query", new String[]{"xmlns"}, new String[]{"jabber:iq:roster"}));
@@ -62,6 +67,10 @@ public class RosterModule
 
 	}
 
+	private RosterLoad load;
+	private volatile String rosterRequestId;
+	private RosterSearchIndex searchIndex;
+	private volatile boolean streamingEnabled;
 	private RosterCacheProvider versionProvider;
 
 	private static final Element createItem(final RosterItem item) throws XMLException {
@@ -87,6 +96,14 @@ public class RosterModule
 		return rosterItem;
 	}
 
+	private static ArrayList<String> getGroups(Element item) throws XMLException {
+		final ArrayList<String> groups = new ArrayList<String>();
+		for (Element group : item.getChildren("group")) {
+			groups.add(group.getValue());
+		}
+		return groups;
+	}
+
 	public static RosterStore getRosterStore(SessionObject sessionObject) {
 		return sessionObject.getProperty(ROSTER_STORE_KEY);
 	}
@@ -195,6 +212,7 @@ public class RosterModule
 		if (this.versionProvider == null) {
 			this.versionProvider = UniversalFactory.createInstance(RosterCacheProvider.class.getName());
 		}
+		updateStreamedChildrenHandler();
 		context.getEventBus().addHandler(XmppSessionEstablishedHandler.XmppSessionEstablishedEvent.class, this);
 	}
 
@@ -218,6 +236,24 @@ public class RosterModule
 		return getRosterStore(context.getSessionObject());
 	}
 
+	/**
+	 * Returns search index of roster items. Index is created and registered as handler of roster events when this
+	 * method is called first time.
+	 *
+	 * @return search index of roster.
+	 */
+	public synchronized RosterSearchIndex getSearchIndex() {
+		if (searchIndex == null) {
+			searchIndex = new RosterSearchIndex();
+			context.getEventBus().addHandler(ItemAddedEvent.class, searchIndex);
+			context.getEventBus().addHandler(ItemUpdatedEvent.class, searchIndex);
+			context.getEventBus().addHandler(ItemRemovedEvent.class, searchIndex);
+			context.getEventBus().addHandler(RosterLoadedEvent.class, searchIndex);
+			searchIndex.rebuild(getRosterStore().getAll());
+		}
+		return searchIndex;
+	}
+
 	public RosterCacheProvider getVersionProvider() {
 		return versionProvider;
 	}
@@ -233,6 +269,34 @@ public class RosterModule
 		return features.getChildrenNS("ver", "urn:xmpp:features:rosterver") != null;
 	}
 
+	@Override
+	public boolean isStreamed(Element stanza, Element child) throws JaxmppException {
+		final String id = rosterRequestId;
+		if (!streamingEnabled || id == null || !id.equals(stanza.getAttribute("id")) ||
+				!"result".equals(stanza.getAttribute("type")) || !"iq".equals(stanza.getName()) ||
+				!"query".equals(child.getName()) || !"jabber:iq:roster".equals(child.getXMLNS())) {
+			return false;
+		}
+		final String from = stanza.getAttribute("from");
+		final JID bindedJid = ResourceBinderModule.getBindedJID(context.getSessionObject());
+		if (from != null && (bindedJid == null || !JID.jidInstance(from).getBareJid().equals(bindedJid.getBareJid()))) {
+			return false;
+		}
+		synchronized (this) {
+			load = new RosterLoad(id, getRosterStore());
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if items of requested roster are applied while response is parsed.
+	 *
+	 * @return <code>true</code> if streaming is enabled.
+	 */
+	public boolean isStreamingEnabled() {
+		return streamingEnabled;
+	}
+
 	private void loadFromCache() {
 		if (versionProvider != null) {
 			final RosterStore roster = getRosterStore();
@@ -245,6 +309,18 @@ public class RosterModule
 		}
 	}
 
+	@Override
+	public void onChild(Element stanza, Element child, Element element) throws JaxmppException {
+		if (!"item".equals(element.getName())) {
+			return;
+		}
+		synchronized (this) {
+			if (load != null && load.id.equals(stanza.getAttribute("id"))) {
+				load.onItem(processStreamedItem(element));
+			}
+		}
+	}
+
 	protected void onRosterCleared() {
 		loadFromCache();
 	}
@@ -259,16 +335,13 @@ public class RosterModule
 		throw new XMPPException(ErrorCondition.not_allowed);
 	}
 
-	private void processRosterItem(final Element item) throws JaxmppException {
+	private BareJID processRosterItem(final Element item) throws JaxmppException {
 		final BareJID jid = BareJID.bareJIDInstance(item.getAttribute("jid"));
 		final String name = item.getAttribute("name");
 		final Subscription subscription = getSubscription(item.getAttribute("subscription"));
 		final boolean ask = item.getAttribute("ask") != null && "subscribe".equals(item.getAttribute("ask"));
 		final boolean approved = item.getAttribute("approved") != null && "true".equals(item.getAttribute("approved"));
-		final ArrayList<String> groups = new ArrayList<String>();
-		for (Element group : item.getChildren("group")) {
-			groups.add(group.getValue());
-		}
+		final ArrayList<String> groups = getGroups(item);
 
 		RosterItem currentItem = getRosterStore().get(jid);
 		if (subscription == Subscription.remove && currentItem != null) {
@@ -319,11 +392,12 @@ public class RosterModule
 			fireEvent(new ItemUpdatedEvent(context.getSessionObject(), currentItem, null, modifiedGroups));
 			log.fine("Roster item " + jid + " updated");
 		}
-
+		return jid;
 	}
 
 	private void processRosterQuery(final Element query, boolean force) throws JaxmppException {
 		if (query != null) {
+			final RosterLoad load = force ? new RosterLoad(null, getRosterStore()) : null;
 			if (force) {
 				getRosterStore().removeAll();
 			}
@@ -331,11 +405,22 @@ public class RosterModule
 			List<Element> items = query.getChildren("item");
 			String ver = query.getAttribute("ver");
 			for (Element element : items) {
-				processRosterItem(element);
+				final BareJID jid = processRosterItem(element);
+				if (load != null) {
+					load.onItem(jid);
+				}
 			}
 
 			if (versionProvider != null && ver != null) {
-				versionProvider.updateReceivedVersion(context.getSessionObject(), ver);
+				if (!force && versionProvider instanceof IncrementalRosterCacheProvider) {
+					updateReceivedItems((IncrementalRosterCacheProvider) versionProvider, items, ver);
+				} else {
+					versionProvider.updateReceivedVersion(context.getSessionObject(), ver);
+				}
+			}
+			if (load != null) {
+				fireEvent(new RosterLoadedEvent(context.getSessionObject(), load.added, load.updated,
+												load.previous.size()));
 			}
 		}
 	}
@@ -351,6 +436,32 @@ public class RosterModule
 		processRosterQuery(query, false);
 	}
 
+	private BareJID processStreamedItem(final Element item) throws JaxmppException {
+		final BareJID jid = BareJID.bareJIDInstance(item.getAttribute("jid"));
+		RosterItem currentItem = getRosterStore().get(jid);
+		if (currentItem == null) {
+			currentItem = new RosterItem(jid, context.getSessionObject());
+		}
+		fill(currentItem, item.getAttribute("name"), getSubscription(item.getAttribute("subscription")),
+			 getGroups(item), "subscribe".equals(item.getAttribute("ask")), "true".equals(item.getAttribute("approved")));
+		getRosterStore().addItem(currentItem);
+		return jid;
+	}
+
+	private void processStreamedLoad(final RosterLoad load, final Element query) throws JaxmppException {
+		final RosterStore store = getRosterStore();
+		for (BareJID jid : load.previous) {
+			store.removeItem(jid);
+		}
+		final String ver = query == null ? null : query.getAttribute("ver");
+		if (versionProvider != null && ver != null) {
+			versionProvider.updateReceivedVersion(context.getSessionObject(), ver);
+		}
+		log.fine("Roster loaded: " + load.added + " added, " + load.updated + " updated, " + load.previous.size() +
+						 " removed");
+		fireEvent(new RosterLoadedEvent(context.getSessionObject(), load.added, load.updated, load.previous.size()));
+	}
+
 	protected void remove(BareJID jid) throws JaxmppException {
 		IQ iq = IQ.create();
 		iq.setType(StanzaType.set);
@@ -385,6 +496,7 @@ public class RosterModule
 	public void rosterRequest() throws JaxmppException {
 		IQ iq = IQ.create();
 		iq.setType(StanzaType.get);
+		iq.setId(UIDGenerator.next());
 		Element query = ElementFactory.create("query", null, "jabber:iq:roster");
 		if (isRosterVersioningAvailable()) {
 			String x = versionProvider.getCachedVersion(context.getSessionObject());
@@ -398,6 +510,10 @@ public class RosterModule
 		}
 		iq.addChild(query);
 
+		synchronized (this) {
+			load = null;
+		}
+		rosterRequestId = iq.getId();
 		write(iq, new AsyncCallback() {
 
 			@Override
@@ -410,7 +526,16 @@ public class RosterModule
 			public void onSuccess(Stanza responseStanza) throws JaxmppException {
 				Element query = ((IQ) responseStanza).getQuery();
 
-				processRosterQuery(query, true);
+				final RosterLoad streamed;
+				synchronized (RosterModule.this) {
+					streamed = load != null && load.id.equals(responseStanza.getId()) ? load : null;
+					load = null;
+				}
+				if (streamed != null) {
+					processStreamedLoad(streamed, query);
+				} else {
+					processRosterQuery(query, true);
+				}
 			}
 
 			@Override
@@ -426,6 +551,20 @@ public class RosterModule
 		this.context = context;
 	}
 
+	/**
+	 * Enables applying items of requested roster while response is parsed. Works only with connectors supporting
+	 * {@linkplain StreamedChildrenHandler}. Module is registered as handler only while streaming is enabled, and
+	 * connector takes handler when connection is started, so it should be enabled before login.
+	 *
+	 * @param streamingEnabled <code>true</code> to enable streaming.
+	 */
+	public void setStreamingEnabled(boolean streamingEnabled) {
+		this.streamingEnabled = streamingEnabled;
+		if (context != null) {
+			updateStreamedChildrenHandler();
+		}
+	}
+
 	protected void update(RosterItem item) throws JaxmppException {
 		IQ iq = IQ.create();
 		iq.setType(StanzaType.set);
@@ -452,6 +591,33 @@ public class RosterModule
 		});
 	}
 
+	private void updateReceivedItems(IncrementalRosterCacheProvider provider, List<Element> items, String ver)
+			throws JaxmppException {
+		final ArrayList<RosterItem> updated = new ArrayList<RosterItem>();
+		final ArrayList<BareJID> removed = new ArrayList<BareJID>();
+		for (Element element : items) {
+			final BareJID jid = BareJID.bareJIDInstance(element.getAttribute("jid"));
+			final RosterItem item = getRosterStore().get(jid);
+			if (item == null) {
+				removed.add(jid);
+			} else {
+				updated.add(item);
+			}
+		}
+		provider.updateReceivedItems(context.getSessionObject(), ver, updated, removed);
+	}
+
+	private void updateStreamedChildrenHandler() {
+		final SessionObject sessionObject = context.getSessionObject();
+		final Object current = sessionObject.getProperty(STREAMED_CHILDREN_HANDLER_KEY);
+		// parser doesn't check stanzas at all if there is no handler
+		if (streamingEnabled && current == null) {
+			sessionObject.setProperty(Scope.user, STREAMED_CHILDREN_HANDLER_KEY, this);
+		} else if (!streamingEnabled && current == this) {
+			sessionObject.setProperty(Scope.user, STREAMED_CHILDREN_HANDLER_KEY, null);
+		}
+	}
+
 	public interface ItemAddedHandler
 			extends EventHandler {
 
@@ -589,4 +755,75 @@ public class RosterModule
 
 		}
 	}
+
+	/**
+	 * Fired when whole roster is received from server.
+	 */
+	public interface RosterLoadedHandler
+			extends EventHandler {
+
+		/**
+		 * @param sessionObject session object.
+		 * @param added number of items which weren't in roster before.
+		 * @param updated number of items which were already in roster.
+		 * @param removed number of items which were removed from roster.
+		 */
+		void onRosterLoaded(SessionObject sessionObject, int added, int updated, int removed);
+
+		class RosterLoadedEvent
+				extends JaxmppEvent<RosterLoadedHandler> {
+
+			private final int added;
+			private final int removed;
+			private final int updated;
+
+			public RosterLoadedEvent(SessionObject sessionObject, int added, int updated, int removed) {
+				super(sessionObject);
+				this.added = added;
+				this.updated = updated;
+				this.removed = removed;
+			}
+
+			@Override
+			public void dispatch(RosterLoadedHandler handler) {
+				handler.onRosterLoaded(sessionObject, added, updated, removed);
+			}
+
+			public int getAdded() {
+				return added;
+			}
+
+			public int getRemoved() {
+				return removed;
+			}
+
+			public int getUpdated() {
+				return updated;
+			}
+
+		}
+	}
+
+	private static class RosterLoad {
+
+		private final String id;
+		private final HashSet<BareJID> previous = new HashSet<BareJID>();
+		private int added;
+		private int updated;
+
+		RosterLoad(String id, RosterStore store) {
+			this.id = id;
+			for (RosterItem item : store.getAll()) {
+				previous.add(item.getJid());
+			}
+		}
+
+		void onItem(BareJID jid) {
+			if (previous.remove(jid)) {
+				++updated;
+			} else {
+				++added;
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,320 @@
+/*
+ * RosterSearchIndex.java
+ *
+ * Tigase XMPP Client Library
+ * Copyright (C) 2004-2018 "Tigase, Inc." <office@tigase.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. Look for COPYING file in the top folder.
+ * If not, see http://www.gnu.org/licenses/.
+ */
+package tigase.jaxmpp.core.client.xmpp.modules.roster;
+
+import tigase.jaxmpp.core.client.BareJID;
+import tigase.jaxmpp.core.client.SessionObject;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterModule.Action;
+
+import java.util.*;
+
+/**
+ * Index for searching roster items by name and JID, for example to filter roster while user types.
+ * <p>
+ * Search is case-insensitive. Query of three or more characters matches any part of name or JID, it is looked up in
+ * index of trigrams. Shorter query matches only beginnings of words. Matches are ordered: name or JID starting with
+ * query first, then names or JIDs containing word starting with query, then other matches. Matches with the same
+ * rank are ordered by name, or by JID if item has no name.
+ * <p>
+ * Index is updated by roster events, so it must be registered as handler of {@linkplain
+ * RosterModule.ItemAddedHandler.ItemAddedEvent}, {@linkplain RosterModule.ItemUpdatedHandler.ItemUpdatedEvent},
+ * {@linkplain RosterModule.ItemRemovedHandler.ItemRemovedEvent} and {@linkplain
+ * RosterModule.RosterLoadedHandler.RosterLoadedEvent}. It is done by {@linkplain RosterModule#getSearchIndex()}.
+ */
+public class RosterSearchIndex
+		implements RosterModule.ItemAddedHandler, RosterModule.ItemRemovedHandler, RosterModule.ItemUpdatedHandler,
+				   RosterModule.RosterLoadedHandler {
+
+	private static final char SEPARATOR = '\n';
+	private static final char WORD_PREFIX = '\u0000';
+	private final Map<BareJID, Integer> ids = new HashMap<BareJID, Integer>();
+	private final Map<String, Postings> postings = new HashMap<String, Postings>();
+	private Entry[] entries = new Entry[64];
+	private int removed;
+	private int size;
+
+	/**
+	 * Returns sorted <code>limit</code> first entries, without sorting all of them.
+	 */
+	private static List<Entry> first(List<Entry> entries, int limit) {
+		if (entries.size() <= limit) {
+			Collections.sort(entries);
+			return entries;
+		}
+		final PriorityQueue<Entry> heap = new PriorityQueue<Entry>(limit + 1, Collections.<Entry>reverseOrder());
+		for (Entry entry : entries) {
+			if (heap.size() < limit) {
+				heap.add(entry);
+			} else if (limit > 0 && entry.compareTo(heap.peek()) < 0) {
+				heap.poll();
+				heap.add(entry);
+			}
+		}
+		final ArrayList<Entry> result = new ArrayList<Entry>(heap);
+		Collections.sort(result);
+		return result;
+	}
+
+	private static boolean isWordStart(String text, int index) {
+		return index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1));
+	}
+
+	static String normalize(String value) {
+		return value.toLowerCase();
+	}
+
+	private static int rank(String text, String query) {
+		final int separator = text.indexOf(SEPARATOR);
+		if (text.startsWith(query) || text.startsWith(query, separator + 1)) {
+			return 0;
+		}
+		int index = text.indexOf(query, 1);
+		while (index >= 0) {
+			if (isWordStart(text, index)) {
+				return 1;
+			}
+			index = text.indexOf(query, index + 1);
+		}
+		return 2;
+	}
+
+	/**
+	 * Returns number of indexed items.
+	 *
+	 * @return number of indexed items.
+	 */
+	public synchronized int getCount() {
+		return ids.size();
+	}
+
+	@Override
+	public void onItemAdded(SessionObject sessionObject, RosterItem item, Set<String> modifiedGroups) {
+		update(item);
+	}
+
+	@Override
+	public void onItemRemoved(SessionObject sessionObject, RosterItem item, Set<String> modifiedGroups) {
+		remove(item.getJid());
+	}
+
+	@Override
+	public void onItemUpdated(SessionObject sessionObject, RosterItem item, Action action, Set<String> modifiedGroups) {
+		update(item);
+	}
+
+	@Override
+	public void onRosterLoaded(SessionObject sessionObject, int added, int updated, int removed) {
+		final RosterStore store = RosterModule.getRosterStore(sessionObject);
+		if (store != null) {
+			rebuild(store.getAll());
+		}
+	}
+
+	/**
+	 * Replaces content of index.
+	 *
+	 * @param items roster items to index.
+	 */
+	public synchronized void rebuild(Collection<RosterItem> items) {
+		ids.clear();
+		postings.clear();
+		entries = new Entry[Math.max(64, items.size())];
+		removed = 0;
+		size = 0;
+		for (RosterItem item : items) {
+			add(item);
+		}
+	}
+
+	/**
+	 * Removes item from index.
+	 *
+	 * @param jid JID of roster item.
+	 */
+	public synchronized void remove(BareJID jid) {
+		final Integer id = ids.remove(jid);
+		if (id != null) {
+			// postings are cleaned when index is compacted
+			entries[id] = null;
+			++removed;
+			if (removed > 1024 && removed > ids.size()) {
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Searches roster items.
+	 *
+	 * @param query searched text.
+	 * @param limit maximum number of returned items.
+	 *
+	 * @return best matching roster items.
+	 */
+	public synchronized List<RosterItem> search(String query, int limit) {
+		final String q = normalize(query.trim());
+		if (q.isEmpty() || limit <= 0) {
+			return new ArrayList<RosterItem>();
+		}
+		Postings candidates = null;
+		if (q.length() < 3) {
+			candidates = postings.get(WORD_PREFIX + q);
+		} else {
+			// the rarest trigram gives the smallest set of candidates
+			for (int i = 0; i + 3 <= q.length(); i++) {
+				final Postings p = postings.get(q.substring(i, i + 3));
+				if (p == null) {
+					return new ArrayList<RosterItem>();
+				}
+				if (candidates == null || p.size < candidates.size) {
+					candidates = p;
+				}
+			}
+		}
+		if (candidates == null) {
+			return new ArrayList<RosterItem>();
+		}
+
+		final List<List<Entry>> ranks = new ArrayList<List<Entry>>(3);
+		for (int i = 0; i < 3; i++) {
+			ranks.add(new ArrayList<Entry>());
+		}
+		for (int i = 0; i < candidates.size; i++) {
+			final Entry entry = entries[candidates.ids[i]];
+			if (entry != null && entry.text.indexOf(q) >= 0) {
+				ranks.get(rank(entry.text, q)).add(entry);
+			}
+		}
+
+		final ArrayList<RosterItem> result = new ArrayList<RosterItem>(Math.min(limit, candidates.size));
+		for (List<Entry> rank : ranks) {
+			for (Entry entry : first(rank, limit - result.size())) {
+				result.add(entry.item);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds item to index or updates it.
+	 *
+	 * @param item roster item.
+	 */
+	public synchronized void update(RosterItem item) {
+		final Integer id = ids.get(item.getJid());
+		if (id != null) {
+			final Entry entry = entries[id];
+			if (entry.text.equals(text(item))) {
+				entries[id] = new Entry(item, entry.text);
+				return;
+			}
+			remove(item.getJid());
+		}
+		add(item);
+	}
+
+	private void add(RosterItem item) {
+		final String text = text(item);
+		if (size == entries.length) {
+			final Entry[] tmp = new Entry[entries.length * 2];
+			System.arraycopy(entries, 0, tmp, 0, entries.length);
+			entries = tmp;
+		}
+		final int id = size++;
+		entries[id] = new Entry(item, text);
+		ids.put(item.getJid(), id);
+		for (int i = 0; i + 3 <= text.length(); i++) {
+			if (text.charAt(i + 1) != SEPARATOR && text.charAt(i + 2) != SEPARATOR && text.charAt(i) != SEPARATOR) {
+				post(text.substring(i, i + 3), id);
+			}
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (isWordStart(text, i) && Character.isLetterOrDigit(text.charAt(i))) {
+				post(WORD_PREFIX + text.substring(i, i + 1), id);
+				if (i + 1 < text.length() && Character.isLetterOrDigit(text.charAt(i + 1))) {
+					post(WORD_PREFIX + text.substring(i, i + 2), id);
+				}
+			}
+		}
+	}
+
+	private void compact() {
+		final ArrayList<RosterItem> items = new ArrayList<RosterItem>(ids.size());
+		for (int i = 0; i < size; i++) {
+			if (entries[i] != null) {
+				items.add(entries[i].item);
+			}
+		}
+		rebuild(items);
+	}
+
+	private void post(String gram, int id) {
+		Postings p = postings.get(gram);
+		if (p == null) {
+			p = new Postings();
+			postings.put(gram, p);
+		}
+		p.add(id);
+	}
+
+	private String text(RosterItem item) {
+		final String jid = normalize(item.getJid().toString());
+		final String name = item.getName();
+		// item without name is displayed (and sorted) by JID
+		return (name == null || name.isEmpty() ? jid : normalize(name)) + SEPARATOR + jid;
+	}
+
+	private static class Entry
+			implements Comparable<Entry> {
+
+		private final RosterItem item;
+		private final String text;
+
+		Entry(RosterItem item, String text) {
+			this.item = item;
+			this.text = text;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			return text.compareTo(o.text);
+		}
+	}
+
+	private static class Postings {
+
+		private int[] ids = new int[4];
+		private int size;
+
+		void add(int id) {
+			if (size > 0 && ids[size - 1] == id) {
+				return;
+			}
+			if (size == ids.length) {
+				final int[] tmp = new int[ids.length * 2];
+				System.arraycopy(ids, 0, tmp, 0, ids.length);
+				ids = tmp;
+			}
+			ids[size++] = id;
+		}
+	}
+
+}
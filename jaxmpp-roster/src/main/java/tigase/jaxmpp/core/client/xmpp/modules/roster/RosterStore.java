@@ -25,6 +25,7 @@ import tigase.jaxmpp.core.client.BareJID;
 import tigase.jaxmpp.core.client.Property;
 import tigase.jaxmpp.core.client.SessionObject;
 import tigase.jaxmpp.core.client.exceptions.JaxmppException;
+import tigase.jaxmpp.core.client.xmpp.modules.roster.RosterItem.Subscription;
 
 import java.util.*;
 
@@ -122,6 +123,23 @@ public abstract class RosterStore
 	 */
 	public abstract List<RosterItem> getAll(final Predicate predicate);
 
+	/**
+	 * Returns roster items with given subscription state.
+	 *
+	 * @param subscription subscription state.
+	 *
+	 * @return matched roster items.
+	 */
+	public List<RosterItem> getBySubscription(final Subscription subscription) {
+		return getAll(new Predicate() {
+
+			@Override
+			public boolean match(RosterItem item) {
+				return item.getSubscription() == subscription;
+			}
+		});
+	}
+
 	/**
 	 * Returns number of roster items in storage.
 	 *
@@ -129,6 +147,45 @@ public abstract class RosterStore
 	 */
 	public abstract int getCount();
 
+	/**
+	 * Returns number of roster items with given subscription state.
+	 *
+	 * @param subscription subscription state.
+	 *
+	 * @return number of matched roster items.
+	 */
+	public int getCount(Subscription subscription) {
+		return getBySubscription(subscription).size();
+	}
+
+	/**
+	 * Returns members of group.
+	 *
+	 * @param group name of group.
+	 *
+	 * @return roster items belonging to group.
+	 */
+	public List<RosterItem> getGroupMembers(final String group) {
+		return getAll(new Predicate() {
+
+			@Override
+			public boolean match(RosterItem item) {
+				return item.getGroups().contains(group);
+			}
+		});
+	}
+
+	/**
+	 * Returns number of members of group.
+	 *
+	 * @param group name of group.
+	 *
+	 * @return number of roster items belonging to group.
+	 */
+	public int getGroupSize(String group) {
+		return getGroupMembers(group).size();
+	}
+
 	/**
 	 * Get all known groups of buddies.
 	 *
@@ -136,6 +193,21 @@ public abstract class RosterStore
 	 */
 	public abstract Collection<? extends String> getGroups();
 
+	/**
+	 * Returns roster items with pending subscription request sent by user.
+	 *
+	 * @return roster items with <code>ask</code> flag.
+	 */
+	public List<RosterItem> getPendingSubscriptions() {
+		return getAll(new Predicate() {
+
+			@Override
+			public boolean match(RosterItem item) {
+				return item.isAsk();
+			}
+		});
+	}
+
 	@Override
 	public Class<RosterStore> getPropertyClass() {
 		return RosterStore.class;
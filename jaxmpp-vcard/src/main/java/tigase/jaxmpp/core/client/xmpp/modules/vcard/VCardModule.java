@@ -62,7 +62,7 @@ public class VCardModule
 		iq.setTo(jid);
 		iq.addChild(ElementFactory.create("vCard", null, "vcard-temp"));
 
-		write(iq, timeout, asyncCallback);
+		writeCoalesced(iq, timeout, asyncCallback);
 	}
 
 	public void retrieveVCard(JID jid, VCardAsyncCallback asyncCallback) throws JaxmppException {